@@ -0,0 +1,63 @@
+// Dashboard load test: every virtual user behaves like an open dashboard tab, polling the
+// same endpoints the Angular app calls. Run once per thread mode and compare the summaries.
+//
+//   VIRTUAL_THREADS=false ... then: k6 run loadtest/dashboard.js
+//   VIRTUAL_THREADS=true  ... then: k6 run loadtest/dashboard.js
+//
+// Options (environment): BASE_URL (default http://localhost:8080), CLIENTS (default 10000),
+// TURBINES (turbine ids 1..TURBINES to sample, default 100), HOLD (steady-state duration, default 5m).
+import http from 'k6/http';
+import { check, sleep } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+const CLIENTS = parseInt(__ENV.CLIENTS || '10000');
+const TURBINES = parseInt(__ENV.TURBINES || '100');
+const HOLD = __ENV.HOLD || '5m';
+
+export const options = {
+  scenarios: {
+    dashboards: {
+      executor: 'ramping-vus',
+      startVUs: 0,
+      stages: [
+        { duration: '2m', target: CLIENTS },
+        { duration: HOLD, target: CLIENTS },
+        { duration: '30s', target: 0 },
+      ],
+      gracefulRampDown: '30s',
+    },
+  },
+  thresholds: {
+    http_req_failed: ['rate<0.01'],
+    'http_req_duration{kind:analytics}': ['p(95)<2000'],
+  },
+  summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max'],
+};
+
+function iso(date) {
+  return date.toISOString().substring(0, 19);
+}
+
+export default function () {
+  const now = new Date();
+  const dayAgo = new Date(now.getTime() - 24 * 3600 * 1000);
+  const range = `startTime=${iso(dayAgo)}&endTime=${iso(now)}`;
+  const turbineId = 1 + Math.floor(Math.random() * TURBINES);
+
+  const overview = http.batch([
+    ['GET', `${BASE_URL}/api/turbines?page=0&size=20`, null, { tags: { kind: 'overview' } }],
+    ['GET', `${BASE_URL}/api/farms`, null, { tags: { kind: 'overview' } }],
+    ['GET', `${BASE_URL}/api/health/alerts?page=0&size=20`, null, { tags: { kind: 'overview' } }],
+  ]);
+  overview.forEach((res) => check(res, { 'overview 200': (r) => r.status === 200 }));
+
+  const analytics = http.batch([
+    ['GET', `${BASE_URL}/api/analytics/graph?${range}`, null, { tags: { kind: 'analytics' } }],
+    ['GET', `${BASE_URL}/api/analytics/daily?${range}`, null, { tags: { kind: 'analytics' } }],
+    ['GET', `${BASE_URL}/api/analytics/turbine/${turbineId}/aggregates?${range}`, null, { tags: { kind: 'analytics' } }],
+  ]);
+  analytics.forEach((res) => check(res, { 'analytics 200': (r) => r.status === 200 }));
+
+  // Dashboards refresh on a timer, not in a tight loop
+  sleep(5 + Math.random() * 5);
+}
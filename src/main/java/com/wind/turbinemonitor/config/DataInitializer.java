@@ -4,8 +4,9 @@ import com.wind.turbinemonitor.model.Farm;
 import com.wind.turbinemonitor.model.Telemetry;
 import com.wind.turbinemonitor.model.Turbine;
 import com.wind.turbinemonitor.repository.FarmRepository;
-import com.wind.turbinemonitor.repository.TelemetryRepository;
 import com.wind.turbinemonitor.repository.TurbineRepository;
+import com.wind.turbinemonitor.service.TelemetryService;
+import com.wind.turbinemonitor.service.TurbineRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
@@ -23,7 +24,10 @@ public class DataInitializer implements CommandLineRunner {
     private TurbineRepository turbineRepository;
     
     @Autowired
-    private TelemetryRepository telemetryRepository;
+    private TelemetryService telemetryService;
+    
+    @Autowired
+    private TurbineRegistry turbineRegistry;
     
     @Override
     public void run(String... args) throws Exception {
@@ -64,17 +68,19 @@ public class DataInitializer implements CommandLineRunner {
                         allTelemetry.add(telemetry);
                         
                         if (allTelemetry.size() >= batchSize) {
-                            telemetryRepository.saveAll(allTelemetry);
+                            telemetryService.saveTelemetryBatch(allTelemetry);
                             allTelemetry.clear();
                         }
                     }
                 }
                 
                 if (!allTelemetry.isEmpty()) {
-                    telemetryRepository.saveAll(allTelemetry);
+                    telemetryService.saveTelemetryBatch(allTelemetry);
                 }
             }
         }
+        
+        turbineRegistry.reload();
     }
 }
 
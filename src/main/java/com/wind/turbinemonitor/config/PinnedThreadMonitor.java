@@ -0,0 +1,73 @@
+package com.wind.turbinemonitor.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Logs virtual threads that block while pinned to their carrier thread, which on Java 21
+ * happens when they block inside a synchronized block or method (for example in a JDBC
+ * driver or pool). Every pinned carrier is one fewer thread for all other requests, so any
+ * frame that shows up here repeatedly in the JDBC path is worth fixing or upgrading.
+ *
+ * Listens to the JFR jdk.VirtualThreadPinned event in-process, so it also works in
+ * containers where -Djdk.tracePinnedThreads output is hard to get at.
+ */
+@Component
+public class PinnedThreadMonitor {
+    private static final int MAX_FRAMES = 12;
+    
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+    
+    @Value("${telemetry.diagnostics.pinned-threads:false}")
+    private boolean enabled;
+    
+    @Value("${telemetry.diagnostics.pinned-threshold-ms:20}")
+    private long thresholdMs;
+    
+    private RecordingStream stream;
+    
+    @PostConstruct
+    public void start() {
+        if (!enabled || !virtualThreads) {
+            return;
+        }
+        stream = new RecordingStream();
+        stream.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ofMillis(thresholdMs)).withStackTrace();
+        stream.onEvent("jdk.VirtualThreadPinned", this::report);
+        stream.startAsync();
+        System.out.println("Reporting virtual threads pinned for more than " + thresholdMs + " ms");
+    }
+    
+    private void report(RecordedEvent event) {
+        StringBuilder message = new StringBuilder("Virtual thread pinned for ")
+            .append(event.getDuration().toMillis()).append(" ms");
+        if (event.getThread() != null) {
+            message.append(" on ").append(event.getThread().getJavaName());
+        }
+        if (event.getStackTrace() != null) {
+            List<RecordedFrame> frames = event.getStackTrace().getFrames();
+            for (int i = 0; i < Math.min(MAX_FRAMES, frames.size()); i++) {
+                RecordedFrame frame = frames.get(i);
+                message.append("\n    at ").append(frame.getMethod().getType().getName())
+                       .append('.').append(frame.getMethod().getName())
+                       .append(':').append(frame.getLineNumber());
+            }
+        }
+        System.err.println(message);
+    }
+    
+    @PreDestroy
+    public void stop() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+}
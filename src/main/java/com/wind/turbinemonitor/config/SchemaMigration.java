@@ -0,0 +1,215 @@
+package com.wind.turbinemonitor.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Migrates data that Hibernate's schema update cannot, on an existing database.
+ *
+ * ddl-auto: update only logs a warning when a new unique constraint fails because of rows
+ * that already violate it, and leaves the table without it. Here each missing key is
+ * checked at startup; duplicate rows are deleted (the row with the lowest id is kept) and
+ * the constraint is added, before anything that relies on it for upserts starts writing.
+ *
+ * Duplicate hourly aggregates come from the pass before watermarks, which aggregated the
+ * rows not yet marked processed and so split an hour whose samples arrived in two passes
+ * over two rows. They are merged into the row with the lowest id instead of dropped:
+ * averages weighted by sample count, generation and counts summed. The merged row loses
+ * its channel stats until the hour is rebuilt, and the DAY and MONTH rollups, which counted
+ * both rows, are rebuilt on startup (see hasMergedAggregates).
+ *
+ * Anomaly alerts raised before health_alerts.aggregate_hour existed are given the hour
+ * they were derived from, so rebuilding that hour replaces them like any other. The old
+ * hourly pass raised them while aggregating the previous hour, or the current one right
+ * after a restart, stamped with the time it ran: the earliest anomalous aggregate of the
+ * turbine that started in the two hours before the alert is taken. This only concerns
+ * alerts that existed when the column was added, so it runs once: completion is recorded
+ * in data_migrations and later starts skip it instead of rescanning the alert history.
+ *
+ * Region and fleet daily summaries are no longer stored; rows left from when they were are
+ * deleted, since they would no longer be kept up to date.
+ */
+@Component
+public class SchemaMigration {
+    private static final String DELETE_DUPLICATE_TELEMETRY_MYSQL =
+        "DELETE t1 FROM telemetry t1 JOIN telemetry t2 " +
+        "ON t1.turbine_id = t2.turbine_id AND t1.timestamp = t2.timestamp AND t1.id > t2.id";
+    
+    private static final String DELETE_DUPLICATE_TELEMETRY_POSTGRES =
+        "DELETE FROM telemetry t1 USING telemetry t2 " +
+        "WHERE t1.turbine_id = t2.turbine_id AND t1.timestamp = t2.timestamp AND t1.id > t2.id";
+    
+    private static final String ADD_TELEMETRY_KEY =
+        "ALTER TABLE telemetry ADD CONSTRAINT uk_telemetry_turbine_timestamp UNIQUE (turbine_id, timestamp)";
+    
+    private static final String[] AVERAGED = {
+        "avg_wind_speed", "avg_power_output", "avg_rotor_speed", "avg_temperature", "avg_vibration", "avg_efficiency"
+    };
+    
+    // Sums per duplicated turbine-hour, keyed by the id of the row that is kept
+    private static final String DUPLICATE_AGGREGATE_SUMS =
+        "SELECT MIN(id) AS id, " + columns("SUM(%1$s * data_point_count) AS %1$s") +
+        ", SUM(total_generation) AS total_generation, SUM(data_point_count) AS data_point_count " +
+        "FROM telemetry_aggregates GROUP BY turbine_id, hour_start HAVING COUNT(*) > 1";
+    
+    private static final String MERGE_DUPLICATE_AGGREGATES_MYSQL =
+        "UPDATE telemetry_aggregates k JOIN (" + DUPLICATE_AGGREGATE_SUMS + ") d ON k.id = d.id SET " +
+        columns("k.%1$s = d.%1$s / d.data_point_count") +
+        ", k.total_generation = d.total_generation, k.data_point_count = d.data_point_count, k.channel_stats = NULL";
+    
+    private static final String MERGE_DUPLICATE_AGGREGATES_POSTGRES =
+        "UPDATE telemetry_aggregates k SET " + columns("%1$s = d.%1$s / d.data_point_count") +
+        ", total_generation = d.total_generation, data_point_count = d.data_point_count, channel_stats = NULL " +
+        "FROM (" + DUPLICATE_AGGREGATE_SUMS + ") d WHERE k.id = d.id";
+    
+    private static final String DELETE_DUPLICATE_AGGREGATES_MYSQL =
+        "DELETE a1 FROM telemetry_aggregates a1 JOIN telemetry_aggregates a2 " +
+        "ON a1.turbine_id = a2.turbine_id AND a1.hour_start = a2.hour_start AND a1.id > a2.id";
+    
+    private static final String DELETE_DUPLICATE_AGGREGATES_POSTGRES =
+        "DELETE FROM telemetry_aggregates a1 USING telemetry_aggregates a2 " +
+        "WHERE a1.turbine_id = a2.turbine_id AND a1.hour_start = a2.hour_start AND a1.id > a2.id";
+    
+    private static final String ADD_AGGREGATE_KEY =
+        "ALTER TABLE telemetry_aggregates ADD CONSTRAINT uk_telemetry_aggregates_turbine_hour UNIQUE (turbine_id, hour_start)";
+    
+    // %1$s: the anomalous aggregates an alert can have come from
+    private static final String ASSIGN_ALERT_HOURS =
+        "UPDATE health_alerts ha SET aggregate_hour = (SELECT MIN(a.hour_start) FROM telemetry_aggregates a %1$s) " +
+        "WHERE ha.alert_type = 'ANOMALY_DETECTED' AND ha.aggregate_hour IS NULL " +
+        "AND EXISTS (SELECT 1 FROM telemetry_aggregates a %1$s)";
+    
+    private static final String ALERT_AGGREGATES =
+        "WHERE a.turbine_id = ha.turbine_id AND a.has_anomaly = TRUE " +
+        "AND a.hour_start > ha.alert_time - %s AND a.hour_start <= ha.alert_time";
+    
+    private static final String TWO_HOURS_MYSQL = "INTERVAL 2 HOUR";
+    private static final String TWO_HOURS_POSTGRES = "INTERVAL '2 hours'";
+    
+    private static final String CREATE_DATA_MIGRATIONS =
+        "CREATE TABLE IF NOT EXISTS data_migrations (name VARCHAR(100) NOT NULL PRIMARY KEY, applied_at TIMESTAMP NOT NULL)";
+    
+    private static final String COUNT_DATA_MIGRATION =
+        "SELECT COUNT(*) FROM data_migrations WHERE name = ?";
+    
+    private static final String RECORD_DATA_MIGRATION =
+        "INSERT INTO data_migrations (name, applied_at) VALUES (?, ?)";
+    
+    private static final String LEGACY_ALERT_HOURS = "legacy-alert-hours";
+    
+    private static final String DELETE_DERIVED_SUMMARIES =
+        "DELETE FROM daily_summaries WHERE level <> 'FARM'";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    // Hibernate creates and updates the tables while this is built
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    
+    @Value("${spring.datasource.url:}")
+    private String datasourceUrl;
+    
+    private boolean mergedAggregates;
+    
+    @PostConstruct
+    public void migrate() {
+        ensureUniqueKey("telemetry", "uk_telemetry_turbine_timestamp",
+            isPostgres() ? DELETE_DUPLICATE_TELEMETRY_POSTGRES : DELETE_DUPLICATE_TELEMETRY_MYSQL, ADD_TELEMETRY_KEY);
+        if (!hasIndex("telemetry_aggregates", "uk_telemetry_aggregates_turbine_hour")) {
+            int merged = jdbcTemplate.update(isPostgres() ? MERGE_DUPLICATE_AGGREGATES_POSTGRES : MERGE_DUPLICATE_AGGREGATES_MYSQL);
+            System.out.println("Merged the duplicates of " + merged + " turbine-hours in telemetry_aggregates");
+            mergedAggregates = merged > 0;
+            addUniqueKey("telemetry_aggregates", "uk_telemetry_aggregates_turbine_hour",
+                isPostgres() ? DELETE_DUPLICATE_AGGREGATES_POSTGRES : DELETE_DUPLICATE_AGGREGATES_MYSQL, ADD_AGGREGATE_KEY);
+        }
+        jdbcTemplate.execute(CREATE_DATA_MIGRATIONS);
+        runOnce(LEGACY_ALERT_HOURS, this::assignLegacyAlertHours);
+        int derived = jdbcTemplate.update(DELETE_DERIVED_SUMMARIES);
+        if (derived > 0) {
+            System.out.println("Deleted " + derived + " region and fleet daily summaries; they are summed from farm days");
+        }
+    }
+    
+    /**
+     * Whether duplicate hourly aggregates were merged on this start, which leaves the rollups
+     * built from them out of date.
+     */
+    public boolean hasMergedAggregates() {
+        return mergedAggregates;
+    }
+    
+    // Alerts without a matching aggregate keep no hour
+    private void assignLegacyAlertHours() {
+        String aggregates = ALERT_AGGREGATES.formatted(isPostgres() ? TWO_HOURS_POSTGRES : TWO_HOURS_MYSQL);
+        int assigned = jdbcTemplate.update(ASSIGN_ALERT_HOURS.formatted(aggregates));
+        if (assigned > 0) {
+            System.out.println("Linked " + assigned + " anomaly alerts to the aggregate hour they were raised for");
+        }
+    }
+    
+    private void runOnce(String name, Runnable migration) {
+        Integer applied = jdbcTemplate.queryForObject(COUNT_DATA_MIGRATION, Integer.class, name);
+        if (applied != null && applied > 0) {
+            return;
+        }
+        migration.run();
+        try {
+            jdbcTemplate.update(RECORD_DATA_MIGRATION, name, LocalDateTime.now());
+        } catch (DuplicateKeyException e) {
+            // Another instance ran it at the same time; the migration is idempotent
+        }
+    }
+    
+    private void ensureUniqueKey(String table, String key, String deleteDuplicates, String addKey) {
+        if (!hasIndex(table, key)) {
+            addUniqueKey(table, key, deleteDuplicates, addKey);
+        }
+    }
+    
+    private void addUniqueKey(String table, String key, String deleteDuplicates, String addKey) {
+        System.out.println("Unique key " + key + " is missing on " + table + "; removing duplicate rows");
+        int deleted = jdbcTemplate.update(deleteDuplicates);
+        jdbcTemplate.execute(addKey);
+        System.out.println("Deleted " + deleted + " duplicate rows from " + table + " and added " + key);
+    }
+    
+    private boolean hasIndex(String table, String index) {
+        Boolean found = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            // MySQL reports the database as catalog, PostgreSQL as schema
+            try (ResultSet rs = metaData.getIndexInfo(connection.getCatalog(), connection.getSchema(), table, true, true)) {
+                while (rs.next()) {
+                    if (index.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        });
+        return Boolean.TRUE.equals(found);
+    }
+    
+    private static String columns(String expression) {
+        List<String> columns = new ArrayList<>();
+        for (String column : AVERAGED) {
+            columns.add(expression.formatted(column));
+        }
+        return String.join(", ", columns);
+    }
+    
+    private boolean isPostgres() {
+        return datasourceUrl.startsWith("jdbc:postgresql:");
+    }
+}
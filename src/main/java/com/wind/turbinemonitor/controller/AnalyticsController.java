@@ -1,20 +1,30 @@
 package com.wind.turbinemonitor.controller;
 
+import com.wind.turbinemonitor.model.RollupResolution;
 import com.wind.turbinemonitor.model.TelemetryAggregate;
+import com.wind.turbinemonitor.repository.AggregateColumnStore;
 import com.wind.turbinemonitor.service.AnalyticsService;
 import com.wind.turbinemonitor.service.AggregationService;
+import com.wind.turbinemonitor.service.IncrementalAggregationService;
+import com.wind.turbinemonitor.service.RollupService;
+import com.wind.turbinemonitor.service.ShardedAggregationService;
+import com.wind.turbinemonitor.util.ChannelStats;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.databind.ObjectMapper;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Map;
 
 @RestController
 @RequestMapping("/api/analytics")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = JsonRowStream.TRUNCATED_HEADER)
 public class AnalyticsController {
     @Autowired
     private AnalyticsService analyticsService;
@@ -22,6 +32,21 @@ public class AnalyticsController {
     @Autowired
     private AggregationService aggregationService;
     
+    @Autowired
+    private IncrementalAggregationService incrementalAggregation;
+    
+    @Autowired
+    private ShardedAggregationService shardedAggregation;
+    
+    @Autowired
+    private RollupService rollupService;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Value("${telemetry.streaming.max-rows:1000000}")
+    private int maxStreamRows;
+    
     @GetMapping("/turbine/{turbineId}/daily")
     public ResponseEntity<Map<String, Object>> getDailyMetrics(
             @PathVariable Long turbineId,
@@ -45,16 +70,113 @@ public class AnalyticsController {
         return ResponseEntity.ok(aggregationService.getAggregatesByTurbine(turbineId, startTime, endTime));
     }
     
+    @GetMapping("/turbine/{turbineId}/series")
+    public ResponseEntity<AggregateColumnStore.Series> getHourlySeries(
+            @PathVariable Long turbineId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime) {
+        return ResponseEntity.ok(analyticsService.getHourlySeries(turbineId, startTime, endTime));
+    }
+    
+    @GetMapping("/turbine/{turbineId}/rollups")
+    public ResponseEntity<List<Map<String, Object>>> getRollups(
+            @PathVariable Long turbineId,
+            @RequestParam(defaultValue = "DAY") RollupResolution resolution,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime) {
+        return ResponseEntity.ok(rollupService.getRollups(turbineId, resolution, startTime, endTime));
+    }
+    
+    @GetMapping("/turbine/{turbineId}/current-hour")
+    public ResponseEntity<Map<String, Object>> getCurrentHour(@PathVariable Long turbineId) {
+        Map<String, Object> currentHour = incrementalAggregation.getCurrentHour(turbineId);
+        return currentHour != null ? ResponseEntity.ok(currentHour) : ResponseEntity.notFound().build();
+    }
+    
+    @GetMapping("/incremental")
+    public ResponseEntity<Map<String, Object>> getIncrementalStatus() {
+        return ResponseEntity.ok(incrementalAggregation.getStatus());
+    }
+    
+    @GetMapping("/aggregation")
+    public ResponseEntity<Map<String, Object>> getAggregationStatus() {
+        return ResponseEntity.ok(shardedAggregation.getStatus());
+    }
+    
+    @GetMapping("/rollups")
+    public ResponseEntity<Map<String, Object>> getRollupStatus() {
+        return ResponseEntity.ok(rollupService.getStatus());
+    }
+    
+    @GetMapping("/distribution")
+    public ResponseEntity<Map<String, Object>> getDistribution(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestParam(required = false) String farm,
+            @RequestParam(required = false) String region,
+            @RequestParam(required = false) Long turbineId,
+            @RequestParam(defaultValue = "fleet") String groupBy,
+            @RequestParam(required = false) String channel,
+            @RequestParam(defaultValue = "0.5,0.95,0.99") List<Double> quantiles) {
+        if (!List.of("fleet", "farm", "day", "turbine").contains(groupBy)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "groupBy must be fleet, farm, day or turbine"));
+        }
+        if (channel != null && ChannelStats.channel(channel) < 0) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Unknown channel: " + channel));
+        }
+        if (quantiles.stream().anyMatch(q -> q < 0 || q > 1)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Quantiles must be between 0 and 1"));
+        }
+        return ResponseEntity.ok(rollupService.getDistribution(startTime, endTime, turbineId, farm, region, groupBy,
+            channel, quantiles.stream().mapToDouble(Double::doubleValue).toArray()));
+    }
+    
+    @PostMapping("/rollups/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildRollups() {
+        return ResponseEntity.ok(Map.of("rollupsWritten", rollupService.rebuild()));
+    }
+    
+    @GetMapping("/cache")
+    public ResponseEntity<Map<String, Object>> getCacheStatus() {
+        return ResponseEntity.ok(analyticsService.getCacheStatus());
+    }
+    
+    @GetMapping("/aggregate-store")
+    public ResponseEntity<Map<String, Object>> getAggregateStoreStatus() {
+        return ResponseEntity.ok(analyticsService.getAggregateStoreStatus());
+    }
+    
+    // Streamed in turbine and hour order; the cursor is the last turbine id and hour sent
     @GetMapping("/aggregates")
-    public ResponseEntity<List<TelemetryAggregate>> getAggregatesByDateRange(
+    public ResponseEntity<StreamingResponseBody> getAggregatesByDateRange(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
             @RequestParam(required = false) String farm,
-            @RequestParam(required = false) String region) {
-        if (farm != null || region != null) {
-            return ResponseEntity.ok(aggregationService.getAggregatesByFilters(startTime, endTime, farm, region));
+            @RequestParam(required = false) String region,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor) {
+        if (limit != null && limit <= 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        long afterTurbineId = 0;
+        LocalDateTime afterHour = startTime;
+        if (cursor != null) {
+            try {
+                String key = JsonRowStream.decodeCursor(cursor);
+                int separator = key.indexOf('/');
+                afterTurbineId = Long.parseLong(key.substring(0, separator));
+                afterHour = LocalDateTime.parse(key.substring(separator + 1));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+                return ResponseEntity.badRequest().build();
+            }
         }
-        return ResponseEntity.ok(aggregationService.getAggregatesByDateRange(startTime, endTime));
+        long turbineId = afterTurbineId;
+        LocalDateTime hour = afterHour;
+        return JsonRowStream.respond(objectMapper, limit, cursor, maxStreamRows,
+            rows -> aggregationService.hasMoreAggregatesThan(startTime, endTime, farm, region, rows),
+            (rows, consumer) -> aggregationService.forEachAggregate(startTime, endTime, farm, region, turbineId, hour,
+                rows, consumer),
+            (TelemetryAggregate aggregate) -> aggregate.getTurbine().getId() + "/" + aggregate.getHourStart());
     }
     
     @GetMapping("/daily")
@@ -0,0 +1,59 @@
+package com.wind.turbinemonitor.controller;
+
+import com.wind.turbinemonitor.model.BackfillJob;
+import com.wind.turbinemonitor.service.BackfillService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/backfill")
+@CrossOrigin(origins = "*")
+public class BackfillController {
+    @Autowired
+    private BackfillService backfillService;
+    
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> submit(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestParam(required = false) List<Long> turbineIds,
+            @RequestParam(required = false) String farm,
+            @RequestParam(required = false) String region) {
+        try {
+            BackfillJob job = backfillService.submit(startTime, endTime, turbineIds, farm, region);
+            return ResponseEntity.accepted().body(backfillService.getJob(job.getId()));
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+    
+    @GetMapping
+    public ResponseEntity<List<Map<String, Object>>> getJobs() {
+        return ResponseEntity.ok(backfillService.getJobs());
+    }
+    
+    @GetMapping("/{jobId}")
+    public ResponseEntity<Map<String, Object>> getJob(@PathVariable Long jobId) {
+        Map<String, Object> job = backfillService.getJob(jobId);
+        return job != null ? ResponseEntity.ok(job) : ResponseEntity.notFound().build();
+    }
+    
+    @PostMapping("/{jobId}/cancel")
+    public ResponseEntity<Map<String, Object>> cancel(@PathVariable Long jobId) {
+        return backfillService.cancel(jobId) ? ResponseEntity.ok(backfillService.getJob(jobId)) : ResponseEntity.notFound().build();
+    }
+    
+    @PostMapping("/{jobId}/resume")
+    public ResponseEntity<Map<String, Object>> resume(@PathVariable Long jobId) {
+        return backfillService.resume(jobId) ? ResponseEntity.ok(backfillService.getJob(jobId)) : ResponseEntity.notFound().build();
+    }
+}
@@ -3,8 +3,12 @@ package com.wind.turbinemonitor.controller;
 import com.wind.turbinemonitor.model.Farm;
 import com.wind.turbinemonitor.model.Telemetry;
 import com.wind.turbinemonitor.model.Turbine;
+import com.wind.turbinemonitor.repository.AggregationShardProgressRepository;
+import com.wind.turbinemonitor.repository.BackfillCheckpointRepository;
 import com.wind.turbinemonitor.repository.FarmRepository;
+import com.wind.turbinemonitor.repository.TelemetryChunkRepository;
 import com.wind.turbinemonitor.repository.TelemetryRepository;
+import com.wind.turbinemonitor.repository.TelemetryRollupRepository;
 import com.wind.turbinemonitor.repository.TurbineRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -38,7 +42,31 @@ public class InitController {
     private TelemetryRepository telemetryRepository;
     
     @Autowired
-    private com.wind.turbinemonitor.service.AggregationService aggregationService;
+    private TelemetryChunkRepository chunkRepository;
+    
+    @Autowired
+    private AggregationShardProgressRepository shardProgressRepository;
+    
+    @Autowired
+    private TelemetryRollupRepository rollupRepository;
+    
+    @Autowired
+    private BackfillCheckpointRepository backfillCheckpointRepository;
+    
+    @Autowired
+    private com.wind.turbinemonitor.service.ShardedAggregationService shardedAggregation;
+    
+    @Autowired
+    private com.wind.turbinemonitor.service.TelemetryService telemetryService;
+    
+    @Autowired
+    private com.wind.turbinemonitor.service.IncrementalAggregationService incrementalAggregation;
+    
+    @Autowired
+    private com.wind.turbinemonitor.service.TurbineRegistry turbineRegistry;
+    
+    @Autowired
+    private com.wind.turbinemonitor.service.AggregationWatermarkService watermarkService;
     
     @PostMapping("/aggregate")
     public ResponseEntity<Map<String, Object>> triggerAggregation() {
@@ -48,7 +76,11 @@ public class InitController {
             java.time.LocalDateTime now = java.time.LocalDateTime.now().truncatedTo(java.time.temporal.ChronoUnit.HOURS);
             java.time.LocalDateTime previousHour = now.minusHours(1);
             
-            aggregationService.aggregateTelemetryForHourParallel(previousHour);
+            if (incrementalAggregation.isEnabled()) {
+                incrementalAggregation.closeHours();
+            } else {
+                shardedAggregation.aggregateHour(previousHour);
+            }
             
             response.put("success", true);
             response.put("message", "Aggregation triggered for hour: " + previousHour);
@@ -149,16 +181,18 @@ public class InitController {
                     
                     // Batch save telemetry
                     if (allTelemetry.size() >= batchSize) {
-                        telemetryRepository.saveAll(allTelemetry);
+                        telemetryService.saveTelemetryBatch(allTelemetry);
                         allTelemetry.clear();
                     }
                 }
             }
             
             if (!allTelemetry.isEmpty()) {
-                telemetryRepository.saveAll(allTelemetry);
+                telemetryService.saveTelemetryBatch(allTelemetry);
             }
             
+            turbineRegistry.reload();
+            
             response.put("success", true);
             response.put("turbinesCreated", count);
             response.put("telemetryRecordsCreated", telemetryCount);
@@ -183,8 +217,14 @@ public class InitController {
             long farmCount = farmRepository.count();
             
             telemetryRepository.deleteAll();
+            chunkRepository.deleteAllInBatch();
+            shardProgressRepository.deleteAllInBatch();
+            rollupRepository.deleteAllInBatch();
+            backfillCheckpointRepository.deleteAllInBatch();
+            watermarkService.clear();
             turbineRepository.deleteAll();
             farmRepository.deleteAll();
+            turbineRegistry.reload();
             
             response.put("success", true);
             response.put("deleted", Map.of(
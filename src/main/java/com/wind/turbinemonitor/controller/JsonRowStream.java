@@ -0,0 +1,104 @@
+package com.wind.turbinemonitor.controller;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.ObjectWriter;
+import tools.jackson.databind.SerializationFeature;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+
+/**
+ * Writes rows into the response while they are read from a cursor, so the size of a range
+ * endpoint's answer is not bounded by the heap.
+ *
+ * Without limit and cursor the body is a JSON array, as the list endpoints returned before,
+ * of at most maxRows rows. When the range holds more, the response carries an
+ * X-Result-Truncated header with the number of rows sent. Headers go out before the first
+ * row, so this is checked with a separate bounded query just before the rows are read.
+ * With limit or cursor the body is {"items": [...], "nextCursor": "..."}: limit rows
+ * (capped at maxRows), and a cursor to pass back for the next page, or null on the last
+ * one. Cursors are the last row's key, base64url encoded.
+ */
+final class JsonRowStream {
+    static final String TRUNCATED_HEADER = "X-Result-Truncated";
+    
+    interface Source<T> {
+        /**
+         * Passes at most limit rows to consumer, in key order.
+         */
+        void read(int limit, Consumer<T> consumer);
+    }
+    
+    private JsonRowStream() {}
+    
+    /**
+     * The response for a range read: write()'s body, flagged as truncated when the request
+     * is not paged and hasMoreThan(maxRows) is true.
+     */
+    static <T> ResponseEntity<StreamingResponseBody> respond(ObjectMapper objectMapper, Integer limit, String cursor,
+                                                             int maxRows, IntPredicate hasMoreThan, Source<T> source,
+                                                             Function<T, String> keyOf) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON);
+        if (limit == null && cursor == null && hasMoreThan.test(maxRows)) {
+            response.header(TRUNCATED_HEADER, String.valueOf(maxRows));
+        }
+        return response.body(write(objectMapper, limit, cursor, maxRows, source, keyOf));
+    }
+    
+    static <T> StreamingResponseBody write(ObjectMapper objectMapper, Integer limit, String cursor, int maxRows,
+                                           Source<T> source, Function<T, String> keyOf) {
+        boolean paged = limit != null || cursor != null;
+        int pageSize = limit != null ? Math.min(limit, maxRows) : maxRows;
+        // The servlet buffers the output; flushing after every row would send tiny chunks
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        return out -> {
+            try (JsonGenerator generator = writer.createGenerator(out)) {
+                if (paged) {
+                    generator.writeStartObject();
+                    generator.writeName("items");
+                }
+                generator.writeStartArray();
+                int[] written = new int[1];
+                String[] lastKey = new String[1];
+                boolean[] more = new boolean[1];
+                // One row past the page tells whether there is a next one
+                source.read(paged ? pageSize + 1 : pageSize, row -> {
+                    if (written[0] == pageSize) {
+                        more[0] = true;
+                        return;
+                    }
+                    writer.writeValue(generator, row);
+                    lastKey[0] = keyOf.apply(row);
+                    written[0]++;
+                });
+                generator.writeEndArray();
+                if (paged) {
+                    generator.writeName("nextCursor");
+                    if (more[0]) {
+                        generator.writeString(encodeCursor(lastKey[0]));
+                    } else {
+                        generator.writeNull();
+                    }
+                    generator.writeEndObject();
+                }
+            }
+        };
+    }
+    
+    static String encodeCursor(String key) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Throws IllegalArgumentException for anything encodeCursor did not produce.
+     */
+    static String decodeCursor(String cursor) {
+        return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+    }
+}
@@ -1,34 +1,115 @@
 package com.wind.turbinemonitor.controller;
 
+import com.wind.turbinemonitor.dto.IngestionResultDTO;
+import com.wind.turbinemonitor.ingest.TelemetryFrame;
 import com.wind.turbinemonitor.model.Telemetry;
+import com.wind.turbinemonitor.repository.RawTelemetryStore;
+import com.wind.turbinemonitor.service.TelemetryChunkService;
+import com.wind.turbinemonitor.service.TelemetryDeduplicator;
+import com.wind.turbinemonitor.service.TelemetryIngestionPipeline;
+import com.wind.turbinemonitor.service.TelemetryIngestionService;
 import com.wind.turbinemonitor.service.TelemetryService;
+import com.wind.turbinemonitor.service.TelemetryTcpListener;
+import com.wind.turbinemonitor.service.TelemetryWalService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/telemetry")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = JsonRowStream.TRUNCATED_HEADER)
 public class TelemetryController {
     @Autowired
     private TelemetryService telemetryService;
     
+    @Autowired
+    private TelemetryIngestionService ingestionService;
+    
+    @Autowired
+    private TelemetryIngestionPipeline ingestionPipeline;
+    
+    @Autowired
+    private TelemetryWalService walService;
+    
+    @Autowired
+    private TelemetryDeduplicator deduplicator;
+    
+    @Autowired
+    private TelemetryTcpListener tcpListener;
+    
+    @Autowired
+    private TelemetryChunkService chunkService;
+    
+    @Autowired
+    private RawTelemetryStore rawTelemetryStore;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Value("${telemetry.ingest.max-frame-body-bytes:16777216}")
+    private int maxFrameBodyBytes;
+    
+    @Value("${telemetry.streaming.max-rows:1000000}")
+    private int maxStreamRows;
+    
     @PostMapping
     public ResponseEntity<Telemetry> createTelemetry(@RequestBody Telemetry telemetry) {
-        return ResponseEntity.status(HttpStatus.CREATED).body(telemetryService.saveTelemetry(telemetry));
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(telemetryService.saveTelemetry(telemetry));
+        } catch (DataIntegrityViolationException e) {
+            // Same turbine and timestamp already stored
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
     }
     
     @PostMapping("/batch")
     public ResponseEntity<List<Telemetry>> createTelemetryBatch(@RequestBody List<Telemetry> telemetryList) {
-        return ResponseEntity.status(HttpStatus.CREATED).body(telemetryService.saveTelemetryBatch(telemetryList));
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(telemetryService.saveTelemetryBatch(telemetryList));
+        } catch (DataIntegrityViolationException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+    
+    @PostMapping(value = "/stream", consumes = {"application/x-ndjson", "application/jsonl", "text/plain"})
+    public ResponseEntity<IngestionResultDTO> streamTelemetry(HttpServletRequest request) throws IOException {
+        boolean gzip = "gzip".equalsIgnoreCase(request.getHeader("Content-Encoding"));
+        IngestionResultDTO result = ingestionService.ingestNdjson(request.getInputStream(), gzip);
+        if (result.isAborted()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "5").body(result);
+        }
+        return ResponseEntity.ok(result);
+    }
+    
+    @PostMapping(value = {"/stream", "/batch"}, consumes = TelemetryFrame.MEDIA_TYPE)
+    public ResponseEntity<IngestionResultDTO> ingestFrames(HttpServletRequest request) throws IOException {
+        byte[] body = request.getInputStream().readNBytes(maxFrameBodyBytes + 1);
+        if (body.length > maxFrameBodyBytes) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+        IngestionResultDTO result = ingestionService.ingestFrames(ByteBuffer.wrap(body));
+        if (result.isAborted()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "5").body(result);
+        }
+        return ResponseEntity.ok(result);
     }
     
     @PostMapping("/turbine/{turbineId}")
-    public ResponseEntity<Telemetry> createTelemetryForTurbine(
+    public ResponseEntity<?> createTelemetryForTurbine(
             @PathVariable Long turbineId,
             @RequestParam Double windSpeed,
             @RequestParam Double powerOutput,
@@ -36,6 +117,15 @@ public class TelemetryController {
             @RequestParam Double temperature,
             @RequestParam Double vibration) {
         try {
+            if (ingestionService.isAsync()) {
+                TelemetryIngestionPipeline.Offer offer = ingestionService.submit(turbineId, windSpeed, powerOutput,
+                    rotorSpeed, temperature, vibration);
+                return switch (offer) {
+                    case ACCEPTED -> ResponseEntity.accepted().build();
+                    case FULL -> ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header("Retry-After", "1").build();
+                    case CLOSED -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "5").build();
+                };
+            }
             return ResponseEntity.status(HttpStatus.CREATED)
                 .body(telemetryService.createTelemetry(turbineId, windSpeed, powerOutput, rotorSpeed, temperature, vibration));
         } catch (RuntimeException e) {
@@ -43,17 +133,86 @@ public class TelemetryController {
         }
     }
     
+    @GetMapping("/pipeline")
+    public ResponseEntity<Map<String, Object>> getPipelineStatus() {
+        return ResponseEntity.ok(ingestionPipeline.getStatus());
+    }
+    
+    @GetMapping("/wal")
+    public ResponseEntity<Map<String, Object>> getWalStatus() {
+        return ResponseEntity.ok(walService.getStatus());
+    }
+    
+    @GetMapping("/dedup")
+    public ResponseEntity<Map<String, Object>> getDedupStatus() {
+        return ResponseEntity.ok(deduplicator.getStatus());
+    }
+    
+    @GetMapping("/tcp")
+    public ResponseEntity<Map<String, Object>> getTcpStatus() {
+        return ResponseEntity.ok(tcpListener.getStatus());
+    }
+    
+    @GetMapping("/chunks")
+    public ResponseEntity<Map<String, Object>> getChunkStatus() {
+        return ResponseEntity.ok(chunkService.getStatus());
+    }
+    
+    @PostMapping("/chunks/compact")
+    public ResponseEntity<Map<String, Object>> compactChunks(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime hourStart) {
+        if (!chunkService.isEnabled()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", "Chunk storage is disabled"));
+        }
+        LocalDateTime hour = hourStart.truncatedTo(ChronoUnit.HOURS);
+        int moved = chunkService.compactHour(hour);
+        return ResponseEntity.ok(Map.of("hour", hour.toString(), "compactedRows", moved));
+    }
+    
+    @GetMapping("/store")
+    public ResponseEntity<Map<String, Object>> getRawStoreStatus() {
+        return ResponseEntity.ok(rawTelemetryStore.getStatus());
+    }
+    
     @GetMapping("/turbine/{turbineId}")
-    public ResponseEntity<List<Telemetry>> getTelemetryByTurbine(@PathVariable Long turbineId) {
-        return ResponseEntity.ok(telemetryService.getTelemetryByTurbine(turbineId));
+    public ResponseEntity<StreamingResponseBody> getTelemetryByTurbine(
+            @PathVariable Long turbineId,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor) {
+        return streamTelemetry(turbineId, null, null, limit, cursor);
     }
     
     @GetMapping("/turbine/{turbineId}/range")
-    public ResponseEntity<List<Telemetry>> getTelemetryByTurbineAndDateRange(
+    public ResponseEntity<StreamingResponseBody> getTelemetryByTurbineAndDateRange(
             @PathVariable Long turbineId,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime) {
-        return ResponseEntity.ok(telemetryService.getTelemetryByTurbineAndDateRange(turbineId, startTime, endTime));
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor) {
+        return streamTelemetry(turbineId, startTime, endTime, limit, cursor);
+    }
+    
+    // The cursor is the last timestamp sent; the next page starts a microsecond later, the
+    // finest step the database stores
+    private ResponseEntity<StreamingResponseBody> streamTelemetry(Long turbineId, LocalDateTime startTime,
+                                                                  LocalDateTime endTime, Integer limit, String cursor) {
+        if (limit != null && limit <= 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        LocalDateTime from = startTime;
+        if (cursor != null) {
+            try {
+                LocalDateTime next = LocalDateTime.parse(JsonRowStream.decodeCursor(cursor)).plus(1, ChronoUnit.MICROS);
+                from = from == null || next.isAfter(from) ? next : from;
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+        LocalDateTime rangeStart = from;
+        return JsonRowStream.respond(objectMapper, limit, cursor, maxStreamRows,
+            rows -> telemetryService.hasMoreTelemetryThan(turbineId, rangeStart, endTime, rows),
+            (rows, consumer) -> telemetryService.forEachTelemetry(turbineId, rangeStart, endTime, rows, consumer),
+            (Telemetry telemetry) -> telemetry.getTimestamp().toString());
     }
 }
 
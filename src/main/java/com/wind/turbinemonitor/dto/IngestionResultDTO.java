@@ -0,0 +1,75 @@
+package com.wind.turbinemonitor.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class IngestionResultDTO {
+    // Cap on returned rejects so a badly formatted upload cannot grow the response without bound
+    public static final int MAX_REPORTED_REJECTS = 1000;
+    
+    private long lines;
+    private long accepted;
+    private long rejected;
+    private long duplicates;
+    private int batches;
+    private boolean rejectsTruncated;
+    private boolean aborted;
+    private String abortReason;
+    private List<LineReject> rejects = new ArrayList<>();
+    
+    public IngestionResultDTO() {}
+    
+    public void reject(long line, String reason) {
+        rejected++;
+        if (rejects.size() < MAX_REPORTED_REJECTS) {
+            rejects.add(new LineReject(line, reason));
+        } else {
+            rejectsTruncated = true;
+        }
+    }
+    
+    public long getLines() { return lines; }
+    public void setLines(long lines) { this.lines = lines; }
+    
+    public long getAccepted() { return accepted; }
+    public void setAccepted(long accepted) { this.accepted = accepted; }
+    
+    public long getRejected() { return rejected; }
+    public void setRejected(long rejected) { this.rejected = rejected; }
+    
+    public long getDuplicates() { return duplicates; }
+    public void setDuplicates(long duplicates) { this.duplicates = duplicates; }
+    
+    public int getBatches() { return batches; }
+    public void setBatches(int batches) { this.batches = batches; }
+    
+    public boolean isRejectsTruncated() { return rejectsTruncated; }
+    public void setRejectsTruncated(boolean rejectsTruncated) { this.rejectsTruncated = rejectsTruncated; }
+    
+    public boolean isAborted() { return aborted; }
+    public void setAborted(boolean aborted) { this.aborted = aborted; }
+    
+    public String getAbortReason() { return abortReason; }
+    public void setAbortReason(String abortReason) { this.abortReason = abortReason; }
+    
+    public List<LineReject> getRejects() { return rejects; }
+    public void setRejects(List<LineReject> rejects) { this.rejects = rejects; }
+    
+    public static class LineReject {
+        private long line;
+        private String reason;
+        
+        public LineReject() {}
+        
+        public LineReject(long line, String reason) {
+            this.line = line;
+            this.reason = reason;
+        }
+        
+        public long getLine() { return line; }
+        public void setLine(long line) { this.line = line; }
+        
+        public String getReason() { return reason; }
+        public void setReason(String reason) { this.reason = reason; }
+    }
+}
@@ -0,0 +1,40 @@
+package com.wind.turbinemonitor.dto;
+
+import java.time.LocalDateTime;
+
+public class TelemetryRecordDTO {
+    private String turbineId;
+    private LocalDateTime timestamp;
+    private Double windSpeed;
+    private Double powerOutput;
+    private Double rotorSpeed;
+    private Double temperature;
+    private Double vibration;
+    private Double efficiency;
+    
+    public TelemetryRecordDTO() {}
+    
+    public String getTurbineId() { return turbineId; }
+    public void setTurbineId(String turbineId) { this.turbineId = turbineId; }
+    
+    public LocalDateTime getTimestamp() { return timestamp; }
+    public void setTimestamp(LocalDateTime timestamp) { this.timestamp = timestamp; }
+    
+    public Double getWindSpeed() { return windSpeed; }
+    public void setWindSpeed(Double windSpeed) { this.windSpeed = windSpeed; }
+    
+    public Double getPowerOutput() { return powerOutput; }
+    public void setPowerOutput(Double powerOutput) { this.powerOutput = powerOutput; }
+    
+    public Double getRotorSpeed() { return rotorSpeed; }
+    public void setRotorSpeed(Double rotorSpeed) { this.rotorSpeed = rotorSpeed; }
+    
+    public Double getTemperature() { return temperature; }
+    public void setTemperature(Double temperature) { this.temperature = temperature; }
+    
+    public Double getVibration() { return vibration; }
+    public void setVibration(Double vibration) { this.vibration = vibration; }
+    
+    public Double getEfficiency() { return efficiency; }
+    public void setEfficiency(Double efficiency) { this.efficiency = efficiency; }
+}
@@ -0,0 +1,182 @@
+package com.wind.turbinemonitor.ingest;
+
+import com.wind.turbinemonitor.util.BitReader;
+import com.wind.turbinemonitor.util.BitWriter;
+
+/**
+ * Gorilla-style compression of one turbine's samples (Pelkonen et al., VLDB 2015), used
+ * for telemetry_chunks blocks.
+ *
+ * Layout: version (8 bits), sample count (32), first timestamp in micros (64), then the
+ * remaining timestamps as delta-of-delta, then each channel (windSpeed, powerOutput,
+ * rotorSpeed, temperature, vibration, efficiency) as its own XOR-encoded run.
+ *
+ * Delta-of-delta buckets are wider than in the paper because timestamps are in micros and
+ * carry sub-second jitter: 0 is '0', otherwise the zigzag value goes into '10' + 12 bits,
+ * '110' + 20, '1110' + 32 or '1111' + 64. Values are encoded as in the paper: '0' when
+ * equal to the previous one, '10' + meaningful bits when the XOR fits the previous
+ * leading/trailing zero window, else '11' + 5 bits leading zeros + 6 bits length + bits.
+ */
+public final class GorillaChunkCodec {
+    private static final int VERSION = 1;
+    
+    private GorillaChunkCodec() {}
+    
+    /**
+     * Encodes samples [from, to) of batch, which must be sorted by timestamp.
+     */
+    public static byte[] encode(TelemetryBatch batch, int from, int to) {
+        int count = to - from;
+        BitWriter out = new BitWriter(16 + count * 8);
+        out.writeBits(VERSION, 8);
+        out.writeBits(count, 32);
+        if (count == 0) {
+            return out.toByteArray();
+        }
+        
+        long previous = batch.timestamp(from);
+        long previousDelta = 0;
+        out.writeBits(previous, 64);
+        for (int i = from + 1; i < to; i++) {
+            long delta = batch.timestamp(i) - previous;
+            writeDeltaOfDelta(out, delta - previousDelta);
+            previousDelta = delta;
+            previous = batch.timestamp(i);
+        }
+        
+        for (int channel = 0; channel < TelemetryFrame.CHANNELS; channel++) {
+            long previousBits = Double.doubleToRawLongBits(channel(batch, channel, from));
+            out.writeBits(previousBits, 64);
+            int previousLeading = -1;
+            int previousTrailing = 0;
+            for (int i = from + 1; i < to; i++) {
+                long bits = Double.doubleToRawLongBits(channel(batch, channel, i));
+                long xor = bits ^ previousBits;
+                if (xor == 0) {
+                    out.writeBits(0, 1);
+                } else {
+                    int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+                    int trailing = Long.numberOfTrailingZeros(xor);
+                    if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+                        out.writeBits(0b10, 2);
+                        out.writeBits(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+                    } else {
+                        int significant = 64 - leading - trailing;
+                        out.writeBits(0b11, 2);
+                        out.writeBits(leading, 5);
+                        out.writeBits(significant - 1, 6);
+                        out.writeBits(xor >>> trailing, significant);
+                        previousLeading = leading;
+                        previousTrailing = trailing;
+                    }
+                }
+                previousBits = bits;
+            }
+        }
+        return out.toByteArray();
+    }
+    
+    /**
+     * Appends the block's samples with a timestamp in [fromMicros, toMicros] to out, in
+     * timestamp order, and returns how many were appended.
+     */
+    public static int decode(byte[] data, long turbineId, long fromMicros, long toMicros, TelemetryBatch out) {
+        BitReader in = new BitReader(data);
+        int version = (int) in.readBits(8);
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported chunk version " + version);
+        }
+        int count = (int) in.readBits(32);
+        if (count == 0) {
+            return 0;
+        }
+        
+        long[] timestamps = new long[count];
+        timestamps[0] = in.readBits(64);
+        long delta = 0;
+        for (int i = 1; i < count; i++) {
+            delta += readDeltaOfDelta(in);
+            timestamps[i] = timestamps[i - 1] + delta;
+        }
+        
+        double[][] channels = new double[TelemetryFrame.CHANNELS][count];
+        for (int channel = 0; channel < TelemetryFrame.CHANNELS; channel++) {
+            double[] values = channels[channel];
+            long bits = in.readBits(64);
+            values[0] = Double.longBitsToDouble(bits);
+            int leading = 0;
+            int trailing = 0;
+            for (int i = 1; i < count; i++) {
+                if (in.readBit()) {
+                    if (in.readBit()) {
+                        leading = (int) in.readBits(5);
+                        int significant = (int) in.readBits(6) + 1;
+                        trailing = 64 - leading - significant;
+                    }
+                    bits ^= in.readBits(64 - leading - trailing) << trailing;
+                }
+                values[i] = Double.longBitsToDouble(bits);
+            }
+        }
+        
+        int appended = 0;
+        for (int i = 0; i < count; i++) {
+            if (timestamps[i] < fromMicros || timestamps[i] > toMicros) {
+                continue;
+            }
+            out.add(turbineId, timestamps[i], channels[0][i], channels[1][i], channels[2][i],
+                channels[3][i], channels[4][i], channels[5][i]);
+            appended++;
+        }
+        return appended;
+    }
+    
+    private static double channel(TelemetryBatch batch, int channel, int i) {
+        return switch (channel) {
+            case 0 -> batch.windSpeed(i);
+            case 1 -> batch.powerOutput(i);
+            case 2 -> batch.rotorSpeed(i);
+            case 3 -> batch.temperature(i);
+            case 4 -> batch.vibration(i);
+            default -> batch.efficiency(i);
+        };
+    }
+    
+    private static void writeDeltaOfDelta(BitWriter out, long deltaOfDelta) {
+        if (deltaOfDelta == 0) {
+            out.writeBits(0, 1);
+            return;
+        }
+        long zigzag = (deltaOfDelta << 1) ^ (deltaOfDelta >> 63);
+        if (zigzag >>> 12 == 0) {
+            out.writeBits(0b10, 2);
+            out.writeBits(zigzag, 12);
+        } else if (zigzag >>> 20 == 0) {
+            out.writeBits(0b110, 3);
+            out.writeBits(zigzag, 20);
+        } else if (zigzag >>> 32 == 0) {
+            out.writeBits(0b1110, 4);
+            out.writeBits(zigzag, 32);
+        } else {
+            out.writeBits(0b1111, 4);
+            out.writeBits(zigzag, 64);
+        }
+    }
+    
+    private static long readDeltaOfDelta(BitReader in) {
+        int width;
+        if (!in.readBit()) {
+            return 0;
+        } else if (!in.readBit()) {
+            width = 12;
+        } else if (!in.readBit()) {
+            width = 20;
+        } else if (!in.readBit()) {
+            width = 32;
+        } else {
+            width = 64;
+        }
+        long zigzag = in.readBits(width);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+}
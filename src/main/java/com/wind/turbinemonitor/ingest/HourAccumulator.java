@@ -0,0 +1,158 @@
+package com.wind.turbinemonitor.ingest;
+
+import com.wind.turbinemonitor.util.ChannelStats;
+import com.wind.turbinemonitor.util.LongIntHashMap;
+import java.util.Arrays;
+
+/**
+ * Running count, sum, min and max of each channel per turbine for one hour, kept in
+ * primitive arrays indexed by a per-turbine slot. IncrementalAggregationService also uses
+ * it for one-minute buckets, which are merged into their hour when they close. Channels are in TelemetryFrame order:
+ * windSpeed, powerOutput, rotorSpeed, temperature, vibration, efficiency.
+ *
+ * Each slot also has a ChannelStats (variance and quantile sketch per channel), which is
+ * what the hour's aggregate stores as channel_stats.
+ *
+ * Not thread-safe; callers synchronize on the instance. Once close() is called nothing may
+ * be added, and the contents can be read without locking.
+ */
+public class HourAccumulator {
+    public static final int CHANNELS = TelemetryFrame.CHANNELS;
+    
+    private final long startMicros;
+    private LongIntHashMap slots;
+    private long[] turbineIds;
+    private int[] counts;
+    private double[] sums;
+    private double[] mins;
+    private double[] maxs;
+    private ChannelStats[] stats;
+    private int size;
+    private boolean closed;
+    
+    public HourAccumulator(long startMicros, int expectedTurbines) {
+        this.startMicros = startMicros;
+        allocate(Math.max(16, expectedTurbines));
+    }
+    
+    public long startMicros() {
+        return startMicros;
+    }
+    
+    public boolean isClosed() {
+        return closed;
+    }
+    
+    public void close() {
+        closed = true;
+    }
+    
+    public void add(TelemetryBatch batch, int i) {
+        int slot = writableSlot(batch.turbineId(i));
+        int base = slot * CHANNELS;
+        add(base, batch.windSpeed(i));
+        add(base + 1, batch.powerOutput(i));
+        add(base + 2, batch.rotorSpeed(i));
+        add(base + 3, batch.temperature(i));
+        add(base + 4, batch.vibration(i));
+        add(base + 5, batch.efficiency(i));
+        stats[slot].add(batch.windSpeed(i), batch.powerOutput(i), batch.rotorSpeed(i), batch.temperature(i),
+            batch.vibration(i), batch.efficiency(i));
+        counts[slot]++;
+    }
+    
+    /**
+     * Adds everything in other, which the caller must not be modifying concurrently.
+     */
+    public void merge(HourAccumulator other) {
+        for (int slot = 0; slot < other.size; slot++) {
+            merge(other, slot);
+        }
+    }
+    
+    /**
+     * Adds one turbine's values from other.
+     */
+    public void merge(HourAccumulator other, int otherSlot) {
+        int slot = writableSlot(other.turbineIds[otherSlot]);
+        int base = slot * CHANNELS;
+        int otherBase = otherSlot * CHANNELS;
+        for (int channel = 0; channel < CHANNELS; channel++) {
+            sums[base + channel] += other.sums[otherBase + channel];
+            mins[base + channel] = Math.min(mins[base + channel], other.mins[otherBase + channel]);
+            maxs[base + channel] = Math.max(maxs[base + channel], other.maxs[otherBase + channel]);
+        }
+        stats[slot].merge(other.stats[otherSlot]);
+        counts[slot] += other.counts[otherSlot];
+    }
+    
+    /**
+     * Number of turbines with at least one sample; slots are 0..size()-1.
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Returns the slot of the turbine, or -1 if it has no samples this hour.
+     */
+    public int slot(long turbineId) {
+        return slots.get(turbineId);
+    }
+    
+    public long turbineId(int slot) { return turbineIds[slot]; }
+    public int count(int slot) { return counts[slot]; }
+    public double sum(int slot, int channel) { return sums[slot * CHANNELS + channel]; }
+    public double min(int slot, int channel) { return mins[slot * CHANNELS + channel]; }
+    public double max(int slot, int channel) { return maxs[slot * CHANNELS + channel]; }
+    public ChannelStats stats(int slot) { return stats[slot]; }
+    
+    private void add(int index, double value) {
+        sums[index] += value;
+        mins[index] = Math.min(mins[index], value);
+        maxs[index] = Math.max(maxs[index], value);
+    }
+    
+    private int writableSlot(long turbineId) {
+        if (closed) {
+            throw new IllegalStateException("Hour accumulator is closed");
+        }
+        int slot = slots.get(turbineId);
+        return slot >= 0 ? slot : addTurbine(turbineId);
+    }
+    
+    private int addTurbine(long turbineId) {
+        if (size == turbineIds.length) {
+            int capacity = size * 2;
+            turbineIds = Arrays.copyOf(turbineIds, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            sums = Arrays.copyOf(sums, capacity * CHANNELS);
+            mins = Arrays.copyOf(mins, capacity * CHANNELS);
+            maxs = Arrays.copyOf(maxs, capacity * CHANNELS);
+            stats = Arrays.copyOf(stats, capacity);
+            Arrays.fill(mins, size * CHANNELS, mins.length, Double.POSITIVE_INFINITY);
+            Arrays.fill(maxs, size * CHANNELS, maxs.length, Double.NEGATIVE_INFINITY);
+            slots = new LongIntHashMap(capacity);
+            for (int slot = 0; slot < size; slot++) {
+                slots.put(turbineIds[slot], slot);
+            }
+        }
+        int slot = size++;
+        turbineIds[slot] = turbineId;
+        stats[slot] = new ChannelStats();
+        slots.put(turbineId, slot);
+        return slot;
+    }
+    
+    private void allocate(int capacity) {
+        slots = new LongIntHashMap(capacity);
+        turbineIds = new long[capacity];
+        counts = new int[capacity];
+        sums = new double[capacity * CHANNELS];
+        mins = new double[capacity * CHANNELS];
+        maxs = new double[capacity * CHANNELS];
+        stats = new ChannelStats[capacity];
+        Arrays.fill(mins, Double.POSITIVE_INFINITY);
+        Arrays.fill(maxs, Double.NEGATIVE_INFINITY);
+    }
+}
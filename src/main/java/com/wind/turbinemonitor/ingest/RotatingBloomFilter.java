@@ -0,0 +1,94 @@
+package com.wind.turbinemonitor.ingest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter over (turbine id, timestamp) keys with two generations. When the current
+ * generation reaches its capacity it becomes the previous one and a fresh filter takes
+ * over, so memory and the false positive rate stay bounded however long the service runs.
+ * Keys older than two generations are forgotten, which only ever yields "not seen".
+ *
+ * Lock-free: bits are set with CAS, and a concurrent rotation can at worst drop a key
+ * that was being added at that moment.
+ */
+public class RotatingBloomFilter {
+    private final int capacity;
+    private final int bitCount;
+    private final int hashCount;
+    
+    private volatile Generation current;
+    private volatile Generation previous;
+    
+    public RotatingBloomFilter(int capacity, double falsePositiveRate) {
+        this.capacity = capacity;
+        double bits = -capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        this.bitCount = (int) Math.min(Integer.MAX_VALUE - 63, Math.max(64, Math.ceil(bits)));
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / capacity * Math.log(2)));
+        this.current = new Generation(bitCount);
+        this.previous = new Generation(bitCount);
+    }
+    
+    public boolean mightContain(long turbineId, long timestamp) {
+        long h1 = mix(turbineId * 0x9E3779B97F4A7C15L + timestamp);
+        long h2 = mix(h1 ^ timestamp) | 1;
+        return current.containsAll(h1, h2) || previous.containsAll(h1, h2);
+    }
+    
+    public void add(long turbineId, long timestamp) {
+        long h1 = mix(turbineId * 0x9E3779B97F4A7C15L + timestamp);
+        long h2 = mix(h1 ^ timestamp) | 1;
+        Generation generation = current;
+        generation.setAll(h1, h2);
+        if (generation.count.incrementAndGet() == capacity) {
+            rotate(generation);
+        }
+    }
+    
+    public long bytes() {
+        return 2L * (bitCount / 8);
+    }
+    
+    private synchronized void rotate(Generation full) {
+        if (current == full) {
+            previous = full;
+            current = new Generation(bitCount);
+        }
+    }
+    
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+        z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return z ^ (z >>> 33);
+    }
+    
+    private final class Generation {
+        final AtomicLongArray words;
+        final AtomicLong count = new AtomicLong();
+        
+        Generation(int bits) {
+            words = new AtomicLongArray((bits + 63) >>> 6);
+        }
+        
+        boolean containsAll(long h1, long h2) {
+            for (int i = 0; i < hashCount; i++) {
+                int bit = (int) Long.remainderUnsigned(h1 + i * h2, bitCount);
+                if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        void setAll(long h1, long h2) {
+            for (int i = 0; i < hashCount; i++) {
+                int bit = (int) Long.remainderUnsigned(h1 + i * h2, bitCount);
+                long mask = 1L << bit;
+                long word;
+                do {
+                    word = words.get(bit >>> 6);
+                } while ((word & mask) == 0 && !words.compareAndSet(bit >>> 6, word, word | mask));
+            }
+        }
+    }
+}
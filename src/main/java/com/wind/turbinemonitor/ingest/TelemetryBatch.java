@@ -0,0 +1,159 @@
+package com.wind.turbinemonitor.ingest;
+
+import com.wind.turbinemonitor.model.Telemetry;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reusable columnar buffer of telemetry samples held in primitive arrays.
+ *
+ * Timestamps are stored as microseconds since the epoch of the LocalDateTime read as UTC,
+ * which round-trips the entity's wall-clock value exactly without touching the JVM zone.
+ */
+public class TelemetryBatch {
+    private long[] turbineIds;
+    private long[] timestamps;
+    private double[] windSpeed;
+    private double[] powerOutput;
+    private double[] rotorSpeed;
+    private double[] temperature;
+    private double[] vibration;
+    private double[] efficiency;
+    private int size;
+    
+    public TelemetryBatch(int capacity) {
+        turbineIds = new long[capacity];
+        timestamps = new long[capacity];
+        windSpeed = new double[capacity];
+        powerOutput = new double[capacity];
+        rotorSpeed = new double[capacity];
+        temperature = new double[capacity];
+        vibration = new double[capacity];
+        efficiency = new double[capacity];
+    }
+    
+    public static TelemetryBatch from(List<Telemetry> telemetryList) {
+        TelemetryBatch batch = new TelemetryBatch(Math.max(1, telemetryList.size()));
+        for (Telemetry t : telemetryList) {
+            batch.add(t.getTurbine().getId(), toMicros(t.getTimestamp()), t.getWindSpeed(), t.getPowerOutput(),
+                t.getRotorSpeed(), t.getTemperature(), t.getVibration(), t.getEfficiency());
+        }
+        return batch;
+    }
+    
+    public void add(long turbineId, long timestampMicros, double windSpeed, double powerOutput,
+                    double rotorSpeed, double temperature, double vibration, double efficiency) {
+        if (size == turbineIds.length) {
+            grow();
+        }
+        int i = size++;
+        this.turbineIds[i] = turbineId;
+        this.timestamps[i] = timestampMicros;
+        this.windSpeed[i] = windSpeed;
+        this.powerOutput[i] = powerOutput;
+        this.rotorSpeed[i] = rotorSpeed;
+        this.temperature[i] = temperature;
+        this.vibration[i] = vibration;
+        this.efficiency[i] = efficiency;
+    }
+    
+    public void clear() {
+        size = 0;
+    }
+    
+    /**
+     * Keeps only the rows whose index is set in keep, in their original order, and returns
+     * how many were removed.
+     */
+    public int retain(BitSet keep) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (!keep.get(i)) {
+                continue;
+            }
+            if (kept != i) {
+                turbineIds[kept] = turbineIds[i];
+                timestamps[kept] = timestamps[i];
+                windSpeed[kept] = windSpeed[i];
+                powerOutput[kept] = powerOutput[i];
+                rotorSpeed[kept] = rotorSpeed[i];
+                temperature[kept] = temperature[i];
+                vibration[kept] = vibration[i];
+                efficiency[kept] = efficiency[i];
+            }
+            kept++;
+        }
+        int removed = size - kept;
+        size = kept;
+        return removed;
+    }
+    
+    /**
+     * Returns a new batch holding copies of the rows whose index is set in rows.
+     */
+    public TelemetryBatch select(BitSet rows) {
+        TelemetryBatch selected = new TelemetryBatch(Math.max(1, rows.cardinality()));
+        for (int i = rows.nextSetBit(0); i >= 0 && i < size; i = rows.nextSetBit(i + 1)) {
+            selected.add(turbineIds[i], timestamps[i], windSpeed[i], powerOutput[i], rotorSpeed[i],
+                temperature[i], vibration[i], efficiency[i]);
+        }
+        return selected;
+    }
+    
+    /**
+     * Removes rows whose (turbine, timestamp) appeared earlier in the batch and returns how
+     * many were removed.
+     */
+    public int removeRepeatedKeys() {
+        Set<Key> seen = new HashSet<>(size * 2);
+        BitSet first = new BitSet(size);
+        for (int i = 0; i < size; i++) {
+            if (seen.add(new Key(turbineIds[i], timestamps[i]))) {
+                first.set(i);
+            }
+        }
+        return first.cardinality() == size ? 0 : retain(first);
+    }
+    
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+    public int capacity() { return turbineIds.length; }
+    
+    public long turbineId(int i) { return turbineIds[i]; }
+    public long timestamp(int i) { return timestamps[i]; }
+    public LocalDateTime timestampAsDateTime(int i) { return fromMicros(timestamps[i]); }
+    public double windSpeed(int i) { return windSpeed[i]; }
+    public double powerOutput(int i) { return powerOutput[i]; }
+    public double rotorSpeed(int i) { return rotorSpeed[i]; }
+    public double temperature(int i) { return temperature[i]; }
+    public double vibration(int i) { return vibration[i]; }
+    public double efficiency(int i) { return efficiency[i]; }
+    
+    public static long toMicros(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + dateTime.getNano() / 1_000;
+    }
+    
+    public static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+            (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+    }
+    
+    private record Key(long turbineId, long timestamp) {}
+    
+    private void grow() {
+        int capacity = turbineIds.length * 2;
+        turbineIds = Arrays.copyOf(turbineIds, capacity);
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        windSpeed = Arrays.copyOf(windSpeed, capacity);
+        powerOutput = Arrays.copyOf(powerOutput, capacity);
+        rotorSpeed = Arrays.copyOf(rotorSpeed, capacity);
+        temperature = Arrays.copyOf(temperature, capacity);
+        vibration = Arrays.copyOf(vibration, capacity);
+        efficiency = Arrays.copyOf(efficiency, capacity);
+    }
+}
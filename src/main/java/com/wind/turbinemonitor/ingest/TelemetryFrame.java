@@ -0,0 +1,43 @@
+package com.wind.turbinemonitor.ingest;
+
+/**
+ * Binary telemetry frame format, media type application/x-turbine-telemetry. A body is one
+ * or more frames back to back. All numbers are big-endian.
+ *
+ * <pre>
+ * Header, 12 bytes
+ *   0  int32   magic 0x544C4D31 ("TLM1")
+ *   4  uint8   version, 1
+ *   5  uint8   flags, bit 0 set = channels are float64, clear = float32
+ *   6  uint8   code width W in bytes, 1..64
+ *   7  uint8   reserved, 0
+ *   8  int32   record count N
+ *
+ * N records, each W + 8 + 6 * (4 or 8) bytes (48 bytes for W = 16 with float32)
+ *   0      byte[W]  turbine code, US-ASCII, padded with 0 bytes
+ *   W      int64    timestamp, epoch milliseconds UTC
+ *   W + 8  channels windSpeed, powerOutput, rotorSpeed, temperature, vibration, efficiency
+ * </pre>
+ *
+ * An efficiency of NaN means "not measured"; the server derives it from the turbine's
+ * rated power, as it does for JSON samples without one.
+ *
+ * The timestamp is an instant. It is stored as the wall-clock time of that instant in the
+ * server's default zone, which is how timestamps without a zone in JSON samples are read.
+ */
+public final class TelemetryFrame {
+    public static final String MEDIA_TYPE = "application/x-turbine-telemetry";
+    
+    public static final int MAGIC = 0x544C4D31;
+    public static final int VERSION = 1;
+    public static final int FLAG_FLOAT64 = 1;
+    public static final int HEADER_BYTES = 12;
+    public static final int MAX_CODE_WIDTH = 64;
+    public static final int CHANNELS = 6;
+    
+    private TelemetryFrame() {}
+    
+    public static int recordBytes(int codeWidth, boolean float64) {
+        return codeWidth + 8 + CHANNELS * (float64 ? 8 : 4);
+    }
+}
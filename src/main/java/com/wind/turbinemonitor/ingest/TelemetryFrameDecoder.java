@@ -0,0 +1,228 @@
+package com.wind.turbinemonitor.ingest;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+
+/**
+ * Decodes TelemetryFrame bodies straight from a ByteBuffer into a TelemetryBatch with
+ * absolute reads, so samples never become objects or boxed values on the way in. The only
+ * allocation is a String when the turbine code changes from one record to the next.
+ *
+ * Decoding is incremental: each decode() call stops after maxRecords so the caller can
+ * write bounded batches, and the next call continues where it left off, across frame
+ * boundaries. A malformed header ends decoding: records before it are still returned, and
+ * the error is thrown by the call that reaches it with nothing left to return.
+ *
+ * Channel values must be finite, since the database cannot store NaN or infinity; a record
+ * with any other value is skipped and reported to the RejectHandler. The one exception is a
+ * NaN efficiency, which encoders send when they leave it to the server to compute.
+ *
+ * Frames carry instants (epoch milliseconds), while the rest of the application works in
+ * LocalDateTime of the JVM's default zone: LocalDateTime.now(), NDJSON timestamps, the late
+ * and future checks and the aggregation hours. Each timestamp is therefore converted to the
+ * wall-clock time of that zone, the same value a NDJSON sample for that instant carries. The
+ * zone's offset is kept until its next transition, so this is one addition per record.
+ */
+public class TelemetryFrameDecoder {
+    /**
+     * Maps a turbine code to its database id.
+     */
+    public interface TurbineResolver {
+        /**
+         * Returns the turbine id, or -1 to skip the record. record is 1-based across the body.
+         */
+        long resolve(String code, long record);
+    }
+    
+    /**
+     * Told about records skipped for their values. record is 1-based across the body.
+     */
+    public interface RejectHandler {
+        void reject(long record, String reason);
+    }
+    
+    private static final String[] CHANNELS = {
+        "windSpeed", "powerOutput", "rotorSpeed", "temperature", "vibration", "efficiency"
+    };
+    
+    private final ByteBuffer buffer;
+    private final ZoneRules zone;
+    private long offsetFrom = Long.MAX_VALUE;
+    private long offsetUntil = Long.MIN_VALUE;
+    private long offsetMicros;
+    private int frameRemaining;
+    private int codeWidth;
+    private boolean float64;
+    private int recordBytes;
+    private long records;
+    
+    private final byte[] lastCode = new byte[TelemetryFrame.MAX_CODE_WIDTH];
+    private int lastCodeLength = -1;
+    private String lastCodeString;
+    private IllegalArgumentException malformed;
+    private final double[] values = new double[CHANNELS.length];
+    
+    public TelemetryFrameDecoder(ByteBuffer buffer) {
+        this.buffer = buffer.slice().order(ByteOrder.BIG_ENDIAN);
+        this.zone = ZoneId.systemDefault().getRules();
+    }
+    
+    public boolean hasRemaining() {
+        return frameRemaining > 0 || buffer.hasRemaining() || malformed != null;
+    }
+    
+    /**
+     * Records read so far, including skipped ones.
+     */
+    public long records() {
+        return records;
+    }
+    
+    /**
+     * Byte offset of the next unread record or header.
+     */
+    public int position() {
+        return buffer.position();
+    }
+    
+    /**
+     * Appends up to maxRecords samples to out (timestamps in TelemetryBatch micros) and
+     * returns how many records were consumed, including skipped ones.
+     *
+     * @throws IllegalArgumentException when the next header is malformed; position() is then
+     *         the byte offset of that header
+     */
+    public int decode(TelemetryBatch out, int maxRecords, TurbineResolver resolver) {
+        return decode(out, maxRecords, resolver, (record, reason) -> {});
+    }
+    
+    /**
+     * As decode(out, maxRecords, resolver), passing records with non-finite channel values
+     * to rejects instead of out.
+     */
+    public int decode(TelemetryBatch out, int maxRecords, TurbineResolver resolver, RejectHandler rejects) {
+        if (malformed != null) {
+            IllegalArgumentException e = malformed;
+            malformed = null;
+            buffer.limit(buffer.position());
+            throw e;
+        }
+        int consumed = 0;
+        while (consumed < maxRecords) {
+            if (frameRemaining == 0) {
+                if (!buffer.hasRemaining()) {
+                    break;
+                }
+                try {
+                    readHeader();
+                } catch (IllegalArgumentException e) {
+                    if (consumed == 0) {
+                        buffer.limit(buffer.position());
+                        throw e;
+                    }
+                    // Hand back the records decoded so far; the next call reports the error
+                    malformed = e;
+                    break;
+                }
+                continue;
+            }
+            
+            int p = buffer.position();
+            records++;
+            long turbineId = resolve(p, resolver);
+            if (turbineId >= 0) {
+                int c = p + codeWidth + 8;
+                long micros = localMicros(buffer.getLong(p + codeWidth));
+                int width = float64 ? 8 : 4;
+                for (int i = 0; i < CHANNELS.length; i++) {
+                    values[i] = float64 ? buffer.getDouble(c + i * width) : buffer.getFloat(c + i * width);
+                }
+                String invalid = invalidChannel();
+                if (invalid == null) {
+                    out.add(turbineId, micros, values[0], values[1], values[2], values[3], values[4], values[5]);
+                } else {
+                    rejects.reject(records, "Non-finite " + invalid);
+                }
+            }
+            buffer.position(p + recordBytes);
+            frameRemaining--;
+            consumed++;
+        }
+        return consumed;
+    }
+    
+    private void readHeader() {
+        int p = buffer.position();
+        if (buffer.remaining() < TelemetryFrame.HEADER_BYTES) {
+            throw new IllegalArgumentException("Truncated frame header at byte " + p);
+        }
+        if (buffer.getInt(p) != TelemetryFrame.MAGIC) {
+            throw new IllegalArgumentException("Bad frame magic at byte " + p);
+        }
+        int version = buffer.get(p + 4) & 0xFF;
+        if (version != TelemetryFrame.VERSION) {
+            throw new IllegalArgumentException("Unsupported frame version " + version + " at byte " + p);
+        }
+        float64 = (buffer.get(p + 5) & TelemetryFrame.FLAG_FLOAT64) != 0;
+        codeWidth = buffer.get(p + 6) & 0xFF;
+        if (codeWidth < 1 || codeWidth > TelemetryFrame.MAX_CODE_WIDTH) {
+            throw new IllegalArgumentException("Invalid code width " + codeWidth + " at byte " + p);
+        }
+        int count = buffer.getInt(p + 8);
+        recordBytes = TelemetryFrame.recordBytes(codeWidth, float64);
+        if (count < 0 || (long) count * recordBytes > buffer.remaining() - TelemetryFrame.HEADER_BYTES) {
+            throw new IllegalArgumentException("Frame at byte " + p + " declares " + count +
+                " records but the body ends before them");
+        }
+        buffer.position(p + TelemetryFrame.HEADER_BYTES);
+        frameRemaining = count;
+        lastCodeLength = -1;
+    }
+    
+    // TelemetryBatch micros of the instant's wall-clock time in the default zone
+    private long localMicros(long epochMillis) {
+        if (epochMillis < offsetFrom || epochMillis >= offsetUntil) {
+            Instant instant = Instant.ofEpochMilli(epochMillis);
+            offsetMicros = zone.getOffset(instant).getTotalSeconds() * 1_000_000L;
+            // A transition at exactly this instant is the one the offset starts from
+            ZoneOffsetTransition previous = zone.previousTransition(instant.plusMillis(1));
+            ZoneOffsetTransition next = zone.nextTransition(instant);
+            offsetFrom = previous != null ? previous.getInstant().toEpochMilli() : Long.MIN_VALUE;
+            offsetUntil = next != null ? next.getInstant().toEpochMilli() : Long.MAX_VALUE;
+        }
+        return epochMillis * 1000L + offsetMicros;
+    }
+    
+    private String invalidChannel() {
+        for (int i = 0; i < CHANNELS.length; i++) {
+            boolean omitted = i == CHANNELS.length - 1 && Double.isNaN(values[i]);
+            if (!Double.isFinite(values[i]) && !omitted) {
+                return CHANNELS[i] + " (" + values[i] + ")";
+            }
+        }
+        return null;
+    }
+    
+    // Consecutive records usually belong to the same turbine, so the last code is kept and compared in place
+    private long resolve(int p, TurbineResolver resolver) {
+        int length = codeWidth;
+        while (length > 0 && buffer.get(p + length - 1) == 0) {
+            length--;
+        }
+        boolean same = length == lastCodeLength;
+        for (int i = 0; same && i < length; i++) {
+            same = buffer.get(p + i) == lastCode[i];
+        }
+        if (!same) {
+            buffer.get(p, lastCode, 0, length);
+            lastCodeLength = length;
+            lastCodeString = new String(lastCode, 0, length, StandardCharsets.US_ASCII);
+        }
+        return resolver.resolve(lastCodeString, records);
+    }
+}
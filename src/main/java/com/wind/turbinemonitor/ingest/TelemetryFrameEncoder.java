@@ -0,0 +1,95 @@
+package com.wind.turbinemonitor.ingest;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Builds one TelemetryFrame in a growable buffer. Meant for gateways, load generators and
+ * tests; reset() allows the instance to be reused for the next frame.
+ */
+public class TelemetryFrameEncoder {
+    private final int codeWidth;
+    private final boolean float64;
+    private final int recordBytes;
+    private ByteBuffer buffer;
+    private int count;
+    
+    public TelemetryFrameEncoder(int codeWidth, boolean float64, int expectedRecords) {
+        if (codeWidth < 1 || codeWidth > TelemetryFrame.MAX_CODE_WIDTH) {
+            throw new IllegalArgumentException("Code width must be 1.." + TelemetryFrame.MAX_CODE_WIDTH);
+        }
+        this.codeWidth = codeWidth;
+        this.float64 = float64;
+        this.recordBytes = TelemetryFrame.recordBytes(codeWidth, float64);
+        this.buffer = ByteBuffer.allocate(TelemetryFrame.HEADER_BYTES + Math.max(1, expectedRecords) * recordBytes);
+        reset();
+    }
+    
+    public void add(String turbineCode, long epochMillis, double windSpeed, double powerOutput, double rotorSpeed,
+                    double temperature, double vibration, double efficiency) {
+        byte[] code = turbineCode.getBytes(StandardCharsets.US_ASCII);
+        if (code.length > codeWidth) {
+            throw new IllegalArgumentException("Turbine code longer than " + codeWidth + " bytes: " + turbineCode);
+        }
+        if (buffer.remaining() < recordBytes) {
+            grow();
+        }
+        buffer.put(code);
+        for (int i = code.length; i < codeWidth; i++) {
+            buffer.put((byte) 0);
+        }
+        buffer.putLong(epochMillis);
+        putChannel(windSpeed);
+        putChannel(powerOutput);
+        putChannel(rotorSpeed);
+        putChannel(temperature);
+        putChannel(vibration);
+        putChannel(efficiency);
+        count++;
+    }
+    
+    public int count() {
+        return count;
+    }
+    
+    /**
+     * Returns the finished frame as a read-only view; valid until the next add() or reset().
+     */
+    public ByteBuffer frame() {
+        buffer.putInt(8, count);
+        return buffer.duplicate().flip().asReadOnlyBuffer();
+    }
+    
+    public byte[] toByteArray() {
+        ByteBuffer frame = frame();
+        byte[] bytes = new byte[frame.remaining()];
+        frame.get(bytes);
+        return bytes;
+    }
+    
+    public void reset() {
+        buffer.clear();
+        buffer.putInt(TelemetryFrame.MAGIC);
+        buffer.put((byte) TelemetryFrame.VERSION);
+        buffer.put((byte) (float64 ? TelemetryFrame.FLAG_FLOAT64 : 0));
+        buffer.put((byte) codeWidth);
+        buffer.put((byte) 0);
+        buffer.putInt(0);
+        count = 0;
+    }
+    
+    private void putChannel(double value) {
+        if (float64) {
+            buffer.putDouble(value);
+        } else {
+            buffer.putFloat((float) value);
+        }
+    }
+    
+    private void grow() {
+        ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+        buffer.flip();
+        larger.put(buffer);
+        buffer = larger;
+    }
+}
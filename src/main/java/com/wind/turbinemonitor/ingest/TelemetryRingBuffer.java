@@ -0,0 +1,103 @@
+package com.wind.turbinemonitor.ingest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded multi-producer, single-consumer ring of telemetry samples. All slots are
+ * allocated up front as primitive columns, so publishing never allocates.
+ *
+ * Producers claim a sequence with a CAS on the tail, fill the slot, then publish it by
+ * writing the sequence into the slot's marker. The single consumer reads slots in
+ * sequence order and only advances the head after copying a slot out, which is what
+ * frees it for reuse.
+ */
+public class TelemetryRingBuffer {
+    private final int mask;
+    private final int capacity;
+    private final long[] turbineIds;
+    private final long[] timestamps;
+    private final double[] windSpeed;
+    private final double[] powerOutput;
+    private final double[] rotorSpeed;
+    private final double[] temperature;
+    private final double[] vibration;
+    private final double[] efficiency;
+    private final AtomicLongArray published;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    
+    public TelemetryRingBuffer(int requestedCapacity) {
+        capacity = Integer.highestOneBit(Math.max(2, requestedCapacity - 1)) << 1;
+        mask = capacity - 1;
+        turbineIds = new long[capacity];
+        timestamps = new long[capacity];
+        windSpeed = new double[capacity];
+        powerOutput = new double[capacity];
+        rotorSpeed = new double[capacity];
+        temperature = new double[capacity];
+        vibration = new double[capacity];
+        efficiency = new double[capacity];
+        published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1L);
+        }
+    }
+    
+    /**
+     * Returns false without blocking when the ring is full.
+     */
+    public boolean offer(long turbineId, long timestampMicros, double windSpeed, double powerOutput,
+                         double rotorSpeed, double temperature, double vibration, double efficiency) {
+        long seq;
+        do {
+            seq = tail.get();
+            if (seq - head.get() >= capacity) {
+                return false;
+            }
+        } while (!tail.compareAndSet(seq, seq + 1));
+        
+        int i = (int) (seq & mask);
+        this.turbineIds[i] = turbineId;
+        this.timestamps[i] = timestampMicros;
+        this.windSpeed[i] = windSpeed;
+        this.powerOutput[i] = powerOutput;
+        this.rotorSpeed[i] = rotorSpeed;
+        this.temperature[i] = temperature;
+        this.vibration[i] = vibration;
+        this.efficiency[i] = efficiency;
+        published.lazySet(i, seq);
+        return true;
+    }
+    
+    /**
+     * Moves up to max published samples into the batch, in publish order. Must only be
+     * called from the single consumer thread that owns this ring.
+     */
+    public int drainTo(TelemetryBatch batch, int max) {
+        long seq = head.get();
+        int drained = 0;
+        while (drained < max) {
+            int i = (int) (seq & mask);
+            if (published.get(i) != seq) {
+                break;
+            }
+            batch.add(turbineIds[i], timestamps[i], windSpeed[i], powerOutput[i],
+                rotorSpeed[i], temperature[i], vibration[i], efficiency[i]);
+            seq++;
+            drained++;
+        }
+        if (drained > 0) {
+            head.lazySet(seq);
+        }
+        return drained;
+    }
+    
+    public int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+    
+    public int capacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,290 @@
+package com.wind.turbinemonitor.ingest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Append-only, memory-mapped columnar file holding one turbine's samples for one day.
+ *
+ * <pre>
+ * file header (16 bytes): int magic | int version | int blockCapacity | int reserved
+ * blocks, each 32 + 56 * blockCapacity bytes:
+ *   long minTimestamp | long maxTimestamp | int count | int sorted | 8 bytes reserved
+ *   long timestamps[blockCapacity]
+ *   double windSpeed[blockCapacity], powerOutput[...], rotorSpeed[...], temperature[...],
+ *   vibration[...], efficiency[...]
+ * </pre>
+ *
+ * Samples are appended to the last block, column by column, and the block header's count is
+ * written last, so a torn append is simply not visible after a restart. The block headers
+ * form a sparse time index that is loaded into memory on open: a range read only touches
+ * blocks whose [min, max] overlaps the range, and binary-searches the timestamp column of
+ * blocks that were appended in order.
+ *
+ * Appends take the write lock; reads share the read lock. Nothing is forced to disk here,
+ * the page cache writes the mapping back.
+ */
+public class TelemetrySegment implements Closeable {
+    public static final int MAGIC = 0x54534731;
+    public static final int VERSION = 1;
+    private static final int FILE_HEADER_BYTES = 16;
+    private static final int BLOCK_HEADER_BYTES = 32;
+    private static final int COLUMNS = 1 + TelemetryFrame.CHANNELS;
+    
+    private final Path file;
+    private final FileChannel channel;
+    private final int blockCapacity;
+    private final long blockBytes;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    private MappedByteBuffer map;
+    private int blocks;
+    private long[] blockMin = new long[4];
+    private long[] blockMax = new long[4];
+    private int[] blockCount = new int[4];
+    private boolean[] blockSorted = new boolean[4];
+    private long samples;
+    
+    private TelemetrySegment(Path file, FileChannel channel, int blockCapacity) {
+        this.file = file;
+        this.channel = channel;
+        this.blockCapacity = blockCapacity;
+        this.blockBytes = BLOCK_HEADER_BYTES + (long) COLUMNS * 8 * blockCapacity;
+    }
+    
+    /**
+     * Opens the segment, creating it with the given block capacity if it does not exist.
+     * An existing file keeps the capacity it was created with.
+     */
+    public static TelemetrySegment open(Path file, int blockCapacity) throws IOException {
+        Files.createDirectories(file.getParent());
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES)
+                    .putInt(MAGIC).putInt(VERSION).putInt(blockCapacity).putInt(0).flip();
+                channel.write(header, 0);
+            } else {
+                ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES);
+                channel.read(header, 0);
+                header.flip();
+                if (header.remaining() < FILE_HEADER_BYTES || header.getInt(0) != MAGIC) {
+                    throw new IOException("Not a telemetry segment: " + file);
+                }
+                if (header.getInt(4) != VERSION) {
+                    throw new IOException("Unsupported segment version " + header.getInt(4) + ": " + file);
+                }
+                blockCapacity = header.getInt(8);
+            }
+            TelemetrySegment segment = new TelemetrySegment(file, channel, blockCapacity);
+            segment.load();
+            return segment;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    public Path file() {
+        return file;
+    }
+    
+    public long samples() {
+        lock.readLock().lock();
+        try {
+            return samples;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Appends samples [from, to) of batch. All of them must belong to this segment's turbine
+     * and day; that is up to the caller.
+     *
+     * @throws ClosedChannelException if the segment has been closed
+     */
+    public void append(TelemetryBatch batch, int from, int to) throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (map == null) {
+                throw new ClosedChannelException();
+            }
+            int i = from;
+            while (i < to) {
+                if (blocks == 0 || blockCount[blocks - 1] == blockCapacity) {
+                    addBlock();
+                }
+                int block = blocks - 1;
+                long base = blockOffset(block);
+                int count = blockCount[block];
+                int n = Math.min(to - i, blockCapacity - count);
+                long min = count == 0 ? Long.MAX_VALUE : blockMin[block];
+                long max = count == 0 ? Long.MIN_VALUE : blockMax[block];
+                boolean sorted = count == 0 || blockSorted[block];
+                for (int k = 0; k < n; k++, i++) {
+                    int slot = count + k;
+                    long timestamp = batch.timestamp(i);
+                    sorted &= timestamp >= max;
+                    min = Math.min(min, timestamp);
+                    max = Math.max(max, timestamp);
+                    map.putLong(column(base, 0, slot), timestamp);
+                    map.putDouble(column(base, 1, slot), batch.windSpeed(i));
+                    map.putDouble(column(base, 2, slot), batch.powerOutput(i));
+                    map.putDouble(column(base, 3, slot), batch.rotorSpeed(i));
+                    map.putDouble(column(base, 4, slot), batch.temperature(i));
+                    map.putDouble(column(base, 5, slot), batch.vibration(i));
+                    map.putDouble(column(base, 6, slot), batch.efficiency(i));
+                }
+                int index = (int) base;
+                map.putLong(index, min);
+                map.putLong(index + 8, max);
+                map.putInt(index + 20, sorted ? 1 : 0);
+                map.putInt(index + 16, count + n);
+                blockMin[block] = min;
+                blockMax[block] = max;
+                blockSorted[block] = sorted;
+                blockCount[block] = count + n;
+                samples += n;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Appends the samples with fromMicros <= timestamp <= toMicros to out, in file order, and
+     * returns how many were appended.
+     *
+     * @throws ClosedChannelException if the segment has been closed
+     */
+    public int read(long turbineId, long fromMicros, long toMicros, TelemetryBatch out) throws ClosedChannelException {
+        lock.readLock().lock();
+        try {
+            if (map == null) {
+                throw new ClosedChannelException();
+            }
+            int appended = 0;
+            for (int block = 0; block < blocks; block++) {
+                int count = blockCount[block];
+                if (count == 0 || blockMax[block] < fromMicros || blockMin[block] > toMicros) {
+                    continue;
+                }
+                long base = blockOffset(block);
+                int start = 0;
+                int end = count;
+                if (blockSorted[block]) {
+                    start = lowerBound(base, count, fromMicros);
+                    end = lowerBound(base, count, toMicros == Long.MAX_VALUE ? toMicros : toMicros + 1);
+                }
+                for (int slot = start; slot < end; slot++) {
+                    long timestamp = map.getLong(column(base, 0, slot));
+                    if (timestamp < fromMicros || timestamp > toMicros) {
+                        continue;
+                    }
+                    out.add(turbineId, timestamp,
+                        map.getDouble(column(base, 1, slot)), map.getDouble(column(base, 2, slot)),
+                        map.getDouble(column(base, 3, slot)), map.getDouble(column(base, 4, slot)),
+                        map.getDouble(column(base, 5, slot)), map.getDouble(column(base, 6, slot)));
+                    appended++;
+                }
+            }
+            return appended;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            map = null;
+            channel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    private void load() throws IOException {
+        blocks = (int) ((channel.size() - FILE_HEADER_BYTES) / blockBytes);
+        remap();
+        ensureIndexCapacity(blocks);
+        for (int block = 0; block < blocks; block++) {
+            int index = (int) blockOffset(block);
+            blockMin[block] = map.getLong(index);
+            blockMax[block] = map.getLong(index + 8);
+            blockCount[block] = Math.min(Math.max(map.getInt(index + 16), 0), blockCapacity);
+            blockSorted[block] = map.getInt(index + 20) == 1;
+            samples += blockCount[block];
+        }
+        // A block left empty by a crash right after it was added is reused
+        while (blocks > 0 && blockCount[blocks - 1] == 0) {
+            blocks--;
+        }
+    }
+    
+    private void addBlock() throws IOException {
+        ensureIndexCapacity(blocks + 1);
+        blocks++;
+        if (FILE_HEADER_BYTES + blocks * blockBytes > map.capacity()) {
+            remap();
+        }
+        int index = (int) blockOffset(blocks - 1);
+        map.putInt(index + 16, 0);
+        blockCount[blocks - 1] = 0;
+    }
+    
+    // Mapping READ_WRITE past the end of the file grows it (zero-filled)
+    private void remap() throws IOException {
+        long size = FILE_HEADER_BYTES + Math.max(blocks, 1) * blockBytes;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Telemetry segment too large: " + file);
+        }
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+    
+    private void ensureIndexCapacity(int capacity) {
+        if (capacity <= blockMin.length) {
+            return;
+        }
+        int length = Math.max(capacity, blockMin.length * 2);
+        blockMin = Arrays.copyOf(blockMin, length);
+        blockMax = Arrays.copyOf(blockMax, length);
+        blockCount = Arrays.copyOf(blockCount, length);
+        blockSorted = Arrays.copyOf(blockSorted, length);
+    }
+    
+    private long blockOffset(int block) {
+        return FILE_HEADER_BYTES + block * blockBytes;
+    }
+    
+    private int column(long base, int column, int slot) {
+        return (int) (base + BLOCK_HEADER_BYTES + ((long) column * blockCapacity + slot) * 8);
+    }
+    
+    // First slot in a sorted block whose timestamp is >= micros
+    private int lowerBound(long base, int count, long micros) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (map.getLong(column(base, 0, mid)) < micros) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
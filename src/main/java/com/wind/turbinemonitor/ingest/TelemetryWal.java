@@ -0,0 +1,364 @@
+package com.wind.turbinemonitor.ingest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only, memory-mapped write-ahead log of telemetry samples.
+ *
+ * The log is a sequence of fixed-size segment files named by segment index. Positions are
+ * global: segmentIndex * segmentSize + offset. Each frame is
+ *
+ *   int payloadLength | int crc32c(payload) | int recordCount | records...
+ *
+ * where a record is turbineId (long), timestamp micros (long) and six doubles, 64 bytes in
+ * all. A zero length marks the end of written data in a segment; files are zero-filled
+ * when created, so a torn frame is detected by its length or CRC on recovery.
+ *
+ * Durability uses group commit: appenders write under a lock, then wait for a sync that
+ * covers their position. Whichever waiter finds no sync running forces the mapped segment
+ * for everyone who appended before it started.
+ */
+public class TelemetryWal implements Closeable {
+    public static final int RECORD_BYTES = 64;
+    private static final int FRAME_HEADER_BYTES = 12;
+    private static final int MAX_RECORDS_PER_FRAME = 4096;
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final String CHECKPOINT_FILE = "replay.checkpoint";
+    
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final Condition synced = syncLock.newCondition();
+    private boolean syncInProgress;
+    
+    private volatile long activeSegment;
+    private FileChannel activeChannel;
+    private volatile MappedByteBuffer activeBuffer;
+    private volatile long appendedPosition;
+    private volatile long durablePosition;
+    private volatile long oldestSegment;
+    
+    private final ByteBuffer frameScratch;
+    private final CRC32C writerCrc = new CRC32C();
+    private final CRC32C readerCrc = new CRC32C();
+    
+    private long readerSegment = -1;
+    private MappedByteBuffer readerBuffer;
+    
+    private TelemetryWal(Path directory, int segmentSize, int maxSegments) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        this.frameScratch = ByteBuffer.allocate(4 + MAX_RECORDS_PER_FRAME * RECORD_BYTES);
+    }
+    
+    /**
+     * Opens the log, creating the directory if needed. The tail of the newest segment is
+     * scanned and anything after the last intact frame is zeroed, so appends resume
+     * exactly where the last durable write ended.
+     */
+    public static TelemetryWal open(Path directory, int segmentSize, int maxSegments) throws IOException {
+        if (segmentSize < FRAME_HEADER_BYTES + MAX_RECORDS_PER_FRAME * RECORD_BYTES + 4) {
+            throw new IllegalArgumentException("WAL segment size too small: " + segmentSize);
+        }
+        Files.createDirectories(directory);
+        TelemetryWal wal = new TelemetryWal(directory, segmentSize, maxSegments);
+        List<Long> segments = wal.listSegments();
+        
+        if (segments.isEmpty()) {
+            wal.oldestSegment = 0;
+            wal.openActive(0);
+            wal.appendedPosition = 0;
+        } else {
+            wal.oldestSegment = segments.get(0);
+            long last = segments.get(segments.size() - 1);
+            wal.openActive(last);
+            int end = wal.scanEnd(wal.activeBuffer);
+            for (int i = end; i < segmentSize; i++) {
+                wal.activeBuffer.put(i, (byte) 0);
+            }
+            wal.activeBuffer.force();
+            wal.activeBuffer.position(end);
+            wal.appendedPosition = last * segmentSize + end;
+        }
+        wal.durablePosition = wal.appendedPosition;
+        return wal;
+    }
+    
+    /**
+     * Appends the batch and returns the log position after it, or -1, writing nothing, if
+     * the whole batch would take the log past maxSegments segments that have not been
+     * replayed. Not yet durable: pass the result to awaitDurable before acknowledging.
+     */
+    public long append(TelemetryBatch batch) {
+        appendLock.lock();
+        try {
+            if (segmentsAfter(batch.size()) > maxSegments) {
+                return -1;
+            }
+            for (int from = 0; from < batch.size(); from += MAX_RECORDS_PER_FRAME) {
+                int count = Math.min(MAX_RECORDS_PER_FRAME, batch.size() - from);
+                if (remaining() < frameBytes(count)) {
+                    roll();
+                }
+                writeFrame(batch, from, count);
+            }
+            appendedPosition = activeSegment * segmentSize + activeBuffer.position();
+            return appendedPosition;
+        } catch (IOException e) {
+            throw new UncheckedIOException("WAL append failed", e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+    
+    public void awaitDurable(long position) {
+        syncLock.lock();
+        try {
+            while (durablePosition < position) {
+                if (syncInProgress) {
+                    synced.awaitUninterruptibly();
+                    continue;
+                }
+                syncInProgress = true;
+                long target = appendedPosition;
+                syncLock.unlock();
+                try {
+                    forceActive();
+                } finally {
+                    syncLock.lock();
+                    syncInProgress = false;
+                }
+                if (target > durablePosition) {
+                    durablePosition = target;
+                }
+                synced.signalAll();
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+    
+    public long durablePosition() {
+        return durablePosition;
+    }
+    
+    public int segmentSize() {
+        return segmentSize;
+    }
+    
+    /**
+     * Reads whole frames starting at position into the batch until it holds at least
+     * minRecords samples or the durable end is reached. Returns the position after the
+     * last frame read. Only the single replayer thread may call this.
+     */
+    public long read(long position, TelemetryBatch batch, int minRecords) throws IOException {
+        long limit = durablePosition;
+        while (position < limit && batch.size() < minRecords) {
+            long segment = position / segmentSize;
+            int offset = (int) (position % segmentSize);
+            MappedByteBuffer buffer = readerBuffer(segment);
+            int length = offset + 4 <= segmentSize ? buffer.getInt(offset) : 0;
+            if (length == 0) {
+                position = (segment + 1) * segmentSize;
+                continue;
+            }
+            
+            ByteBuffer payload = buffer.slice(offset + 8, length);
+            int expectedCrc = buffer.getInt(offset + 4);
+            readerCrc.reset();
+            readerCrc.update(payload.duplicate());
+            if ((int) readerCrc.getValue() != expectedCrc) {
+                throw new IOException("WAL frame at " + position + " failed CRC check");
+            }
+            
+            int count = payload.getInt(0);
+            for (int r = 0, p = 4; r < count; r++, p += RECORD_BYTES) {
+                batch.add(payload.getLong(p), payload.getLong(p + 8),
+                    payload.getDouble(p + 16), payload.getDouble(p + 24), payload.getDouble(p + 32),
+                    payload.getDouble(p + 40), payload.getDouble(p + 48), payload.getDouble(p + 56));
+            }
+            position += 8 + length;
+        }
+        return position;
+    }
+    
+    public long readCheckpoint() throws IOException {
+        Path file = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(file)) {
+            return oldestSegment * segmentSize;
+        }
+        long position = ByteBuffer.wrap(Files.readAllBytes(file)).getLong();
+        return Math.max(position, oldestSegment * segmentSize);
+    }
+    
+    /**
+     * Records that everything before position is committed to the database and deletes
+     * segments that lie entirely before it.
+     */
+    public void checkpoint(long position) throws IOException {
+        Path tmp = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.allocate(8).putLong(0, position));
+            channel.force(true);
+        }
+        Files.move(tmp, directory.resolve(CHECKPOINT_FILE), StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+        
+        long replayedSegment = position / segmentSize;
+        for (long segment : listSegments()) {
+            if (segment < replayedSegment && segment != activeSegment) {
+                if (segment == readerSegment) {
+                    readerSegment = -1;
+                    readerBuffer = null;
+                }
+                Files.deleteIfExists(segmentPath(segment));
+            }
+        }
+        oldestSegment = Math.min(replayedSegment, activeSegment);
+    }
+    
+    public long pendingBytes(long replayPosition) {
+        return Math.max(0, durablePosition - replayPosition);
+    }
+    
+    public int segmentCount() {
+        return (int) (activeSegment - oldestSegment + 1);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        appendLock.lock();
+        try {
+            forceActive();
+            activeChannel.close();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+    
+    private void writeFrame(TelemetryBatch batch, int from, int count) {
+        ByteBuffer payload = frameScratch.clear();
+        payload.putInt(count);
+        for (int i = from; i < from + count; i++) {
+            payload.putLong(batch.turbineId(i)).putLong(batch.timestamp(i))
+                   .putDouble(batch.windSpeed(i)).putDouble(batch.powerOutput(i)).putDouble(batch.rotorSpeed(i))
+                   .putDouble(batch.temperature(i)).putDouble(batch.vibration(i)).putDouble(batch.efficiency(i));
+        }
+        payload.flip();
+        writerCrc.reset();
+        writerCrc.update(payload.duplicate());
+        
+        // Length goes in last so a reader never sees a frame header ahead of its payload
+        int start = activeBuffer.position();
+        activeBuffer.put(start + 8, payload, 0, payload.limit());
+        activeBuffer.putInt(start + 4, (int) writerCrc.getValue());
+        activeBuffer.putInt(start, payload.limit());
+        activeBuffer.position(start + 8 + payload.limit());
+    }
+    
+    private void roll() throws IOException {
+        forceActive();
+        activeChannel.close();
+        openActive(activeSegment + 1);
+    }
+    
+    private void forceActive() {
+        MappedByteBuffer buffer = activeBuffer;
+        if (buffer != null) {
+            buffer.force();
+        }
+    }
+    
+    // Segments the log would span after appending this many records, rolling as append does
+    private long segmentsAfter(int records) {
+        long segment = activeSegment;
+        int free = remaining();
+        for (int from = 0; from < records; from += MAX_RECORDS_PER_FRAME) {
+            int bytes = frameBytes(Math.min(MAX_RECORDS_PER_FRAME, records - from));
+            if (free < bytes) {
+                segment++;
+                free = segmentSize - 4;
+            }
+            free -= bytes;
+        }
+        return segment - oldestSegment + 1;
+    }
+    
+    private int remaining() {
+        // Keep four zero bytes at the end of every segment as its end marker
+        return segmentSize - activeBuffer.position() - 4;
+    }
+    
+    private static int frameBytes(int records) {
+        return FRAME_HEADER_BYTES + records * RECORD_BYTES;
+    }
+    
+    private void openActive(long segment) throws IOException {
+        activeChannel = FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        activeBuffer = activeChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        activeSegment = segment;
+    }
+    
+    private MappedByteBuffer readerBuffer(long segment) throws IOException {
+        if (segment != readerSegment) {
+            try (FileChannel channel = FileChannel.open(segmentPath(segment), StandardOpenOption.READ)) {
+                readerBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, segmentSize);
+            }
+            readerSegment = segment;
+        }
+        return readerBuffer;
+    }
+    
+    private int scanEnd(MappedByteBuffer buffer) {
+        int offset = 0;
+        while (offset + 8 <= segmentSize - 4) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || offset + 8 + length > segmentSize - 4) {
+                break;
+            }
+            readerCrc.reset();
+            readerCrc.update(buffer.slice(offset + 8, length));
+            if ((int) readerCrc.getValue() != buffer.getInt(offset + 4)) {
+                break;
+            }
+            offset += 8 + length;
+        }
+        return offset;
+    }
+    
+    private List<Long> listSegments() throws IOException {
+        List<Long> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(p -> p.getFileName().toString())
+                 .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                 .forEach(name -> segments.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()))));
+        }
+        segments.sort(null);
+        return segments;
+    }
+    
+    private Path segmentPath(long segment) {
+        return directory.resolve(String.format("%020d%s", segment, SEGMENT_SUFFIX));
+    }
+}
@@ -0,0 +1,65 @@
+package com.wind.turbinemonitor.ingest;
+
+import java.util.Arrays;
+
+/**
+ * Sliding bitset over the most recent time buckets of one turbine. A bucket's bit is set
+ * once a sample in that bucket has been stored, so a clear bit proves a timestamp is new
+ * without any further lookup. The window follows the newest bucket seen; buckets that
+ * fall behind it are reused for newer ones.
+ */
+public class TimestampWindow {
+    public static final int NEW = 0;
+    public static final int SEEN = 1;
+    public static final int BEFORE_WINDOW = 2;
+    
+    private final long[] bits;
+    private final int size;
+    private long head = Long.MIN_VALUE;
+    
+    public TimestampWindow(int buckets) {
+        int words = Math.max(1, (buckets + 63) >>> 6);
+        bits = new long[words];
+        size = words << 6;
+    }
+    
+    public synchronized int check(long bucket) {
+        if (head == Long.MIN_VALUE || bucket > head) {
+            return NEW;
+        }
+        if (head - bucket >= size) {
+            return BEFORE_WINDOW;
+        }
+        int i = index(bucket);
+        return (bits[i >>> 6] & (1L << i)) != 0 ? SEEN : NEW;
+    }
+    
+    public synchronized void mark(long bucket) {
+        if (head == Long.MIN_VALUE) {
+            head = bucket;
+        } else if (bucket > head) {
+            advance(bucket);
+        } else if (head - bucket >= size) {
+            return;
+        }
+        int i = index(bucket);
+        bits[i >>> 6] |= 1L << i;
+    }
+    
+    // Clears the buckets between the old head and the new one, which still hold bits from a previous lap
+    private void advance(long bucket) {
+        if (bucket - head >= size) {
+            Arrays.fill(bits, 0L);
+        } else {
+            for (long b = head + 1; b <= bucket; b++) {
+                int i = index(b);
+                bits[i >>> 6] &= ~(1L << i);
+            }
+        }
+        head = bucket;
+    }
+    
+    private int index(long bucket) {
+        return (int) Math.floorMod(bucket, (long) size);
+    }
+}
@@ -0,0 +1,69 @@
+package com.wind.turbinemonitor.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Marks one turbine shard of an hour as aggregated. Written in the same transaction as the
+ * shard's aggregates, so after a crash ShardedAggregationService only redoes the shards
+ * that have no row here. Shard membership depends on the shard count, which is part of
+ * the key.
+ */
+@Entity
+@Table(name = "aggregation_shard_progress", uniqueConstraints = @UniqueConstraint(
+    name = "uk_aggregation_shard_progress", columnNames = {"hour_start", "shard_count", "shard"}))
+public class AggregationShardProgress {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false)
+    private LocalDateTime hourStart;
+    
+    @Column(nullable = false)
+    private Integer shardCount;
+    
+    @Column(nullable = false)
+    private Integer shard;
+    
+    @Column(nullable = false)
+    private Integer aggregateCount;
+    
+    @Column(nullable = false)
+    private Long rowCount;
+    
+    @Column(nullable = false)
+    private LocalDateTime completedAt;
+    
+    public AggregationShardProgress() {}
+    
+    public AggregationShardProgress(LocalDateTime hourStart, int shardCount, int shard, int aggregateCount, long rowCount) {
+        this.hourStart = hourStart;
+        this.shardCount = shardCount;
+        this.shard = shard;
+        this.aggregateCount = aggregateCount;
+        this.rowCount = rowCount;
+        this.completedAt = LocalDateTime.now();
+    }
+    
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    
+    public LocalDateTime getHourStart() { return hourStart; }
+    public void setHourStart(LocalDateTime hourStart) { this.hourStart = hourStart; }
+    
+    public Integer getShardCount() { return shardCount; }
+    public void setShardCount(Integer shardCount) { this.shardCount = shardCount; }
+    
+    public Integer getShard() { return shard; }
+    public void setShard(Integer shard) { this.shard = shard; }
+    
+    public Integer getAggregateCount() { return aggregateCount; }
+    public void setAggregateCount(Integer aggregateCount) { this.aggregateCount = aggregateCount; }
+    
+    public Long getRowCount() { return rowCount; }
+    public void setRowCount(Long rowCount) { this.rowCount = rowCount; }
+    
+    public LocalDateTime getCompletedAt() { return completedAt; }
+    public void setCompletedAt(LocalDateTime completedAt) { this.completedAt = completedAt; }
+}
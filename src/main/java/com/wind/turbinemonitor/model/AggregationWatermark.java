@@ -0,0 +1,34 @@
+package com.wind.turbinemonitor.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * The end of a turbine's aggregated history: every hour before aggregatedUntil has been
+ * aggregated. Scan-mode aggregation works forward from it, and samples written behind it
+ * are late. Replaces the per-row telemetry.is_aggregated flag.
+ */
+@Entity
+@Table(name = "aggregation_watermarks")
+public class AggregationWatermark {
+    @Id
+    @Column(name = "turbine_id")
+    private Long turbineId;
+    
+    @Column(nullable = false)
+    private LocalDateTime aggregatedUntil;
+    
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+    
+    public AggregationWatermark() {}
+    
+    public Long getTurbineId() { return turbineId; }
+    public void setTurbineId(Long turbineId) { this.turbineId = turbineId; }
+    
+    public LocalDateTime getAggregatedUntil() { return aggregatedUntil; }
+    public void setAggregatedUntil(LocalDateTime aggregatedUntil) { this.aggregatedUntil = aggregatedUntil; }
+    
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
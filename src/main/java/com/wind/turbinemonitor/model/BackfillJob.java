@@ -0,0 +1,138 @@
+package com.wind.turbinemonitor.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * A request to rebuild the aggregates, rollups and anomaly alerts of an hour range,
+ * optionally limited to a farm, a region or a list of turbines. BackfillService runs it as
+ * hour x shard tasks; which tasks are done is recorded in BackfillCheckpoint, so the
+ * counters here are only brought up to date when the job stops.
+ */
+@Entity
+@Table(name = "backfill_jobs")
+public class BackfillJob {
+    public static final String PENDING = "PENDING";
+    public static final String RUNNING = "RUNNING";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String FAILED = "FAILED";
+    public static final String CANCELLED = "CANCELLED";
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    // First hour to rebuild
+    @Column(nullable = false)
+    private LocalDateTime rangeStart;
+    
+    // End of the last hour to rebuild (exclusive)
+    @Column(nullable = false)
+    private LocalDateTime rangeEnd;
+    
+    @Column
+    private String farmName;
+    
+    @Column
+    private String region;
+    
+    // Comma-separated turbine ids, or null for every turbine matching the other filters
+    @Column(length = 4000)
+    private String turbineIds;
+    
+    @Column(nullable = false)
+    private Integer shardCount;
+    
+    @Column(nullable = false, length = 16)
+    private String status;
+    
+    @Column(nullable = false)
+    private Integer totalTasks;
+    
+    @Column(nullable = false)
+    private Integer completedTasks;
+    
+    @Column(nullable = false)
+    private Integer failedTasks;
+    
+    @Column(nullable = false)
+    private Long aggregateCount;
+    
+    @Column(length = 1000)
+    private String lastError;
+    
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+    
+    @Column
+    private LocalDateTime startedAt;
+    
+    @Column
+    private LocalDateTime finishedAt;
+    
+    public BackfillJob() {}
+    
+    public BackfillJob(LocalDateTime rangeStart, LocalDateTime rangeEnd, String farmName, String region,
+                       String turbineIds, int shardCount) {
+        this.rangeStart = rangeStart;
+        this.rangeEnd = rangeEnd;
+        this.farmName = farmName;
+        this.region = region;
+        this.turbineIds = turbineIds;
+        this.shardCount = shardCount;
+        this.status = PENDING;
+        this.totalTasks = 0;
+        this.completedTasks = 0;
+        this.failedTasks = 0;
+        this.aggregateCount = 0L;
+        this.createdAt = LocalDateTime.now();
+    }
+    
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    
+    public LocalDateTime getRangeStart() { return rangeStart; }
+    public void setRangeStart(LocalDateTime rangeStart) { this.rangeStart = rangeStart; }
+    
+    public LocalDateTime getRangeEnd() { return rangeEnd; }
+    public void setRangeEnd(LocalDateTime rangeEnd) { this.rangeEnd = rangeEnd; }
+    
+    public String getFarmName() { return farmName; }
+    public void setFarmName(String farmName) { this.farmName = farmName; }
+    
+    public String getRegion() { return region; }
+    public void setRegion(String region) { this.region = region; }
+    
+    public String getTurbineIds() { return turbineIds; }
+    public void setTurbineIds(String turbineIds) { this.turbineIds = turbineIds; }
+    
+    public Integer getShardCount() { return shardCount; }
+    public void setShardCount(Integer shardCount) { this.shardCount = shardCount; }
+    
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+    
+    public Integer getTotalTasks() { return totalTasks; }
+    public void setTotalTasks(Integer totalTasks) { this.totalTasks = totalTasks; }
+    
+    public Integer getCompletedTasks() { return completedTasks; }
+    public void setCompletedTasks(Integer completedTasks) { this.completedTasks = completedTasks; }
+    
+    public Integer getFailedTasks() { return failedTasks; }
+    public void setFailedTasks(Integer failedTasks) { this.failedTasks = failedTasks; }
+    
+    public Long getAggregateCount() { return aggregateCount; }
+    public void setAggregateCount(Long aggregateCount) { this.aggregateCount = aggregateCount; }
+    
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+    
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+    
+    public LocalDateTime getStartedAt() { return startedAt; }
+    public void setStartedAt(LocalDateTime startedAt) { this.startedAt = startedAt; }
+    
+    public LocalDateTime getFinishedAt() { return finishedAt; }
+    public void setFinishedAt(LocalDateTime finishedAt) { this.finishedAt = finishedAt; }
+}
@@ -0,0 +1,95 @@
+package com.wind.turbinemonitor.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Totals of one farm for a day: the DAY rollups of its turbines added together. Maintained
+ * with the same additive upserts as the rollups, in the transaction that writes the hourly
+ * aggregates, so fleet dashboards read a row per farm and day instead of grouping turbine
+ * rows. Region and fleet days are summed from these rows when read.
+ *
+ * Rows are keyed by farm name, as the analytics endpoints report them; RollupService
+ * rebuilds a farm's rows from the DAY rollups when it is renamed or a turbine moves to or
+ * from it.
+ */
+@Entity
+@Table(name = "daily_summaries", uniqueConstraints = @UniqueConstraint(
+    name = "uk_daily_summaries_bucket", columnNames = {"level", "scope", "bucket_start"}))
+public class DailySummary {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 8)
+    private SummaryLevel level;
+    
+    @Column(nullable = false)
+    private String scope;
+    
+    @Column(nullable = false)
+    private LocalDateTime bucketStart;
+    
+    @Column(nullable = false)
+    private Long dataPointCount;
+    
+    @Column(nullable = false)
+    private Double totalGeneration;
+    
+    @Column(nullable = false)
+    private Integer hourCount;
+    
+    @Column(nullable = false)
+    private Double sumHourlyEfficiency;
+    
+    @Column(nullable = false)
+    private Double sumHourlyPowerOutput;
+    
+    @Column(nullable = false)
+    private Integer anomalyHours;
+    
+    public DailySummary() {}
+    
+    public DailySummary(SummaryLevel level, String scope, LocalDateTime bucketStart) {
+        this.level = level;
+        this.scope = scope;
+        this.bucketStart = bucketStart;
+        this.dataPointCount = 0L;
+        this.totalGeneration = 0.0;
+        this.hourCount = 0;
+        this.sumHourlyEfficiency = 0.0;
+        this.sumHourlyPowerOutput = 0.0;
+        this.anomalyHours = 0;
+    }
+    
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    
+    public SummaryLevel getLevel() { return level; }
+    public void setLevel(SummaryLevel level) { this.level = level; }
+    
+    public String getScope() { return scope; }
+    public void setScope(String scope) { this.scope = scope; }
+    
+    public LocalDateTime getBucketStart() { return bucketStart; }
+    public void setBucketStart(LocalDateTime bucketStart) { this.bucketStart = bucketStart; }
+    
+    public Long getDataPointCount() { return dataPointCount; }
+    public void setDataPointCount(Long dataPointCount) { this.dataPointCount = dataPointCount; }
+    
+    public Double getTotalGeneration() { return totalGeneration; }
+    public void setTotalGeneration(Double totalGeneration) { this.totalGeneration = totalGeneration; }
+    
+    public Integer getHourCount() { return hourCount; }
+    public void setHourCount(Integer hourCount) { this.hourCount = hourCount; }
+    
+    public Double getSumHourlyEfficiency() { return sumHourlyEfficiency; }
+    public void setSumHourlyEfficiency(Double sumHourlyEfficiency) { this.sumHourlyEfficiency = sumHourlyEfficiency; }
+    
+    public Double getSumHourlyPowerOutput() { return sumHourlyPowerOutput; }
+    public void setSumHourlyPowerOutput(Double sumHourlyPowerOutput) { this.sumHourlyPowerOutput = sumHourlyPowerOutput; }
+    
+    public Integer getAnomalyHours() { return anomalyHours; }
+    public void setAnomalyHours(Integer anomalyHours) { this.anomalyHours = anomalyHours; }
+}
@@ -4,7 +4,7 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "health_alerts")
+@Table(name = "health_alerts", indexes = @Index(name = "idx_health_alerts_aggregate_hour", columnList = "aggregate_hour"))
 public class HealthAlert {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -32,6 +32,10 @@ public class HealthAlert {
     @Column
     private LocalDateTime resolvedAt;
     
+    // Hour of the aggregate an anomaly alert was derived from; rebuilding the hour replaces it
+    @Column
+    private LocalDateTime aggregateHour;
+    
     public HealthAlert() {
         this.status = "ACTIVE";
     }
@@ -68,5 +72,8 @@ public class HealthAlert {
     
     public LocalDateTime getResolvedAt() { return resolvedAt; }
     public void setResolvedAt(LocalDateTime resolvedAt) { this.resolvedAt = resolvedAt; }
+    
+    public LocalDateTime getAggregateHour() { return aggregateHour; }
+    public void setAggregateHour(LocalDateTime aggregateHour) { this.aggregateHour = aggregateHour; }
 }
 
@@ -0,0 +1,33 @@
+package com.wind.turbinemonitor.model;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Levels of the rollup cascade, finest first. HOUR is stored in telemetry_aggregates, the
+ * others in telemetry_rollups.
+ */
+public enum RollupResolution {
+    MINUTE,
+    HOUR,
+    DAY,
+    MONTH;
+    
+    public LocalDateTime truncate(LocalDateTime time) {
+        return switch (this) {
+            case MINUTE -> time.truncatedTo(ChronoUnit.MINUTES);
+            case HOUR -> time.truncatedTo(ChronoUnit.HOURS);
+            case DAY -> time.truncatedTo(ChronoUnit.DAYS);
+            case MONTH -> time.truncatedTo(ChronoUnit.DAYS).withDayOfMonth(1);
+        };
+    }
+    
+    public LocalDateTime next(LocalDateTime bucketStart) {
+        return switch (this) {
+            case MINUTE -> bucketStart.plusMinutes(1);
+            case HOUR -> bucketStart.plusHours(1);
+            case DAY -> bucketStart.plusDays(1);
+            case MONTH -> bucketStart.plusMonths(1);
+        };
+    }
+}
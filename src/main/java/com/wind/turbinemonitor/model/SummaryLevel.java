@@ -0,0 +1,11 @@
+package com.wind.turbinemonitor.model;
+
+/**
+ * Grouping of a DailySummary row. Per-turbine days are DAY rollups; farm days are the only
+ * level above them that is stored, and a row's scope is the farm name. Region and fleet
+ * days are the FARM rows of the day added together when read, so no row is written by
+ * every aggregation transaction.
+ */
+public enum SummaryLevel {
+    FARM
+}
@@ -4,7 +4,9 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "telemetry")
+@Table(name = "telemetry",
+    uniqueConstraints = @UniqueConstraint(name = "uk_telemetry_turbine_timestamp", columnNames = {"turbine_id", "timestamp"}),
+    indexes = @Index(name = "idx_telemetry_timestamp", columnList = "timestamp"))
 public class Telemetry {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -1,10 +1,16 @@
 package com.wind.turbinemonitor.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.wind.turbinemonitor.util.ChannelStats;
 import jakarta.persistence.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 import java.time.LocalDateTime;
+import java.util.Map;
 
 @Entity
-@Table(name = "telemetry_aggregates")
+@Table(name = "telemetry_aggregates", uniqueConstraints = @UniqueConstraint(
+    name = "uk_telemetry_aggregates_turbine_hour", columnNames = {"turbine_id", "hour_start"}))
 public class TelemetryAggregate {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -44,6 +50,13 @@ public class TelemetryAggregate {
     @Column(nullable = false)
     private Boolean hasAnomaly;
     
+    // Encoded ChannelStats, about 500 bytes an hour; VARBINARY on MySQL, bytea on PostgreSQL. Null for
+    // aggregates written before distributions were kept, until their hour is rebuilt
+    @JsonIgnore
+    @JdbcTypeCode(SqlTypes.VARBINARY)
+    @Column(length = ChannelStats.MAX_ENCODED_BYTES)
+    private byte[] channelStats;
+    
     public TelemetryAggregate() {}
     
     public TelemetryAggregate(Turbine turbine, LocalDateTime hourStart) {
@@ -88,5 +101,18 @@ public class TelemetryAggregate {
     
     public Boolean getHasAnomaly() { return hasAnomaly; }
     public void setHasAnomaly(Boolean hasAnomaly) { this.hasAnomaly = hasAnomaly; }
+    
+    public byte[] getChannelStats() { return channelStats; }
+    public void setChannelStats(byte[] channelStats) { this.channelStats = channelStats; }
+    
+    /**
+     * Min, max, stddev and p50/p95/p99 of each channel, or null without channel stats. Not
+     * part of the entity's JSON: decoding it for every row of a listing costs more than the
+     * listing; the rollup endpoints add it where it is asked for.
+     */
+    @JsonIgnore
+    public Map<String, Object> getDistribution() {
+        return channelStats != null ? ChannelStats.decode(channelStats).summary(0.5, 0.95, 0.99) : null;
+    }
 }
 
@@ -0,0 +1,61 @@
+package com.wind.turbinemonitor.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * One turbine-hour of raw telemetry packed by GorillaChunkCodec. Written by
+ * TelemetryChunkService when chunk storage is enabled; the rows it replaces are removed
+ * from telemetry.
+ */
+@Entity
+@Table(name = "telemetry_chunks", uniqueConstraints = @UniqueConstraint(
+    name = "uk_telemetry_chunks_turbine_hour", columnNames = {"turbine_id", "hour_start"}))
+public class TelemetryChunk {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "turbine_id", nullable = false)
+    private Turbine turbine;
+    
+    @Column(nullable = false)
+    private LocalDateTime hourStart;
+    
+    @Column(nullable = false)
+    private Integer sampleCount;
+    
+    @Column(nullable = false)
+    private Integer compressedBytes;
+    
+    // MEDIUMBLOB on MySQL, bytea on PostgreSQL
+    @Lob
+    @Column(nullable = false, length = 16777215)
+    private byte[] data;
+    
+    public TelemetryChunk() {}
+    
+    public TelemetryChunk(Turbine turbine, LocalDateTime hourStart) {
+        this.turbine = turbine;
+        this.hourStart = hourStart;
+    }
+    
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    
+    public Turbine getTurbine() { return turbine; }
+    public void setTurbine(Turbine turbine) { this.turbine = turbine; }
+    
+    public LocalDateTime getHourStart() { return hourStart; }
+    public void setHourStart(LocalDateTime hourStart) { this.hourStart = hourStart; }
+    
+    public Integer getSampleCount() { return sampleCount; }
+    public void setSampleCount(Integer sampleCount) { this.sampleCount = sampleCount; }
+    
+    public Integer getCompressedBytes() { return compressedBytes; }
+    public void setCompressedBytes(Integer compressedBytes) { this.compressedBytes = compressedBytes; }
+    
+    public byte[] getData() { return data; }
+    public void setData(byte[] data) { this.data = data; }
+}
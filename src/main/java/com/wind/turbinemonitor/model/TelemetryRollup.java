@@ -0,0 +1,152 @@
+package com.wind.turbinemonitor.model;
+
+import com.wind.turbinemonitor.util.ChannelStats;
+import jakarta.persistence.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+import java.time.LocalDateTime;
+
+/**
+ * One turbine's totals for a MINUTE, DAY or MONTH bucket. Everything is a sum, so a bucket
+ * is maintained by adding the change in the level below (see RollupService) and buckets
+ * can be added together for any range.
+ *
+ * The sample sums give sample-weighted averages. DAY and MONTH buckets also sum the hourly
+ * averages and count the hours, which is how the analytics endpoints have always averaged
+ * (mean of hourly values); MINUTE buckets leave those at zero.
+ *
+ * DAY buckets also keep the merged ChannelStats of their hours once the day is complete.
+ * Sketches cannot be summed in SQL, so any change to the bucket clears them and
+ * RollupService merges them again from the hourly aggregates.
+ */
+@Entity
+@Table(name = "telemetry_rollups", uniqueConstraints = @UniqueConstraint(
+    name = "uk_telemetry_rollups_bucket", columnNames = {"resolution", "turbine_id", "bucket_start"}))
+public class TelemetryRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "turbine_id", nullable = false)
+    private Turbine turbine;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 8)
+    private RollupResolution resolution;
+    
+    @Column(nullable = false)
+    private LocalDateTime bucketStart;
+    
+    @Column(nullable = false)
+    private Long dataPointCount;
+    
+    @Column(nullable = false)
+    private Double sumWindSpeed;
+    
+    @Column(nullable = false)
+    private Double sumPowerOutput;
+    
+    @Column(nullable = false)
+    private Double sumRotorSpeed;
+    
+    @Column(nullable = false)
+    private Double sumTemperature;
+    
+    @Column(nullable = false)
+    private Double sumVibration;
+    
+    @Column(nullable = false)
+    private Double sumEfficiency;
+    
+    @Column(nullable = false)
+    private Double totalGeneration;
+    
+    @Column(nullable = false)
+    private Integer hourCount;
+    
+    @Column(nullable = false)
+    private Double sumHourlyEfficiency;
+    
+    @Column(nullable = false)
+    private Double sumHourlyPowerOutput;
+    
+    @Column(nullable = false)
+    private Integer anomalyHours;
+    
+    // Encoded ChannelStats of the day's hours, DAY only; about 700-800 bytes
+    @JdbcTypeCode(SqlTypes.VARBINARY)
+    @Column(length = ChannelStats.MAX_ENCODED_BYTES)
+    private byte[] channelStats;
+    
+    public TelemetryRollup() {}
+    
+    public TelemetryRollup(Turbine turbine, RollupResolution resolution, LocalDateTime bucketStart) {
+        this.turbine = turbine;
+        this.resolution = resolution;
+        this.bucketStart = bucketStart;
+        this.dataPointCount = 0L;
+        this.sumWindSpeed = 0.0;
+        this.sumPowerOutput = 0.0;
+        this.sumRotorSpeed = 0.0;
+        this.sumTemperature = 0.0;
+        this.sumVibration = 0.0;
+        this.sumEfficiency = 0.0;
+        this.totalGeneration = 0.0;
+        this.hourCount = 0;
+        this.sumHourlyEfficiency = 0.0;
+        this.sumHourlyPowerOutput = 0.0;
+        this.anomalyHours = 0;
+    }
+    
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    
+    public Turbine getTurbine() { return turbine; }
+    public void setTurbine(Turbine turbine) { this.turbine = turbine; }
+    
+    public RollupResolution getResolution() { return resolution; }
+    public void setResolution(RollupResolution resolution) { this.resolution = resolution; }
+    
+    public LocalDateTime getBucketStart() { return bucketStart; }
+    public void setBucketStart(LocalDateTime bucketStart) { this.bucketStart = bucketStart; }
+    
+    public Long getDataPointCount() { return dataPointCount; }
+    public void setDataPointCount(Long dataPointCount) { this.dataPointCount = dataPointCount; }
+    
+    public Double getSumWindSpeed() { return sumWindSpeed; }
+    public void setSumWindSpeed(Double sumWindSpeed) { this.sumWindSpeed = sumWindSpeed; }
+    
+    public Double getSumPowerOutput() { return sumPowerOutput; }
+    public void setSumPowerOutput(Double sumPowerOutput) { this.sumPowerOutput = sumPowerOutput; }
+    
+    public Double getSumRotorSpeed() { return sumRotorSpeed; }
+    public void setSumRotorSpeed(Double sumRotorSpeed) { this.sumRotorSpeed = sumRotorSpeed; }
+    
+    public Double getSumTemperature() { return sumTemperature; }
+    public void setSumTemperature(Double sumTemperature) { this.sumTemperature = sumTemperature; }
+    
+    public Double getSumVibration() { return sumVibration; }
+    public void setSumVibration(Double sumVibration) { this.sumVibration = sumVibration; }
+    
+    public Double getSumEfficiency() { return sumEfficiency; }
+    public void setSumEfficiency(Double sumEfficiency) { this.sumEfficiency = sumEfficiency; }
+    
+    public Double getTotalGeneration() { return totalGeneration; }
+    public void setTotalGeneration(Double totalGeneration) { this.totalGeneration = totalGeneration; }
+    
+    public Integer getHourCount() { return hourCount; }
+    public void setHourCount(Integer hourCount) { this.hourCount = hourCount; }
+    
+    public Double getSumHourlyEfficiency() { return sumHourlyEfficiency; }
+    public void setSumHourlyEfficiency(Double sumHourlyEfficiency) { this.sumHourlyEfficiency = sumHourlyEfficiency; }
+    
+    public Double getSumHourlyPowerOutput() { return sumHourlyPowerOutput; }
+    public void setSumHourlyPowerOutput(Double sumHourlyPowerOutput) { this.sumHourlyPowerOutput = sumHourlyPowerOutput; }
+    
+    public Integer getAnomalyHours() { return anomalyHours; }
+    public void setAnomalyHours(Integer anomalyHours) { this.anomalyHours = anomalyHours; }
+    
+    public byte[] getChannelStats() { return channelStats; }
+    public void setChannelStats(byte[] channelStats) { this.channelStats = channelStats; }
+}
@@ -0,0 +1,443 @@
+package com.wind.turbinemonitor.repository;
+
+import com.wind.turbinemonitor.model.RollupResolution;
+import com.wind.turbinemonitor.model.TelemetryAggregate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Off-heap, columnar copy of the recent hourly aggregates, so per-turbine sums and series
+ * over the last months are loops over primitive columns instead of entity queries.
+ *
+ * Each turbine has one direct ByteBuffer holding a ring of `months` of hours, indexed by
+ * hour since the epoch modulo the ring size. The buffer is column-major: avgWindSpeed,
+ * avgPowerOutput, avgRotorSpeed, avgTemperature, avgVibration, avgEfficiency and
+ * totalGeneration as doubles, then as longs the hour a slot holds (plus one, so zero is
+ * empty) and dataPointCount with bit 32 set for anomalies. A scan therefore walks a few
+ * contiguous arrays and allocates nothing.
+ *
+ * Filled at startup from telemetry_aggregates, one day per query, on a background thread;
+ * until that is done every read goes to the database. Afterwards aggregation writes are
+ * applied when their transaction commits. Reads use the turbine's StampedLock optimistically
+ * and only take the read lock if a write got in between.
+ *
+ * Only hours inside the ring are answered: covers() tells callers whether a range starts
+ * late enough. The hour the ring is about to reuse is left out of it.
+ */
+@Repository
+public class AggregateColumnStore {
+    private static final int DOUBLE_COLUMNS = 7;
+    private static final int TOTAL_GENERATION = 6;
+    private static final int HOUR_TAG = 7;
+    private static final int COUNT_FLAGS = 8;
+    private static final int COLUMNS = 9;
+    private static final long ANOMALY = 1L << 32;
+    private static final long COUNT_MASK = ANOMALY - 1;
+    
+    private static final String AGGREGATES_FOR_RANGE =
+        "SELECT turbine_id, hour_start, avg_wind_speed, avg_power_output, avg_rotor_speed, avg_temperature, " +
+        "avg_vibration, avg_efficiency, total_generation, data_point_count, has_anomaly " +
+        "FROM telemetry_aggregates WHERE hour_start >= ? AND hour_start < ?";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Value("${telemetry.aggregate-store.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${telemetry.aggregate-store.months:13}")
+    private int months;
+    
+    private final Map<Long, Block> blocks = new ConcurrentHashMap<>();
+    private final AtomicLong offHeapBytes = new AtomicLong();
+    private final AtomicLong appliedRows = new AtomicLong();
+    private volatile boolean ready;
+    private volatile long warmedFromHour = Long.MAX_VALUE;
+    private volatile long warmRows;
+    private volatile long warmMillis;
+    
+    private final Clock clock;
+    
+    public AggregateColumnStore() {
+        this.clock = Clock.systemDefaultZone();
+    }
+    
+    // An enabled store without a database, for tests: it is filled by applyAfterCommit only
+    AggregateColumnStore(int months, Clock clock) {
+        this.enabled = true;
+        this.months = months;
+        this.clock = clock;
+    }
+    
+    /**
+     * Sums over a turbine's hours in a range, in the shape RollupService totals use.
+     */
+    public record Sums(double totalGeneration, long hourCount, double sumEfficiency, double sumPowerOutput) {}
+    
+    /**
+     * A turbine's hours in a range, one array element per hour that has an aggregate.
+     */
+    public record Series(List<LocalDateTime> hourStart, double[] avgWindSpeed, double[] avgPowerOutput,
+                         double[] avgRotorSpeed, double[] avgTemperature, double[] avgVibration,
+                         double[] avgEfficiency, double[] totalGeneration, int[] dataPointCount,
+                         boolean[] hasAnomaly) {
+        /**
+         * The same columns from aggregates read from the database, in hour order.
+         */
+        public static Series of(List<TelemetryAggregate> aggregates) {
+            int n = aggregates.size();
+            List<LocalDateTime> hours = new ArrayList<>(n);
+            double[][] values = new double[DOUBLE_COLUMNS][n];
+            int[] counts = new int[n];
+            boolean[] anomalies = new boolean[n];
+            for (int i = 0; i < n; i++) {
+                Row row = Row.of(aggregates.get(i));
+                hours.add(aggregates.get(i).getHourStart());
+                for (int column = 0; column < DOUBLE_COLUMNS; column++) {
+                    values[column][i] = row.values()[column];
+                }
+                counts[i] = row.dataPointCount();
+                anomalies[i] = row.hasAnomaly();
+            }
+            return new Series(hours, values[0], values[1], values[2], values[3], values[4], values[5], values[6],
+                counts, anomalies);
+        }
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!enabled) {
+            return;
+        }
+        Thread thread = new Thread(this::load, "aggregate-store-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    private void load() {
+        long start = System.currentTimeMillis();
+        long fromHour = firstRingHour();
+        LocalDateTime day = RollupResolution.DAY.truncate(toTime(fromHour));
+        LocalDateTime end = toTime(currentHour() + 1);
+        long rows = 0;
+        try {
+            while (day.isBefore(end)) {
+                long[] count = new long[1];
+                jdbcTemplate.query(AGGREGATES_FOR_RANGE, rs -> {
+                    long hour = toHour(rs.getObject(2, LocalDateTime.class));
+                    double[] values = new double[DOUBLE_COLUMNS];
+                    for (int column = 0; column < DOUBLE_COLUMNS; column++) {
+                        values[column] = rs.getDouble(3 + column);
+                    }
+                    // Rows written by aggregation since startup are newer than this read
+                    put(rs.getLong(1), hour, values, rs.getInt(10), rs.getBoolean(11), false);
+                    count[0]++;
+                }, day, day.plusDays(1));
+                rows += count[0];
+                day = day.plusDays(1);
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Aggregate store warm-up failed, reads stay on the database: " + e.getMessage());
+            return;
+        }
+        warmRows = rows;
+        warmMillis = System.currentTimeMillis() - start;
+        warmedFromHour = fromHour;
+        ready = true;
+        System.out.println("Aggregate store loaded " + rows + " hourly aggregates for " + blocks.size() +
+                           " turbines in " + warmMillis + " ms, " + offHeapBytes.get() / (1024 * 1024) + " MB off-heap");
+    }
+    
+    /**
+     * Whether every hour from start on can be read here.
+     */
+    public boolean covers(LocalDateTime start) {
+        return ready && toHour(start) >= Math.max(warmedFromHour, firstRingHour());
+    }
+    
+    /**
+     * Copies the aggregates that were just written, and drops the replaced ones that were
+     * not rewritten, once the current transaction commits.
+     */
+    public void applyAfterCommit(List<TelemetryAggregate> added, List<TelemetryAggregate> removed) {
+        if (!enabled || (added.isEmpty() && removed.isEmpty())) {
+            return;
+        }
+        List<Row> rows = new ArrayList<>(added.size());
+        Set<Key> written = new HashSet<>();
+        for (TelemetryAggregate aggregate : added) {
+            Row row = Row.of(aggregate);
+            rows.add(row);
+            written.add(new Key(row.turbineId(), row.hour()));
+        }
+        List<Key> dropped = new ArrayList<>();
+        for (TelemetryAggregate aggregate : removed) {
+            Key key = new Key(aggregate.getTurbine().getId(), toHour(aggregate.getHourStart()));
+            if (!written.contains(key)) {
+                dropped.add(key);
+            }
+        }
+        Runnable apply = () -> {
+            for (Row row : rows) {
+                put(row.turbineId(), row.hour(), row.values(), row.dataPointCount(), row.hasAnomaly(), true);
+            }
+            for (Key key : dropped) {
+                remove(key.turbineId(), key.hour());
+            }
+            appliedRows.addAndGet(rows.size() + dropped.size());
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply.run();
+                }
+            });
+        } else {
+            apply.run();
+        }
+    }
+    
+    /**
+     * Sums of the turbine's hourly aggregates with start <= hourStart <= end. Check covers()
+     * first.
+     */
+    public Sums sum(long turbineId, LocalDateTime start, LocalDateTime end) {
+        Block block = blocks.get(turbineId);
+        long fromHour = firstHourAtOrAfter(start);
+        long toHour = toHour(end) + 1;
+        if (block == null || fromHour >= toHour) {
+            return new Sums(0, 0, 0, 0);
+        }
+        StampedLock lock = block.lock;
+        long stamp = lock.tryOptimisticRead();
+        Sums sums = scanSums(block, fromHour, toHour);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                sums = scanSums(block, fromHour, toHour);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return sums;
+    }
+    
+    private Sums scanSums(Block block, long fromHour, long toHour) {
+        ByteBuffer data = block.data;
+        int capacity = block.capacity;
+        int efficiency = column(5, capacity);
+        int powerOutput = column(1, capacity);
+        int generation = column(TOTAL_GENERATION, capacity);
+        int tags = column(HOUR_TAG, capacity);
+        double totalGeneration = 0;
+        double sumEfficiency = 0;
+        double sumPowerOutput = 0;
+        long hourCount = 0;
+        int slot = (int) Math.floorMod(fromHour, (long) capacity);
+        for (long hour = fromHour; hour < toHour; hour++) {
+            int offset = slot << 3;
+            if (data.getLong(tags + offset) == hour + 1) {
+                totalGeneration += data.getDouble(generation + offset);
+                sumEfficiency += data.getDouble(efficiency + offset);
+                sumPowerOutput += data.getDouble(powerOutput + offset);
+                hourCount++;
+            }
+            if (++slot == capacity) {
+                slot = 0;
+            }
+        }
+        return new Sums(totalGeneration, hourCount, sumEfficiency, sumPowerOutput);
+    }
+    
+    /**
+     * The turbine's hourly aggregates with start <= hourStart <= end, column by column.
+     * Check covers() first.
+     */
+    public Series series(long turbineId, LocalDateTime start, LocalDateTime end) {
+        Block block = blocks.get(turbineId);
+        long fromHour = firstHourAtOrAfter(start);
+        long toHour = Math.max(fromHour, toHour(end) + 1);
+        if (block == null) {
+            return scanSeries(null, fromHour, fromHour);
+        }
+        long stamp = block.lock.readLock();
+        try {
+            return scanSeries(block, fromHour, toHour);
+        } finally {
+            block.lock.unlockRead(stamp);
+        }
+    }
+    
+    private Series scanSeries(Block block, long fromHour, long toHour) {
+        List<Integer> slots = new ArrayList<>();
+        List<LocalDateTime> hours = new ArrayList<>();
+        if (block != null) {
+            int tags = column(HOUR_TAG, block.capacity);
+            for (long hour = fromHour; hour < toHour; hour++) {
+                int slot = (int) Math.floorMod(hour, (long) block.capacity);
+                if (block.data.getLong(tags + (slot << 3)) == hour + 1) {
+                    slots.add(slot);
+                    hours.add(toTime(hour));
+                }
+            }
+        }
+        int n = slots.size();
+        double[][] values = new double[DOUBLE_COLUMNS][n];
+        int[] counts = new int[n];
+        boolean[] anomalies = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            int offset = slots.get(i) << 3;
+            for (int column = 0; column < DOUBLE_COLUMNS; column++) {
+                values[column][i] = block.data.getDouble(column(column, block.capacity) + offset);
+            }
+            long countFlags = block.data.getLong(column(COUNT_FLAGS, block.capacity) + offset);
+            counts[i] = (int) (countFlags & COUNT_MASK);
+            anomalies[i] = (countFlags & ANOMALY) != 0;
+        }
+        return new Series(hours, values[0], values[1], values[2], values[3], values[4], values[5], values[6],
+            counts, anomalies);
+    }
+    
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("enabled", enabled);
+        status.put("ready", ready);
+        status.put("months", months);
+        status.put("turbines", blocks.size());
+        status.put("offHeapBytes", offHeapBytes.get());
+        status.put("warmRows", warmRows);
+        status.put("warmMillis", warmMillis);
+        status.put("appliedRows", appliedRows.get());
+        if (ready) {
+            status.put("coveredFrom", toTime(Math.max(warmedFromHour, firstRingHour())).toString());
+        }
+        return status;
+    }
+    
+    // overwrite = false keeps a slot that already holds this hour. Hours ahead of the clock
+    // would take the slot of a covered hour, so they are not kept
+    private void put(long turbineId, long hour, double[] values, int dataPointCount, boolean hasAnomaly, boolean overwrite) {
+        if (hour < firstRingHour() || hour > currentHour() + 1) {
+            return;
+        }
+        Block block = blocks.computeIfAbsent(turbineId, id -> newBlock());
+        int offset = (int) Math.floorMod(hour, (long) block.capacity) << 3;
+        long stamp = block.lock.writeLock();
+        try {
+            ByteBuffer data = block.data;
+            if (!overwrite && data.getLong(column(HOUR_TAG, block.capacity) + offset) == hour + 1) {
+                return;
+            }
+            for (int column = 0; column < DOUBLE_COLUMNS; column++) {
+                data.putDouble(column(column, block.capacity) + offset, values[column]);
+            }
+            data.putLong(column(COUNT_FLAGS, block.capacity) + offset, (dataPointCount & COUNT_MASK) | (hasAnomaly ? ANOMALY : 0));
+            data.putLong(column(HOUR_TAG, block.capacity) + offset, hour + 1);
+        } finally {
+            block.lock.unlockWrite(stamp);
+        }
+    }
+    
+    private void remove(long turbineId, long hour) {
+        Block block = blocks.get(turbineId);
+        if (block == null) {
+            return;
+        }
+        int tag = column(HOUR_TAG, block.capacity) + ((int) Math.floorMod(hour, (long) block.capacity) << 3);
+        long stamp = block.lock.writeLock();
+        try {
+            if (block.data.getLong(tag) == hour + 1) {
+                block.data.putLong(tag, 0);
+            }
+        } finally {
+            block.lock.unlockWrite(stamp);
+        }
+    }
+    
+    private Block newBlock() {
+        int capacity = capacity();
+        Block block = new Block(ByteBuffer.allocateDirect(COLUMNS * capacity * 8).order(ByteOrder.nativeOrder()), capacity);
+        offHeapBytes.addAndGet(block.data.capacity());
+        return block;
+    }
+    
+    private int capacity() {
+        return months * 31 * 24;
+    }
+    
+    // Oldest hour still in the ring, keeping one spare slot for the hour that will reuse it next
+    private long firstRingHour() {
+        return currentHour() - capacity() + 2;
+    }
+    
+    private static int column(int column, int capacity) {
+        return column * capacity * 8;
+    }
+    
+    private static long firstHourAtOrAfter(LocalDateTime time) {
+        LocalDateTime hour = RollupResolution.HOUR.truncate(time);
+        return toHour(hour) + (hour.isBefore(time) ? 1 : 0);
+    }
+    
+    private long currentHour() {
+        return toHour(LocalDateTime.now(clock));
+    }
+    
+    private static long toHour(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 3600L);
+    }
+    
+    private static LocalDateTime toTime(long hour) {
+        return LocalDateTime.ofEpochSecond(hour * 3600, 0, ZoneOffset.UTC);
+    }
+    
+    private static final class Block {
+        final ByteBuffer data;
+        final int capacity;
+        final StampedLock lock = new StampedLock();
+        
+        Block(ByteBuffer data, int capacity) {
+            this.data = data;
+            this.capacity = capacity;
+        }
+    }
+    
+    private record Key(long turbineId, long hour) {}
+    
+    private record Row(long turbineId, long hour, double[] values, int dataPointCount, boolean hasAnomaly) {
+        static Row of(TelemetryAggregate aggregate) {
+            double[] values = {
+                aggregate.getAvgWindSpeed(), aggregate.getAvgPowerOutput(), aggregate.getAvgRotorSpeed(),
+                aggregate.getAvgTemperature(), aggregate.getAvgVibration(), aggregate.getAvgEfficiency(),
+                aggregate.getTotalGeneration()
+            };
+            return new Row(aggregate.getTurbine().getId(), toHour(aggregate.getHourStart()), values,
+                aggregate.getDataPointCount(), Boolean.TRUE.equals(aggregate.getHasAnomaly()));
+        }
+    }
+}
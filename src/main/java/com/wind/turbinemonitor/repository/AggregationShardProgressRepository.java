@@ -0,0 +1,27 @@
+package com.wind.turbinemonitor.repository;
+
+import com.wind.turbinemonitor.model.AggregationShardProgress;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface AggregationShardProgressRepository extends JpaRepository<AggregationShardProgress, Long> {
+    @Query("SELECT p.shard FROM AggregationShardProgress p WHERE p.hourStart = :hourStart AND p.shardCount = :shardCount")
+    List<Integer> findCompletedShards(@Param("hourStart") LocalDateTime hourStart, @Param("shardCount") int shardCount);
+    
+    @Modifying
+    @Query("DELETE FROM AggregationShardProgress p WHERE p.hourStart = :hourStart AND p.shardCount = :shardCount " +
+           "AND p.shard IN :shards")
+    int deleteShards(@Param("hourStart") LocalDateTime hourStart, @Param("shardCount") int shardCount,
+                     @Param("shards") Collection<Integer> shards);
+    
+    @Modifying
+    @Query("DELETE FROM AggregationShardProgress p WHERE p.completedAt < :before")
+    int deleteCompletedBefore(@Param("before") LocalDateTime before);
+}
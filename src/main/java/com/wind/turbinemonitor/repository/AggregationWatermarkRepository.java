@@ -0,0 +1,9 @@
+package com.wind.turbinemonitor.repository;
+
+import com.wind.turbinemonitor.model.AggregationWatermark;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface AggregationWatermarkRepository extends JpaRepository<AggregationWatermark, Long> {
+}
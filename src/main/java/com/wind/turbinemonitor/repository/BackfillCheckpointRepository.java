@@ -0,0 +1,14 @@
+package com.wind.turbinemonitor.repository;
+
+import com.wind.turbinemonitor.model.BackfillCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.util.List;
+
+@Repository
+public interface BackfillCheckpointRepository extends JpaRepository<BackfillCheckpoint, Long> {
+    @Query("SELECT c FROM BackfillCheckpoint c WHERE c.jobId = :jobId")
+    List<BackfillCheckpoint> findByJob(@Param("jobId") Long jobId);
+}
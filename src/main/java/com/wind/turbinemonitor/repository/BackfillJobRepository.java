@@ -0,0 +1,14 @@
+package com.wind.turbinemonitor.repository;
+
+import com.wind.turbinemonitor.model.BackfillJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface BackfillJobRepository extends JpaRepository<BackfillJob, Long> {
+    List<BackfillJob> findByStatusInOrderByCreatedAt(Collection<String> statuses);
+    
+    List<BackfillJob> findAllByOrderByCreatedAtDesc();
+}
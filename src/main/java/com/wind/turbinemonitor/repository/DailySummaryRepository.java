@@ -0,0 +1,54 @@
+package com.wind.turbinemonitor.repository;
+
+import com.wind.turbinemonitor.model.DailySummary;
+import com.wind.turbinemonitor.model.SummaryLevel;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface DailySummaryRepository extends JpaRepository<DailySummary, Long> {
+    @Query("SELECT s FROM DailySummary s WHERE s.level = :level " +
+           "AND s.bucketStart >= :startTime AND s.bucketStart < :endTime ORDER BY s.bucketStart, s.scope")
+    List<DailySummary> findByLevelAndRange(
+        @Param("level") SummaryLevel level,
+        @Param("startTime") LocalDateTime startTime,
+        @Param("endTime") LocalDateTime endTime
+    );
+    
+    @Query("SELECT s FROM DailySummary s WHERE s.level = :level AND s.scope IN :scopes " +
+           "AND s.bucketStart >= :startTime AND s.bucketStart < :endTime ORDER BY s.bucketStart, s.scope")
+    List<DailySummary> findByScopesAndRange(
+        @Param("level") SummaryLevel level,
+        @Param("scopes") Collection<String> scopes,
+        @Param("startTime") LocalDateTime startTime,
+        @Param("endTime") LocalDateTime endTime
+    );
+    
+    // Region and fleet days: the level's rows of each day added together
+    @Query("SELECT s.bucketStart, SUM(s.totalGeneration), SUM(s.hourCount), SUM(s.sumHourlyEfficiency), " +
+           "SUM(s.sumHourlyPowerOutput) FROM DailySummary s WHERE s.level = :level " +
+           "AND s.bucketStart >= :startTime AND s.bucketStart < :endTime GROUP BY s.bucketStart ORDER BY s.bucketStart")
+    List<Object[]> sumByDay(
+        @Param("level") SummaryLevel level,
+        @Param("startTime") LocalDateTime startTime,
+        @Param("endTime") LocalDateTime endTime
+    );
+    
+    @Query("SELECT s.bucketStart, SUM(s.totalGeneration), SUM(s.hourCount), SUM(s.sumHourlyEfficiency), " +
+           "SUM(s.sumHourlyPowerOutput) FROM DailySummary s WHERE s.level = :level AND s.scope IN :scopes " +
+           "AND s.bucketStart >= :startTime AND s.bucketStart < :endTime GROUP BY s.bucketStart ORDER BY s.bucketStart")
+    List<Object[]> sumByDayForScopes(
+        @Param("level") SummaryLevel level,
+        @Param("scopes") Collection<String> scopes,
+        @Param("startTime") LocalDateTime startTime,
+        @Param("endTime") LocalDateTime endTime
+    );
+    
+    @Query("SELECT s.level, COUNT(s) FROM DailySummary s GROUP BY s.level")
+    List<Object[]> countByLevel();
+}
@@ -0,0 +1,178 @@
+package com.wind.turbinemonitor.repository;
+
+import com.wind.turbinemonitor.ingest.GorillaChunkCodec;
+import com.wind.turbinemonitor.ingest.TelemetryBatch;
+import com.wind.turbinemonitor.model.Telemetry;
+import com.wind.turbinemonitor.model.TelemetryChunk;
+import com.wind.turbinemonitor.model.Turbine;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Default raw store: the telemetry table, plus telemetry_chunks when chunk storage is
+ * enabled. Samples decoded from chunks are merged with the remaining rows; they have no id
+ * and are marked aggregated.
+ */
+@Repository
+@ConditionalOnProperty(name = "telemetry.raw-store.type", havingValue = "database", matchIfMissing = true)
+public class DatabaseRawTelemetryStore implements RawTelemetryStore {
+    private static final LocalDateTime MIN_TIME = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime MAX_TIME = LocalDateTime.of(9999, 12, 31, 23, 59);
+    
+    @Autowired
+    private TelemetryRepository telemetryRepository;
+    
+    @Autowired
+    private TelemetryChunkRepository chunkRepository;
+    
+    @Autowired
+    private TurbineRepository turbineRepository;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Value("${telemetry.chunks.enabled:false}")
+    private boolean chunksEnabled;
+    
+    @Override
+    public void append(TelemetryBatch batch) {
+        // Already in the telemetry table
+    }
+    
+    @Override
+    public List<Telemetry> findByTurbineId(Long turbineId) {
+        if (chunksEnabled) {
+            return findByTurbineAndDateRange(turbineId, MIN_TIME, MAX_TIME);
+        }
+        return telemetryRepository.findByTurbineId(turbineId);
+    }
+    
+    @Override
+    public List<Telemetry> findByTurbineAndDateRange(Long turbineId, LocalDateTime startTime, LocalDateTime endTime) {
+        List<Telemetry> rows = telemetryRepository.findByTurbineAndDateRange(turbineId, startTime, endTime);
+        if (!chunksEnabled) {
+            return rows;
+        }
+        // Compacted hours live in telemetry_chunks
+        List<TelemetryChunk> chunks = chunkRepository.findByTurbineAndHourRange(
+            turbineId, startTime.truncatedTo(ChronoUnit.HOURS), endTime);
+        if (chunks.isEmpty()) {
+            return rows;
+        }
+        
+        int capacity = 0;
+        for (TelemetryChunk chunk : chunks) {
+            capacity += chunk.getSampleCount();
+        }
+        TelemetryBatch decoded = new TelemetryBatch(Math.max(1, capacity));
+        long fromMicros = TelemetryBatch.toMicros(startTime);
+        long toMicros = TelemetryBatch.toMicros(endTime);
+        for (TelemetryChunk chunk : chunks) {
+            GorillaChunkCodec.decode(chunk.getData(), turbineId, fromMicros, toMicros, decoded);
+        }
+        
+        Turbine turbine = turbineRepository.getReferenceById(turbineId);
+        List<Telemetry> result = new ArrayList<>(decoded.size() + rows.size());
+        int r = 0;
+        for (int i = 0; i < decoded.size(); i++) {
+            LocalDateTime timestamp = decoded.timestampAsDateTime(i);
+            while (r < rows.size() && rows.get(r).getTimestamp().isBefore(timestamp)) {
+                result.add(rows.get(r++));
+            }
+            if (r < rows.size() && rows.get(r).getTimestamp().equals(timestamp)) {
+                r++;
+            }
+            Telemetry telemetry = new Telemetry(turbine, timestamp, decoded.windSpeed(i), decoded.powerOutput(i),
+                decoded.rotorSpeed(i), decoded.temperature(i), decoded.vibration(i), decoded.efficiency(i));
+            telemetry.setIsAggregated(true);
+            result.add(telemetry);
+        }
+        while (r < rows.size()) {
+            result.add(rows.get(r++));
+        }
+        return result;
+    }
+    
+    @Override
+    public void forEach(Long turbineId, LocalDateTime startTime, LocalDateTime endTime, int limit, Consumer<Telemetry> consumer) {
+        LocalDateTime from = startTime != null ? startTime : MIN_TIME;
+        LocalDateTime to = endTime != null ? endTime : MAX_TIME;
+        if (!chunksEnabled) {
+            try (Stream<Telemetry> rows = telemetryRepository.streamByTurbineAndDateRange(turbineId, from, to)) {
+                rows.limit(limit).forEach(telemetry -> pass(telemetry, consumer));
+            }
+            return;
+        }
+        
+        // Rows and chunks are merged a day at a time, over the days that have either
+        Object[] rowRange = telemetryRepository.findTimeRange(turbineId).get(0);
+        Object[] chunkRange = chunkRepository.findHourRange(turbineId).get(0);
+        LocalDateTime first = earliest((LocalDateTime) rowRange[0], (LocalDateTime) chunkRange[0]);
+        LocalDateTime last = latest((LocalDateTime) rowRange[1],
+            chunkRange[1] == null ? null : ((LocalDateTime) chunkRange[1]).plusHours(1));
+        if (first == null) {
+            return;
+        }
+        from = latest(from, first);
+        to = earliest(to, last);
+        int passed = 0;
+        for (LocalDateTime day = from; !day.isAfter(to) && passed < limit; day = day.toLocalDate().plusDays(1).atStartOfDay()) {
+            LocalDateTime dayEnd = day.toLocalDate().plusDays(1).atStartOfDay().minus(1, ChronoUnit.MICROS);
+            for (Telemetry telemetry : findByTurbineAndDateRange(turbineId, day, earliest(dayEnd, to))) {
+                if (passed == limit) {
+                    break;
+                }
+                pass(telemetry, consumer);
+                passed++;
+            }
+        }
+    }
+    
+    @Override
+    public boolean hasMoreThan(Long turbineId, LocalDateTime startTime, LocalDateTime endTime, int rows) {
+        if (chunksEnabled) {
+            return RawTelemetryStore.super.hasMoreThan(turbineId, startTime, endTime, rows);
+        }
+        return !telemetryRepository.findIdsByTurbineAndDateRange(turbineId,
+            startTime != null ? startTime : MIN_TIME, endTime != null ? endTime : MAX_TIME,
+            PageRequest.of(rows, 1)).isEmpty();
+    }
+    
+    // Written out by the caller; don't keep it in the persistence context. Samples decoded
+    // from chunks were never in it
+    private void pass(Telemetry telemetry, Consumer<Telemetry> consumer) {
+        consumer.accept(telemetry);
+        if (telemetry.getId() != null) {
+            entityManager.detach(telemetry);
+        }
+    }
+    
+    private static LocalDateTime earliest(LocalDateTime a, LocalDateTime b) {
+        return a == null ? b : b == null || a.isBefore(b) ? a : b;
+    }
+    
+    private static LocalDateTime latest(LocalDateTime a, LocalDateTime b) {
+        return a == null ? b : b == null || a.isAfter(b) ? a : b;
+    }
+    
+    @Override
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("type", "database");
+        status.put("chunks", chunksEnabled);
+        return status;
+    }
+}
@@ -4,10 +4,12 @@ import com.wind.turbinemonitor.model.HealthAlert;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -39,5 +41,8 @@ public interface HealthAlertRepository extends JpaRepository<HealthAlert, Long>
     
     @Query("SELECT ha FROM HealthAlert ha WHERE (:turbineId IS NULL OR ha.turbine.id = :turbineId) AND (:region IS NULL OR ha.turbine.farm.region = :region) AND (:farm IS NULL OR ha.turbine.farm.name = :farm) AND ha.status = 'ACTIVE' ORDER BY ha.alertTime DESC")
     Page<HealthAlert> findActiveAlertsByFilters(@Param("turbineId") Long turbineId, @Param("region") String region, @Param("farm") String farm, Pageable pageable);
+    
+    @Modifying
+    @Query("DELETE FROM HealthAlert ha WHERE ha.turbine.id IN :turbineIds AND ha.aggregateHour = :hourStart")
+    int deleteDerivedFromHour(@Param("turbineIds") Collection<Long> turbineIds, @Param("hourStart") LocalDateTime hourStart);
 }
-
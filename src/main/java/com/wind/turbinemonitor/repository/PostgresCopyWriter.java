@@ -0,0 +1,134 @@
+package com.wind.turbinemonitor.repository;
+
+import com.wind.turbinemonitor.ingest.TelemetryBatch;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Repository;
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Streams telemetry into PostgreSQL over the COPY protocol in CSV form. Rows are encoded
+ * into a small reusable buffer and pushed to the server as they are produced, so a
+ * backfill of any size costs one round trip per buffer rather than one per batch.
+ *
+ * COPY cannot skip conflicting rows, so it loads a session-local staging table and a
+ * single INSERT ... SELECT ... ON CONFLICT DO NOTHING moves the rows into telemetry,
+ * leaving out samples already stored for the same (turbine_id, timestamp). Its RETURNING
+ * rows tell which samples of the batch were inserted.
+ *
+ * Uses the transaction-bound connection, so a COPY rolls back with the caller.
+ */
+@Repository
+public class PostgresCopyWriter {
+    private static final String COLUMNS =
+        "turbine_id, timestamp, wind_speed, power_output, rotor_speed, temperature, vibration, efficiency, is_aggregated";
+    
+    private static final String CREATE_STAGE =
+        "CREATE TEMP TABLE IF NOT EXISTS telemetry_stage (turbine_id bigint, timestamp timestamp(6), " +
+        "wind_speed float8, power_output float8, rotor_speed float8, temperature float8, vibration float8, " +
+        "efficiency float8, is_aggregated boolean)";
+    
+    private static final String TRUNCATE_STAGE = "TRUNCATE telemetry_stage";
+    
+    private static final String COPY_STAGE =
+        "COPY telemetry_stage (" + COLUMNS + ") FROM STDIN WITH (FORMAT csv)";
+    
+    private static final String MERGE_STAGE =
+        "INSERT INTO telemetry (" + COLUMNS + ") SELECT " + COLUMNS + " FROM telemetry_stage " +
+        "ON CONFLICT (turbine_id, timestamp) DO NOTHING RETURNING turbine_id, timestamp";
+    
+    private static final int FLUSH_THRESHOLD = 64 * 1024;
+    
+    @Autowired
+    private DataSource dataSource;
+    
+    /**
+     * Returns the indexes of the rows inserted, which excludes duplicates. Of several rows
+     * with the same (turbine_id, timestamp) in the batch only the first can be reported.
+     */
+    public BitSet copyTelemetry(TelemetryBatch batch) {
+        if (batch.isEmpty()) {
+            return new BitSet();
+        }
+        
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        CopyIn copyIn = null;
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(CREATE_STAGE);
+            statement.execute(TRUNCATE_STAGE);
+            copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_STAGE);
+            StringBuilder buffer = new StringBuilder(FLUSH_THRESHOLD + 256);
+            
+            for (int i = 0; i < batch.size(); i++) {
+                buffer.append(batch.turbineId(i)).append(',')
+                      .append(batch.timestampAsDateTime(i)).append(',')
+                      .append(batch.windSpeed(i)).append(',')
+                      .append(batch.powerOutput(i)).append(',')
+                      .append(batch.rotorSpeed(i)).append(',')
+                      .append(batch.temperature(i)).append(',')
+                      .append(batch.vibration(i)).append(',')
+                      .append(batch.efficiency(i)).append(",f\n");
+                
+                if (buffer.length() >= FLUSH_THRESHOLD) {
+                    write(copyIn, buffer);
+                }
+            }
+            write(copyIn, buffer);
+            copyIn.endCopy();
+            return insertedRows(statement, batch);
+        } catch (SQLException e) {
+            cancelQuietly(copyIn);
+            throw new RuntimeException("COPY into telemetry failed: " + e.getMessage(), e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+    
+    private static BitSet insertedRows(Statement statement, TelemetryBatch batch) throws SQLException {
+        Map<TelemetryBatchWriter.SampleKey, Integer> rows = new HashMap<>(batch.size() * 2);
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            rows.put(new TelemetryBatchWriter.SampleKey(batch.turbineId(i), batch.timestamp(i)), i);
+        }
+        BitSet inserted = new BitSet(batch.size());
+        try (ResultSet rs = statement.executeQuery(MERGE_STAGE)) {
+            while (rs.next()) {
+                long timestamp = TelemetryBatch.toMicros(rs.getObject(2, LocalDateTime.class));
+                Integer row = rows.get(new TelemetryBatchWriter.SampleKey(rs.getLong(1), timestamp));
+                if (row != null) {
+                    inserted.set(row);
+                }
+            }
+        }
+        return inserted;
+    }
+    
+    private static void write(CopyIn copyIn, StringBuilder buffer) throws SQLException {
+        if (buffer.length() == 0) {
+            return;
+        }
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.US_ASCII);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        buffer.setLength(0);
+    }
+    
+    private static void cancelQuietly(CopyIn copyIn) {
+        if (copyIn != null && copyIn.isActive()) {
+            try {
+                copyIn.cancelCopy();
+            } catch (SQLException ignored) {
+                // Connection is rolled back by the transaction manager anyway
+            }
+        }
+    }
+}
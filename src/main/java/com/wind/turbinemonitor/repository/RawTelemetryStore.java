@@ -0,0 +1,52 @@
+package com.wind.turbinemonitor.repository;
+
+import com.wind.turbinemonitor.ingest.TelemetryBatch;
+import com.wind.turbinemonitor.model.Telemetry;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Backend that raw telemetry history is read from, selected with telemetry.raw-store.type:
+ * "database" (default, DatabaseRawTelemetryStore) or "segments" (SegmentRawTelemetryStore).
+ *
+ * Every sample is still written to the telemetry table, which aggregation and the
+ * duplicate checks depend on; append() is called for each batch written there so a store
+ * that keeps its own copy can follow along.
+ */
+public interface RawTelemetryStore {
+    /**
+     * Called with samples that were just inserted into telemetry. A store that copies them
+     * must not expose them before the surrounding transaction commits, and must copy the
+     * batch, which callers reuse.
+     */
+    void append(TelemetryBatch batch);
+    
+    List<Telemetry> findByTurbineId(Long turbineId);
+    
+    /**
+     * Samples with startTime <= timestamp <= endTime, in timestamp order.
+     */
+    List<Telemetry> findByTurbineAndDateRange(Long turbineId, LocalDateTime startTime, LocalDateTime endTime);
+    
+    /**
+     * Passes samples with startTime <= timestamp <= endTime (null for no bound) to consumer
+     * in timestamp order, at most limit of them, while they are read: memory use does not
+     * grow with the range. Call inside a transaction.
+     */
+    void forEach(Long turbineId, LocalDateTime startTime, LocalDateTime endTime, int limit, Consumer<Telemetry> consumer);
+    
+    /**
+     * Whether forEach over the same range would pass more than rows samples without a
+     * limit. This reads up to rows + 1 samples; a store that can skip them should override
+     * it. Call inside a transaction.
+     */
+    default boolean hasMoreThan(Long turbineId, LocalDateTime startTime, LocalDateTime endTime, int rows) {
+        int[] passed = new int[1];
+        forEach(turbineId, startTime, endTime, rows + 1, telemetry -> passed[0]++);
+        return passed[0] > rows;
+    }
+    
+    Map<String, Object> getStatus();
+}
@@ -0,0 +1,313 @@
+package com.wind.turbinemonitor.repository;
+
+import com.wind.turbinemonitor.ingest.TelemetryBatch;
+import com.wind.turbinemonitor.ingest.TelemetrySegment;
+import com.wind.turbinemonitor.model.Telemetry;
+import com.wind.turbinemonitor.model.Turbine;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Raw store on local disk: one TelemetrySegment per turbine and day under
+ * telemetry.raw-store.segments.dir, as {turbineId}/{yyyy-MM-dd}.seg. A range read maps the
+ * day files it spans and scans only the blocks whose time range overlaps, so reading a
+ * turbine's month is a handful of sequential scans instead of B-tree lookups.
+ *
+ * Samples are appended after the database transaction that inserted them commits. The
+ * files only hold what was written while this store was active, and are not fsynced, so
+ * the last seconds before a crash may be missing; the telemetry table stays complete.
+ * Retries and WAL replays can append a sample twice, so reads drop repeated timestamps.
+ *
+ * Decoded samples have no id and are not marked aggregated.
+ */
+@Repository
+@ConditionalOnProperty(name = "telemetry.raw-store.type", havingValue = "segments")
+public class SegmentRawTelemetryStore implements RawTelemetryStore {
+    private static final String SUFFIX = ".seg";
+    private static final long MICROS_PER_DAY = 86_400_000_000L;
+    
+    @Autowired
+    private TurbineRepository turbineRepository;
+    
+    @Value("${telemetry.raw-store.segments.dir:./data/segments}")
+    private String directory;
+    
+    @Value("${telemetry.raw-store.segments.block-samples:1024}")
+    private int blockSamples;
+    
+    @Value("${telemetry.raw-store.segments.max-open:4096}")
+    private int maxOpen;
+    
+    @Value("${telemetry.raw-store.segments.retention-days:0}")
+    private int retentionDays;
+    
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong appendErrors = new AtomicLong();
+    
+    // Least recently used segments are closed beyond max-open, to stay within file handle limits
+    private final Map<String, TelemetrySegment> open = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, TelemetrySegment> eldest) {
+            if (size() <= maxOpen) {
+                return false;
+            }
+            closeQuietly(eldest.getValue());
+            return true;
+        }
+    };
+    
+    @Override
+    public void append(TelemetryBatch batch) {
+        // Group by turbine and day first; this also copies the caller's batch
+        Map<String, TelemetryBatch> groups = new HashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            long turbineId = batch.turbineId(i);
+            String key = key(turbineId, Math.floorDiv(batch.timestamp(i), MICROS_PER_DAY));
+            groups.computeIfAbsent(key, k -> new TelemetryBatch(64)).add(turbineId, batch.timestamp(i),
+                batch.windSpeed(i), batch.powerOutput(i), batch.rotorSpeed(i), batch.temperature(i),
+                batch.vibration(i), batch.efficiency(i));
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    write(groups);
+                }
+            });
+        } else {
+            write(groups);
+        }
+    }
+    
+    @Override
+    public List<Telemetry> findByTurbineId(Long turbineId) {
+        TelemetryBatch samples = new TelemetryBatch(1024);
+        for (long day : days(turbineId, Long.MIN_VALUE, Long.MAX_VALUE)) {
+            readDay(turbineId, day, Long.MIN_VALUE, Long.MAX_VALUE, samples);
+        }
+        return toTelemetry(turbineId, samples);
+    }
+    
+    @Override
+    public List<Telemetry> findByTurbineAndDateRange(Long turbineId, LocalDateTime startTime, LocalDateTime endTime) {
+        long fromMicros = TelemetryBatch.toMicros(startTime);
+        long toMicros = TelemetryBatch.toMicros(endTime);
+        TelemetryBatch samples = new TelemetryBatch(1024);
+        for (long day : days(turbineId, fromMicros, toMicros)) {
+            readDay(turbineId, day, fromMicros, toMicros, samples);
+        }
+        return toTelemetry(turbineId, samples);
+    }
+    
+    // Reads one day file at a time, so only a day of samples is held
+    @Override
+    public void forEach(Long turbineId, LocalDateTime startTime, LocalDateTime endTime, int limit, Consumer<Telemetry> consumer) {
+        long fromMicros = startTime != null ? TelemetryBatch.toMicros(startTime) : Long.MIN_VALUE;
+        long toMicros = endTime != null ? TelemetryBatch.toMicros(endTime) : Long.MAX_VALUE;
+        TelemetryBatch samples = new TelemetryBatch(1024);
+        int passed = 0;
+        for (long day : days(turbineId, fromMicros, toMicros)) {
+            samples.clear();
+            readDay(turbineId, day, fromMicros, toMicros, samples);
+            for (Telemetry telemetry : toTelemetry(turbineId, samples)) {
+                if (passed == limit) {
+                    return;
+                }
+                consumer.accept(telemetry);
+                passed++;
+            }
+        }
+    }
+    
+    @Override
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("type", "segments");
+        status.put("dir", Path.of(directory).toAbsolutePath().toString());
+        synchronized (open) {
+            status.put("openSegments", open.size());
+        }
+        status.put("appendedSamples", appended.get());
+        status.put("appendErrors", appendErrors.get());
+        status.put("retentionDays", retentionDays);
+        return status;
+    }
+    
+    @Scheduled(cron = "0 10 0 * * *")
+    public void deleteExpiredSegments() {
+        if (retentionDays <= 0 || !Files.isDirectory(Path.of(directory))) {
+            return;
+        }
+        LocalDate cutoff = LocalDate.now().minusDays(retentionDays);
+        int deleted = 0;
+        try (Stream<Path> files = Files.walk(Path.of(directory), 2)) {
+            for (Path file : files.filter(f -> f.getFileName().toString().endsWith(SUFFIX)).toList()) {
+                String name = file.getFileName().toString();
+                if (LocalDate.parse(name.substring(0, name.length() - SUFFIX.length())).isBefore(cutoff)) {
+                    synchronized (open) {
+                        closeQuietly(open.remove(file.getParent().getFileName() + "/" + name.substring(0, name.length() - SUFFIX.length())));
+                    }
+                    Files.deleteIfExists(file);
+                    deleted++;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error deleting expired telemetry segments: " + e.getMessage());
+        }
+        if (deleted > 0) {
+            System.out.println("Deleted " + deleted + " telemetry segments older than " + cutoff);
+        }
+    }
+    
+    @PreDestroy
+    public void close() {
+        synchronized (open) {
+            open.values().forEach(SegmentRawTelemetryStore::closeQuietly);
+            open.clear();
+        }
+    }
+    
+    private void write(Map<String, TelemetryBatch> groups) {
+        for (Map.Entry<String, TelemetryBatch> group : groups.entrySet()) {
+            TelemetryBatch samples = group.getValue();
+            try {
+                while (true) {
+                    TelemetrySegment segment = segment(group.getKey(), true);
+                    try {
+                        segment.append(samples, 0, samples.size());
+                        break;
+                    } catch (ClosedChannelException e) {
+                        // Evicted by another thread in between; open it again
+                    }
+                }
+                appended.addAndGet(samples.size());
+            } catch (IOException e) {
+                appendErrors.incrementAndGet();
+                System.err.println("Error appending telemetry segment " + group.getKey() + ": " + e.getMessage());
+            }
+        }
+    }
+    
+    // Days that have a file for the turbine and overlap [fromMicros, toMicros], in order; a range
+    // spanning years of mostly empty days costs one directory listing, not a lookup per day
+    private List<Long> days(long turbineId, long fromMicros, long toMicros) {
+        long fromDay = Math.floorDiv(fromMicros, MICROS_PER_DAY);
+        long toDay = Math.floorDiv(toMicros, MICROS_PER_DAY);
+        List<Long> days = new ArrayList<>();
+        Path turbineDir = Path.of(directory, String.valueOf(turbineId));
+        if (Files.isDirectory(turbineDir)) {
+            try (Stream<Path> files = Files.list(turbineDir)) {
+                files.map(f -> f.getFileName().toString())
+                    .filter(name -> name.endsWith(SUFFIX))
+                    .map(name -> LocalDate.parse(name.substring(0, name.length() - SUFFIX.length())).toEpochDay())
+                    .filter(day -> day >= fromDay && day <= toDay)
+                    .forEach(days::add);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        days.sort(Comparator.naturalOrder());
+        return days;
+    }
+    
+    private void readDay(long turbineId, long day, long fromMicros, long toMicros, TelemetryBatch out) {
+        String key = key(turbineId, day);
+        try {
+            while (true) {
+                TelemetrySegment segment = segment(key, false);
+                if (segment == null) {
+                    return;
+                }
+                try {
+                    segment.read(turbineId, fromMicros, toMicros, out);
+                    return;
+                } catch (ClosedChannelException e) {
+                    // Evicted by another thread in between; open it again
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading telemetry segment " + key, e);
+        }
+    }
+    
+    private TelemetrySegment segment(String key, boolean create) throws IOException {
+        synchronized (open) {
+            TelemetrySegment segment = open.get(key);
+            if (segment != null) {
+                return segment;
+            }
+            Path file = Path.of(directory, key + SUFFIX);
+            if (!create && !Files.exists(file)) {
+                return null;
+            }
+            segment = TelemetrySegment.open(file, blockSamples);
+            open.put(key, segment);
+            return segment;
+        }
+    }
+    
+    // Samples arrive per day in file order; sort only if some were appended out of order
+    private List<Telemetry> toTelemetry(Long turbineId, TelemetryBatch samples) {
+        int[] order = null;
+        for (int i = 1; i < samples.size() && order == null; i++) {
+            if (samples.timestamp(i) < samples.timestamp(i - 1)) {
+                order = IntStream.range(0, samples.size()).boxed()
+                    .sorted(Comparator.comparingLong(samples::timestamp))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            }
+        }
+        
+        Turbine turbine = turbineRepository.getReferenceById(turbineId);
+        List<Telemetry> result = new ArrayList<>(samples.size());
+        for (int k = 0; k < samples.size(); k++) {
+            int i = order == null ? k : order[k];
+            int previous = k == 0 ? -1 : (order == null ? k - 1 : order[k - 1]);
+            if (previous >= 0 && samples.timestamp(i) == samples.timestamp(previous)) {
+                continue;
+            }
+            result.add(new Telemetry(turbine, samples.timestampAsDateTime(i), samples.windSpeed(i),
+                samples.powerOutput(i), samples.rotorSpeed(i), samples.temperature(i), samples.vibration(i),
+                samples.efficiency(i)));
+        }
+        return result;
+    }
+    
+    private static String key(long turbineId, long epochDay) {
+        return turbineId + "/" + LocalDate.ofEpochDay(epochDay);
+    }
+    
+    private static void closeQuietly(TelemetrySegment segment) {
+        if (segment == null) {
+            return;
+        }
+        try {
+            segment.close();
+        } catch (IOException ignored) {
+            // Closing anyway
+        }
+    }
+}
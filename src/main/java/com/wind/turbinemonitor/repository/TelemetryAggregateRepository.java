@@ -1,18 +1,29 @@
 package com.wind.turbinemonitor.repository;
 
+import com.wind.turbinemonitor.model.RollupResolution;
 import com.wind.turbinemonitor.model.TelemetryAggregate;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface TelemetryAggregateRepository extends JpaRepository<TelemetryAggregate, Long> {
     List<TelemetryAggregate> findByTurbineId(Long turbineId);
     
+    @Query("SELECT ta.turbine.id, MAX(ta.hourStart) FROM TelemetryAggregate ta WHERE NOT EXISTS " +
+           "(SELECT w FROM AggregationWatermark w WHERE w.turbineId = ta.turbine.id) GROUP BY ta.turbine.id")
+    List<Object[]> findLatestHourWithoutWatermark();
+    
     @Query("SELECT ta FROM TelemetryAggregate ta WHERE ta.turbine.id = :turbineId AND ta.hourStart >= :startTime AND ta.hourStart <= :endTime ORDER BY ta.hourStart")
     List<TelemetryAggregate> findByTurbineAndDateRange(
         @Param("turbineId") Long turbineId,
@@ -26,8 +37,61 @@ public interface TelemetryAggregateRepository extends JpaRepository<TelemetryAgg
         @Param("endTime") LocalDateTime endTime
     );
     
+    // Cursor read of findByDateRangeAndFilters, continuing after (afterTurbineId, afterHour)
+    // in its order; call inside a transaction and close the stream
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT ta FROM TelemetryAggregate ta JOIN FETCH ta.turbine tu JOIN FETCH tu.farm f " +
+           "WHERE ta.hourStart >= :startTime AND ta.hourStart <= :endTime " +
+           "AND (:farmName IS NULL OR f.name = :farmName) " +
+           "AND (:region IS NULL OR f.region = :region) " +
+           "AND tu.id >= :afterTurbineId AND (tu.id > :afterTurbineId OR ta.hourStart > :afterHour) " +
+           "ORDER BY tu.id, ta.hourStart")
+    Stream<TelemetryAggregate> streamByDateRangeAndFilters(
+        @Param("startTime") LocalDateTime startTime,
+        @Param("endTime") LocalDateTime endTime,
+        @Param("farmName") String farmName,
+        @Param("region") String region,
+        @Param("afterTurbineId") Long afterTurbineId,
+        @Param("afterHour") LocalDateTime afterHour
+    );
+    
+    // Ids in streamByDateRangeAndFilters order from the start of the range; with
+    // PageRequest.of(n, 1), the row after the first n, if there is one
+    @Query("SELECT ta.id FROM TelemetryAggregate ta JOIN ta.turbine tu JOIN tu.farm f " +
+           "WHERE ta.hourStart >= :startTime AND ta.hourStart <= :endTime " +
+           "AND (:farmName IS NULL OR f.name = :farmName) " +
+           "AND (:region IS NULL OR f.region = :region) " +
+           "ORDER BY tu.id, ta.hourStart")
+    List<Long> findIdsByDateRangeAndFilters(
+        @Param("startTime") LocalDateTime startTime,
+        @Param("endTime") LocalDateTime endTime,
+        @Param("farmName") String farmName,
+        @Param("region") String region,
+        Pageable page
+    );
+    
     Optional<TelemetryAggregate> findByTurbineIdAndHourStart(Long turbineId, LocalDateTime hourStart);
     
+    @Query("SELECT ta FROM TelemetryAggregate ta WHERE ta.hourStart = :hourStart AND ta.turbine.id IN :turbineIds AND ta.id > :afterId")
+    List<TelemetryAggregate> findCreatedForHour(
+        @Param("hourStart") LocalDateTime hourStart,
+        @Param("turbineIds") List<Long> turbineIds,
+        @Param("afterId") long afterId
+    );
+    
+    @Query("SELECT ta FROM TelemetryAggregate ta WHERE ta.hourStart = :hourStart AND ta.turbine.id IN :turbineIds")
+    List<TelemetryAggregate> findForHour(
+        @Param("hourStart") LocalDateTime hourStart,
+        @Param("turbineIds") List<Long> turbineIds
+    );
+    
+    @Modifying
+    @Query("DELETE FROM TelemetryAggregate ta WHERE ta.turbine.id = :turbineId AND ta.hourStart = :hourStart")
+    int deleteByTurbineAndHour(@Param("turbineId") Long turbineId, @Param("hourStart") LocalDateTime hourStart);
+    
     @Query("SELECT ta FROM TelemetryAggregate ta WHERE ta.hasAnomaly = true AND ta.hourStart >= :startTime ORDER BY ta.hourStart DESC")
     List<TelemetryAggregate> findAnomaliesSince(@Param("startTime") LocalDateTime startTime);
     
@@ -41,5 +105,75 @@ public interface TelemetryAggregateRepository extends JpaRepository<TelemetryAgg
         @Param("farmName") String farmName,
         @Param("region") String region
     );
+    
+    // Same columns as TelemetryRollupRepository.findChannelStats, over hourly aggregates
+    @Query("SELECT ta.turbine.id, ta.turbine.farm.name, ta.hourStart, ta.channelStats FROM TelemetryAggregate ta " +
+           "WHERE ta.hourStart >= :startTime AND ta.hourStart < :endTime AND ta.channelStats IS NOT NULL " +
+           "AND (:turbineId IS NULL OR ta.turbine.id = :turbineId) " +
+           "AND (:farmName IS NULL OR ta.turbine.farm.name = :farmName) " +
+           "AND (:region IS NULL OR ta.turbine.farm.region = :region)")
+    List<Object[]> findChannelStats(
+        @Param("startTime") LocalDateTime startTime,
+        @Param("endTime") LocalDateTime endTime,
+        @Param("turbineId") Long turbineId,
+        @Param("farmName") String farmName,
+        @Param("region") String region
+    );
+    
+    // The day's hours of the turbines whose DAY bucket has no merged channel stats yet
+    @Query("SELECT ta.turbine.id, ta.turbine.farm.name, ta.hourStart, ta.channelStats FROM TelemetryAggregate ta " +
+           "WHERE ta.hourStart >= :day AND ta.hourStart < :nextDay AND ta.channelStats IS NOT NULL " +
+           "AND (:turbineId IS NULL OR ta.turbine.id = :turbineId) " +
+           "AND (:farmName IS NULL OR ta.turbine.farm.name = :farmName) " +
+           "AND (:region IS NULL OR ta.turbine.farm.region = :region) " +
+           "AND NOT EXISTS (SELECT r.id FROM TelemetryRollup r WHERE r.turbine = ta.turbine " +
+           "AND r.resolution = :resolution AND r.bucketStart = :day AND r.channelStats IS NOT NULL)")
+    List<Object[]> findChannelStatsWithoutDayStats(
+        @Param("resolution") RollupResolution resolution,
+        @Param("day") LocalDateTime day,
+        @Param("nextDay") LocalDateTime nextDay,
+        @Param("turbineId") Long turbineId,
+        @Param("farmName") String farmName,
+        @Param("region") String region
+    );
+    
+    // Same columns as TelemetryRollupRepository.sumForTurbine, over hourly aggregates
+    @Query("SELECT SUM(ta.totalGeneration), COUNT(ta), SUM(ta.avgEfficiency), SUM(ta.avgPowerOutput) " +
+           "FROM TelemetryAggregate ta WHERE ta.turbine.id = :turbineId " +
+           "AND ta.hourStart >= :startTime AND ta.hourStart < :endTime")
+    List<Object[]> sumForTurbine(
+        @Param("turbineId") Long turbineId,
+        @Param("startTime") LocalDateTime startTime,
+        @Param("endTime") LocalDateTime endTime
+    );
+    
+    // day, farm name, totalGeneration, hour count, sum of hourly efficiency, sum of hourly power output
+    @Query("SELECT cast(ta.hourStart as LocalDate), f.name, SUM(ta.totalGeneration), COUNT(ta), " +
+           "SUM(ta.avgEfficiency), SUM(ta.avgPowerOutput) " +
+           "FROM TelemetryAggregate ta JOIN ta.turbine t JOIN t.farm f " +
+           "WHERE ta.hourStart >= :startTime AND ta.hourStart < :endTime " +
+           "AND (:farmName IS NULL OR f.name = :farmName) " +
+           "AND (:region IS NULL OR f.region = :region) " +
+           "GROUP BY cast(ta.hourStart as LocalDate), f.name")
+    List<Object[]> sumByFarm(
+        @Param("startTime") LocalDateTime startTime,
+        @Param("endTime") LocalDateTime endTime,
+        @Param("farmName") String farmName,
+        @Param("region") String region
+    );
+    
+    // Same as sumByFarm over all matching farms: day, totalGeneration, hour count, sums
+    @Query("SELECT cast(ta.hourStart as LocalDate), SUM(ta.totalGeneration), COUNT(ta), " +
+           "SUM(ta.avgEfficiency), SUM(ta.avgPowerOutput) " +
+           "FROM TelemetryAggregate ta JOIN ta.turbine t JOIN t.farm f " +
+           "WHERE ta.hourStart >= :startTime AND ta.hourStart < :endTime " +
+           "AND (:farmName IS NULL OR f.name = :farmName) " +
+           "AND (:region IS NULL OR f.region = :region) " +
+           "GROUP BY cast(ta.hourStart as LocalDate)")
+    List<Object[]> sumByDay(
+        @Param("startTime") LocalDateTime startTime,
+        @Param("endTime") LocalDateTime endTime,
+        @Param("farmName") String farmName,
+        @Param("region") String region
+    );
 }
-
@@ -0,0 +1,370 @@
+package com.wind.turbinemonitor.repository;
+
+import com.wind.turbinemonitor.ingest.TelemetryBatch;
+import com.wind.turbinemonitor.model.HealthAlert;
+import com.wind.turbinemonitor.model.Telemetry;
+import com.wind.turbinemonitor.model.TelemetryAggregate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * High-throughput write path for telemetry, aggregates and alerts.
+ *
+ * The entities use IDENTITY keys, which makes Hibernate insert one row per statement
+ * regardless of hibernate.jdbc.batch_size. These inserts go through JDBC batches instead
+ * and leave id assignment to the database: with rewriteBatchedStatements=true the MySQL
+ * driver sends each batch as a single multi-row INSERT, and InnoDB reserves the whole
+ * block of auto-increment ids for that statement at once. Telemetry is sent as explicit
+ * multi-row INSERTs of the same shape.
+ *
+ * When the datasource is PostgreSQL, telemetry inserts are streamed with COPY instead
+ * (see PostgresCopyWriter); the choice is made once from the JDBC URL.
+ *
+ * Telemetry inserts skip rows that already exist for the same (turbine_id, timestamp) and
+ * report which rows were actually inserted.
+ *
+ * Also reads and deletes the raw rows that chunk compaction moves into telemetry_chunks.
+ *
+ * Runs on the caller's connection, so writes join the surrounding JPA transaction.
+ */
+// The upserts below rely on the unique keys SchemaMigration adds to existing databases
+@Repository
+@DependsOn("schemaMigration")
+public class TelemetryBatchWriter {
+    // Followed by one parameter group per row
+    private static final String INSERT_TELEMETRY =
+        "INSERT INTO telemetry (turbine_id, timestamp, wind_speed, power_output, rotor_speed, " +
+        "temperature, vibration, efficiency, is_aggregated) VALUES ";
+    
+    // Rows that hit uk_telemetry_turbine_timestamp are skipped, which makes retries and WAL replays idempotent.
+    // MySQL gets the same from insertSkippingStored: INSERT IGNORE would also swallow unrelated errors, and
+    // ON DUPLICATE KEY UPDATE reports a stored row as affected under the driver's default found-rows counting.
+    private static final String ON_CONFLICT_POSTGRES =
+        " ON CONFLICT (turbine_id, timestamp) DO NOTHING RETURNING turbine_id, timestamp";
+    
+    private static final String INSERT_AGGREGATE =
+        "INSERT INTO telemetry_aggregates (turbine_id, hour_start, avg_wind_speed, avg_power_output, " +
+        "avg_rotor_speed, avg_temperature, avg_vibration, avg_efficiency, total_generation, " +
+        "data_point_count, has_anomaly, channel_stats) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    
+    private static final String[] AVERAGED = {
+        "avg_wind_speed", "avg_power_output", "avg_rotor_speed", "avg_temperature", "avg_vibration", "avg_efficiency"
+    };
+    
+    // MySQL applies the assignments in order, each seeing the ones before it, so data_point_count comes last.
+    // The inserted row is referred to through a row alias (MySQL 8.0.19+), which replaces the deprecated VALUES(col).
+    private static final String MERGE_AGGREGATE_MYSQL = INSERT_AGGREGATE + " AS new ON DUPLICATE KEY UPDATE " +
+        mergeAssignments("(telemetry_aggregates.%1$s * telemetry_aggregates.data_point_count + " +
+                         "new.%1$s * new.data_point_count) / " +
+                         "(telemetry_aggregates.data_point_count + new.data_point_count)") +
+        ", total_generation = telemetry_aggregates.total_generation + new.total_generation" +
+        ", data_point_count = telemetry_aggregates.data_point_count + new.data_point_count";
+    
+    private static final String MERGE_AGGREGATE_POSTGRES = INSERT_AGGREGATE +
+        " ON CONFLICT (turbine_id, hour_start) DO UPDATE SET " +
+        mergeAssignments("(telemetry_aggregates.%1$s * telemetry_aggregates.data_point_count + " +
+                         "EXCLUDED.%1$s * EXCLUDED.data_point_count) / " +
+                         "(telemetry_aggregates.data_point_count + EXCLUDED.data_point_count)") +
+        ", total_generation = telemetry_aggregates.total_generation + EXCLUDED.total_generation" +
+        ", data_point_count = telemetry_aggregates.data_point_count + EXCLUDED.data_point_count";
+    
+    private static final String INSERT_ALERT =
+        "INSERT INTO health_alerts (turbine_id, alert_time, alert_type, severity, message, status, resolved_at, " +
+        "aggregate_hour) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    
+    private static final String SELECT_TELEMETRY =
+        "SELECT id, timestamp, wind_speed, power_output, rotor_speed, temperature, vibration, efficiency " +
+        "FROM telemetry WHERE turbine_id = ? AND timestamp >= ? AND timestamp < ? ORDER BY timestamp";
+    
+    private static final String ADVANCE_WATERMARK_MYSQL =
+        "INSERT INTO aggregation_watermarks (turbine_id, aggregated_until, updated_at) VALUES (?, ?, ?) AS new " +
+        "ON DUPLICATE KEY UPDATE " +
+        "aggregated_until = GREATEST(aggregation_watermarks.aggregated_until, new.aggregated_until), " +
+        "updated_at = new.updated_at";
+    
+    private static final String ADVANCE_WATERMARK_POSTGRES =
+        "INSERT INTO aggregation_watermarks (turbine_id, aggregated_until, updated_at) VALUES (?, ?, ?) " +
+        "ON CONFLICT (turbine_id) DO UPDATE SET " +
+        "aggregated_until = GREATEST(aggregation_watermarks.aggregated_until, EXCLUDED.aggregated_until), " +
+        "updated_at = EXCLUDED.updated_at";
+    
+    private static final String SELECT_STORED_KEYS =
+        "SELECT turbine_id, timestamp FROM telemetry WHERE (turbine_id, timestamp) IN (";
+    
+    private static final String MAX_AGGREGATE_ID =
+        "SELECT COALESCE(MAX(id), 0) FROM telemetry_aggregates";
+    
+    private static final String DELETE_TELEMETRY =
+        "DELETE FROM telemetry WHERE id = ?";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private PostgresCopyWriter copyWriter;
+    
+    @Value("${telemetry.jdbc.batch-size:500}")
+    private int batchSize;
+    
+    @Value("${spring.datasource.url:}")
+    private String datasourceUrl;
+    
+    @Value("${telemetry.jdbc.postgres-copy:true}")
+    private boolean postgresCopyEnabled;
+    
+    public boolean isPostgresCopyMode() {
+        return postgresCopyEnabled && isPostgres();
+    }
+    
+    private boolean isPostgres() {
+        return datasourceUrl.startsWith("jdbc:postgresql:");
+    }
+    
+    private static String mergeAssignments(String expression) {
+        List<String> assignments = new ArrayList<>();
+        for (String column : AVERAGED) {
+            assignments.add(column + " = " + expression.formatted(column));
+        }
+        return String.join(", ", assignments);
+    }
+    
+    public int insertTelemetry(List<Telemetry> telemetryList) {
+        if (telemetryList.isEmpty()) {
+            return 0;
+        }
+        return insertTelemetry(TelemetryBatch.from(telemetryList)).cardinality();
+    }
+    
+    /**
+     * Inserts the batch and returns the indexes of the rows that were actually inserted.
+     * Rows already stored, and repeats of a (turbine, timestamp) earlier in the same batch,
+     * are left out of the result.
+     *
+     * Each chunk goes out as one multi-row INSERT, and the result comes from that statement.
+     * On PostgreSQL, ON CONFLICT DO NOTHING RETURNING lists the rows it inserted. MySQL has no
+     * RETURNING, so the chunk is sent as a plain INSERT, which is all or nothing: if it hits
+     * a stored sample, InnoDB rolls back just that statement, the chunk's stored keys are
+     * read with a locking read (which sees the latest committed rows, not the transaction's
+     * snapshot) and the rest is sent again. A sample inserted by a concurrent transaction
+     * makes this one wait for it and then count as stored, so it is reported only once.
+     */
+    public BitSet insertTelemetry(TelemetryBatch batch) {
+        if (batch.isEmpty()) {
+            return new BitSet();
+        }
+        if (isPostgresCopyMode()) {
+            return copyWriter.copyTelemetry(batch);
+        }
+        BitSet inserted = new BitSet(batch.size());
+        Set<SampleKey> seen = new HashSet<>(batch.size() * 2);
+        
+        for (int offset = 0; offset < batch.size(); offset += batchSize) {
+            int end = Math.min(offset + batchSize, batch.size());
+            List<Integer> rows = new ArrayList<>(end - offset);
+            for (int i = offset; i < end; i++) {
+                if (seen.add(new SampleKey(batch.turbineId(i), batch.timestamp(i)))) {
+                    rows.add(i);
+                }
+            }
+            if (isPostgres()) {
+                insertReturning(batch, rows, inserted);
+            } else {
+                insertSkippingStored(batch, rows, inserted);
+            }
+        }
+        return inserted;
+    }
+    
+    private void insertReturning(TelemetryBatch batch, List<Integer> rows, BitSet inserted) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        Map<SampleKey, Integer> index = new HashMap<>(rows.size() * 2);
+        for (int i : rows) {
+            index.put(new SampleKey(batch.turbineId(i), batch.timestamp(i)), i);
+        }
+        jdbcTemplate.query(insertSql(rows.size()) + ON_CONFLICT_POSTGRES, rs -> {
+            Integer row = index.get(new SampleKey(rs.getLong(1), TelemetryBatch.toMicros(rs.getObject(2, LocalDateTime.class))));
+            if (row != null) {
+                inserted.set(row);
+            }
+        }, insertArgs(batch, rows));
+    }
+    
+    private void insertSkippingStored(TelemetryBatch batch, List<Integer> rows, BitSet inserted) {
+        while (!rows.isEmpty()) {
+            try {
+                jdbcTemplate.update(insertSql(rows.size()), insertArgs(batch, rows));
+                rows.forEach(inserted::set);
+                return;
+            } catch (DuplicateKeyException e) {
+                Set<SampleKey> stored = storedKeys(batch, rows);
+                if (!rows.removeIf(i -> stored.contains(new SampleKey(batch.turbineId(i), batch.timestamp(i))))) {
+                    throw e;
+                }
+            }
+        }
+    }
+    
+    private static String insertSql(int rows) {
+        StringBuilder sql = new StringBuilder(INSERT_TELEMETRY.length() + rows * 29);
+        sql.append(INSERT_TELEMETRY);
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "(?, ?, ?, ?, ?, ?, ?, ?, ?)" : ", (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        }
+        return sql.toString();
+    }
+    
+    private static Object[] insertArgs(TelemetryBatch batch, List<Integer> rows) {
+        Object[] args = new Object[rows.size() * 9];
+        int a = 0;
+        for (int i : rows) {
+            args[a++] = batch.turbineId(i);
+            args[a++] = batch.timestampAsDateTime(i);
+            args[a++] = batch.windSpeed(i);
+            args[a++] = batch.powerOutput(i);
+            args[a++] = batch.rotorSpeed(i);
+            args[a++] = batch.temperature(i);
+            args[a++] = batch.vibration(i);
+            args[a++] = batch.efficiency(i);
+            args[a++] = false;
+        }
+        return args;
+    }
+    
+    // Row-value IN over the unique key, resolved with index lookups
+    private Set<SampleKey> storedKeys(TelemetryBatch batch, List<Integer> rows) {
+        StringBuilder sql = new StringBuilder(SELECT_STORED_KEYS);
+        Object[] args = new Object[rows.size() * 2];
+        for (int j = 0; j < rows.size(); j++) {
+            int i = rows.get(j);
+            sql.append(j == 0 ? "(?, ?)" : ", (?, ?)");
+            args[j * 2] = batch.turbineId(i);
+            args[j * 2 + 1] = batch.timestampAsDateTime(i);
+        }
+        sql.append(") FOR SHARE");
+        Set<SampleKey> stored = new HashSet<>();
+        jdbcTemplate.query(sql.toString(), rs -> {
+            stored.add(new SampleKey(rs.getLong(1), TelemetryBatch.toMicros(rs.getObject(2, LocalDateTime.class))));
+        }, args);
+        return stored;
+    }
+    
+    public int insertAggregates(List<TelemetryAggregate> aggregates) {
+        return writeAggregates(INSERT_AGGREGATE, aggregates);
+    }
+    
+    /**
+     * Adds partial aggregates (late samples of a turbine-hour) to the stored ones in the
+     * database: averages are weighted by data_point_count, generation and counts are added,
+     * and has_anomaly and channel_stats are left for the caller. Turbine-hours without a row
+     * get one.
+     */
+    public int mergeAggregates(List<TelemetryAggregate> partials) {
+        return writeAggregates(isPostgres() ? MERGE_AGGREGATE_POSTGRES : MERGE_AGGREGATE_MYSQL, partials);
+    }
+    
+    private int writeAggregates(String sql, List<TelemetryAggregate> aggregates) {
+        if (aggregates.isEmpty()) {
+            return 0;
+        }
+        jdbcTemplate.batchUpdate(sql, aggregates, batchSize, (ps, a) -> {
+            ps.setLong(1, a.getTurbine().getId());
+            ps.setObject(2, a.getHourStart());
+            ps.setDouble(3, a.getAvgWindSpeed());
+            ps.setDouble(4, a.getAvgPowerOutput());
+            ps.setDouble(5, a.getAvgRotorSpeed());
+            ps.setDouble(6, a.getAvgTemperature());
+            ps.setDouble(7, a.getAvgVibration());
+            ps.setDouble(8, a.getAvgEfficiency());
+            ps.setDouble(9, a.getTotalGeneration());
+            ps.setInt(10, a.getDataPointCount());
+            ps.setBoolean(11, Boolean.TRUE.equals(a.getHasAnomaly()));
+            ps.setBytes(12, a.getChannelStats());
+        });
+        return aggregates.size();
+    }
+    
+    public int insertAlerts(List<HealthAlert> alerts) {
+        if (alerts.isEmpty()) {
+            return 0;
+        }
+        jdbcTemplate.batchUpdate(INSERT_ALERT, alerts, batchSize, (ps, a) -> {
+            ps.setLong(1, a.getTurbine().getId());
+            ps.setObject(2, a.getAlertTime());
+            ps.setString(3, a.getAlertType());
+            ps.setString(4, a.getSeverity());
+            ps.setString(5, a.getMessage());
+            ps.setString(6, a.getStatus());
+            if (a.getResolvedAt() != null) {
+                ps.setObject(7, a.getResolvedAt());
+            } else {
+                ps.setNull(7, Types.TIMESTAMP);
+            }
+            if (a.getAggregateHour() != null) {
+                ps.setObject(8, a.getAggregateHour());
+            } else {
+                ps.setNull(8, Types.TIMESTAMP);
+            }
+        });
+        return alerts.size();
+    }
+    
+    /**
+     * Appends the turbine's rows with start <= timestamp < end to out, in timestamp order,
+     * and returns their ids.
+     */
+    public List<Long> loadTelemetry(long turbineId, LocalDateTime start, LocalDateTime end, TelemetryBatch out) {
+        List<Long> ids = new ArrayList<>();
+        jdbcTemplate.query(SELECT_TELEMETRY, rs -> {
+            ids.add(rs.getLong(1));
+            out.add(turbineId, TelemetryBatch.toMicros(rs.getObject(2, LocalDateTime.class)),
+                rs.getDouble(3), rs.getDouble(4), rs.getDouble(5), rs.getDouble(6), rs.getDouble(7), rs.getDouble(8));
+        }, turbineId, start, end);
+        return ids;
+    }
+    
+    public int deleteTelemetry(List<Long> telemetryIds) {
+        if (telemetryIds.isEmpty()) {
+            return 0;
+        }
+        jdbcTemplate.batchUpdate(DELETE_TELEMETRY, telemetryIds, batchSize, (ps, id) -> ps.setLong(1, id));
+        return telemetryIds.size();
+    }
+    
+    /**
+     * Raises each turbine's watermark to until; a watermark never moves back.
+     */
+    public void advanceWatermarks(List<Long> turbineIds, LocalDateTime until) {
+        if (turbineIds.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.batchUpdate(isPostgres() ? ADVANCE_WATERMARK_POSTGRES : ADVANCE_WATERMARK_MYSQL,
+            turbineIds, batchSize, (ps, turbineId) -> {
+                ps.setLong(1, turbineId);
+                ps.setObject(2, until);
+                ps.setObject(3, now);
+            });
+    }
+    
+    public long maxAggregateId() {
+        Long id = jdbcTemplate.queryForObject(MAX_AGGREGATE_ID, Long.class);
+        return id != null ? id : 0;
+    }
+    
+    record SampleKey(long turbineId, long timestamp) {}
+}
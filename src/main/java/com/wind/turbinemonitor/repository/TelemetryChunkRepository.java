@@ -0,0 +1,28 @@
+package com.wind.turbinemonitor.repository;
+
+import com.wind.turbinemonitor.model.TelemetryChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface TelemetryChunkRepository extends JpaRepository<TelemetryChunk, Long> {
+    Optional<TelemetryChunk> findByTurbineIdAndHourStart(Long turbineId, LocalDateTime hourStart);
+    
+    @Query("SELECT c FROM TelemetryChunk c WHERE c.turbine.id = :turbineId AND c.hourStart >= :startHour AND c.hourStart <= :endTime ORDER BY c.hourStart")
+    List<TelemetryChunk> findByTurbineAndHourRange(
+        @Param("turbineId") Long turbineId,
+        @Param("startHour") LocalDateTime startHour,
+        @Param("endTime") LocalDateTime endTime
+    );
+    
+    @Query("SELECT MIN(c.hourStart), MAX(c.hourStart) FROM TelemetryChunk c WHERE c.turbine.id = :turbineId")
+    List<Object[]> findHourRange(@Param("turbineId") Long turbineId);
+    
+    @Query("SELECT COUNT(c), COALESCE(SUM(c.sampleCount), 0), COALESCE(SUM(c.compressedBytes), 0) FROM TelemetryChunk c")
+    List<Object[]> summarize();
+}
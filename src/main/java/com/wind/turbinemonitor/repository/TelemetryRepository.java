@@ -1,36 +1,62 @@
 package com.wind.turbinemonitor.repository;
 
 import com.wind.turbinemonitor.model.Telemetry;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface TelemetryRepository extends JpaRepository<Telemetry, Long> {
     List<Telemetry> findByTurbineId(Long turbineId);
     
-    @Query("SELECT t FROM Telemetry t WHERE t.turbine.id = :turbineId AND t.timestamp >= :startTime AND t.timestamp < :endTime AND t.isAggregated = false ORDER BY t.timestamp")
-    List<Telemetry> findUnaggregatedByTurbineAndTimeRange(
+    @Query("SELECT t FROM Telemetry t WHERE t.turbine.id = :turbineId AND t.timestamp >= :startTime AND t.timestamp < :endTime ORDER BY t.timestamp")
+    List<Telemetry> findByTurbineAndTimeRange(
         @Param("turbineId") Long turbineId,
         @Param("startTime") LocalDateTime startTime,
         @Param("endTime") LocalDateTime endTime
     );
     
-    @Query("SELECT t FROM Telemetry t WHERE t.timestamp >= :startTime AND t.timestamp < :endTime AND t.isAggregated = false ORDER BY t.turbine.id, t.timestamp")
-    List<Telemetry> findUnaggregatedByTimeRange(
+    @Query("SELECT t FROM Telemetry t WHERE t.turbine.id = :turbineId AND t.timestamp >= :startTime AND t.timestamp <= :endTime ORDER BY t.timestamp")
+    List<Telemetry> findByTurbineAndDateRange(
+        @Param("turbineId") Long turbineId,
         @Param("startTime") LocalDateTime startTime,
         @Param("endTime") LocalDateTime endTime
     );
     
-    @Query("SELECT t FROM Telemetry t WHERE t.turbine.id = :turbineId AND t.timestamp >= :startTime AND t.timestamp <= :endTime ORDER BY t.timestamp")
-    List<Telemetry> findByTurbineAndDateRange(
+    // Read through a database cursor: call inside a transaction and close the stream.
+    // Turbine and farm are fetched with each row since the JSON output includes them
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT t FROM Telemetry t JOIN FETCH t.turbine tu JOIN FETCH tu.farm " +
+           "WHERE t.turbine.id = :turbineId AND t.timestamp >= :startTime AND t.timestamp <= :endTime ORDER BY t.timestamp")
+    Stream<Telemetry> streamByTurbineAndDateRange(
         @Param("turbineId") Long turbineId,
         @Param("startTime") LocalDateTime startTime,
         @Param("endTime") LocalDateTime endTime
     );
+    
+    // Ids in streamByTurbineAndDateRange order; with PageRequest.of(n, 1), the row after the first n
+    @Query("SELECT t.id FROM Telemetry t WHERE t.turbine.id = :turbineId AND t.timestamp >= :startTime " +
+           "AND t.timestamp <= :endTime ORDER BY t.timestamp")
+    List<Long> findIdsByTurbineAndDateRange(
+        @Param("turbineId") Long turbineId,
+        @Param("startTime") LocalDateTime startTime,
+        @Param("endTime") LocalDateTime endTime,
+        Pageable page
+    );
+    
+    @Query("SELECT MIN(t.timestamp), MAX(t.timestamp) FROM Telemetry t WHERE t.turbine.id = :turbineId")
+    List<Object[]> findTimeRange(@Param("turbineId") Long turbineId);
 }
 
 
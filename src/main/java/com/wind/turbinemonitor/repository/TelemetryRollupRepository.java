@@ -0,0 +1,68 @@
+package com.wind.turbinemonitor.repository;
+
+import com.wind.turbinemonitor.model.RollupResolution;
+import com.wind.turbinemonitor.model.TelemetryRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface TelemetryRollupRepository extends JpaRepository<TelemetryRollup, Long> {
+    @Query("SELECT r FROM TelemetryRollup r WHERE r.turbine.id = :turbineId AND r.resolution = :resolution " +
+           "AND r.bucketStart >= :startTime AND r.bucketStart < :endTime ORDER BY r.bucketStart")
+    List<TelemetryRollup> findByTurbineAndRange(
+        @Param("turbineId") Long turbineId,
+        @Param("resolution") RollupResolution resolution,
+        @Param("startTime") LocalDateTime startTime,
+        @Param("endTime") LocalDateTime endTime
+    );
+    
+    // totalGeneration, hourCount, sumHourlyEfficiency, sumHourlyPowerOutput
+    @Query("SELECT SUM(r.totalGeneration), SUM(r.hourCount), SUM(r.sumHourlyEfficiency), SUM(r.sumHourlyPowerOutput) " +
+           "FROM TelemetryRollup r WHERE r.turbine.id = :turbineId AND r.resolution = :resolution " +
+           "AND r.bucketStart >= :startTime AND r.bucketStart < :endTime")
+    List<Object[]> sumForTurbine(
+        @Param("turbineId") Long turbineId,
+        @Param("resolution") RollupResolution resolution,
+        @Param("startTime") LocalDateTime startTime,
+        @Param("endTime") LocalDateTime endTime
+    );
+    
+    // turbine id, farm name, bucketStart, channelStats of the buckets whose stats have been merged
+    @Query("SELECT r.turbine.id, r.turbine.farm.name, r.bucketStart, r.channelStats FROM TelemetryRollup r " +
+           "WHERE r.resolution = :resolution AND r.bucketStart >= :startTime AND r.bucketStart < :endTime " +
+           "AND r.channelStats IS NOT NULL " +
+           "AND (:turbineId IS NULL OR r.turbine.id = :turbineId) " +
+           "AND (:farmName IS NULL OR r.turbine.farm.name = :farmName) " +
+           "AND (:region IS NULL OR r.turbine.farm.region = :region)")
+    List<Object[]> findChannelStats(
+        @Param("resolution") RollupResolution resolution,
+        @Param("startTime") LocalDateTime startTime,
+        @Param("endTime") LocalDateTime endTime,
+        @Param("turbineId") Long turbineId,
+        @Param("farmName") String farmName,
+        @Param("region") String region
+    );
+    
+    @Query("SELECT DISTINCT r.bucketStart FROM TelemetryRollup r WHERE r.resolution = :resolution " +
+           "AND r.channelStats IS NULL AND r.bucketStart < :before ORDER BY r.bucketStart")
+    List<LocalDateTime> findBucketsWithoutChannelStats(
+        @Param("resolution") RollupResolution resolution,
+        @Param("before") LocalDateTime before
+    );
+    
+    @Query("SELECT r FROM TelemetryRollup r WHERE r.resolution = :resolution AND r.bucketStart = :bucketStart " +
+           "AND r.channelStats IS NULL")
+    List<TelemetryRollup> findWithoutChannelStats(
+        @Param("resolution") RollupResolution resolution,
+        @Param("bucketStart") LocalDateTime bucketStart
+    );
+    
+    @Query("SELECT r.resolution, COUNT(r) FROM TelemetryRollup r GROUP BY r.resolution")
+    List<Object[]> countByResolution();
+    
+    long countByResolution(RollupResolution resolution);
+}
@@ -0,0 +1,337 @@
+package com.wind.turbinemonitor.repository;
+
+import com.wind.turbinemonitor.model.DailySummary;
+import com.wind.turbinemonitor.model.RollupResolution;
+import com.wind.turbinemonitor.model.TelemetryRollup;
+import com.wind.turbinemonitor.util.ChannelStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JDBC writes for the rollup cascade: minute rollups from raw telemetry, hourly aggregates
+ * from minute rollups, and additive upserts that carry a change in one level into the
+ * levels above it. Bucket truncation is dialect-specific; everything else is plain SQL.
+ *
+ * channel_stats cannot be added up in SQL: an upsert into a bucket clears it, and DAY
+ * stats are written back by RollupService once they have been merged in Java.
+ *
+ * daily_summaries (farm days) take the same additive upserts as the DAY rollups they add
+ * up.
+ */
+@Repository
+public class TelemetryRollupWriter {
+    private static final String COLUMNS =
+        "turbine_id, resolution, bucket_start, data_point_count, sum_wind_speed, sum_power_output, " +
+        "sum_rotor_speed, sum_temperature, sum_vibration, sum_efficiency, total_generation, hour_count, " +
+        "sum_hourly_efficiency, sum_hourly_power_output, anomaly_hours";
+    
+    private static final String[] SUMMED = {
+        "data_point_count", "sum_wind_speed", "sum_power_output", "sum_rotor_speed", "sum_temperature",
+        "sum_vibration", "sum_efficiency", "total_generation", "hour_count", "sum_hourly_efficiency",
+        "sum_hourly_power_output", "anomaly_hours"
+    };
+    
+    private static final String INSERT_ROLLUP =
+        "INSERT INTO telemetry_rollups (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    
+    // Row alias (MySQL 8.0.19+) instead of the deprecated VALUES(col)
+    private static final String ADD_ROLLUP_MYSQL = INSERT_ROLLUP + " AS new ON DUPLICATE KEY UPDATE " +
+        String.join(", ", assignments("%1$s = telemetry_rollups.%1$s + new.%1$s")) + ", channel_stats = NULL";
+    
+    private static final String ADD_ROLLUP_POSTGRES = INSERT_ROLLUP +
+        " ON CONFLICT (resolution, turbine_id, bucket_start) DO UPDATE SET " +
+        String.join(", ", assignments("%1$s = telemetry_rollups.%1$s + EXCLUDED.%1$s")) + ", channel_stats = NULL";
+    
+    private static final String SUMMARY_COLUMNS =
+        "level, scope, bucket_start, data_point_count, total_generation, hour_count, sum_hourly_efficiency, " +
+        "sum_hourly_power_output, anomaly_hours";
+    
+    private static final String[] SUMMARY_SUMMED = {
+        "data_point_count", "total_generation", "hour_count", "sum_hourly_efficiency", "sum_hourly_power_output",
+        "anomaly_hours"
+    };
+    
+    private static final String INSERT_SUMMARY =
+        "INSERT INTO daily_summaries (" + SUMMARY_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    
+    private static final String ADD_SUMMARY_MYSQL = INSERT_SUMMARY + " AS new ON DUPLICATE KEY UPDATE " +
+        String.join(", ", assignments(SUMMARY_SUMMED, "%1$s = daily_summaries.%1$s + new.%1$s"));
+    
+    private static final String ADD_SUMMARY_POSTGRES = INSERT_SUMMARY +
+        " ON CONFLICT (level, scope, bucket_start) DO UPDATE SET " +
+        String.join(", ", assignments(SUMMARY_SUMMED, "%1$s = daily_summaries.%1$s + EXCLUDED.%1$s"));
+    
+    // %s narrows the farms f
+    private static final String FARM_SUMMARIES_FROM_DAYS =
+        "INSERT INTO daily_summaries (" + SUMMARY_COLUMNS + ") " +
+        "SELECT 'FARM', f.name, r.bucket_start, " +
+        String.join(", ", assignments(SUMMARY_SUMMED, "SUM(r.%s)")) + " " +
+        "FROM telemetry_rollups r JOIN turbines t ON t.id = r.turbine_id JOIN farms f ON f.id = t.farm_id " +
+        "WHERE r.resolution = 'DAY'%s GROUP BY f.name, r.bucket_start";
+    
+    private static final String MINUTES_FROM_TELEMETRY =
+        "INSERT INTO telemetry_rollups (" + COLUMNS + ") " +
+        "SELECT t.turbine_id, 'MINUTE', %1$s, COUNT(*), SUM(t.wind_speed), SUM(t.power_output), SUM(t.rotor_speed), " +
+        "SUM(t.temperature), SUM(t.vibration), SUM(t.efficiency), SUM(t.power_output) * 10.0 / 3600.0, 0, 0, 0, 0 " +
+        "FROM telemetry t WHERE t.turbine_id IN (%2$s) AND t.timestamp >= ? AND t.timestamp < ? " +
+        "GROUP BY t.turbine_id, %1$s";
+    
+    private static final String HOUR_FROM_MINUTES =
+        "INSERT INTO telemetry_aggregates (turbine_id, hour_start, avg_wind_speed, avg_power_output, " +
+        "avg_rotor_speed, avg_temperature, avg_vibration, avg_efficiency, total_generation, " +
+        "data_point_count, has_anomaly) " +
+        "SELECT turbine_id, ?, SUM(sum_wind_speed) / SUM(data_point_count), SUM(sum_power_output) / SUM(data_point_count), " +
+        "SUM(sum_rotor_speed) / SUM(data_point_count), SUM(sum_temperature) / SUM(data_point_count), " +
+        "SUM(sum_vibration) / SUM(data_point_count), SUM(sum_efficiency) / SUM(data_point_count), " +
+        "SUM(total_generation), SUM(data_point_count), false " +
+        "FROM telemetry_rollups WHERE resolution = 'MINUTE' AND turbine_id IN (%s) " +
+        "AND bucket_start >= ? AND bucket_start < ? GROUP BY turbine_id";
+    
+    private static final String SAMPLES_FROM_TELEMETRY =
+        "SELECT turbine_id, wind_speed, power_output, rotor_speed, temperature, vibration, efficiency " +
+        "FROM telemetry WHERE turbine_id IN (%s) AND timestamp >= ? AND timestamp < ?";
+    
+    // Only if the bucket has not changed since its hours were read; otherwise the next run retries
+    private static final String SET_DAY_STATS =
+        "UPDATE telemetry_rollups SET channel_stats = ? WHERE id = ? AND channel_stats IS NULL " +
+        "AND hour_count = ? AND data_point_count = ?";
+    
+    private static final String DAYS_FROM_HOURS =
+        "INSERT INTO telemetry_rollups (" + COLUMNS + ") " +
+        "SELECT turbine_id, 'DAY', %1$s, SUM(data_point_count), SUM(avg_wind_speed * data_point_count), " +
+        "SUM(avg_power_output * data_point_count), SUM(avg_rotor_speed * data_point_count), " +
+        "SUM(avg_temperature * data_point_count), SUM(avg_vibration * data_point_count), " +
+        "SUM(avg_efficiency * data_point_count), SUM(total_generation), COUNT(*), SUM(avg_efficiency), " +
+        "SUM(avg_power_output), SUM(CASE WHEN has_anomaly THEN 1 ELSE 0 END) " +
+        "FROM telemetry_aggregates GROUP BY turbine_id, %1$s";
+    
+    private static final String MONTHS_FROM_DAYS =
+        "INSERT INTO telemetry_rollups (" + COLUMNS + ") " +
+        "SELECT turbine_id, 'MONTH', %1$s, " + String.join(", ", assignments("SUM(%s)")) + " " +
+        "FROM telemetry_rollups WHERE resolution = 'DAY' GROUP BY turbine_id, %1$s";
+    
+    private static final String DELETE_MINUTES =
+        "DELETE FROM telemetry_rollups WHERE resolution = 'MINUTE' AND turbine_id IN (%s) " +
+        "AND bucket_start >= ? AND bucket_start < ?";
+    
+    private static final String DELETE_LEVEL =
+        "DELETE FROM telemetry_rollups WHERE resolution = ?";
+    
+    private static final String DELETE_LEVEL_BEFORE =
+        "DELETE FROM telemetry_rollups WHERE resolution = ? AND bucket_start < ?";
+    
+    private static final String DELETE_EMPTY =
+        "DELETE FROM telemetry_rollups WHERE data_point_count <= 0 AND hour_count <= 0";
+    
+    private static final String DELETE_EMPTY_SUMMARIES =
+        "DELETE FROM daily_summaries WHERE data_point_count <= 0 AND hour_count <= 0";
+    
+    private static final String DELETE_SUMMARIES =
+        "DELETE FROM daily_summaries";
+    
+    private static final String DELETE_FARM_SUMMARIES =
+        "DELETE FROM daily_summaries WHERE level = 'FARM' AND scope IN (%s)";
+    
+    private static final String DELETE_AGGREGATES_BEFORE =
+        "DELETE FROM telemetry_aggregates WHERE hour_start < ?";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Value("${telemetry.jdbc.batch-size:500}")
+    private int batchSize;
+    
+    @Value("${spring.datasource.url:}")
+    private String datasourceUrl;
+    
+    /**
+     * Adds each rollup's values to its bucket, creating the bucket if needed. Negative values
+     * take a contribution back out.
+     */
+    public void addRollups(List<TelemetryRollup> rollups) {
+        if (rollups.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(isPostgres() ? ADD_ROLLUP_POSTGRES : ADD_ROLLUP_MYSQL, rollups, batchSize, (ps, r) -> {
+            ps.setLong(1, r.getTurbine().getId());
+            ps.setString(2, r.getResolution().name());
+            ps.setObject(3, r.getBucketStart());
+            ps.setLong(4, r.getDataPointCount());
+            ps.setDouble(5, r.getSumWindSpeed());
+            ps.setDouble(6, r.getSumPowerOutput());
+            ps.setDouble(7, r.getSumRotorSpeed());
+            ps.setDouble(8, r.getSumTemperature());
+            ps.setDouble(9, r.getSumVibration());
+            ps.setDouble(10, r.getSumEfficiency());
+            ps.setDouble(11, r.getTotalGeneration());
+            ps.setInt(12, r.getHourCount());
+            ps.setDouble(13, r.getSumHourlyEfficiency());
+            ps.setDouble(14, r.getSumHourlyPowerOutput());
+            ps.setInt(15, r.getAnomalyHours());
+        });
+    }
+    
+    /**
+     * Adds each summary's values to its row, creating the row if needed, like addRollups.
+     * Callers pass rows in a consistent order so concurrent transactions lock them in the
+     * same order.
+     */
+    public void addSummaries(List<DailySummary> summaries) {
+        if (summaries.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(isPostgres() ? ADD_SUMMARY_POSTGRES : ADD_SUMMARY_MYSQL, summaries, batchSize, (ps, s) -> {
+            ps.setString(1, s.getLevel().name());
+            ps.setString(2, s.getScope());
+            ps.setObject(3, s.getBucketStart());
+            ps.setLong(4, s.getDataPointCount());
+            ps.setDouble(5, s.getTotalGeneration());
+            ps.setInt(6, s.getHourCount());
+            ps.setDouble(7, s.getSumHourlyEfficiency());
+            ps.setDouble(8, s.getSumHourlyPowerOutput());
+            ps.setInt(9, s.getAnomalyHours());
+        });
+    }
+    
+    /**
+     * Recomputes every daily summary from the DAY rollups and the current farm of each
+     * turbine. Returns the number of rows written.
+     */
+    public int rebuildSummaries() {
+        jdbcTemplate.update(DELETE_SUMMARIES);
+        return jdbcTemplate.update(FARM_SUMMARIES_FROM_DAYS.formatted(""));
+    }
+    
+    /**
+     * Recomputes the daily summaries of the named farms only, from the DAY rollups of the
+     * turbines they have now. A name no farm has any more just loses its rows. Returns the
+     * number of rows written.
+     */
+    public int rebuildFarmSummaries(Collection<String> farmNames) {
+        if (farmNames.isEmpty()) {
+            return 0;
+        }
+        Object[] names = farmNames.toArray();
+        jdbcTemplate.update(DELETE_FARM_SUMMARIES.formatted(placeholders(farmNames)), names);
+        return jdbcTemplate.update(FARM_SUMMARIES_FROM_DAYS.formatted(" AND f.name IN (" + placeholders(farmNames) + ")"),
+            names);
+    }
+    
+    /**
+     * Replaces the turbines' minute rollups for the hour with ones computed from raw
+     * telemetry, and returns the number of minutes written.
+     */
+    public int rollUpMinutes(LocalDateTime hourStart, List<Long> turbineIds) {
+        if (turbineIds.isEmpty()) {
+            return 0;
+        }
+        deleteMinutes(hourStart, turbineIds);
+        String minute = isPostgres() ? "date_trunc('minute', t.timestamp)" : "DATE_FORMAT(t.timestamp, '%Y-%m-%d %H:%i:00')";
+        return jdbcTemplate.update(MINUTES_FROM_TELEMETRY.formatted(minute, placeholders(turbineIds)),
+            rangeArgs(turbineIds, hourStart));
+    }
+    
+    public void deleteMinutes(LocalDateTime hourStart, List<Long> turbineIds) {
+        if (!turbineIds.isEmpty()) {
+            jdbcTemplate.update(DELETE_MINUTES.formatted(placeholders(turbineIds)), rangeArgs(turbineIds, hourStart));
+        }
+    }
+    
+    /**
+     * Inserts the turbines' hourly aggregates from their minute rollups and returns how many
+     * were inserted. has_anomaly is left false for the caller to evaluate.
+     */
+    public int aggregateHourFromMinutes(LocalDateTime hourStart, List<Long> turbineIds) {
+        if (turbineIds.isEmpty()) {
+            return 0;
+        }
+        List<Object> args = new ArrayList<>();
+        args.add(hourStart);
+        args.addAll(List.of(rangeArgs(turbineIds, hourStart)));
+        return jdbcTemplate.update(HOUR_FROM_MINUTES.formatted(placeholders(turbineIds)), args.toArray());
+    }
+    
+    /**
+     * ChannelStats of the turbines' raw samples in the hour, streamed without building
+     * entities. Turbines without samples are absent.
+     */
+    public Map<Long, ChannelStats> channelStats(LocalDateTime hourStart, List<Long> turbineIds) {
+        Map<Long, ChannelStats> stats = new HashMap<>();
+        if (turbineIds.isEmpty()) {
+            return stats;
+        }
+        jdbcTemplate.query(SAMPLES_FROM_TELEMETRY.formatted(placeholders(turbineIds)), rs -> {
+            stats.computeIfAbsent(rs.getLong(1), id -> new ChannelStats()).add(rs.getDouble(2), rs.getDouble(3),
+                rs.getDouble(4), rs.getDouble(5), rs.getDouble(6), rs.getDouble(7));
+        }, rangeArgs(turbineIds, hourStart));
+        return stats;
+    }
+    
+    /**
+     * Stores the merged channel stats of a DAY bucket, unless its hours changed since they
+     * were read. Returns whether it was stored.
+     */
+    public boolean setDayStats(long rollupId, byte[] channelStats, int hourCount, long dataPointCount) {
+        return jdbcTemplate.update(SET_DAY_STATS, channelStats, rollupId, hourCount, dataPointCount) > 0;
+    }
+    
+    /**
+     * Recomputes every DAY rollup from telemetry_aggregates and every MONTH rollup from the
+     * DAY rollups. Returns the number of DAY and MONTH buckets written.
+     */
+    public int rebuildDaysAndMonths() {
+        jdbcTemplate.update(DELETE_LEVEL, RollupResolution.MONTH.name());
+        jdbcTemplate.update(DELETE_LEVEL, RollupResolution.DAY.name());
+        String day = isPostgres() ? "date_trunc('day', hour_start)" : "DATE(hour_start)";
+        String month = isPostgres() ? "date_trunc('month', bucket_start)" : "DATE_FORMAT(bucket_start, '%Y-%m-01')";
+        return jdbcTemplate.update(DAYS_FROM_HOURS.formatted(day)) + jdbcTemplate.update(MONTHS_FROM_DAYS.formatted(month));
+    }
+    
+    public int deleteBefore(RollupResolution resolution, LocalDateTime before) {
+        if (resolution == RollupResolution.HOUR) {
+            return jdbcTemplate.update(DELETE_AGGREGATES_BEFORE, before);
+        }
+        return jdbcTemplate.update(DELETE_LEVEL_BEFORE, resolution.name(), before);
+    }
+    
+    // Buckets whose every contribution has been taken back out
+    public int deleteEmpty() {
+        return jdbcTemplate.update(DELETE_EMPTY) + jdbcTemplate.update(DELETE_EMPTY_SUMMARIES);
+    }
+    
+    private boolean isPostgres() {
+        return datasourceUrl.startsWith("jdbc:postgresql:");
+    }
+    
+    private static String placeholders(Collection<?> values) {
+        return String.join(", ", Collections.nCopies(values.size(), "?"));
+    }
+    
+    private static Object[] rangeArgs(List<Long> turbineIds, LocalDateTime hourStart) {
+        List<Object> args = new ArrayList<>(turbineIds);
+        args.add(hourStart);
+        args.add(hourStart.plusHours(1));
+        return args.toArray();
+    }
+    
+    private static List<String> assignments(String format) {
+        return assignments(SUMMED, format);
+    }
+    
+    private static List<String> assignments(String[] columns, String format) {
+        List<String> assignments = new ArrayList<>();
+        for (String column : columns) {
+            assignments.add(format.formatted(column));
+        }
+        return assignments;
+    }
+}
@@ -13,6 +13,10 @@ import java.util.Optional;
 @Repository
 public interface TurbineRepository extends JpaRepository<Turbine, Long> {
     Optional<Turbine> findByTurbineId(String turbineId);
+    
+    @Query("SELECT t FROM Turbine t JOIN FETCH t.farm")
+    List<Turbine> findAllWithFarm();
+    
     List<Turbine> findByFarmId(Long farmId);
     List<Turbine> findByStatus(String status);
     Page<Turbine> findByStatus(String status, Pageable pageable);
@@ -1,7 +1,12 @@
 package com.wind.turbinemonitor.scheduler;
 
+import com.wind.turbinemonitor.service.AggregationLock;
 import com.wind.turbinemonitor.service.AggregationService;
+import com.wind.turbinemonitor.service.IncrementalAggregationService;
+import com.wind.turbinemonitor.service.ShardedAggregationService;
+import com.wind.turbinemonitor.service.TelemetryChunkService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -14,21 +19,42 @@ public class TelemetryAggregationScheduler {
     @Autowired
     private AggregationService aggregationService;
     
+    @Autowired
+    private ShardedAggregationService shardedAggregation;
+    
+    @Autowired
+    private TelemetryChunkService chunkService;
+    
+    @Autowired
+    private IncrementalAggregationService incrementalAggregation;
+    
+    @Autowired
+    private AggregationLock aggregationLock;
+    
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+    
     // Run after application is fully started, in background thread to not block startup
     @EventListener(ApplicationReadyEvent.class)
     public void aggregateExistingTelemetryOnStartup() {
         // Run in background thread so it doesn't block application startup
-        new Thread(() -> {
+        Thread.Builder builder = virtualThreads ? Thread.ofVirtual() : Thread.ofPlatform();
+        builder.name("InitialAggregationThread").start(() -> {
             try {
                 LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
-                LocalDateTime startHour = now.minusHours(24);
                 
-                System.out.println("Starting initial aggregation for hours from " + startHour + " to " + now);
-                
-                LocalDateTime currentHour = startHour;
-                while (currentHour.isBefore(now)) {
-                    aggregationService.aggregateTelemetryForHourParallel(currentHour);
-                    currentHour = currentHour.plusHours(1);
+                if (incrementalAggregation.isEnabled()) {
+                    LocalDateTime startHour = now.minusHours(24);
+                    System.out.println("Starting initial aggregation for hours from " + startHour + " to " + now);
+                    // Hours that closed while the application was down
+                    for (LocalDateTime hour = startHour; hour.isBefore(now); hour = hour.plusHours(1)) {
+                        LocalDateTime recovered = hour;
+                        aggregationLock.shared(() -> aggregationService.recoverHour(recovered));
+                    }
+                } else {
+                    // Each turbine catches up from its watermark, up to max-catch-up-hours back; older gaps need a backfill job
+                    System.out.println("Starting initial aggregation up to " + now);
+                    shardedAggregation.aggregateHour(now.minusHours(1));
                 }
                 
                 System.out.println("Initial aggregation completed");
@@ -36,18 +62,37 @@ public class TelemetryAggregationScheduler {
                 System.err.println("Error during initial aggregation: " + e.getMessage());
                 e.printStackTrace();
             }
-        }, "InitialAggregationThread").start();
+        });
     }
     
     @Scheduled(fixedRate = 3600000)
     public void aggregatePreviousHour() {
+        if (incrementalAggregation.isEnabled()) {
+            // IncrementalAggregationService closes hours from its accumulators
+            return;
+        }
         LocalDateTime previousHour = LocalDateTime.now()
             .truncatedTo(ChronoUnit.HOURS)
             .minusHours(1);
         
         System.out.println("Aggregating telemetry for hour: " + previousHour);
-        aggregationService.aggregateTelemetryForHourParallel(previousHour);
+        shardedAggregation.aggregateHour(previousHour);
         System.out.println("Aggregation completed for hour: " + previousHour);
     }
+    
+    // Runs mid-hour so the hour being compacted has had its aggregation pass
+    @Scheduled(cron = "0 30 * * * *")
+    public void compactRawTelemetry() {
+        if (!chunkService.isEnabled()) {
+            return;
+        }
+        LocalDateTime hour = LocalDateTime.now()
+            .truncatedTo(ChronoUnit.HOURS)
+            .minusHours(chunkService.getCompactAfterHours());
+        try {
+            chunkService.compactHour(hour);
+        } catch (Exception e) {
+            System.err.println("Error compacting telemetry for hour " + hour + ": " + e.getMessage());
+        }
+    }
 }
-
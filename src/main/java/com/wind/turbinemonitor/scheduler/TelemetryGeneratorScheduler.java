@@ -2,8 +2,8 @@ package com.wind.turbinemonitor.scheduler;
 
 import com.wind.turbinemonitor.model.Telemetry;
 import com.wind.turbinemonitor.model.Turbine;
-import com.wind.turbinemonitor.repository.TelemetryRepository;
-import com.wind.turbinemonitor.repository.TurbineRepository;
+import com.wind.turbinemonitor.service.TelemetryService;
+import com.wind.turbinemonitor.service.TurbineRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
@@ -16,28 +16,24 @@ import java.util.Random;
 @Component
 public class TelemetryGeneratorScheduler {
     @Autowired
-    private TurbineRepository turbineRepository;
+    private TurbineRegistry turbineRegistry;
     
     @Autowired
-    private TelemetryRepository telemetryRepository;
+    private TelemetryService telemetryService;
     
-    private static final int BATCH_SIZE = 500;
     private final Random random = new Random();
     
     @Scheduled(fixedRate = 10000)
     @Transactional
     public void generateTelemetryData() {
-        List<Turbine> activeTurbines = turbineRepository.findAll()
-            .stream()
-            .filter(t -> "ACTIVE".equals(t.getStatus()))
-            .toList();
+        List<Turbine> activeTurbines = turbineRegistry.getByStatus("ACTIVE");
         
         if (activeTurbines.isEmpty()) {
             return;
         }
         
         LocalDateTime now = LocalDateTime.now();
-        List<Telemetry> telemetryBatch = new ArrayList<>();
+        List<Telemetry> telemetryBatch = new ArrayList<>(activeTurbines.size());
         
         for (Turbine turbine : activeTurbines) {
             double windSpeed = 8.0 + random.nextDouble() * 12.0;
@@ -51,18 +47,14 @@ public class TelemetryGeneratorScheduler {
                 powerOutput, rotorSpeed, temperature, vibration, efficiency);
             telemetry.setIsAggregated(false);
             telemetryBatch.add(telemetry);
-            
-            if (telemetryBatch.size() >= BATCH_SIZE) {
-                telemetryRepository.saveAll(telemetryBatch);
-                telemetryBatch.clear();
-            }
         }
         
-        if (!telemetryBatch.isEmpty()) {
-            telemetryRepository.saveAll(telemetryBatch);
-        }
+        long startNanos = System.nanoTime();
+        telemetryService.saveTelemetryBatchOptimized(telemetryBatch);
+        long elapsedMs = (System.nanoTime() - startNanos) / 1_000_000;
         
-        System.out.println("Generated telemetry for " + activeTurbines.size() + " turbines at " + now);
+        System.out.println("Generated telemetry for " + activeTurbines.size() + " turbines at " + now +
+                          " (written in " + elapsedMs + " ms)");
     }
 }
 
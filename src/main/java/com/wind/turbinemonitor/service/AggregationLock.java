@@ -0,0 +1,49 @@
+package com.wind.turbinemonitor.service;
+
+import org.springframework.stereotype.Component;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Keeps rebuilds of the rollup cascade apart from the passes that update it.
+ *
+ * Hourly aggregation, late merges and recomputes, backfill tasks and the DAY stats merge
+ * each pass their changes up to DAY, MONTH and the daily summaries in their own
+ * transaction; they hold the shared side, so they still run alongside each other. A
+ * rebuild recomputes those levels from telemetry_aggregates as a whole and holds the
+ * exclusive side, so no aggregate is written between its read and its commit. The lock is
+ * taken outside the transaction: a writer's change is committed before a rebuild can start
+ * reading.
+ *
+ * The lock is fair, so a waiting rebuild is not starved by passes that keep starting. It
+ * cannot be upgraded: code holding the shared side must not ask for the exclusive one.
+ */
+@Component
+public class AggregationLock {
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(true);
+    
+    public <T> T shared(Supplier<T> work) {
+        return locked(lock.readLock(), work);
+    }
+    
+    public void runShared(Runnable work) {
+        shared(() -> {
+            work.run();
+            return null;
+        });
+    }
+    
+    public <T> T exclusive(Supplier<T> work) {
+        return locked(lock.writeLock(), work);
+    }
+    
+    private static <T> T locked(Lock held, Supplier<T> work) {
+        held.lock();
+        try {
+            return work.get();
+        } finally {
+            held.unlock();
+        }
+    }
+}
@@ -1,17 +1,32 @@
 package com.wind.turbinemonitor.service;
 
+import com.wind.turbinemonitor.ingest.HourAccumulator;
+import com.wind.turbinemonitor.ingest.TelemetryBatch;
+import com.wind.turbinemonitor.model.HealthAlert;
 import com.wind.turbinemonitor.model.Telemetry;
 import com.wind.turbinemonitor.model.TelemetryAggregate;
+import com.wind.turbinemonitor.model.TelemetryRollup;
 import com.wind.turbinemonitor.model.Turbine;
+import com.wind.turbinemonitor.repository.AggregateColumnStore;
+import com.wind.turbinemonitor.repository.HealthAlertRepository;
+import com.wind.turbinemonitor.repository.RawTelemetryStore;
 import com.wind.turbinemonitor.repository.TelemetryAggregateRepository;
+import com.wind.turbinemonitor.repository.TelemetryBatchWriter;
 import com.wind.turbinemonitor.repository.TelemetryRepository;
-import com.wind.turbinemonitor.repository.TurbineRepository;
+import com.wind.turbinemonitor.repository.TelemetryRollupWriter;
+import com.wind.turbinemonitor.util.ChannelStats;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @Transactional
@@ -23,102 +38,293 @@ public class AggregationService {
     private TelemetryAggregateRepository aggregateRepository;
     
     @Autowired
-    private TurbineRepository turbineRepository;
+    private TurbineRegistry turbineRegistry;
     
     @Autowired
     private AnomalyService anomalyService;
     
-    public void aggregateTelemetryForHour(LocalDateTime hourStart) {
-        LocalDateTime hourEnd = hourStart.plusHours(1);
-        List<Turbine> turbines = turbineRepository.findAll();
+    @Autowired
+    private HealthAlertRepository alertRepository;
+    
+    @Autowired
+    private TelemetryBatchWriter batchWriter;
+    
+    @Autowired
+    private RawTelemetryStore rawTelemetryStore;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Autowired
+    private AggregationWatermarkService watermarkService;
+    
+    @Autowired
+    private RollupService rollupService;
+    
+    @Autowired
+    private DataVersionService dataVersion;
+    
+    @Autowired
+    private AggregateColumnStore aggregateStore;
+    
+    @Autowired
+    private TelemetryRollupWriter rollupWriter;
+    
+    @Value("${telemetry.aggregation.set-based:true}")
+    private boolean setBased;
+    
+    @Value("${telemetry.aggregation.max-catch-up-hours:24}")
+    private int maxCatchUpHours;
+    
+    /**
+     * Aggregates the given turbines up to the end of hourStart, in the caller's transaction,
+     * and returns the aggregates created. Each turbine continues from its watermark, at most
+     * max-catch-up-hours back; older gaps are left to a backfill. Raw rows are rolled up
+     * into MINUTE rollups and the hour is summed from those. With
+     * telemetry.aggregation.set-based each step is one grouped statement, plus one pass over
+     * the raw values for the channel stats; otherwise each turbine's rows are loaded, rolled
+     * up and detached before the next.
+     * ShardedAggregationService calls this once per shard.
+     */
+    public List<TelemetryAggregate> aggregateTurbines(LocalDateTime hourStart, List<Turbine> turbines) {
+        List<Long> turbineIds = turbines.stream().map(Turbine::getId).toList();
+        LocalDateTime earliest = hourStart.minusHours(maxCatchUpHours);
+        Map<Long, LocalDateTime> watermarks = watermarkService.claim(turbineIds, hourStart.plusHours(1));
         
-        for (Turbine turbine : turbines) {
-            List<Telemetry> telemetryList = telemetryRepository
-                .findUnaggregatedByTurbineAndTimeRange(turbine.getId(), hourStart, hourEnd);
-            
-            if (!telemetryList.isEmpty()) {
-                TelemetryAggregate aggregate = createAggregate(turbine, hourStart, telemetryList);
-                aggregateRepository.save(aggregate);
-                telemetryList.forEach(t -> t.setIsAggregated(true));
-                telemetryRepository.saveAll(telemetryList);
+        List<TelemetryAggregate> created = new ArrayList<>();
+        for (LocalDateTime hour = earliest; !hour.isAfter(hourStart); hour = hour.plusHours(1)) {
+            List<Turbine> pending = new ArrayList<>();
+            for (Turbine turbine : turbines) {
+                LocalDateTime watermark = watermarks.get(turbine.getId());
+                if (watermark == null || !watermark.isAfter(hour)) {
+                    pending.add(turbine);
+                }
+            }
+            if (!pending.isEmpty()) {
+                created.addAll(setBased ? aggregateHourSetBased(hour, pending) : aggregateHourByTurbine(hour, pending));
             }
         }
+        return created;
     }
     
-    public void aggregateTelemetryForHourParallel(LocalDateTime hourStart) {
+    private List<TelemetryAggregate> aggregateHourByTurbine(LocalDateTime hourStart, List<Turbine> turbines) {
         LocalDateTime hourEnd = hourStart.plusHours(1);
-        List<Turbine> turbines = turbineRepository.findAll();
-        
-        Map<Long, List<Telemetry>> telemetryByTurbine = new HashMap<>();
-        int totalTelemetryCount = 0;
+        List<TelemetryAggregate> aggregates = new ArrayList<>();
+        List<TelemetryRollup> minutes = new ArrayList<>();
+        List<HealthAlert> alerts = new ArrayList<>();
         
         for (Turbine turbine : turbines) {
             List<Telemetry> telemetryList = telemetryRepository
-                .findUnaggregatedByTurbineAndTimeRange(turbine.getId(), hourStart, hourEnd);
+                .findByTurbineAndTimeRange(turbine.getId(), hourStart, hourEnd);
             if (!telemetryList.isEmpty()) {
-                telemetryByTurbine.put(turbine.getId(), telemetryList);
-                totalTelemetryCount += telemetryList.size();
+                List<TelemetryRollup> turbineMinutes = rollupService.minuteRollups(turbine, telemetryList);
+                aggregates.add(createAggregate(turbine, hourStart, turbineMinutes, telemetryList, alerts));
+                minutes.addAll(turbineMinutes);
             }
+            entityManager.clear();
         }
         
-        if (telemetryByTurbine.isEmpty()) {
-            System.out.println("No unaggregated telemetry found for hour: " + hourStart);
-            return;
+        rollupService.replaceMinutes(hourStart, turbines.stream().map(Turbine::getId).toList(), minutes);
+        batchWriter.insertAggregates(aggregates);
+        batchWriter.insertAlerts(alerts);
+        applyHourly(aggregates, List.of());
+        return aggregates;
+    }
+    
+    private List<TelemetryAggregate> aggregateHourSetBased(LocalDateTime hourStart, List<Turbine> turbines) {
+        List<Long> turbineIds = turbines.stream().map(Turbine::getId).toList();
+        if (rollupWriter.rollUpMinutes(hourStart, turbineIds) == 0) {
+            return List.of();
         }
+        long lastAggregateId = batchWriter.maxAggregateId();
+        rollupWriter.aggregateHourFromMinutes(hourStart, turbineIds);
         
-        System.out.println("Aggregating " + totalTelemetryCount + " telemetry records for " + 
-                          telemetryByTurbine.size() + " turbines for hour: " + hourStart);
-        
-        List<TelemetryAggregate> aggregatesToSave = new ArrayList<>();
-        List<Telemetry> telemetryToUpdate = new ArrayList<>();
-        int batchSize = 500;
+        // Managed entities: hasAnomaly and channelStats changes are flushed as batched updates on commit
+        List<TelemetryAggregate> aggregates = aggregateRepository.findCreatedForHour(hourStart, turbineIds, lastAggregateId);
+        Map<Long, ChannelStats> stats = rollupWriter.channelStats(hourStart, turbineIds);
+        for (TelemetryAggregate aggregate : aggregates) {
+            ChannelStats turbineStats = stats.get(aggregate.getTurbine().getId());
+            aggregate.setChannelStats(turbineStats != null ? turbineStats.encode() : null);
+        }
+        batchWriter.insertAlerts(anomalyService.evaluateAll(aggregates));
+        applyHourly(aggregates, List.of());
+        return aggregates;
+    }
+    
+    /**
+     * Writes the aggregates of a closed hour from the incremental accumulators, without
+     * reading raw telemetry. Returns the number of aggregates written.
+     */
+    public int saveHour(LocalDateTime hourStart, HourAccumulator accumulator) {
+        List<TelemetryAggregate> aggregates = new ArrayList<>(accumulator.size());
+        List<HealthAlert> alerts = new ArrayList<>();
+        for (int slot = 0; slot < accumulator.size(); slot++) {
+            Optional<Turbine> turbine = turbineRegistry.get(accumulator.turbineId(slot));
+            if (turbine.isEmpty()) {
+                continue;
+            }
+            aggregates.add(buildAggregate(turbine.get(), hourStart, accumulator.count(slot),
+                accumulator.sum(slot, 0), accumulator.sum(slot, 1), accumulator.sum(slot, 2),
+                accumulator.sum(slot, 3), accumulator.sum(slot, 4), accumulator.sum(slot, 5),
+                accumulator.stats(slot).encode(), alerts));
+        }
+        batchWriter.insertAggregates(aggregates);
+        batchWriter.insertAlerts(alerts);
+        applyHourly(aggregates, List.of());
+        watermarkService.advance(aggregates.stream().map(a -> a.getTurbine().getId()).toList(), hourStart.plusHours(1));
+        return aggregates.size();
+    }
+    
+    /**
+     * Folds samples for hours that were already aggregated into the stored aggregates and
+     * MINUTE rollups with additive upserts, without reading the hours back from raw
+     * telemetry. Anomaly alerts of the touched turbine-hours are re-evaluated on the merged
+     * values and the difference is carried into the DAY and MONTH rollups. Returns the
+     * number of turbine-hours merged.
+     */
+    public int mergeLate(TelemetryBatch late) {
+        Map<Long, HourAccumulator> minutes = new TreeMap<>();
+        Map<Long, HourAccumulator> hours = new TreeMap<>();
+        for (int i = 0; i < late.size(); i++) {
+            long minuteMicros = Math.floorDiv(late.timestamp(i), 60_000_000L) * 60_000_000L;
+            long hourMicros = Math.floorDiv(late.timestamp(i), 3_600_000_000L) * 3_600_000_000L;
+            minutes.computeIfAbsent(minuteMicros, m -> new HourAccumulator(m, 16)).add(late, i);
+            hours.computeIfAbsent(hourMicros, h -> new HourAccumulator(h, 16)).add(late, i);
+        }
+        minutes.values().forEach(rollupService::addMinute);
         
-        for (Map.Entry<Long, List<Telemetry>> entry : telemetryByTurbine.entrySet()) {
-            Long turbineId = entry.getKey();
-            List<Telemetry> telemetryList = entry.getValue();
-            Optional<Turbine> turbineOpt = turbineRepository.findById(turbineId);
+        int merged = 0;
+        for (HourAccumulator hour : hours.values()) {
+            LocalDateTime hourStart = TelemetryBatch.fromMicros(hour.startMicros());
+            Map<Long, TelemetryAggregate> partials = new LinkedHashMap<>();
+            for (int slot = 0; slot < hour.size(); slot++) {
+                Optional<Turbine> turbine = turbineRegistry.get(hour.turbineId(slot));
+                if (turbine.isPresent()) {
+                    partials.put(turbine.get().getId(), LateAggregates.partial(turbine.get(), hourStart, hour, slot));
+                }
+            }
+            if (partials.isEmpty()) {
+                continue;
+            }
+            List<Long> turbineIds = new ArrayList<>(partials.keySet());
+            batchWriter.mergeAggregates(new ArrayList<>(partials.values()));
             
-            if (turbineOpt.isPresent()) {
-                TelemetryAggregate aggregate = createAggregate(turbineOpt.get(), hourStart, telemetryList);
-                aggregatesToSave.add(aggregate);
-                telemetryList.forEach(t -> t.setIsAggregated(true));
-                telemetryToUpdate.addAll(telemetryList);
-                
-                if (aggregatesToSave.size() >= batchSize) {
-                    aggregateRepository.saveAll(aggregatesToSave);
-                    aggregatesToSave.clear();
+            List<TelemetryAggregate> aggregates = aggregateRepository.findForHour(hourStart, turbineIds);
+            List<TelemetryAggregate> previous = new ArrayList<>();
+            List<HealthAlert> alerts = new ArrayList<>();
+            for (TelemetryAggregate aggregate : aggregates) {
+                TelemetryAggregate partial = partials.get(aggregate.getTurbine().getId());
+                TelemetryAggregate before = LateAggregates.unmerge(aggregate, partial);
+                if (before != null) {
+                    previous.add(before);
+                    // The upsert leaves channel_stats alone; an hour without stats stays without until rebuilt
+                    if (aggregate.getChannelStats() != null) {
+                        aggregate.setChannelStats(ChannelStats.merge(aggregate.getChannelStats(), partial.getChannelStats()));
+                    }
                 }
-                
-                if (telemetryToUpdate.size() >= batchSize) {
-                    telemetryRepository.saveAll(telemetryToUpdate);
-                    telemetryToUpdate.clear();
+                HealthAlert alert = anomalyService.evaluate(aggregate);
+                if (alert != null) {
+                    alerts.add(alert);
                 }
+                aggregate.setHasAnomaly(alert != null);
             }
+            alertRepository.deleteDerivedFromHour(turbineIds, hourStart);
+            batchWriter.insertAlerts(alerts);
+            applyHourly(aggregates, previous);
+            watermarkService.advance(turbineIds, hourStart.plusHours(1));
+            merged += aggregates.size();
         }
-        
-        int totalAggregates = aggregatesToSave.size();
-        
-        if (!aggregatesToSave.isEmpty()) {
-            aggregateRepository.saveAll(aggregatesToSave);
+        return merged;
+    }
+    
+    /**
+     * Rebuilds the hour for the given turbines (see rebuildHour) and moves their watermarks
+     * past it. Used when the incremental accumulators missed samples: late arrivals, or an
+     * hour that was already running when the application started.
+     */
+    public int recomputeHour(LocalDateTime hourStart, Collection<Long> turbineIds) {
+        int written = rebuildHour(hourStart, turbineIds);
+        watermarkService.advance(new ArrayList<>(turbineIds), hourStart.plusHours(1));
+        return written;
+    }
+    
+    /**
+     * Replaces the hour's minute rollups, aggregates and anomaly alerts of the given turbines
+     * with ones computed from raw telemetry, and returns the number of aggregates written.
+     * Running it again gives the same result. Watermarks are left alone.
+     */
+    public int rebuildHour(LocalDateTime hourStart, Collection<Long> turbineIds) {
+        LocalDateTime lastMicro = hourStart.plusHours(1).minusNanos(1000);
+        List<TelemetryAggregate> aggregates = new ArrayList<>();
+        List<TelemetryAggregate> replaced = new ArrayList<>();
+        List<TelemetryRollup> minutes = new ArrayList<>();
+        List<HealthAlert> alerts = new ArrayList<>();
+        for (Long turbineId : turbineIds) {
+            Optional<Turbine> turbine = turbineRegistry.get(turbineId);
+            if (turbine.isEmpty()) {
+                continue;
+            }
+            List<Telemetry> telemetryList = rawTelemetryStore.findByTurbineAndDateRange(turbineId, hourStart, lastMicro);
+            replaced.addAll(aggregateRepository.findByTurbineAndDateRange(turbineId, hourStart, hourStart));
+            aggregateRepository.deleteByTurbineAndHour(turbineId, hourStart);
+            if (!telemetryList.isEmpty()) {
+                List<TelemetryRollup> turbineMinutes = rollupService.minuteRollups(turbine.get(), telemetryList);
+                aggregates.add(createAggregate(turbine.get(), hourStart, turbineMinutes, telemetryList, alerts));
+                minutes.addAll(turbineMinutes);
+            }
         }
-        
-        if (!telemetryToUpdate.isEmpty()) {
-            telemetryRepository.saveAll(telemetryToUpdate);
+        rollupService.replaceMinutes(hourStart, new ArrayList<>(turbineIds), minutes);
+        if (!turbineIds.isEmpty()) {
+            alertRepository.deleteDerivedFromHour(turbineIds, hourStart);
         }
-        
-        System.out.println("Created " + totalAggregates + " aggregates for hour: " + hourStart);
+        batchWriter.insertAggregates(aggregates);
+        batchWriter.insertAlerts(alerts);
+        applyHourly(aggregates, replaced);
+        return aggregates.size();
     }
     
-    private TelemetryAggregate createAggregate(Turbine turbine, LocalDateTime hourStart, List<Telemetry> telemetryList) {
+    /**
+     * Recomputes the hour for turbines that have no aggregate for it yet; turbines without
+     * raw samples stay without one.
+     */
+    public int recoverHour(LocalDateTime hourStart) {
+        Set<Long> aggregated = new HashSet<>();
+        for (TelemetryAggregate aggregate : aggregateRepository.findByDateRange(hourStart, hourStart)) {
+            aggregated.add(aggregate.getTurbine().getId());
+        }
+        List<Long> missing = new ArrayList<>();
+        for (Turbine turbine : turbineRegistry.getAll()) {
+            if (!aggregated.contains(turbine.getId())) {
+                missing.add(turbine.getId());
+            }
+        }
+        return recomputeHour(hourStart, missing);
+    }
+    
+    // The hour is the sum of its minutes; channel stats come from the samples themselves
+    private TelemetryAggregate createAggregate(Turbine turbine, LocalDateTime hourStart, List<TelemetryRollup> minutes,
+                                               List<Telemetry> telemetryList, List<HealthAlert> alerts) {
+        ChannelStats stats = new ChannelStats();
+        for (Telemetry t : telemetryList) {
+            stats.add(t.getWindSpeed(), t.getPowerOutput(), t.getRotorSpeed(), t.getTemperature(),
+                t.getVibration(), t.getEfficiency());
+        }
+        return buildAggregate(turbine, hourStart,
+            (int) minutes.stream().mapToLong(TelemetryRollup::getDataPointCount).sum(),
+            minutes.stream().mapToDouble(TelemetryRollup::getSumWindSpeed).sum(),
+            minutes.stream().mapToDouble(TelemetryRollup::getSumPowerOutput).sum(),
+            minutes.stream().mapToDouble(TelemetryRollup::getSumRotorSpeed).sum(),
+            minutes.stream().mapToDouble(TelemetryRollup::getSumTemperature).sum(),
+            minutes.stream().mapToDouble(TelemetryRollup::getSumVibration).sum(),
+            minutes.stream().mapToDouble(TelemetryRollup::getSumEfficiency).sum(),
+            stats.encode(), alerts);
+    }
+    
+    private TelemetryAggregate buildAggregate(Turbine turbine, LocalDateTime hourStart, int count,
+                                              double sumWindSpeed, double sumPowerOutput, double sumRotorSpeed,
+                                              double sumTemperature, double sumVibration, double sumEfficiency,
+                                              byte[] channelStats, List<HealthAlert> alerts) {
         TelemetryAggregate aggregate = new TelemetryAggregate(turbine, hourStart);
-        
-        int count = telemetryList.size();
-        double sumWindSpeed = telemetryList.stream().mapToDouble(Telemetry::getWindSpeed).sum();
-        double sumPowerOutput = telemetryList.stream().mapToDouble(Telemetry::getPowerOutput).sum();
-        double sumRotorSpeed = telemetryList.stream().mapToDouble(Telemetry::getRotorSpeed).sum();
-        double sumTemperature = telemetryList.stream().mapToDouble(Telemetry::getTemperature).sum();
-        double sumVibration = telemetryList.stream().mapToDouble(Telemetry::getVibration).sum();
-        double sumEfficiency = telemetryList.stream().mapToDouble(Telemetry::getEfficiency).sum();
         double totalGeneration = sumPowerOutput * (10.0 / 3600.0);
         
         aggregate.setAvgWindSpeed(sumWindSpeed / count);
@@ -129,13 +335,25 @@ public class AggregationService {
         aggregate.setAvgEfficiency(sumEfficiency / count);
         aggregate.setTotalGeneration(totalGeneration);
         aggregate.setDataPointCount(count);
+        aggregate.setChannelStats(channelStats);
         
-        boolean hasAnomaly = anomalyService.detectAnomaly(aggregate);
-        aggregate.setHasAnomaly(hasAnomaly);
+        HealthAlert alert = anomalyService.evaluate(aggregate);
+        if (alert != null) {
+            alerts.add(alert);
+        }
+        aggregate.setHasAnomaly(alert != null);
         
         return aggregate;
     }
     
+    // Carries written hours into the rollups and, once they commit, the off-heap store; cached
+    // analytics go stale at the same time
+    private void applyHourly(List<TelemetryAggregate> added, List<TelemetryAggregate> removed) {
+        rollupService.applyHourly(added, removed);
+        aggregateStore.applyAfterCommit(added, removed);
+        dataVersion.bumpAfterCommit();
+    }
+    
     public List<TelemetryAggregate> getAggregatesByTurbine(Long turbineId, LocalDateTime startTime, LocalDateTime endTime) {
         return aggregateRepository.findByTurbineAndDateRange(turbineId, startTime, endTime);
     }
@@ -147,5 +365,35 @@ public class AggregationService {
     public List<TelemetryAggregate> getAggregatesByFilters(LocalDateTime startTime, LocalDateTime endTime, String farmName, String region) {
         return aggregateRepository.findByDateRangeAndFilters(startTime, endTime, farmName, region);
     }
+    
+    /**
+     * Passes at most limit aggregates in the range to consumer as they are read, ordered by
+     * turbine and hour and starting after (afterTurbineId, afterHour). Farm and region may
+     * be null.
+     */
+    @Transactional(readOnly = true)
+    public void forEachAggregate(LocalDateTime startTime, LocalDateTime endTime, String farmName, String region,
+                                 long afterTurbineId, LocalDateTime afterHour, int limit,
+                                 Consumer<TelemetryAggregate> consumer) {
+        try (Stream<TelemetryAggregate> aggregates = aggregateRepository.streamByDateRangeAndFilters(
+                startTime, endTime, farmName, region, afterTurbineId, afterHour)) {
+            aggregates.limit(limit).forEach(aggregate -> {
+                consumer.accept(aggregate);
+                // Written out; don't keep it in the persistence context
+                entityManager.detach(aggregate);
+            });
+        }
+    }
+    
+    /**
+     * Whether the range holds more than rows aggregates, i.e. forEachAggregate from the
+     * start of the range with that limit leaves some out.
+     */
+    @Transactional(readOnly = true)
+    public boolean hasMoreAggregatesThan(LocalDateTime startTime, LocalDateTime endTime, String farmName, String region,
+                                         int rows) {
+        return !aggregateRepository.findIdsByDateRangeAndFilters(startTime, endTime, farmName, region,
+            PageRequest.of(rows, 1)).isEmpty();
+    }
 }
 
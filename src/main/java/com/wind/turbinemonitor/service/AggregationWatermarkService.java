@@ -0,0 +1,228 @@
+package com.wind.turbinemonitor.service;
+
+import com.wind.turbinemonitor.ingest.TelemetryBatch;
+import com.wind.turbinemonitor.model.AggregationWatermark;
+import com.wind.turbinemonitor.repository.AggregationWatermarkRepository;
+import com.wind.turbinemonitor.repository.TelemetryAggregateRepository;
+import com.wind.turbinemonitor.repository.TelemetryBatchWriter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-turbine aggregation watermarks (aggregation_watermarks): every hour before a
+ * turbine's watermark has been aggregated. Scan-mode aggregation claims the hours it is
+ * about to aggregate, and in that mode samples written behind a watermark are collected as
+ * late turbine-hours for ShardedAggregationService to rebuild from raw rows, and counted
+ * in the telemetry.late.samples metric.
+ *
+ * The in-memory copy is raised before a claim reads anything, so a sample committed while
+ * its hour is being aggregated is in the aggregate, reported late, or both; rebuilding a
+ * turbine-hour is idempotent. A rolled-back claim restores the previous values.
+ *
+ * A turbine that has hourly aggregates but no watermark (a database from before
+ * watermarks) is seeded at startup with the end of its latest aggregated hour. Otherwise
+ * scan mode would start it max-catch-up-hours back and aggregate hours that already have
+ * rows a second time.
+ */
+@Service
+public class AggregationWatermarkService {
+    private static final long MICROS_PER_HOUR = 3_600_000_000L;
+    
+    @Autowired
+    private AggregationWatermarkRepository watermarkRepository;
+    
+    @Autowired
+    private TelemetryBatchWriter batchWriter;
+    
+    @Autowired
+    private TelemetryAggregateRepository aggregateRepository;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    // The incremental accumulators detect their own late samples
+    @Value("${telemetry.aggregation.incremental:true}")
+    private boolean incremental;
+    
+    // Watermark per turbine in TelemetryBatch micros
+    private final Map<Long, Long> watermarks = new ConcurrentHashMap<>();
+    private final Set<LateSample> late = ConcurrentHashMap.newKeySet();
+    
+    @PostConstruct
+    public void load() {
+        seedFromAggregates();
+        for (AggregationWatermark watermark : watermarkRepository.findAll()) {
+            watermarks.put(watermark.getTurbineId(), TelemetryBatch.toMicros(watermark.getAggregatedUntil()));
+        }
+    }
+    
+    private void seedFromAggregates() {
+        List<Object[]> latest = aggregateRepository.findLatestHourWithoutWatermark();
+        for (Object[] row : latest) {
+            batchWriter.advanceWatermarks(List.of((Long) row[0]), ((LocalDateTime) row[1]).plusHours(1));
+        }
+        if (!latest.isEmpty()) {
+            System.out.println("Seeded aggregation watermarks of " + latest.size() + " turbines from their latest aggregates");
+        }
+    }
+    
+    /**
+     * Moves the turbines' watermarks up to until in the current transaction and returns the
+     * persisted watermarks they had before; turbines without one are absent from the map.
+     */
+    public Map<Long, LocalDateTime> claim(List<Long> turbineIds, LocalDateTime until) {
+        long untilMicros = TelemetryBatch.toMicros(until);
+        Map<Long, Long> previous = new HashMap<>();
+        for (Long turbineId : turbineIds) {
+            previous.put(turbineId, watermarks.getOrDefault(turbineId, Long.MIN_VALUE));
+            watermarks.merge(turbineId, untilMicros, Math::max);
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        previous.forEach((turbineId, micros) -> watermarks.computeIfPresent(turbineId,
+                            (id, current) -> current == untilMicros ? (micros == Long.MIN_VALUE ? null : micros) : current));
+                    }
+                }
+            });
+        }
+        
+        Map<Long, LocalDateTime> persisted = new HashMap<>();
+        for (AggregationWatermark watermark : watermarkRepository.findAllById(turbineIds)) {
+            persisted.put(watermark.getTurbineId(), watermark.getAggregatedUntil());
+        }
+        batchWriter.advanceWatermarks(turbineIds, until);
+        return persisted;
+    }
+    
+    /**
+     * Moves the turbines' watermarks up to until, for hours aggregated outside scan mode.
+     */
+    public void advance(List<Long> turbineIds, LocalDateTime until) {
+        batchWriter.advanceWatermarks(turbineIds, until);
+        long untilMicros = TelemetryBatch.toMicros(until);
+        Runnable raise = () -> turbineIds.forEach(turbineId -> watermarks.merge(turbineId, untilMicros, Math::max));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    raise.run();
+                }
+            });
+        } else {
+            raise.run();
+        }
+    }
+    
+    /**
+     * Returns the turbines whose persisted watermark is at or past until.
+     */
+    public List<Long> aggregatedThrough(Collection<Long> turbineIds, LocalDateTime until) {
+        List<Long> aggregated = new ArrayList<>();
+        for (AggregationWatermark watermark : watermarkRepository.findAllById(turbineIds)) {
+            if (!watermark.getAggregatedUntil().isBefore(until)) {
+                aggregated.add(watermark.getTurbineId());
+            }
+        }
+        return aggregated;
+    }
+    
+    public boolean isAggregated(long turbineId, LocalDateTime hourEnd) {
+        Long watermark = watermarks.get(turbineId);
+        return watermark != null && watermark >= TelemetryBatch.toMicros(hourEnd);
+    }
+    
+    /**
+     * Records the turbine-hours of samples that were just written behind their turbine's
+     * watermark, checked once the surrounding transaction commits. Scan mode only.
+     */
+    public void checkLate(TelemetryBatch batch) {
+        if (incremental || batch.isEmpty()) {
+            return;
+        }
+        Map<LateSample, Integer> candidates = new HashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            candidates.merge(new LateSample(batch.turbineId(i),
+                Math.floorDiv(batch.timestamp(i), MICROS_PER_HOUR) * MICROS_PER_HOUR), 1, Integer::sum);
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    collectLate(candidates);
+                }
+            });
+        } else {
+            collectLate(candidates);
+        }
+    }
+    
+    /**
+     * Removes and returns the pending late turbine-hours, grouped by hour.
+     */
+    public Map<LocalDateTime, Set<Long>> takeLate() {
+        Map<LocalDateTime, Set<Long>> turbinesByHour = new TreeMap<>();
+        for (LateSample sample : late) {
+            if (late.remove(sample)) {
+                turbinesByHour.computeIfAbsent(TelemetryBatch.fromMicros(sample.hourMicros()), h -> new HashSet<>())
+                    .add(sample.turbineId());
+            }
+        }
+        return turbinesByHour;
+    }
+    
+    public void markLate(LocalDateTime hourStart, Collection<Long> turbineIds) {
+        long hourMicros = TelemetryBatch.toMicros(hourStart);
+        turbineIds.forEach(turbineId -> late.add(new LateSample(turbineId, hourMicros)));
+    }
+    
+    public void clear() {
+        watermarkRepository.deleteAllInBatch();
+        watermarks.clear();
+        late.clear();
+    }
+    
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("turbines", watermarks.size());
+        watermarks.values().stream().min(Long::compare)
+            .ifPresent(micros -> status.put("oldest", TelemetryBatch.fromMicros(micros).toString()));
+        watermarks.values().stream().max(Long::compare)
+            .ifPresent(micros -> status.put("newest", TelemetryBatch.fromMicros(micros).toString()));
+        status.put("pendingLateTurbineHours", late.size());
+        return status;
+    }
+    
+    private void collectLate(Map<LateSample, Integer> candidates) {
+        int samples = 0;
+        for (Map.Entry<LateSample, Integer> candidate : candidates.entrySet()) {
+            Long watermark = watermarks.get(candidate.getKey().turbineId());
+            if (watermark != null && candidate.getKey().hourMicros() < watermark) {
+                late.add(candidate.getKey());
+                samples += candidate.getValue();
+            }
+        }
+        if (samples > 0) {
+            meterRegistry.counter("telemetry.late.samples").increment(samples);
+        }
+    }
+    
+    private record LateSample(long turbineId, long hourMicros) {}
+}
@@ -0,0 +1,167 @@
+package com.wind.turbinemonitor.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Results of AnalyticsService, keyed by its normalized query parameters. Results only
+ * change when aggregated data does, so there is no TTL: the whole cache is dropped when
+ * DataVersionService moves, and a result computed while it moved is not stored.
+ *
+ * Bounded by max-entries and by max-bytes of estimated result size, evicting the least
+ * recently used entries first. Cached values are shared by all callers and must be
+ * treated as read-only. Hits, misses, evictions and invalidations are Micrometer counters
+ * (analytics.cache.*).
+ */
+@Service
+public class AnalyticsCache {
+    // Rough per-object sizes for the size estimate
+    private static final int ENTRY_BYTES = 128;
+    private static final int ROW_BYTES = 160;
+    private static final int MAP_ENTRY_BYTES = 96;
+    
+    @Autowired
+    private DataVersionService dataVersion;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${telemetry.analytics.cache.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${telemetry.analytics.cache.max-entries:10000}")
+    private int maxEntries;
+    
+    @Value("${telemetry.analytics.cache.max-bytes:33554432}")
+    private long maxBytes;
+    
+    // Access-ordered: iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long bytes;
+    private long version;
+    private Counter hits;
+    private Counter misses;
+    private Counter evictions;
+    private Counter invalidations;
+    
+    @PostConstruct
+    public void registerMetrics() {
+        hits = Counter.builder("analytics.cache.hits").register(meterRegistry);
+        misses = Counter.builder("analytics.cache.misses").register(meterRegistry);
+        evictions = Counter.builder("analytics.cache.evictions")
+            .description("Entries dropped to stay within max-entries or max-bytes")
+            .register(meterRegistry);
+        invalidations = Counter.builder("analytics.cache.invalidations")
+            .description("Entries dropped because aggregated data changed")
+            .register(meterRegistry);
+        Gauge.builder("analytics.cache.entries", this, cache -> cache.size()).register(meterRegistry);
+        Gauge.builder("analytics.cache.bytes", this, cache -> cache.bytes()).register(meterRegistry);
+    }
+    
+    /**
+     * The cached result for key, or loader's result, stored unless the data changed while
+     * it was computed. Loaders run outside the cache lock, so two callers may compute the
+     * same key at once.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, Supplier<T> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        long current = dataVersion.current();
+        synchronized (this) {
+            invalidateIfChanged(current);
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                hits.increment();
+                return (T) entry.value;
+            }
+        }
+        misses.increment();
+        T value = loader.get();
+        synchronized (this) {
+            invalidateIfChanged(dataVersion.current());
+            if (version == current) {
+                put(key, value);
+            }
+        }
+        return value;
+    }
+    
+    public synchronized int size() {
+        return entries.size();
+    }
+    
+    public synchronized long bytes() {
+        return bytes;
+    }
+    
+    public synchronized Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("enabled", enabled);
+        status.put("entries", entries.size());
+        status.put("bytes", bytes);
+        status.put("maxEntries", maxEntries);
+        status.put("maxBytes", maxBytes);
+        status.put("dataVersion", version);
+        status.put("hits", (long) hits.count());
+        status.put("misses", (long) misses.count());
+        status.put("evictions", (long) evictions.count());
+        status.put("invalidations", (long) invalidations.count());
+        return status;
+    }
+    
+    private void invalidateIfChanged(long current) {
+        if (current != version) {
+            invalidations.increment(entries.size());
+            entries.clear();
+            bytes = 0;
+            version = current;
+        }
+    }
+    
+    private void put(String key, Object value) {
+        long weight = ENTRY_BYTES + 2L * key.length() + weigh(value);
+        if (weight > maxBytes) {
+            return;
+        }
+        Entry previous = entries.put(key, new Entry(value, weight));
+        if (previous != null) {
+            bytes -= previous.weight;
+        }
+        bytes += weight;
+        Iterator<Entry> eldest = entries.values().iterator();
+        while ((entries.size() > maxEntries || bytes > maxBytes) && eldest.hasNext()) {
+            bytes -= eldest.next().weight;
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+    
+    private static long weigh(Object value) {
+        if (value instanceof Collection<?> collection) {
+            return (long) collection.size() * ROW_BYTES;
+        }
+        if (value instanceof Map<?, ?> map) {
+            long weight = 0;
+            for (Object nested : map.values()) {
+                weight += MAP_ENTRY_BYTES + (nested instanceof Map<?, ?> || nested instanceof Collection<?> ? weigh(nested) : 0);
+            }
+            return weight;
+        }
+        return ROW_BYTES;
+    }
+    
+    private record Entry(Object value, long weight) {}
+}
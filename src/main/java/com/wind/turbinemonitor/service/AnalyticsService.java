@@ -2,33 +2,104 @@ package com.wind.turbinemonitor.service;
 
 import com.wind.turbinemonitor.dto.DailyMetricsDTO;
 import com.wind.turbinemonitor.dto.GraphDataDTO;
-import com.wind.turbinemonitor.model.TelemetryAggregate;
-import com.wind.turbinemonitor.repository.TelemetryAggregateRepository;
+import com.wind.turbinemonitor.model.RollupResolution;
+import com.wind.turbinemonitor.repository.AggregateColumnStore;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.*;
-import java.util.stream.Collectors;
 
+/**
+ * Turbine and fleet analytics over the rollup cascade, answered through AnalyticsCache.
+ * Not transactional itself: each answer is a single RollupService read, so cache hits
+ * never take a connection.
+ */
 @Service
-@Transactional
 public class AnalyticsService {
     @Autowired
-    private TelemetryAggregateRepository aggregateRepository;
+    private RollupService rollupService;
+    
+    @Autowired
+    private AnalyticsCache cache;
+    
+    @Autowired
+    private AggregateColumnStore aggregateStore;
+    
+    @Autowired
+    private AggregationService aggregationService;
     
     public Map<String, Object> getDailyMetrics(Long turbineId, LocalDate date) {
+        return cache.get("turbine-daily:" + turbineId + ":" + date, () -> loadDailyMetrics(turbineId, date));
+    }
+    
+    public Map<String, Object> getHistoricalPerformance(Long turbineId, LocalDate startDate, LocalDate endDate) {
+        return cache.get("historical:" + turbineId + ":" + startDate + ":" + endDate,
+            () -> loadHistoricalPerformance(turbineId, startDate, endDate));
+    }
+    
+    public List<DailyMetricsDTO> getDailyMetrics(LocalDateTime startTime, LocalDateTime endTime, String farmName, String region) {
+        return cache.get("daily:" + rangeKey(startTime, endTime, farmName, region),
+            () -> loadDailyMetrics(startTime, endTime, farmName, region));
+    }
+    
+    public List<GraphDataDTO> getGraphData(LocalDateTime startTime, LocalDateTime endTime, String farmName, String region) {
+        return cache.get("graph:" + rangeKey(startTime, endTime, farmName, region),
+            () -> loadGraphData(startTime, endTime, farmName, region));
+    }
+    
+    /**
+     * A turbine's hourly aggregates as columns: from the off-heap store when it covers the
+     * range, otherwise from the database.
+     */
+    public AggregateColumnStore.Series getHourlySeries(Long turbineId, LocalDateTime startTime, LocalDateTime endTime) {
+        if (aggregateStore.covers(startTime)) {
+            return aggregateStore.series(turbineId, startTime, endTime);
+        }
+        return AggregateColumnStore.Series.of(aggregationService.getAggregatesByTurbine(turbineId, startTime, endTime));
+    }
+    
+    public Map<String, Object> getCacheStatus() {
+        return cache.getStatus();
+    }
+    
+    public Map<String, Object> getAggregateStoreStatus() {
+        return aggregateStore.getStatus();
+    }
+    
+    // Recent ranges are summed off-heap without a query; older ones come from the rollups
+    private RollupService.Totals totals(Long turbineId, LocalDateTime startTime, LocalDateTime endTime) {
+        if (aggregateStore.covers(startTime)) {
+            AggregateColumnStore.Sums sums = aggregateStore.sum(turbineId, startTime, endTime);
+            return new RollupService.Totals(sums.totalGeneration(), sums.hourCount(), sums.sumEfficiency(),
+                sums.sumPowerOutput());
+        }
+        return rollupService.totals(turbineId, startTime, endTime);
+    }
+    
+    /**
+     * Range answers depend only on the hour starts the range covers and the dates of its
+     * ends, so requests that differ by minutes share an entry.
+     */
+    private static String rangeKey(LocalDateTime startTime, LocalDateTime endTime, String farmName, String region) {
+        LocalDateTime firstHour = RollupResolution.HOUR.truncate(startTime);
+        if (firstHour.isBefore(startTime)) {
+            firstHour = firstHour.plusHours(1);
+        }
+        return firstHour + ":" + RollupResolution.HOUR.truncate(endTime) + ":" + startTime.toLocalDate() + ":" +
+               endTime.toLocalDate() + ":" + farmName + ":" + region;
+    }
+    
+    private Map<String, Object> loadDailyMetrics(Long turbineId, LocalDate date) {
         LocalDateTime startTime = date.atStartOfDay();
         LocalDateTime endTime = date.atTime(LocalTime.MAX);
         
-        List<TelemetryAggregate> aggregates = aggregateRepository
-            .findByTurbineAndDateRange(turbineId, startTime, endTime);
+        RollupService.Totals totals = totals(turbineId, startTime, endTime);
         
         Map<String, Object> metrics = new HashMap<>();
         
-        if (aggregates.isEmpty()) {
+        if (totals.hourCount() == 0) {
             metrics.put("totalGeneration", 0.0);
             metrics.put("avgEfficiency", 0.0);
             metrics.put("avgPowerOutput", 0.0);
@@ -36,39 +107,28 @@ public class AnalyticsService {
             return metrics;
         }
         
-        double totalGeneration = aggregates.stream()
-            .mapToDouble(TelemetryAggregate::getTotalGeneration)
-            .sum();
-        
-        double avgEfficiency = aggregates.stream()
-            .mapToDouble(TelemetryAggregate::getAvgEfficiency)
-            .average()
-            .orElse(0.0);
-        
-        double avgPowerOutput = aggregates.stream()
-            .mapToDouble(TelemetryAggregate::getAvgPowerOutput)
-            .average()
-            .orElse(0.0);
-        
-        metrics.put("totalGeneration", totalGeneration);
-        metrics.put("avgEfficiency", avgEfficiency);
-        metrics.put("avgPowerOutput", avgPowerOutput);
-        metrics.put("hourCount", aggregates.size());
+        metrics.put("totalGeneration", totals.totalGeneration());
+        metrics.put("avgEfficiency", totals.avgEfficiency());
+        metrics.put("avgPowerOutput", totals.avgPowerOutput());
+        metrics.put("hourCount", (int) totals.hourCount());
         metrics.put("date", date.toString());
         
         return metrics;
     }
     
-    public Map<String, Object> getHistoricalPerformance(Long turbineId, LocalDate startDate, LocalDate endDate) {
+    /**
+     * Read from the coarsest rollups that cover the range, so a year is a dozen MONTH rows
+     * rather than 8,760 hourly aggregates.
+     */
+    private Map<String, Object> loadHistoricalPerformance(Long turbineId, LocalDate startDate, LocalDate endDate) {
         LocalDateTime startTime = startDate.atStartOfDay();
         LocalDateTime endTime = endDate.atTime(LocalTime.MAX);
         
-        List<TelemetryAggregate> aggregates = aggregateRepository
-            .findByTurbineAndDateRange(turbineId, startTime, endTime);
+        RollupService.Totals totals = totals(turbineId, startTime, endTime);
         
         Map<String, Object> performance = new HashMap<>();
         
-        if (aggregates.isEmpty()) {
+        if (totals.hourCount() == 0) {
             performance.put("totalGeneration", 0.0);
             performance.put("avgEfficiency", 0.0);
             performance.put("avgPowerOutput", 0.0);
@@ -76,102 +136,51 @@ public class AnalyticsService {
             return performance;
         }
         
-        double totalGeneration = aggregates.stream()
-            .mapToDouble(TelemetryAggregate::getTotalGeneration)
-            .sum();
-        
-        double avgEfficiency = aggregates.stream()
-            .mapToDouble(TelemetryAggregate::getAvgEfficiency)
-            .average()
-            .orElse(0.0);
-        
-        double avgPowerOutput = aggregates.stream()
-            .mapToDouble(TelemetryAggregate::getAvgPowerOutput)
-            .average()
-            .orElse(0.0);
-        
-        performance.put("totalGeneration", totalGeneration);
-        performance.put("avgEfficiency", avgEfficiency);
-        performance.put("avgPowerOutput", avgPowerOutput);
-        performance.put("dataPoints", aggregates.size());
+        performance.put("totalGeneration", totals.totalGeneration());
+        performance.put("avgEfficiency", totals.avgEfficiency());
+        performance.put("avgPowerOutput", totals.avgPowerOutput());
+        performance.put("dataPoints", (int) totals.hourCount());
         performance.put("startDate", startDate.toString());
         performance.put("endDate", endDate.toString());
         
         return performance;
     }
     
-    public List<DailyMetricsDTO> getDailyMetrics(LocalDateTime startTime, LocalDateTime endTime, String farmName, String region) {
-        // Get all aggregates for the date range with filters
-        List<TelemetryAggregate> aggregates;
-        if (farmName != null || region != null) {
-            aggregates = aggregateRepository.findByDateRangeAndFilters(startTime, endTime, farmName, region);
-        } else {
-            aggregates = aggregateRepository.findByDateRange(startTime, endTime);
-        }
-        
-        // Group by date and farm
-        Map<String, Map<String, DailyFarmData>> dailyFarmMap = new HashMap<>();
-        
-        for (TelemetryAggregate agg : aggregates) {
-            String dateKey = agg.getHourStart().toLocalDate().toString();
-            String farm = agg.getTurbine().getFarm().getName();
-            
-            dailyFarmMap.putIfAbsent(dateKey, new HashMap<>());
-            Map<String, DailyFarmData> farmMap = dailyFarmMap.get(dateKey);
-            farmMap.putIfAbsent(farm, new DailyFarmData());
-            
-            DailyFarmData farmData = farmMap.get(farm);
-            farmData.totalGeneration += agg.getTotalGeneration() != null ? agg.getTotalGeneration() : 0.0;
-            farmData.sumEfficiency += agg.getAvgEfficiency() != null ? agg.getAvgEfficiency() : 0.0;
-            farmData.count += 1;
-            farmData.maxPower += (agg.getAvgPowerOutput() != null ? agg.getAvgPowerOutput() : 0.0) * 1000; // Convert MW to kW
+    /**
+     * One row per farm and day plus an "All Farms" row per day, from grouped (day, farm,
+     * sums, counts) rows: no aggregate entities or turbine/farm associations are loaded.
+     */
+    private List<DailyMetricsDTO> loadDailyMetrics(LocalDateTime startTime, LocalDateTime endTime, String farmName, String region) {
+        // Per-farm day totals: DAY rollups for whole days, hourly aggregates for the partial days at the edges
+        SortedMap<LocalDate, SortedMap<String, DailyFarmData>> dailyFarmMap = new TreeMap<>();
+        for (RollupService.FarmDay day : rollupService.dailyByFarm(startTime, endTime, farmName, region)) {
+            DailyFarmData farmData = dailyFarmMap.computeIfAbsent(day.date(), d -> new TreeMap<>())
+                .computeIfAbsent(day.farm(), f -> new DailyFarmData());
+            farmData.totalGeneration += day.totalGeneration();
+            farmData.sumEfficiency += day.sumHourlyEfficiency();
+            farmData.count += (int) day.hourCount();
+            farmData.maxPower += day.sumHourlyPowerOutput() * 1000; // Convert MW to kW
         }
         
-        // Create DTOs: one per farm per day, plus "All Farms" per day
+        // Create DTOs: "All Farms" first, then one per farm, for each day
         List<DailyMetricsDTO> result = new ArrayList<>();
-        
-        // Get all unique dates
-        Set<String> dates = new TreeSet<>(dailyFarmMap.keySet());
-        
-        for (String dateKey : dates) {
-            Map<String, DailyFarmData> farmMap = dailyFarmMap.get(dateKey);
+        for (Map.Entry<LocalDate, SortedMap<String, DailyFarmData>> entry : dailyFarmMap.entrySet()) {
+            String dateKey = entry.getKey().toString();
             
-            // Calculate "All Farms" totals
             DailyFarmData allFarmsData = new DailyFarmData();
-            for (DailyFarmData farmData : farmMap.values()) {
+            for (DailyFarmData farmData : entry.getValue().values()) {
                 allFarmsData.totalGeneration += farmData.totalGeneration;
                 allFarmsData.sumEfficiency += farmData.sumEfficiency;
                 allFarmsData.count += farmData.count;
                 allFarmsData.maxPower += farmData.maxPower;
             }
-            
-            // Add "All Farms" row first
             if (allFarmsData.count > 0) {
-                result.add(new DailyMetricsDTO(
-                    dateKey,
-                    "All Farms",
-                    allFarmsData.totalGeneration,
-                    allFarmsData.count > 0 ? allFarmsData.sumEfficiency / allFarmsData.count : 0.0,
-                    allFarmsData.count,
-                    allFarmsData.maxPower
-                ));
+                result.add(toDto(dateKey, "All Farms", allFarmsData));
             }
             
-            // Add individual farm rows
-            List<String> sortedFarms = new ArrayList<>(farmMap.keySet());
-            Collections.sort(sortedFarms);
-            
-            for (String farm : sortedFarms) {
-                DailyFarmData farmData = farmMap.get(farm);
-                if (farmData.count > 0) {
-                    result.add(new DailyMetricsDTO(
-                        dateKey,
-                        farm,
-                        farmData.totalGeneration,
-                        farmData.sumEfficiency / farmData.count,
-                        farmData.count,
-                        farmData.maxPower
-                    ));
+            for (Map.Entry<String, DailyFarmData> farm : entry.getValue().entrySet()) {
+                if (farm.getValue().count > 0) {
+                    result.add(toDto(dateKey, farm.getKey(), farm.getValue()));
                 }
             }
         }
@@ -179,44 +188,31 @@ public class AnalyticsService {
         return result;
     }
     
-    public List<GraphDataDTO> getGraphData(LocalDateTime startTime, LocalDateTime endTime, String farmName, String region) {
-        // Get daily metrics
-        List<DailyMetricsDTO> dailyMetrics = getDailyMetrics(startTime, endTime, farmName, region);
-        
-        // Filter to only "All Farms" rows and extract for graph
-        Map<String, GraphDataDTO> graphMap = new LinkedHashMap<>();
-        
-        // First, populate with "All Farms" data
-        for (DailyMetricsDTO metric : dailyMetrics) {
-            if ("All Farms".equals(metric.getFarm())) {
-                graphMap.put(metric.getDate(), new GraphDataDTO(
-                    metric.getDate(),
-                    metric.getTotalGeneration(),
-                    metric.getAvgEfficiency()
-                ));
-            }
-        }
-        
-        // Fill in missing dates with zeros
-        LocalDate startDate = startTime.toLocalDate();
-        LocalDate endDate = endTime.toLocalDate();
-        LocalDate currentDate = startDate;
+    /**
+     * Fleet totals per day with missing days as zeros, grouped by day alone in the database.
+     */
+    private List<GraphDataDTO> loadGraphData(LocalDateTime startTime, LocalDateTime endTime, String farmName, String region) {
+        SortedMap<LocalDate, RollupService.Totals> days = rollupService.daily(startTime, endTime, farmName, region);
         
         List<GraphDataDTO> result = new ArrayList<>();
-        while (!currentDate.isAfter(endDate)) {
-            String dateKey = currentDate.toString();
-            GraphDataDTO data = graphMap.get(dateKey);
-            if (data != null) {
-                result.add(data);
+        LocalDate endDate = endTime.toLocalDate();
+        for (LocalDate date = startTime.toLocalDate(); !date.isAfter(endDate); date = date.plusDays(1)) {
+            RollupService.Totals totals = days.get(date);
+            if (totals != null && totals.hourCount() > 0) {
+                result.add(new GraphDataDTO(date.toString(), totals.totalGeneration(), totals.avgEfficiency()));
             } else {
-                result.add(new GraphDataDTO(dateKey, 0.0, 0.0));
+                result.add(new GraphDataDTO(date.toString(), 0.0, 0.0));
             }
-            currentDate = currentDate.plusDays(1);
         }
         
         return result;
     }
     
+    private static DailyMetricsDTO toDto(String date, String farm, DailyFarmData data) {
+        return new DailyMetricsDTO(date, farm, data.totalGeneration, data.sumEfficiency / data.count,
+            data.count, data.maxPower);
+    }
+    
     // Helper class for intermediate calculations
     private static class DailyFarmData {
         double totalGeneration = 0.0;
@@ -5,6 +5,7 @@ import com.wind.turbinemonitor.model.HealthAlert;
 import com.wind.turbinemonitor.model.TelemetryAggregate;
 import com.wind.turbinemonitor.model.Turbine;
 import com.wind.turbinemonitor.repository.HealthAlertRepository;
+import com.wind.turbinemonitor.util.ChannelStats;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -27,9 +28,47 @@ public class AnomalyService {
     private static final double TEMPERATURE_THRESHOLD_HIGH = 80.0;
     private static final double TEMPERATURE_THRESHOLD_LOW = -20.0;
     private static final double POWER_OUTPUT_THRESHOLD_LOW = 0.1;
+    private static final double SPIKE_QUANTILE = 0.99;
+    
+    private static final int TEMPERATURE = 3;
+    private static final int VIBRATION = 4;
     
     public boolean detectAnomaly(TelemetryAggregate aggregate) {
+        HealthAlert alert = evaluate(aggregate);
+        if (alert != null) {
+            alertRepository.save(alert);
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Evaluates a batch of aggregates, sets hasAnomaly on each, and returns the alerts
+     * raised, unsaved.
+     */
+    public List<HealthAlert> evaluateAll(List<TelemetryAggregate> aggregates) {
+        List<HealthAlert> alerts = new ArrayList<>();
+        for (TelemetryAggregate aggregate : aggregates) {
+            HealthAlert alert = evaluate(aggregate);
+            aggregate.setHasAnomaly(alert != null);
+            if (alert != null) {
+                alerts.add(alert);
+            }
+        }
+        return alerts;
+    }
+    
+    /**
+     * Checks the aggregate against the thresholds and returns the alert it raises, unsaved,
+     * or null when it is healthy. Lets callers write alerts for a whole hour in one batch.
+     *
+     * With channel stats, short vibration spikes and temperature peaks are caught even when
+     * the hourly average stays below the threshold: the p99 of vibration and the maximum
+     * temperature are checked as well.
+     */
+    public HealthAlert evaluate(TelemetryAggregate aggregate) {
         List<String> anomalies = new ArrayList<>();
+        ChannelStats stats = aggregate.getChannelStats() != null ? ChannelStats.decode(aggregate.getChannelStats()) : null;
         
         if (aggregate.getAvgEfficiency() < EFFICIENCY_THRESHOLD_LOW) {
             anomalies.add("Low efficiency: " + String.format("%.2f", aggregate.getAvgEfficiency()) + "%");
@@ -41,10 +80,15 @@ public class AnomalyService {
         
         if (aggregate.getAvgVibration() > VIBRATION_THRESHOLD) {
             anomalies.add("High vibration: " + String.format("%.2f", aggregate.getAvgVibration()));
+        } else if (stats != null && stats.quantile(VIBRATION, SPIKE_QUANTILE) > VIBRATION_THRESHOLD) {
+            anomalies.add("Vibration spikes: p99 " + String.format("%.2f", stats.quantile(VIBRATION, SPIKE_QUANTILE)) +
+                          ", max " + String.format("%.2f", stats.max(VIBRATION)));
         }
         
         if (aggregate.getAvgTemperature() > TEMPERATURE_THRESHOLD_HIGH) {
             anomalies.add("High temperature: " + String.format("%.2f", aggregate.getAvgTemperature()) + "°C");
+        } else if (stats != null && stats.max(TEMPERATURE) > TEMPERATURE_THRESHOLD_HIGH) {
+            anomalies.add("Temperature peak: " + String.format("%.2f", stats.max(TEMPERATURE)) + "°C");
         }
         
         if (aggregate.getAvgTemperature() < TEMPERATURE_THRESHOLD_LOW) {
@@ -55,20 +99,24 @@ public class AnomalyService {
             anomalies.add("Low power output despite sufficient wind");
         }
         
-        if (!anomalies.isEmpty()) {
-            String message = String.join("; ", anomalies);
-            String severity = determineSeverity(aggregate);
-            createAlert(aggregate.getTurbine(), "ANOMALY_DETECTED", severity, message);
-            return true;
+        if (anomalies.isEmpty()) {
+            return null;
         }
         
-        return false;
+        String message = String.join("; ", anomalies);
+        String severity = determineSeverity(aggregate, stats);
+        HealthAlert alert = new HealthAlert(aggregate.getTurbine(), "ANOMALY_DETECTED", severity, message);
+        alert.setAggregateHour(aggregate.getHourStart());
+        return alert;
     }
     
-    private String determineSeverity(TelemetryAggregate aggregate) {
+    private String determineSeverity(TelemetryAggregate aggregate, ChannelStats stats) {
         int criticalCount = 0;
+        double vibration = stats != null && stats.count(VIBRATION) > 0
+            ? Math.max(aggregate.getAvgVibration(), stats.quantile(VIBRATION, SPIKE_QUANTILE))
+            : aggregate.getAvgVibration();
         
-        if (aggregate.getAvgVibration() > VIBRATION_THRESHOLD * 1.5) criticalCount++;
+        if (vibration > VIBRATION_THRESHOLD * 1.5) criticalCount++;
         if (aggregate.getAvgTemperature() > TEMPERATURE_THRESHOLD_HIGH + 10) criticalCount++;
         if (aggregate.getAvgEfficiency() < EFFICIENCY_THRESHOLD_LOW / 2) criticalCount++;
         
@@ -0,0 +1,447 @@
+package com.wind.turbinemonitor.service;
+
+import com.wind.turbinemonitor.model.BackfillCheckpoint;
+import com.wind.turbinemonitor.model.BackfillJob;
+import com.wind.turbinemonitor.model.Turbine;
+import com.wind.turbinemonitor.repository.BackfillCheckpointRepository;
+import com.wind.turbinemonitor.repository.BackfillJobRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Rebuilds aggregates, rollups and anomaly alerts for an hour range from raw telemetry, for
+ * history that was never aggregated and for reprocessing after anomaly thresholds change.
+ *
+ * A job is split into hour x shard tasks (turbine id modulo telemetry.aggregation.shards),
+ * run oldest hour first on a pool of telemetry.backfill.threads, at most
+ * max-tasks-per-second. Each task is one transaction that replaces the shard's hour through
+ * AggregationService.rebuildHour and writes a BackfillCheckpoint, so running a range again
+ * gives the same result and a job interrupted by a restart resumes where it stopped.
+ *
+ * Before the tasks of an hour are queued, the job claims its turbines' watermarks up to
+ * the end of that hour, so the normal scan pass leaves the hour to the job. A job that is
+ * cancelled has claimed no hour it did not queue; a task that fails leaves its hour
+ * claimed but unaggregated until the job is run again. The range is clipped to hours that
+ * the live aggregation has already closed. One job runs at a time; others wait as PENDING.
+ */
+@Service
+public class BackfillService {
+    @Autowired
+    private AggregationService aggregationService;
+    
+    @Autowired
+    private AggregationWatermarkService watermarkService;
+    
+    @Autowired
+    private IncrementalAggregationService incrementalAggregation;
+    
+    @Autowired
+    private TurbineRegistry turbineRegistry;
+    
+    @Autowired
+    private BackfillJobRepository jobRepository;
+    
+    @Autowired
+    private BackfillCheckpointRepository checkpointRepository;
+    
+    @Autowired
+    private AggregationLock aggregationLock;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Value("${telemetry.aggregation.shards:16}")
+    private int shardCount;
+    
+    @Value("${telemetry.backfill.threads:2}")
+    private int threads;
+    
+    // 0 = no limit
+    @Value("${telemetry.backfill.max-tasks-per-second:0}")
+    private double maxTasksPerSecond;
+    
+    private TransactionTemplate taskTransaction;
+    private ExecutorService executor;
+    private volatile RunningJob running;
+    private volatile boolean stopping;
+    
+    @PostConstruct
+    public void start() {
+        taskTransaction = new TransactionTemplate(transactionManager);
+        AtomicInteger threadId = new AtomicInteger();
+        // One more thread for the job's dispatcher, which waits while the tasks run
+        executor = Executors.newFixedThreadPool(threads + 1, r -> new Thread(r, "backfill-" + threadId.getAndIncrement()));
+    }
+    
+    // Jobs that were RUNNING when the application stopped continue from their checkpoints
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterrupted() {
+        startNext();
+    }
+    
+    /**
+     * Queues a job for the hours overlapping [start, end) and returns it. turbineIds, farm
+     * and region narrow the turbines; null means no restriction.
+     *
+     * @throws IllegalArgumentException if no closed hour is left in the range
+     */
+    public BackfillJob submit(LocalDateTime start, LocalDateTime end, List<Long> turbineIds, String farm, String region) {
+        LocalDateTime rangeStart = start.truncatedTo(ChronoUnit.HOURS);
+        LocalDateTime rangeEnd = end.truncatedTo(ChronoUnit.HOURS);
+        if (rangeEnd.isBefore(end)) {
+            rangeEnd = rangeEnd.plusHours(1);
+        }
+        LocalDateTime closedBefore = incrementalAggregation.isEnabled()
+            ? incrementalAggregation.getClosedBefore()
+            : LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+        if (rangeEnd.isAfter(closedBefore)) {
+            rangeEnd = closedBefore;
+        }
+        if (!rangeStart.isBefore(rangeEnd)) {
+            throw new IllegalArgumentException("No closed hour between " + start + " and " + end +
+                                               "; hours from " + closedBefore + " on are still being aggregated");
+        }
+        
+        String ids = turbineIds == null || turbineIds.isEmpty() ? null
+            : turbineIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+        BackfillJob job = new BackfillJob(rangeStart, rangeEnd, blankToNull(farm), blankToNull(region), ids, shardCount);
+        job.setTotalTasks(hours(job) * shards(job).size());
+        job = jobRepository.save(job);
+        System.out.println("Queued backfill job " + job.getId() + " for " + rangeStart + " to " + rangeEnd +
+                           " (" + job.getTotalTasks() + " tasks)");
+        startNext();
+        return job;
+    }
+    
+    /**
+     * Stops a running job after its in-flight tasks, or drops a pending one. Returns false
+     * if the job is not pending or running.
+     */
+    public synchronized boolean cancel(Long jobId) {
+        RunningJob current = running;
+        if (current != null && current.jobId == jobId) {
+            current.cancelled = true;
+            return true;
+        }
+        BackfillJob job = jobRepository.findById(jobId).orElse(null);
+        if (job == null || !BackfillJob.PENDING.equals(job.getStatus())) {
+            return false;
+        }
+        job.setStatus(BackfillJob.CANCELLED);
+        job.setFinishedAt(LocalDateTime.now());
+        jobRepository.save(job);
+        return true;
+    }
+    
+    /**
+     * Queues a cancelled or failed job again; it skips the tasks that already completed.
+     * Returns false if the job is in any other state.
+     */
+    public boolean resume(Long jobId) {
+        synchronized (this) {
+            BackfillJob job = jobRepository.findById(jobId).orElse(null);
+            if (job == null || !(BackfillJob.CANCELLED.equals(job.getStatus()) || BackfillJob.FAILED.equals(job.getStatus()))) {
+                return false;
+            }
+            job.setStatus(BackfillJob.PENDING);
+            job.setFinishedAt(null);
+            jobRepository.save(job);
+        }
+        startNext();
+        return true;
+    }
+    
+    public List<Map<String, Object>> getJobs() {
+        List<Map<String, Object>> jobs = new ArrayList<>();
+        for (BackfillJob job : jobRepository.findAllByOrderByCreatedAtDesc()) {
+            jobs.add(toMap(job));
+        }
+        return jobs;
+    }
+    
+    public Map<String, Object> getJob(Long jobId) {
+        return jobRepository.findById(jobId).map(this::toMap).orElse(null);
+    }
+    
+    private synchronized void startNext() {
+        if (running != null || stopping) {
+            return;
+        }
+        List<BackfillJob> queued = jobRepository.findByStatusInOrderByCreatedAt(List.of(BackfillJob.RUNNING, BackfillJob.PENDING));
+        if (queued.isEmpty()) {
+            return;
+        }
+        BackfillJob job = queued.get(0);
+        Map<Integer, List<Long>> shards = shards(job);
+        Set<String> done = new HashSet<>();
+        long aggregatesBefore = 0;
+        for (BackfillCheckpoint checkpoint : checkpointRepository.findByJob(job.getId())) {
+            done.add(taskKey(checkpoint.getHourStart(), checkpoint.getShard()));
+            aggregatesBefore += checkpoint.getAggregateCount();
+        }
+        
+        job.setStatus(BackfillJob.RUNNING);
+        job.setTotalTasks(hours(job) * shards.size());
+        job.setFailedTasks(0);
+        job.setLastError(null);
+        if (job.getStartedAt() == null) {
+            job.setStartedAt(LocalDateTime.now());
+        }
+        jobRepository.save(job);
+        
+        RunningJob current = new RunningJob(job.getId(), job.getTotalTasks(), done.size(), aggregatesBefore);
+        running = current;
+        try {
+            executor.execute(() -> dispatch(job, shards, done, current));
+        } catch (RejectedExecutionException e) {
+            // Shutting down; the job stays RUNNING and is resumed on the next start
+            running = null;
+        }
+    }
+    
+    private void dispatch(BackfillJob job, Map<Integer, List<Long>> shards, Set<String> done, RunningJob current) {
+        System.out.println("Backfill job " + job.getId() + " started: " + current.total + " tasks, " +
+                           current.completedBefore + " already done");
+        Semaphore inFlight = new Semaphore(threads);
+        long intervalNanos = maxTasksPerSecond > 0 ? (long) (1_000_000_000L / maxTasksPerSecond) : 0;
+        long nextSubmit = System.nanoTime();
+        try {
+            tasks:
+            for (LocalDateTime hour = job.getRangeStart(); hour.isBefore(job.getRangeEnd()); hour = hour.plusHours(1)) {
+                if (current.cancelled || stopping) {
+                    break;
+                }
+                if (!claim(job.getId(), hour, shards, done, current)) {
+                    continue;
+                }
+                // A claimed hour is queued in full even if the job is cancelled meanwhile
+                for (Map.Entry<Integer, List<Long>> shard : shards.entrySet()) {
+                    if (stopping) {
+                        break tasks;
+                    }
+                    if (done.contains(taskKey(hour, shard.getKey()))) {
+                        continue;
+                    }
+                    if (intervalNanos > 0) {
+                        long wait = nextSubmit - System.nanoTime();
+                        if (wait > 0) {
+                            TimeUnit.NANOSECONDS.sleep(wait);
+                        }
+                        nextSubmit = Math.max(nextSubmit, System.nanoTime()) + intervalNanos;
+                    }
+                    inFlight.acquire();
+                    LocalDateTime hourStart = hour;
+                    try {
+                        executor.execute(() -> {
+                            try {
+                                runTask(job.getId(), hourStart, shard.getKey(), shard.getValue(), current);
+                            } finally {
+                                inFlight.release();
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        // Shutting down
+                        inFlight.release();
+                        break tasks;
+                    }
+                }
+            }
+            inFlight.acquire(threads);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            current.cancelled = true;
+        }
+        finish(job, current);
+    }
+    
+    // Claims the watermarks of the shards with a task left in the hour; false if there is none or the claim failed
+    private boolean claim(long jobId, LocalDateTime hourStart, Map<Integer, List<Long>> shards, Set<String> done,
+                          RunningJob current) {
+        List<Long> turbineIds = new ArrayList<>();
+        int tasks = 0;
+        for (Map.Entry<Integer, List<Long>> shard : shards.entrySet()) {
+            if (!done.contains(taskKey(hourStart, shard.getKey()))) {
+                turbineIds.addAll(shard.getValue());
+                tasks++;
+            }
+        }
+        if (tasks == 0) {
+            return false;
+        }
+        try {
+            taskTransaction.executeWithoutResult(status -> watermarkService.claim(turbineIds, hourStart.plusHours(1)));
+            return true;
+        } catch (RuntimeException e) {
+            current.failed.addAndGet(tasks);
+            current.lastError = hourStart + " watermark claim: " + e.getMessage();
+            System.err.println("Backfill job " + jobId + " skipped " + tasks + " tasks of " + hourStart +
+                               ", claiming watermarks failed: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    private void runTask(long jobId, LocalDateTime hourStart, int shard, List<Long> turbineIds, RunningJob current) {
+        try {
+            Integer aggregates = aggregationLock.shared(() -> taskTransaction.execute(status -> {
+                int written = aggregationService.rebuildHour(hourStart, turbineIds);
+                checkpointRepository.save(new BackfillCheckpoint(jobId, hourStart, shard, written));
+                return written;
+            }));
+            current.aggregates.addAndGet(aggregates);
+            current.completed.incrementAndGet();
+        } catch (RuntimeException e) {
+            current.failed.incrementAndGet();
+            current.lastError = hourStart + " shard " + shard + ": " + e.getMessage();
+            System.err.println("Backfill job " + jobId + " task failed for " + current.lastError);
+        }
+    }
+    
+    private void finish(BackfillJob job, RunningJob current) {
+        synchronized (this) {
+            running = null;
+            if (stopping) {
+                // Left RUNNING; resumed from its checkpoints on the next start
+                return;
+            }
+            job.setCompletedTasks(current.completedBefore + current.completed.get());
+            job.setFailedTasks(current.failed.get());
+            job.setAggregateCount(current.aggregates.get());
+            job.setLastError(current.lastError != null && current.lastError.length() > 1000
+                ? current.lastError.substring(0, 1000) : current.lastError);
+            job.setFinishedAt(LocalDateTime.now());
+            if (current.cancelled) {
+                job.setStatus(BackfillJob.CANCELLED);
+            } else if (current.failed.get() > 0) {
+                job.setStatus(BackfillJob.FAILED);
+            } else {
+                job.setStatus(BackfillJob.COMPLETED);
+            }
+            jobRepository.save(job);
+            System.out.println("Backfill job " + job.getId() + " " + job.getStatus().toLowerCase() + ": " +
+                               job.getCompletedTasks() + "/" + job.getTotalTasks() + " tasks, " +
+                               job.getAggregateCount() + " aggregates");
+        }
+        startNext();
+    }
+    
+    // Turbines of the job grouped by shard; empty shards are left out
+    private Map<Integer, List<Long>> shards(BackfillJob job) {
+        Set<Long> only = null;
+        if (job.getTurbineIds() != null) {
+            only = new HashSet<>();
+            for (String id : job.getTurbineIds().split(",")) {
+                only.add(Long.parseLong(id.trim()));
+            }
+        }
+        Map<Integer, List<Long>> shards = new TreeMap<>();
+        for (Turbine turbine : turbineRegistry.filter(job.getFarmName(), job.getRegion(), null)) {
+            if (only == null || only.contains(turbine.getId())) {
+                shards.computeIfAbsent(Math.floorMod(turbine.getId(), job.getShardCount()), s -> new ArrayList<>())
+                    .add(turbine.getId());
+            }
+        }
+        return shards;
+    }
+    
+    private static int hours(BackfillJob job) {
+        return (int) ChronoUnit.HOURS.between(job.getRangeStart(), job.getRangeEnd());
+    }
+    
+    private static String taskKey(LocalDateTime hourStart, int shard) {
+        return hourStart + "/" + shard;
+    }
+    
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+    
+    private Map<String, Object> toMap(BackfillJob job) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("id", job.getId());
+        map.put("status", job.getStatus());
+        map.put("rangeStart", job.getRangeStart().toString());
+        map.put("rangeEnd", job.getRangeEnd().toString());
+        map.put("farm", job.getFarmName());
+        map.put("region", job.getRegion());
+        map.put("turbineIds", job.getTurbineIds());
+        map.put("totalTasks", job.getTotalTasks());
+        map.put("createdAt", job.getCreatedAt().toString());
+        map.put("startedAt", job.getStartedAt() != null ? job.getStartedAt().toString() : null);
+        map.put("finishedAt", job.getFinishedAt() != null ? job.getFinishedAt().toString() : null);
+        
+        RunningJob current = running;
+        if (current != null && current.jobId == job.getId()) {
+            int completed = current.completedBefore + current.completed.get();
+            double elapsedSeconds = (System.nanoTime() - current.startNanos) / 1e9;
+            double tasksPerSecond = elapsedSeconds > 0 ? current.completed.get() / elapsedSeconds : 0;
+            int remaining = current.total - completed - current.failed.get();
+            map.put("completedTasks", completed);
+            map.put("failedTasks", current.failed.get());
+            map.put("aggregates", current.aggregates.get());
+            map.put("lastError", current.lastError);
+            map.put("cancelling", current.cancelled);
+            map.put("elapsedSeconds", Math.round(elapsedSeconds));
+            map.put("tasksPerSecond", Math.round(tasksPerSecond * 100) / 100.0);
+            // Based on this run's rate; null until the first task completes
+            map.put("etaSeconds", tasksPerSecond > 0 ? Math.round(remaining / tasksPerSecond) : null);
+        } else {
+            map.put("completedTasks", job.getCompletedTasks());
+            map.put("failedTasks", job.getFailedTasks());
+            map.put("aggregates", job.getAggregateCount());
+            map.put("lastError", job.getLastError());
+        }
+        map.put("progress", job.getTotalTasks() > 0
+            ? Math.round((Integer) map.get("completedTasks") * 1000.0 / job.getTotalTasks()) / 10.0 : 100.0);
+        return map;
+    }
+    
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        stopping = true;
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+    }
+    
+    private static final class RunningJob {
+        final long jobId;
+        final int total;
+        final int completedBefore;
+        final long startNanos = System.nanoTime();
+        final AtomicInteger completed = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final AtomicLong aggregates;
+        volatile boolean cancelled;
+        volatile String lastError;
+        
+        RunningJob(long jobId, int total, int completedBefore, long aggregatesBefore) {
+            this.jobId = jobId;
+            this.total = total;
+            this.completedBefore = completedBefore;
+            this.aggregates = new AtomicLong(aggregatesBefore);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.wind.turbinemonitor.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counter of changes to aggregated data. Every write of hourly aggregates, and every
+ * rebuild or retention run of the levels above them, bumps it once its transaction has
+ * committed; AnalyticsCache drops its results whenever it moves. Not persisted: it starts
+ * at zero, like the cache.
+ */
+@Service
+public class DataVersionService {
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    private final AtomicLong version = new AtomicLong();
+    
+    @PostConstruct
+    public void registerMetrics() {
+        Gauge.builder("telemetry.data.version", version, AtomicLong::get)
+            .description("Changes to aggregated data since startup")
+            .register(meterRegistry);
+    }
+    
+    public long current() {
+        return version.get();
+    }
+    
+    /**
+     * Bumps the version when the current transaction commits, or right away outside one.
+     * Readers can therefore never cache a result computed before the change under the new
+     * version.
+     */
+    public void bumpAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    version.incrementAndGet();
+                }
+            });
+        } else {
+            version.incrementAndGet();
+        }
+    }
+}
@@ -5,7 +5,9 @@ import com.wind.turbinemonitor.repository.FarmRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 @Service
@@ -14,6 +16,12 @@ public class FarmService {
     @Autowired
     private FarmRepository farmRepository;
     
+    @Autowired
+    private TurbineRegistry turbineRegistry;
+    
+    @Autowired
+    private RollupService rollupService;
+    
     public List<Farm> getAllFarms() {
         return farmRepository.findAll();
     }
@@ -31,20 +39,31 @@ public class FarmService {
     }
     
     public Farm createFarm(Farm farm) {
-        return farmRepository.save(farm);
+        Farm saved = farmRepository.save(farm);
+        turbineRegistry.farmSaved(saved);
+        return saved;
     }
     
     public Farm updateFarm(Long id, Farm farmDetails) {
         Farm farm = farmRepository.findById(id)
             .orElseThrow(() -> new RuntimeException("Farm not found with id: " + id));
+        // Daily summaries are keyed by farm name; regions are looked up when they are read
+        String oldName = farm.getName();
+        boolean renamed = !Objects.equals(oldName, farmDetails.getName());
         farm.setName(farmDetails.getName());
         farm.setRegion(farmDetails.getRegion());
         farm.setLocation(farmDetails.getLocation());
-        return farmRepository.save(farm);
+        Farm saved = farmRepository.save(farm);
+        turbineRegistry.farmSaved(saved);
+        if (renamed) {
+            rollupService.regroupFarms(Arrays.asList(oldName, saved.getName()));
+        }
+        return saved;
     }
     
     public void deleteFarm(Long id) {
         farmRepository.deleteById(id);
+        turbineRegistry.farmDeleted(id);
     }
 }
 
@@ -0,0 +1,448 @@
+package com.wind.turbinemonitor.service;
+
+import com.wind.turbinemonitor.ingest.HourAccumulator;
+import com.wind.turbinemonitor.ingest.TelemetryBatch;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Hourly aggregation without re-reading raw telemetry (telemetry.aggregation.incremental).
+ *
+ * Every committed batch of samples is folded into an accumulator for its minute. Once a
+ * minute has ended and close-delay-seconds have passed, it is added to the MINUTE rollups
+ * and merged into the accumulator of its hour; when the hour has ended as well, its
+ * aggregates are written straight from that. A sample for a minute that was already
+ * flushed but whose hour is still open starts a new accumulator for the minute, which is
+ * added to the same rollup when it closes. The same accumulators answer "current hour so
+ * far" queries.
+ *
+ * Samples that arrive for an hour that has already closed are queued and merged into the
+ * stored aggregates and rollups on the next pass (AggregationService.mergeLate), without
+ * re-reading the hour. Their volume is published as telemetry.late.samples and
+ * telemetry.late.merged.turbine.hours on the actuator metrics endpoint.
+ *
+ * Raw telemetry is only read again to recover:
+ * - an hour that was already running when the application started, whose accumulator
+ *   missed the earlier samples, is recomputed from raw rows when it closes;
+ * - turbine-hours whose close or merge failed, or that have more late samples queued than
+ *   late-merge-max-samples, are recomputed on the next pass.
+ *
+ * Accumulators count what was committed to telemetry: TelemetryService passes on only the
+ * rows the insert actually added, so samples skipped as duplicates are not counted again.
+ */
+@Service
+public class IncrementalAggregationService {
+    private static final long MICROS_PER_MINUTE = 60_000_000L;
+    private static final long MICROS_PER_HOUR = 3_600_000_000L;
+    
+    @Autowired
+    private AggregationService aggregationService;
+    
+    @Autowired
+    private RollupService rollupService;
+    
+    @Autowired
+    private TurbineRegistry turbineRegistry;
+    
+    @Autowired
+    private AggregationLock aggregationLock;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${telemetry.aggregation.incremental:true}")
+    private boolean enabled;
+    
+    @Value("${telemetry.aggregation.close-delay-seconds:120}")
+    private int closeDelaySeconds;
+    
+    @Value("${telemetry.aggregation.late-merge-max-samples:100000}")
+    private int lateMergeMaxSamples;
+    
+    // Hours that started before this were not fully observed
+    private final long startedAtMicros = TelemetryBatch.toMicros(LocalDateTime.now());
+    private final ConcurrentSkipListMap<Long, HourAccumulator> openMinutes = new ConcurrentSkipListMap<>();
+    private final Map<Long, HourAccumulator> openHours = new ConcurrentSkipListMap<>();
+    private final Set<LateSample> late = ConcurrentHashMap.newKeySet();
+    private final Object pendingLock = new Object();
+    private TelemetryBatch pendingLate = new TelemetryBatch(256);
+    // Turbine-hours recomputed from raw rows in this pass and the one before (scheduler thread only)
+    private Set<LateSample> rebuilt = new HashSet<>();
+    private Set<LateSample> rebuiltBefore = new HashSet<>();
+    private volatile long closedBeforeMicros =
+        Math.floorDiv(TelemetryBatch.toMicros(LocalDateTime.now()), MICROS_PER_HOUR) * MICROS_PER_HOUR;
+    private volatile long closedMinutes;
+    private volatile long closedHours;
+    private volatile long recomputedTurbineHours;
+    private Counter lateSamples;
+    private Counter mergedTurbineHours;
+    private Counter rebuiltTurbineHours;
+    
+    @PostConstruct
+    public void registerMetrics() {
+        lateSamples = Counter.builder("telemetry.late.samples")
+            .description("Samples that arrived after their hour was aggregated")
+            .register(meterRegistry);
+        mergedTurbineHours = Counter.builder("telemetry.late.merged.turbine.hours")
+            .description("Turbine-hours updated in place with late samples")
+            .register(meterRegistry);
+        rebuiltTurbineHours = Counter.builder("telemetry.late.rebuilt.turbine.hours")
+            .description("Turbine-hours recomputed from raw telemetry")
+            .register(meterRegistry);
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Start of the oldest hour that has not been closed yet; later hours belong to the
+     * accumulators.
+     */
+    public LocalDateTime getClosedBefore() {
+        return TelemetryBatch.fromMicros(closedBeforeMicros);
+    }
+    
+    /**
+     * Folds samples that were just written to telemetry into the accumulators, once the
+     * surrounding transaction commits.
+     */
+    public void record(TelemetryBatch batch) {
+        if (!enabled || batch.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TelemetryBatch copy = copyOf(batch);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accumulate(copy);
+                }
+            });
+        } else {
+            accumulate(batch);
+        }
+    }
+    
+    /**
+     * Count, average, min, max, stddev, p95 and p99 of each channel for the turbine's
+     * current hour so far, or null when it has no samples yet.
+     */
+    public Map<String, Object> getCurrentHour(long turbineId) {
+        long hourMicros = hourOf(TelemetryBatch.toMicros(LocalDateTime.now()));
+        // Hour first: a minute merged into it between the two reads is missed, not counted twice
+        List<HourAccumulator> sources = new ArrayList<>();
+        HourAccumulator hour = openHours.get(hourMicros);
+        if (hour != null) {
+            sources.add(hour);
+        }
+        sources.addAll(openMinutes.subMap(hourMicros, hourMicros + MICROS_PER_HOUR).values());
+        
+        HourAccumulator accumulator = new HourAccumulator(hourMicros, 1);
+        for (HourAccumulator source : sources) {
+            synchronized (source) {
+                int slot = source.slot(turbineId);
+                if (slot >= 0) {
+                    accumulator.merge(source, slot);
+                }
+            }
+        }
+        int slot = accumulator.slot(turbineId);
+        if (slot < 0) {
+            return null;
+        }
+        int count = accumulator.count(slot);
+        Map<String, Object> result = new HashMap<>();
+        result.put("turbineId", turbineId);
+        result.put("hourStart", TelemetryBatch.fromMicros(hourMicros));
+        result.put("complete", hourMicros >= startedAtMicros);
+        result.put("dataPointCount", count);
+        String[] names = {"windSpeed", "powerOutput", "rotorSpeed", "temperature", "vibration", "efficiency"};
+        for (int channel = 0; channel < HourAccumulator.CHANNELS; channel++) {
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("avg", accumulator.sum(slot, channel) / count);
+            stats.put("min", accumulator.min(slot, channel));
+            stats.put("max", accumulator.max(slot, channel));
+            stats.put("stddev", accumulator.stats(slot).stddev(channel));
+            stats.put("p95", accumulator.stats(slot).quantile(channel, 0.95));
+            stats.put("p99", accumulator.stats(slot).quantile(channel, 0.99));
+            result.put(names[channel], stats);
+        }
+        result.put("totalGeneration", accumulator.sum(slot, 1) * (10.0 / 3600.0));
+        return result;
+    }
+    
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("enabled", enabled);
+        status.put("closeDelaySeconds", closeDelaySeconds);
+        List<String> open = new ArrayList<>();
+        openHours.keySet().forEach(hour -> open.add(TelemetryBatch.fromMicros(hour).toString()));
+        status.put("openHours", open);
+        status.put("openMinutes", openMinutes.size());
+        status.put("closedMinutes", closedMinutes);
+        status.put("closedBefore", TelemetryBatch.fromMicros(closedBeforeMicros).toString());
+        status.put("closedHours", closedHours);
+        synchronized (pendingLock) {
+            status.put("pendingLateSamples", pendingLate.size());
+        }
+        status.put("pendingLateTurbineHours", late.size());
+        status.put("lateSamples", (long) lateSamples.count());
+        status.put("mergedLateTurbineHours", (long) mergedTurbineHours.count());
+        status.put("recomputedTurbineHours", recomputedTurbineHours);
+        return status;
+    }
+    
+    @Scheduled(fixedDelay = 60000, initialDelay = 60000)
+    public void closeHours() {
+        if (!enabled) {
+            return;
+        }
+        // Every write of the pass commits on its own; a rollup rebuild waits for the whole pass
+        aggregationLock.runShared(this::closePendingHours);
+    }
+    
+    private void closePendingHours() {
+        long nowMicros = TelemetryBatch.toMicros(LocalDateTime.now().minusSeconds(closeDelaySeconds));
+        rebuiltBefore = rebuilt;
+        rebuilt = new HashSet<>();
+        flushMinutes(Math.floorDiv(nowMicros, MICROS_PER_MINUTE) * MICROS_PER_MINUTE);
+        long closeBefore = hourOf(nowMicros);
+        
+        for (long hourMicros = closedBeforeMicros; hourMicros < closeBefore; hourMicros += MICROS_PER_HOUR) {
+            LocalDateTime hourStart = TelemetryBatch.fromMicros(hourMicros);
+            // Samples for this hour arriving from now on count as late
+            closedBeforeMicros = hourMicros + MICROS_PER_HOUR;
+            flushMinutes(closedBeforeMicros);
+            HourAccumulator accumulator = openHours.remove(hourMicros);
+            if (accumulator != null) {
+                synchronized (accumulator) {
+                    accumulator.close();
+                }
+            }
+            try {
+                if (hourMicros < startedAtMicros) {
+                    List<Long> turbineIds = turbineIds();
+                    int written = aggregationService.recomputeHour(hourStart, turbineIds);
+                    markRebuilt(turbineIds, hourMicros);
+                    System.out.println("Recomputed " + written + " aggregates for partially observed hour: " + hourStart);
+                } else if (accumulator != null) {
+                    int written = aggregationService.saveHour(hourStart, accumulator);
+                    System.out.println("Closed hour " + hourStart + ": " + written + " aggregates from accumulators");
+                }
+                closedHours++;
+            } catch (RuntimeException e) {
+                System.err.println("Error closing aggregation hour " + hourStart + ": " + e.getMessage());
+                // Rebuild from raw rows on the next pass
+                if (accumulator != null) {
+                    markLate(accumulator, hourMicros);
+                }
+            }
+        }
+        
+        mergeLate();
+        recomputeLate();
+    }
+    
+    // Adds the minutes that start before beforeMicros to the MINUTE rollups and to their hours
+    private void flushMinutes(long beforeMicros) {
+        for (Long minuteMicros : openMinutes.headMap(beforeMicros).keySet()) {
+            HourAccumulator minute = openMinutes.remove(minuteMicros);
+            if (minute == null) {
+                continue;
+            }
+            synchronized (minute) {
+                minute.close();
+            }
+            long hourMicros = hourOf(minuteMicros);
+            try {
+                rollupService.addMinute(minute);
+                closedMinutes++;
+            } catch (RuntimeException e) {
+                System.err.println("Error writing minute rollups for " + TelemetryBatch.fromMicros(minuteMicros) +
+                                   ": " + e.getMessage());
+                markLate(minute, hourMicros);
+            }
+            if (hourMicros < closedBeforeMicros && !openHours.containsKey(hourMicros)) {
+                markLate(minute, hourMicros);
+                continue;
+            }
+            HourAccumulator hour = openHours.computeIfAbsent(hourMicros,
+                h -> new HourAccumulator(h, turbineRegistry.getAll().size()));
+            synchronized (hour) {
+                hour.merge(minute);
+            }
+        }
+    }
+    
+    private void markLate(HourAccumulator accumulator, long hourMicros) {
+        for (int slot = 0; slot < accumulator.size(); slot++) {
+            late.add(new LateSample(accumulator.turbineId(slot), hourMicros));
+        }
+    }
+    
+    private void markRebuilt(Collection<Long> turbineIds, long hourMicros) {
+        turbineIds.forEach(turbineId -> rebuilt.add(new LateSample(turbineId, hourMicros)));
+    }
+    
+    /*
+     * Samples of turbine-hours that are about to be recomputed are left to the recompute. So
+     * are those of turbine-hours recomputed recently: a sample committed before the recompute
+     * read the raw rows may already be in the result, and another recompute is the only way
+     * not to count it twice.
+     */
+    private void mergeLate() {
+        TelemetryBatch samples;
+        synchronized (pendingLock) {
+            if (pendingLate.isEmpty()) {
+                return;
+            }
+            samples = pendingLate;
+            pendingLate = new TelemetryBatch(256);
+        }
+        if (samples.size() > lateMergeMaxSamples) {
+            System.out.println(samples.size() + " late samples queued, recomputing their hours instead of merging");
+            markLate(samples, 0, samples.size());
+            return;
+        }
+        TelemetryBatch merge = new TelemetryBatch(samples.size());
+        for (int i = 0; i < samples.size(); i++) {
+            LateSample key = new LateSample(samples.turbineId(i), hourOf(samples.timestamp(i)));
+            if (rebuilt.contains(key) || rebuiltBefore.contains(key)) {
+                late.add(key);
+            } else if (!late.contains(key)) {
+                merge.add(samples.turbineId(i), samples.timestamp(i), samples.windSpeed(i), samples.powerOutput(i),
+                    samples.rotorSpeed(i), samples.temperature(i), samples.vibration(i), samples.efficiency(i));
+            }
+        }
+        if (merge.isEmpty()) {
+            return;
+        }
+        try {
+            int merged = aggregationService.mergeLate(merge);
+            mergedTurbineHours.increment(merged);
+        } catch (RuntimeException e) {
+            System.err.println("Error merging " + merge.size() + " late samples: " + e.getMessage());
+            markLate(merge, 0, merge.size());
+        }
+    }
+    
+    private void recomputeLate() {
+        if (late.isEmpty()) {
+            return;
+        }
+        Map<Long, Set<Long>> turbinesByHour = new TreeMap<>();
+        for (LateSample sample : late) {
+            turbinesByHour.computeIfAbsent(sample.hourMicros(), h -> new HashSet<>()).add(sample.turbineId());
+        }
+        for (Map.Entry<Long, Set<Long>> hour : turbinesByHour.entrySet()) {
+            // Clear first: samples arriving during the recompute mark the turbine-hour again
+            for (Long turbineId : hour.getValue()) {
+                late.remove(new LateSample(turbineId, hour.getKey()));
+            }
+            LocalDateTime hourStart = TelemetryBatch.fromMicros(hour.getKey());
+            try {
+                aggregationService.recomputeHour(hourStart, hour.getValue());
+                recomputedTurbineHours += hour.getValue().size();
+                rebuiltTurbineHours.increment(hour.getValue().size());
+                markRebuilt(hour.getValue(), hour.getKey());
+            } catch (RuntimeException e) {
+                System.err.println("Error recomputing late telemetry for hour " + hourStart + ": " + e.getMessage());
+                hour.getValue().forEach(turbineId -> late.add(new LateSample(turbineId, hour.getKey())));
+            }
+        }
+    }
+    
+    private void accumulate(TelemetryBatch batch) {
+        int runStart = 0;
+        long runMinute = minuteOf(batch.timestamp(0));
+        for (int i = 1; i <= batch.size(); i++) {
+            long minuteMicros = i < batch.size() ? minuteOf(batch.timestamp(i)) : Long.MIN_VALUE;
+            if (minuteMicros != runMinute) {
+                addRun(runMinute, batch, runStart, i);
+                runStart = i;
+                runMinute = minuteMicros;
+            }
+        }
+    }
+    
+    private void addRun(long minuteMicros, TelemetryBatch batch, int from, int to) {
+        long hourMicros = hourOf(minuteMicros);
+        while (hourMicros >= closedBeforeMicros) {
+            HourAccumulator minute = openMinutes.computeIfAbsent(minuteMicros,
+                m -> new HourAccumulator(m, turbineRegistry.getAll().size()));
+            synchronized (minute) {
+                if (minute.isClosed()) {
+                    // Flushed since it was looked up; start a new one for the minute
+                    openMinutes.remove(minuteMicros, minute);
+                    continue;
+                }
+                // The hour may have closed since it was checked
+                if (hourMicros < closedBeforeMicros) {
+                    break;
+                }
+                for (int k = from; k < to; k++) {
+                    minute.add(batch, k);
+                }
+                return;
+            }
+        }
+        lateSamples.increment(to - from);
+        synchronized (pendingLock) {
+            for (int k = from; k < to; k++) {
+                pendingLate.add(batch.turbineId(k), batch.timestamp(k), batch.windSpeed(k), batch.powerOutput(k),
+                    batch.rotorSpeed(k), batch.temperature(k), batch.vibration(k), batch.efficiency(k));
+            }
+        }
+    }
+    
+    private void markLate(TelemetryBatch batch, int from, int to) {
+        for (int k = from; k < to; k++) {
+            late.add(new LateSample(batch.turbineId(k), hourOf(batch.timestamp(k))));
+        }
+    }
+    
+    private List<Long> turbineIds() {
+        List<Long> ids = new ArrayList<>();
+        turbineRegistry.getAll().forEach(turbine -> ids.add(turbine.getId()));
+        return ids;
+    }
+    
+    private static long minuteOf(long micros) {
+        return Math.floorDiv(micros, MICROS_PER_MINUTE) * MICROS_PER_MINUTE;
+    }
+    
+    private static long hourOf(long micros) {
+        return Math.floorDiv(micros, MICROS_PER_HOUR) * MICROS_PER_HOUR;
+    }
+    
+    private static TelemetryBatch copyOf(TelemetryBatch batch) {
+        TelemetryBatch copy = new TelemetryBatch(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            copy.add(batch.turbineId(i), batch.timestamp(i), batch.windSpeed(i), batch.powerOutput(i),
+                batch.rotorSpeed(i), batch.temperature(i), batch.vibration(i), batch.efficiency(i));
+        }
+        return copy;
+    }
+    
+    private record LateSample(long turbineId, long hourMicros) {}
+}
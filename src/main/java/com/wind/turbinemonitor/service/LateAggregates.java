@@ -0,0 +1,56 @@
+package com.wind.turbinemonitor.service;
+
+import com.wind.turbinemonitor.ingest.HourAccumulator;
+import com.wind.turbinemonitor.model.TelemetryAggregate;
+import com.wind.turbinemonitor.model.Turbine;
+import java.time.LocalDateTime;
+
+/**
+ * Arithmetic of AggregationService.mergeLate. The upsert in
+ * TelemetryBatchWriter.mergeAggregates combines a stored aggregate with the partial one of
+ * its late samples: averages weighted by sample count, generation and counts added. unmerge
+ * reverses that, so the aggregate as it was can be taken back out of the DAY and MONTH
+ * rollups before the merged one is added.
+ */
+final class LateAggregates {
+    private LateAggregates() {}
+    
+    // Averages and generation of the samples in one accumulator slot; has_anomaly is decided after the merge
+    static TelemetryAggregate partial(Turbine turbine, LocalDateTime hourStart, HourAccumulator hour, int slot) {
+        int count = hour.count(slot);
+        TelemetryAggregate partial = new TelemetryAggregate(turbine, hourStart);
+        partial.setAvgWindSpeed(hour.sum(slot, 0) / count);
+        partial.setAvgPowerOutput(hour.sum(slot, 1) / count);
+        partial.setAvgRotorSpeed(hour.sum(slot, 2) / count);
+        partial.setAvgTemperature(hour.sum(slot, 3) / count);
+        partial.setAvgVibration(hour.sum(slot, 4) / count);
+        partial.setAvgEfficiency(hour.sum(slot, 5) / count);
+        partial.setTotalGeneration(hour.sum(slot, 1) * (10.0 / 3600.0));
+        partial.setDataPointCount(count);
+        partial.setHasAnomaly(false);
+        partial.setChannelStats(hour.stats(slot).encode());
+        return partial;
+    }
+    
+    // The aggregate as it was before partial was merged into it, or null if the merge created it
+    static TelemetryAggregate unmerge(TelemetryAggregate merged, TelemetryAggregate partial) {
+        int count = merged.getDataPointCount() - partial.getDataPointCount();
+        if (count <= 0) {
+            return null;
+        }
+        int total = merged.getDataPointCount();
+        int added = partial.getDataPointCount();
+        TelemetryAggregate before = new TelemetryAggregate(merged.getTurbine(), merged.getHourStart());
+        before.setAvgWindSpeed((merged.getAvgWindSpeed() * total - partial.getAvgWindSpeed() * added) / count);
+        before.setAvgPowerOutput((merged.getAvgPowerOutput() * total - partial.getAvgPowerOutput() * added) / count);
+        before.setAvgRotorSpeed((merged.getAvgRotorSpeed() * total - partial.getAvgRotorSpeed() * added) / count);
+        before.setAvgTemperature((merged.getAvgTemperature() * total - partial.getAvgTemperature() * added) / count);
+        before.setAvgVibration((merged.getAvgVibration() * total - partial.getAvgVibration() * added) / count);
+        before.setAvgEfficiency((merged.getAvgEfficiency() * total - partial.getAvgEfficiency() * added) / count);
+        before.setTotalGeneration(merged.getTotalGeneration() - partial.getTotalGeneration());
+        before.setDataPointCount(count);
+        before.setHasAnomaly(merged.getHasAnomaly());
+        before.setChannelStats(merged.getChannelStats());
+        return before;
+    }
+}
@@ -0,0 +1,714 @@
+package com.wind.turbinemonitor.service;
+
+import com.wind.turbinemonitor.config.SchemaMigration;
+import com.wind.turbinemonitor.ingest.HourAccumulator;
+import com.wind.turbinemonitor.ingest.TelemetryBatch;
+import com.wind.turbinemonitor.model.DailySummary;
+import com.wind.turbinemonitor.model.Farm;
+import com.wind.turbinemonitor.model.RollupResolution;
+import com.wind.turbinemonitor.model.SummaryLevel;
+import com.wind.turbinemonitor.model.Telemetry;
+import com.wind.turbinemonitor.model.TelemetryAggregate;
+import com.wind.turbinemonitor.model.TelemetryRollup;
+import com.wind.turbinemonitor.model.Turbine;
+import com.wind.turbinemonitor.repository.DailySummaryRepository;
+import com.wind.turbinemonitor.repository.TelemetryAggregateRepository;
+import com.wind.turbinemonitor.repository.TelemetryRollupRepository;
+import com.wind.turbinemonitor.repository.TelemetryRollupWriter;
+import com.wind.turbinemonitor.util.ChannelStats;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The rollup cascade: MINUTE rollups feed the hourly telemetry_aggregates, which feed DAY
+ * rollups, which feed MONTH rollups.
+ *
+ * Every write to a level passes its change up in the same transaction: an hourly aggregate
+ * that is created adds its values to its DAY and MONTH buckets, and one that is replaced
+ * takes its old values back out first. DAY and MONTH therefore never need a scan of the
+ * level below, except for rebuild(), which recomputes them from telemetry_aggregates.
+ * The same change goes into the farm daily summaries, which the fleet daily and graph
+ * endpoints read for whole days; region and fleet days are summed from them when read.
+ *
+ * Queries are answered from the coarsest level that covers each part of the range: whole
+ * months from MONTH, whole days from DAY and the partial days at the edges from hourly
+ * aggregates. MINUTE rollups and, optionally, hourly aggregates are dropped after their
+ * retention period; ranges older than the hourly retention are widened to whole days.
+ *
+ * Channel stats (distributions and quantile sketches) follow the same plan, except that a
+ * DAY bucket only has them once mergeDayStats() has combined its hours; until then its
+ * hours are read instead.
+ */
+@Service
+@Transactional
+public class RollupService {
+    private static final Comparator<SummaryKey> SUMMARY_ORDER = Comparator.comparing(SummaryKey::farm)
+        .thenComparing(SummaryKey::bucketStart);
+    
+    @Autowired
+    private TelemetryRollupWriter rollupWriter;
+    
+    @Autowired
+    private TelemetryRollupRepository rollupRepository;
+    
+    @Autowired
+    private TelemetryAggregateRepository aggregateRepository;
+    
+    @Autowired
+    private DailySummaryRepository summaryRepository;
+    
+    @Autowired
+    private DataVersionService dataVersion;
+    
+    @Autowired
+    private TurbineRegistry turbineRegistry;
+    
+    @Autowired
+    private AggregationLock aggregationLock;
+    
+    @Autowired
+    private SchemaMigration schemaMigration;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Value("${telemetry.rollups.minute-retention-days:7}")
+    private int minuteRetentionDays;
+    
+    // 0 keeps hourly aggregates forever
+    @Value("${telemetry.rollups.hour-retention-days:0}")
+    private int hourRetentionDays;
+    
+    private volatile Map<String, Object> lastRetention = Map.of();
+    private volatile Map<String, Object> lastDayStats = Map.of();
+    private TransactionTemplate dayTransaction;
+    private ExecutorService regroupExecutor;
+    
+    @PostConstruct
+    public void init() {
+        dayTransaction = new TransactionTemplate(transactionManager);
+        regroupExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "summary-regroup"));
+    }
+    
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        regroupExecutor.shutdown();
+        regroupExecutor.awaitTermination(30, TimeUnit.SECONDS);
+    }
+    
+    /**
+     * Totals of hourly values over a range, whichever levels they were read from.
+     */
+    public record Totals(double totalGeneration, long hourCount, double sumHourlyEfficiency,
+                         double sumHourlyPowerOutput) {
+        public double avgEfficiency() {
+            return hourCount > 0 ? sumHourlyEfficiency / hourCount : 0.0;
+        }
+        
+        public double avgPowerOutput() {
+            return hourCount > 0 ? sumHourlyPowerOutput / hourCount : 0.0;
+        }
+        
+        public Totals plus(Totals other) {
+            return new Totals(totalGeneration + other.totalGeneration, hourCount + other.hourCount,
+                sumHourlyEfficiency + other.sumHourlyEfficiency, sumHourlyPowerOutput + other.sumHourlyPowerOutput);
+        }
+    }
+    
+    /**
+     * One farm's totals for a day, or for the part of it that lies in the queried range.
+     */
+    public record FarmDay(LocalDate date, String farm, double totalGeneration, long hourCount,
+                          double sumHourlyEfficiency, double sumHourlyPowerOutput) {}
+    
+    // ---- Writes ----
+    
+    /**
+     * Minute rollups of one turbine's samples, in minute order.
+     */
+    public List<TelemetryRollup> minuteRollups(Turbine turbine, List<Telemetry> telemetryList) {
+        Map<LocalDateTime, TelemetryRollup> minutes = new TreeMap<>();
+        for (Telemetry telemetry : telemetryList) {
+            LocalDateTime minute = RollupResolution.MINUTE.truncate(telemetry.getTimestamp());
+            TelemetryRollup rollup = minutes.computeIfAbsent(minute,
+                m -> new TelemetryRollup(turbine, RollupResolution.MINUTE, m));
+            rollup.setDataPointCount(rollup.getDataPointCount() + 1);
+            rollup.setSumWindSpeed(rollup.getSumWindSpeed() + telemetry.getWindSpeed());
+            rollup.setSumPowerOutput(rollup.getSumPowerOutput() + telemetry.getPowerOutput());
+            rollup.setSumRotorSpeed(rollup.getSumRotorSpeed() + telemetry.getRotorSpeed());
+            rollup.setSumTemperature(rollup.getSumTemperature() + telemetry.getTemperature());
+            rollup.setSumVibration(rollup.getSumVibration() + telemetry.getVibration());
+            rollup.setSumEfficiency(rollup.getSumEfficiency() + telemetry.getEfficiency());
+            rollup.setTotalGeneration(rollup.getTotalGeneration() + telemetry.getPowerOutput() * (10.0 / 3600.0));
+        }
+        return new ArrayList<>(minutes.values());
+    }
+    
+    /**
+     * Adds a closed one-minute accumulator from IncrementalAggregationService to the MINUTE
+     * rollups. Samples that arrive for the minute after it closed are added the same way.
+     */
+    public int addMinute(HourAccumulator minute) {
+        LocalDateTime minuteStart = TelemetryBatch.fromMicros(minute.startMicros());
+        List<TelemetryRollup> rollups = new ArrayList<>(minute.size());
+        for (int slot = 0; slot < minute.size(); slot++) {
+            Optional<Turbine> turbine = turbineRegistry.get(minute.turbineId(slot));
+            if (turbine.isEmpty()) {
+                continue;
+            }
+            TelemetryRollup rollup = new TelemetryRollup(turbine.get(), RollupResolution.MINUTE, minuteStart);
+            rollup.setDataPointCount((long) minute.count(slot));
+            rollup.setSumWindSpeed(minute.sum(slot, 0));
+            rollup.setSumPowerOutput(minute.sum(slot, 1));
+            rollup.setSumRotorSpeed(minute.sum(slot, 2));
+            rollup.setSumTemperature(minute.sum(slot, 3));
+            rollup.setSumVibration(minute.sum(slot, 4));
+            rollup.setSumEfficiency(minute.sum(slot, 5));
+            rollup.setTotalGeneration(minute.sum(slot, 1) * (10.0 / 3600.0));
+            rollups.add(rollup);
+        }
+        rollupWriter.addRollups(rollups);
+        return rollups.size();
+    }
+    
+    /**
+     * Replaces the turbines' MINUTE rollups for the hour.
+     */
+    public void replaceMinutes(LocalDateTime hourStart, List<Long> turbineIds, List<TelemetryRollup> minutes) {
+        rollupWriter.deleteMinutes(hourStart, turbineIds);
+        rollupWriter.addRollups(minutes);
+    }
+    
+    /**
+     * Carries hourly aggregates that were just written, and the ones they replaced, into the
+     * DAY and MONTH rollups and the farm daily summaries.
+     */
+    public void applyHourly(List<TelemetryAggregate> added, List<TelemetryAggregate> removed) {
+        Map<BucketKey, TelemetryRollup> deltas = new LinkedHashMap<>();
+        // Sorted: shards holding turbines of the same farm lock its rows in the same order
+        Map<SummaryKey, DailySummary> summaries = new TreeMap<>(SUMMARY_ORDER);
+        for (TelemetryAggregate aggregate : added) {
+            addHour(deltas, aggregate, 1);
+            addSummaries(summaries, aggregate, 1);
+        }
+        for (TelemetryAggregate aggregate : removed) {
+            addHour(deltas, aggregate, -1);
+            addSummaries(summaries, aggregate, -1);
+        }
+        rollupWriter.addRollups(new ArrayList<>(deltas.values()));
+        rollupWriter.addSummaries(new ArrayList<>(summaries.values()));
+    }
+    
+    private void addSummaries(Map<SummaryKey, DailySummary> summaries, TelemetryAggregate aggregate, int sign) {
+        Turbine turbine = aggregate.getTurbine();
+        Farm farm = turbineRegistry.get(turbine.getId()).map(Turbine::getFarm).orElseGet(turbine::getFarm);
+        LocalDateTime day = RollupResolution.DAY.truncate(aggregate.getHourStart());
+        addSummary(summaries, new SummaryKey(farm.getName(), day), aggregate, sign);
+    }
+    
+    private static void addSummary(Map<SummaryKey, DailySummary> summaries, SummaryKey key,
+                                   TelemetryAggregate aggregate, int sign) {
+        DailySummary summary = summaries.computeIfAbsent(key,
+            k -> new DailySummary(SummaryLevel.FARM, k.farm(), k.bucketStart()));
+        summary.setDataPointCount(summary.getDataPointCount() + (long) sign * aggregate.getDataPointCount());
+        summary.setTotalGeneration(summary.getTotalGeneration() + sign * aggregate.getTotalGeneration());
+        summary.setHourCount(summary.getHourCount() + sign);
+        summary.setSumHourlyEfficiency(summary.getSumHourlyEfficiency() + sign * aggregate.getAvgEfficiency());
+        summary.setSumHourlyPowerOutput(summary.getSumHourlyPowerOutput() + sign * aggregate.getAvgPowerOutput());
+        summary.setAnomalyHours(summary.getAnomalyHours() + (Boolean.TRUE.equals(aggregate.getHasAnomaly()) ? sign : 0));
+    }
+    
+    private static void addHour(Map<BucketKey, TelemetryRollup> deltas, TelemetryAggregate aggregate, int sign) {
+        for (RollupResolution resolution : List.of(RollupResolution.DAY, RollupResolution.MONTH)) {
+            LocalDateTime bucket = resolution.truncate(aggregate.getHourStart());
+            TelemetryRollup rollup = deltas.computeIfAbsent(
+                new BucketKey(resolution, aggregate.getTurbine().getId(), bucket),
+                k -> new TelemetryRollup(aggregate.getTurbine(), resolution, bucket));
+            int count = aggregate.getDataPointCount();
+            rollup.setDataPointCount(rollup.getDataPointCount() + (long) sign * count);
+            rollup.setSumWindSpeed(rollup.getSumWindSpeed() + sign * aggregate.getAvgWindSpeed() * count);
+            rollup.setSumPowerOutput(rollup.getSumPowerOutput() + sign * aggregate.getAvgPowerOutput() * count);
+            rollup.setSumRotorSpeed(rollup.getSumRotorSpeed() + sign * aggregate.getAvgRotorSpeed() * count);
+            rollup.setSumTemperature(rollup.getSumTemperature() + sign * aggregate.getAvgTemperature() * count);
+            rollup.setSumVibration(rollup.getSumVibration() + sign * aggregate.getAvgVibration() * count);
+            rollup.setSumEfficiency(rollup.getSumEfficiency() + sign * aggregate.getAvgEfficiency() * count);
+            rollup.setTotalGeneration(rollup.getTotalGeneration() + sign * aggregate.getTotalGeneration());
+            rollup.setHourCount(rollup.getHourCount() + sign);
+            rollup.setSumHourlyEfficiency(rollup.getSumHourlyEfficiency() + sign * aggregate.getAvgEfficiency());
+            rollup.setSumHourlyPowerOutput(rollup.getSumHourlyPowerOutput() + sign * aggregate.getAvgPowerOutput());
+            rollup.setAnomalyHours(rollup.getAnomalyHours() + (Boolean.TRUE.equals(aggregate.getHasAnomaly()) ? sign : 0));
+        }
+    }
+    
+    // ---- Queries ----
+    
+    /**
+     * Totals of the turbine's hourly aggregates with start <= hourStart <= end.
+     */
+    @Transactional(readOnly = true)
+    public Totals totals(Long turbineId, LocalDateTime start, LocalDateTime end) {
+        double totalGeneration = 0;
+        long hourCount = 0;
+        double sumEfficiency = 0;
+        double sumPowerOutput = 0;
+        for (Segment segment : plan(start, end, RollupResolution.MONTH)) {
+            List<Object[]> rows = segment.resolution() == RollupResolution.HOUR
+                ? aggregateRepository.sumForTurbine(turbineId, segment.start(), segment.end())
+                : rollupRepository.sumForTurbine(turbineId, segment.resolution(), segment.start(), segment.end());
+            for (Object[] row : rows) {
+                totalGeneration += number(row[0]).doubleValue();
+                hourCount += number(row[1]).longValue();
+                sumEfficiency += number(row[2]).doubleValue();
+                sumPowerOutput += number(row[3]).doubleValue();
+            }
+        }
+        return new Totals(totalGeneration, hourCount, sumEfficiency, sumPowerOutput);
+    }
+    
+    /**
+     * Per-farm totals by day of the hourly aggregates with start <= hourStart <= end: whole
+     * days are the FARM daily summaries, the partial days at the edges are grouped from the
+     * hourly aggregates in the database. At most three queries, one row per farm and day.
+     */
+    @Transactional(readOnly = true)
+    public List<FarmDay> dailyByFarm(LocalDateTime start, LocalDateTime end, String farmName, String region) {
+        List<FarmDay> days = new ArrayList<>();
+        for (Segment segment : plan(start, end, RollupResolution.DAY)) {
+            if (segment.resolution() != RollupResolution.HOUR) {
+                for (DailySummary summary : farmSummaries(segment, farmName, region)) {
+                    days.add(new FarmDay(summary.getBucketStart().toLocalDate(), summary.getScope(),
+                        summary.getTotalGeneration(), summary.getHourCount(),
+                        summary.getSumHourlyEfficiency(), summary.getSumHourlyPowerOutput()));
+                }
+                continue;
+            }
+            for (Object[] row : aggregateRepository.sumByFarm(segment.start(), segment.end(), farmName, region)) {
+                days.add(new FarmDay(date(row[0]), (String) row[1],
+                    number(row[2]).doubleValue(), number(row[3]).longValue(),
+                    number(row[4]).doubleValue(), number(row[5]).doubleValue()));
+            }
+        }
+        return days;
+    }
+    
+    /**
+     * Totals by day over all matching farms, for the fleet graph: whole days are the FARM
+     * summaries of the matching farms added up by the database, one row per day. Days
+     * without aggregates are absent.
+     */
+    @Transactional(readOnly = true)
+    public SortedMap<LocalDate, Totals> daily(LocalDateTime start, LocalDateTime end, String farmName, String region) {
+        SortedMap<LocalDate, Totals> days = new TreeMap<>();
+        for (Segment segment : plan(start, end, RollupResolution.DAY)) {
+            List<Object[]> rows = segment.resolution() != RollupResolution.HOUR
+                ? summedFarmDays(segment, farmName, region)
+                : aggregateRepository.sumByDay(segment.start(), segment.end(), farmName, region);
+            for (Object[] row : rows) {
+                days.merge(date(row[0]), new Totals(number(row[1]).doubleValue(), number(row[2]).longValue(),
+                    number(row[3]).doubleValue(), number(row[4]).doubleValue()), Totals::plus);
+            }
+        }
+        return days;
+    }
+    
+    // FARM summaries of the farms matching the filters
+    private List<DailySummary> farmSummaries(Segment segment, String farmName, String region) {
+        if (farmName == null && region == null) {
+            return summaryRepository.findByLevelAndRange(SummaryLevel.FARM, segment.start(), segment.end());
+        }
+        List<String> farms = matchingFarms(farmName, region);
+        return farms.isEmpty() ? List.of()
+            : summaryRepository.findByScopesAndRange(SummaryLevel.FARM, farms, segment.start(), segment.end());
+    }
+    
+    // The same summaries added up per day: (day, generation, hours, sum efficiency, sum power)
+    private List<Object[]> summedFarmDays(Segment segment, String farmName, String region) {
+        if (farmName == null && region == null) {
+            return summaryRepository.sumByDay(SummaryLevel.FARM, segment.start(), segment.end());
+        }
+        List<String> farms = matchingFarms(farmName, region);
+        return farms.isEmpty() ? List.of()
+            : summaryRepository.sumByDayForScopes(SummaryLevel.FARM, farms, segment.start(), segment.end());
+    }
+    
+    // Summaries are keyed by farm name; a farm's region is taken from the registry
+    private List<String> matchingFarms(String farmName, String region) {
+        List<String> farms = new ArrayList<>();
+        for (Farm farm : turbineRegistry.getAllFarms()) {
+            if ((farmName == null || farmName.equals(farm.getName())) && (region == null || region.equals(farm.getRegion()))) {
+                farms.add(farm.getName());
+            }
+        }
+        return farms;
+    }
+    
+    /**
+     * Merged channel stats of the hourly aggregates with start <= hourStart <= end, per
+     * group: "fleet" (one group, "All Farms"), "farm", "day" or "turbine". Whole days are read
+     * from DAY buckets that have merged stats, everything else from the hours. Hours written
+     * without channel stats are left out.
+     */
+    @Transactional(readOnly = true)
+    public Map<String, ChannelStats> distribution(LocalDateTime start, LocalDateTime end, Long turbineId,
+                                                  String farmName, String region, String groupBy) {
+        Map<String, ChannelStats> groups = new TreeMap<>();
+        for (Segment segment : plan(start, end, RollupResolution.DAY)) {
+            if (segment.resolution() == RollupResolution.HOUR) {
+                mergeStats(groups, groupBy, aggregateRepository.findChannelStats(
+                    segment.start(), segment.end(), turbineId, farmName, region));
+                continue;
+            }
+            // A day at a time keeps one day of stats in memory
+            for (LocalDateTime day = segment.start(); day.isBefore(segment.end()); day = day.plusDays(1)) {
+                mergeStats(groups, groupBy, rollupRepository.findChannelStats(
+                    RollupResolution.DAY, day, day.plusDays(1), turbineId, farmName, region));
+                mergeStats(groups, groupBy, aggregateRepository.findChannelStatsWithoutDayStats(
+                    RollupResolution.DAY, day, day.plusDays(1), turbineId, farmName, region));
+            }
+        }
+        return groups;
+    }
+    
+    /**
+     * distribution() as JSON: per group, the count, mean, min, max, stddev and quantiles of
+     * one channel, or of every channel when channel is null.
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> getDistribution(LocalDateTime start, LocalDateTime end, Long turbineId, String farmName,
+                                               String region, String groupBy, String channel, double[] quantiles) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        distribution(start, end, turbineId, farmName, region, groupBy).forEach((group, stats) -> result.put(group,
+            channel != null ? stats.summary(ChannelStats.channel(channel), quantiles) : stats.summary(quantiles)));
+        return result;
+    }
+    
+    // Rows of turbine id, farm name, bucket start, encoded stats
+    private static void mergeStats(Map<String, ChannelStats> groups, String groupBy, List<Object[]> rows) {
+        for (Object[] row : rows) {
+            String key = switch (groupBy) {
+                case "farm" -> (String) row[1];
+                case "day" -> ((LocalDateTime) row[2]).toLocalDate().toString();
+                case "turbine" -> String.valueOf(row[0]);
+                default -> "All Farms";
+            };
+            groups.computeIfAbsent(key, k -> new ChannelStats()).merge(ChannelStats.decode((byte[]) row[3]));
+        }
+    }
+    
+    /**
+     * One turbine's buckets at the given level with start <= bucketStart < end.
+     */
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> getRollups(Long turbineId, RollupResolution resolution,
+                                                LocalDateTime start, LocalDateTime end) {
+        List<Map<String, Object>> result = new ArrayList<>();
+        if (resolution == RollupResolution.HOUR) {
+            for (TelemetryAggregate aggregate : aggregateRepository.findByTurbineAndDateRange(turbineId, start, end)) {
+                if (aggregate.getHourStart().isBefore(end)) {
+                    result.add(toMap(aggregate));
+                }
+            }
+            return result;
+        }
+        for (TelemetryRollup rollup : rollupRepository.findByTurbineAndRange(turbineId, resolution, start, end)) {
+            result.add(toMap(rollup));
+        }
+        return result;
+    }
+    
+    /**
+     * Splits the hour starts in [start, end] into segments of the coarsest level, up to
+     * coarsest, whose buckets lie wholly inside the range. Contiguous segments of the same
+     * level are merged so each level is read with as few queries as possible.
+     */
+    private List<Segment> plan(LocalDateTime start, LocalDateTime end, RollupResolution coarsest) {
+        LocalDateTime from = RollupResolution.HOUR.truncate(start);
+        if (from.isBefore(start)) {
+            from = from.plusHours(1);
+        }
+        LocalDateTime to = RollupResolution.HOUR.truncate(end).plusHours(1);
+        LocalDateTime hoursFrom = hourRetentionDays > 0
+            ? RollupResolution.DAY.truncate(LocalDateTime.now()).minusDays(hourRetentionDays)
+            : null;
+        
+        List<Segment> segments = new ArrayList<>();
+        LocalDateTime t = from;
+        while (t.isBefore(to)) {
+            RollupResolution resolution;
+            LocalDateTime segmentStart = t;
+            LocalDateTime next;
+            if (coarsest == RollupResolution.MONTH && fits(RollupResolution.MONTH, t, to)) {
+                resolution = RollupResolution.MONTH;
+                next = t.plusMonths(1);
+            } else if (fits(RollupResolution.DAY, t, to)) {
+                resolution = RollupResolution.DAY;
+                next = t.plusDays(1);
+            } else if (hoursFrom != null && t.isBefore(hoursFrom)) {
+                // Hourly rows are gone; the whole day is the closest answer left
+                resolution = RollupResolution.DAY;
+                segmentStart = RollupResolution.DAY.truncate(t);
+                next = segmentStart.plusDays(1);
+            } else {
+                resolution = RollupResolution.HOUR;
+                LocalDateTime dayEnd = RollupResolution.DAY.truncate(t).plusDays(1);
+                next = dayEnd.isBefore(to) ? dayEnd : to;
+            }
+            Segment last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+            if (last != null && last.resolution() == resolution && last.end().equals(segmentStart)) {
+                segments.set(segments.size() - 1, new Segment(resolution, last.start(), next));
+            } else {
+                segments.add(new Segment(resolution, segmentStart, next));
+            }
+            t = next;
+        }
+        return segments;
+    }
+    
+    private static boolean fits(RollupResolution resolution, LocalDateTime t, LocalDateTime to) {
+        return resolution.truncate(t).equals(t) && !resolution.next(t).isAfter(to);
+    }
+    
+    // ---- Maintenance ----
+    
+    /*
+     * DAY and MONTH are also rebuilt when SchemaMigration merged duplicate hourly aggregates,
+     * since they counted every duplicate. Runs alongside the startup aggregation, so the
+     * checks and the rebuild are made under the exclusive aggregation lock: a pass that starts
+     * first has committed its hours before the counts are read, and one that starts later
+     * waits for the rebuild to commit.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void rebuildIfMissing() {
+        aggregationLock.exclusive(() -> dayTransaction.execute(status -> {
+            boolean missing = rollupRepository.countByResolution(RollupResolution.DAY) == 0 && aggregateRepository.count() > 0;
+            if (missing || schemaMigration.hasMergedAggregates()) {
+                return rebuildDaysAndMonths();
+            } else if (summaryRepository.count() == 0 && rollupRepository.countByResolution(RollupResolution.DAY) > 0) {
+                return rebuildSummaries();
+            }
+            return 0;
+        }));
+    }
+    
+    /**
+     * Recomputes DAY and MONTH rollups from the hourly aggregates, and the daily summaries
+     * from those. Meant for existing data and for repairs. Aggregation passes that would
+     * write to the same levels wait until it has committed (see AggregationLock).
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public int rebuild() {
+        return aggregationLock.exclusive(() -> dayTransaction.execute(status -> rebuildDaysAndMonths()));
+    }
+    
+    private int rebuildDaysAndMonths() {
+        long start = System.currentTimeMillis();
+        int written = rollupWriter.rebuildDaysAndMonths();
+        dataVersion.bumpAfterCommit();
+        System.out.println("Rebuilt " + written + " day and month rollups in " +
+                           (System.currentTimeMillis() - start) + " ms");
+        return written + rebuildSummaries();
+    }
+    
+    // Recomputes all farm daily summaries from the DAY rollups
+    private int rebuildSummaries() {
+        long start = System.currentTimeMillis();
+        int written = rollupWriter.rebuildSummaries();
+        dataVersion.bumpAfterCommit();
+        System.out.println("Rebuilt " + written + " daily summaries in " + (System.currentTimeMillis() - start) + " ms");
+        return written;
+    }
+    
+    /**
+     * Rebuilds the daily summaries of the named farms once the calling transaction has
+     * committed. Summaries are keyed by farm name, so this is called with the old and new
+     * name when a farm is renamed, and with both farms when a turbine moves between them.
+     *
+     * Runs on a background thread, so the request that made the change does not wait for
+     * it, and under the exclusive aggregation lock: no pass can add a delta to the farms'
+     * rows between their delete and their re-insert. Until it commits the endpoints report
+     * the farms' days under their old grouping.
+     */
+    public void regroupFarms(Collection<String> farmNames) {
+        Set<String> farms = new TreeSet<>();
+        for (String farm : farmNames) {
+            if (farm != null) {
+                farms.add(farm);
+            }
+        }
+        Runnable submit = () -> regroupExecutor.execute(() -> rebuildFarmSummaries(farms));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit.run();
+                }
+            });
+        } else {
+            submit.run();
+        }
+    }
+    
+    private void rebuildFarmSummaries(Set<String> farms) {
+        try {
+            aggregationLock.exclusive(() -> dayTransaction.execute(status -> {
+                long start = System.currentTimeMillis();
+                int written = rollupWriter.rebuildFarmSummaries(farms);
+                dataVersion.bumpAfterCommit();
+                System.out.println("Rebuilt " + written + " daily summaries of " + farms + " in " +
+                                   (System.currentTimeMillis() - start) + " ms");
+                return written;
+            }));
+        } catch (RuntimeException e) {
+            System.err.println("Failed to rebuild the daily summaries of " + farms + ": " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Merges the channel stats of the hours of every complete day whose DAY bucket has none,
+     * one day per transaction. A bucket that changes in the meantime is left for the next
+     * run. Returns the number of buckets written.
+     */
+    @Scheduled(cron = "${telemetry.rollups.day-stats-cron:0 20 * * * *}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public int mergeDayStats() {
+        long start = System.currentTimeMillis();
+        LocalDateTime today = RollupResolution.DAY.truncate(LocalDateTime.now());
+        int written = 0;
+        for (LocalDateTime day : rollupRepository.findBucketsWithoutChannelStats(RollupResolution.DAY, today)) {
+            written += aggregationLock.shared(() -> dayTransaction.execute(status -> mergeDayStats(day)));
+        }
+        Map<String, Object> run = new HashMap<>();
+        run.put("time", LocalDateTime.now().toString());
+        run.put("bucketsWritten", written);
+        run.put("millis", System.currentTimeMillis() - start);
+        lastDayStats = run;
+        return written;
+    }
+    
+    private int mergeDayStats(LocalDateTime day) {
+        Map<Long, ChannelStats> byTurbine = new HashMap<>();
+        for (Object[] row : aggregateRepository.findChannelStats(day, day.plusDays(1), null, null, null)) {
+            byTurbine.computeIfAbsent((Long) row[0], id -> new ChannelStats()).merge(ChannelStats.decode((byte[]) row[3]));
+        }
+        int written = 0;
+        for (TelemetryRollup rollup : rollupRepository.findWithoutChannelStats(RollupResolution.DAY, day)) {
+            // Empty stats when no hour has any, so the bucket is not picked up again
+            ChannelStats stats = byTurbine.getOrDefault(rollup.getTurbine().getId(), new ChannelStats());
+            if (rollupWriter.setDayStats(rollup.getId(), stats.encode(), rollup.getHourCount(), rollup.getDataPointCount())) {
+                written++;
+            }
+        }
+        return written;
+    }
+    
+    @Scheduled(cron = "0 30 0 * * *")
+    public void applyRetention() {
+        LocalDateTime today = RollupResolution.DAY.truncate(LocalDateTime.now());
+        Map<String, Object> run = new HashMap<>();
+        run.put("time", LocalDateTime.now().toString());
+        run.put("minutesDeleted", rollupWriter.deleteBefore(RollupResolution.MINUTE, today.minusDays(minuteRetentionDays)));
+        if (hourRetentionDays > 0) {
+            run.put("hoursDeleted", rollupWriter.deleteBefore(RollupResolution.HOUR, today.minusDays(hourRetentionDays)));
+        }
+        run.put("emptyBucketsDeleted", rollupWriter.deleteEmpty());
+        dataVersion.bumpAfterCommit();
+        lastRetention = run;
+        System.out.println("Rollup retention: " + run);
+    }
+    
+    @Transactional(readOnly = true)
+    public Map<String, Object> getStatus() {
+        Map<String, Object> buckets = new LinkedHashMap<>();
+        buckets.put(RollupResolution.HOUR.name(), aggregateRepository.count());
+        for (Object[] row : rollupRepository.countByResolution()) {
+            buckets.put(((RollupResolution) row[0]).name(), row[1]);
+        }
+        Map<String, Object> summaries = new LinkedHashMap<>();
+        for (Object[] row : summaryRepository.countByLevel()) {
+            summaries.put(((SummaryLevel) row[0]).name(), row[1]);
+        }
+        Map<String, Object> status = new HashMap<>();
+        status.put("buckets", buckets);
+        status.put("dailySummaries", summaries);
+        status.put("minuteRetentionDays", minuteRetentionDays);
+        status.put("hourRetentionDays", hourRetentionDays);
+        status.put("lastRetention", lastRetention);
+        status.put("lastDayStats", lastDayStats);
+        return status;
+    }
+    
+    private static Map<String, Object> toMap(TelemetryRollup rollup) {
+        long count = rollup.getDataPointCount();
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("bucketStart", rollup.getBucketStart());
+        map.put("resolution", rollup.getResolution().name());
+        map.put("dataPointCount", count);
+        map.put("avgWindSpeed", count > 0 ? rollup.getSumWindSpeed() / count : 0.0);
+        map.put("avgPowerOutput", count > 0 ? rollup.getSumPowerOutput() / count : 0.0);
+        map.put("avgRotorSpeed", count > 0 ? rollup.getSumRotorSpeed() / count : 0.0);
+        map.put("avgTemperature", count > 0 ? rollup.getSumTemperature() / count : 0.0);
+        map.put("avgVibration", count > 0 ? rollup.getSumVibration() / count : 0.0);
+        map.put("avgEfficiency", count > 0 ? rollup.getSumEfficiency() / count : 0.0);
+        map.put("totalGeneration", rollup.getTotalGeneration());
+        map.put("hourCount", rollup.getHourCount());
+        map.put("anomalyHours", rollup.getAnomalyHours());
+        if (rollup.getChannelStats() != null) {
+            map.put("distribution", ChannelStats.decode(rollup.getChannelStats()).summary(0.5, 0.95, 0.99));
+        }
+        return map;
+    }
+    
+    private static Map<String, Object> toMap(TelemetryAggregate aggregate) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("bucketStart", aggregate.getHourStart());
+        map.put("resolution", RollupResolution.HOUR.name());
+        map.put("dataPointCount", aggregate.getDataPointCount());
+        map.put("avgWindSpeed", aggregate.getAvgWindSpeed());
+        map.put("avgPowerOutput", aggregate.getAvgPowerOutput());
+        map.put("avgRotorSpeed", aggregate.getAvgRotorSpeed());
+        map.put("avgTemperature", aggregate.getAvgTemperature());
+        map.put("avgVibration", aggregate.getAvgVibration());
+        map.put("avgEfficiency", aggregate.getAvgEfficiency());
+        map.put("totalGeneration", aggregate.getTotalGeneration());
+        map.put("hourCount", 1);
+        map.put("anomalyHours", Boolean.TRUE.equals(aggregate.getHasAnomaly()) ? 1 : 0);
+        if (aggregate.getChannelStats() != null) {
+            map.put("distribution", aggregate.getDistribution());
+        }
+        return map;
+    }
+    
+    private static Number number(Object value) {
+        return value != null ? (Number) value : 0;
+    }
+    
+    // Rollup rows carry the bucket start, hourly rows the day they were grouped by
+    private static LocalDate date(Object value) {
+        return value instanceof LocalDateTime dateTime ? dateTime.toLocalDate() : (LocalDate) value;
+    }
+    
+    private record Segment(RollupResolution resolution, LocalDateTime start, LocalDateTime end) {}
+    
+    private record BucketKey(RollupResolution resolution, long turbineId, LocalDateTime bucketStart) {}
+    
+    private record SummaryKey(String farm, LocalDateTime bucketStart) {}
+}
@@ -0,0 +1,240 @@
+package com.wind.turbinemonitor.service;
+
+import com.wind.turbinemonitor.model.AggregationShardProgress;
+import com.wind.turbinemonitor.model.TelemetryAggregate;
+import com.wind.turbinemonitor.model.Turbine;
+import com.wind.turbinemonitor.repository.AggregationShardProgressRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scan-mode hourly aggregation split into turbine shards (turbine id modulo
+ * telemetry.aggregation.shards) that run concurrently on a fixed pool of
+ * telemetry.aggregation.threads.
+ *
+ * Each shard is its own short transaction that writes the shard's aggregates, alerts,
+ * watermarks and AggregationShardProgress row together. It runs at the database's default
+ * isolation level (REPEATABLE READ on MySQL, READ COMMITTED on PostgreSQL): samples that
+ * commit while a shard reads its hour are caught by the watermark check and rebuilt by
+ * recomputeLate, so the shard does not depend on a snapshot. A failed shard only rolls back
+ * itself, and running the hour again (the startup pass does this for the last 24 hours)
+ * skips the shards that already have a progress row.
+ *
+ * Samples written behind a turbine's watermark are rebuilt from raw rows by recomputeLate,
+ * which also deletes the progress rows of the shards it rebuilds: a progress row describes
+ * the shard as it was aggregated, and no longer does once late samples have been folded in.
+ * Running the hour again then finds those turbines behind their watermarks, so it only
+ * writes a new row. Late samples are only recorded in scan mode; in incremental mode
+ * IncrementalAggregationService merges them itself and recomputeLate does nothing.
+ */
+@Service
+public class ShardedAggregationService {
+    @Autowired
+    private AggregationService aggregationService;
+    
+    @Autowired
+    private TurbineRegistry turbineRegistry;
+    
+    @Autowired
+    private AggregationShardProgressRepository progressRepository;
+    
+    @Autowired
+    private AggregationWatermarkService watermarkService;
+    
+    @Autowired
+    private AggregationLock aggregationLock;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Value("${telemetry.aggregation.shards:16}")
+    private int shardCount;
+    
+    // 0 means one per available core
+    @Value("${telemetry.aggregation.threads:0}")
+    private int configuredThreads;
+    
+    @Value("${telemetry.aggregation.progress-retention-days:2}")
+    private int progressRetentionDays;
+    
+    @Value("${telemetry.aggregation.incremental:true}")
+    private boolean incremental;
+    
+    private TransactionTemplate shardTransaction;
+    private ExecutorService executor;
+    private int threads;
+    private volatile Map<String, Object> lastRun = Map.of();
+    private volatile long recomputedTurbineHours;
+    
+    @PostConstruct
+    public void start() {
+        threads = configuredThreads > 0 ? configuredThreads : Runtime.getRuntime().availableProcessors();
+        shardTransaction = new TransactionTemplate(transactionManager);
+        AtomicInteger threadId = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads,
+            r -> new Thread(r, "aggregation-shard-" + threadId.getAndIncrement()));
+    }
+    
+    /**
+     * Aggregates the hour's pending shards and returns the number of aggregates created. If
+     * any shard fails the others still complete, and an exception is thrown at the end.
+     */
+    public int aggregateHour(LocalDateTime hourStart) {
+        Set<Integer> completed = new HashSet<>(progressRepository.findCompletedShards(hourStart, shardCount));
+        Map<Integer, List<Turbine>> pending = new TreeMap<>();
+        for (Turbine turbine : turbineRegistry.getAll()) {
+            int shard = Math.floorMod(turbine.getId(), shardCount);
+            if (!completed.contains(shard)) {
+                pending.computeIfAbsent(shard, s -> new ArrayList<>()).add(turbine);
+            }
+        }
+        if (pending.isEmpty()) {
+            System.out.println("All aggregation shards already completed for hour: " + hourStart);
+            return 0;
+        }
+        
+        long startNanos = System.nanoTime();
+        List<Future<ShardResult>> futures = new ArrayList<>();
+        for (Map.Entry<Integer, List<Turbine>> entry : pending.entrySet()) {
+            futures.add(executor.submit(() -> runShard(hourStart, entry.getKey(), entry.getValue())));
+        }
+        
+        int aggregates = 0;
+        long rows = 0;
+        long shardNanos = 0;
+        int failed = 0;
+        for (Future<ShardResult> future : futures) {
+            try {
+                ShardResult result = future.get();
+                aggregates += result.aggregates();
+                rows += result.rows();
+                shardNanos += result.nanos();
+            } catch (ExecutionException e) {
+                failed++;
+                System.err.println("Aggregation shard failed for hour " + hourStart + ": " + e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while aggregating hour " + hourStart, e);
+            }
+        }
+        
+        long elapsedNanos = Math.max(1, System.nanoTime() - startNanos);
+        int cores = Runtime.getRuntime().availableProcessors();
+        // Time spent inside shards over wall time: close to min(threads, shards, cores) when scaling well
+        double speedup = shardNanos / (double) elapsedNanos;
+        int parallelism = Math.min(Math.min(threads, pending.size()), cores);
+        
+        Map<String, Object> run = new HashMap<>();
+        run.put("hour", hourStart.toString());
+        run.put("shards", pending.size());
+        run.put("skippedShards", completed.size());
+        run.put("failedShards", failed);
+        run.put("aggregates", aggregates);
+        run.put("rows", rows);
+        run.put("elapsedMs", elapsedNanos / 1_000_000);
+        run.put("rowsPerSecond", rows * 1_000_000_000L / elapsedNanos);
+        run.put("threads", threads);
+        run.put("cores", cores);
+        run.put("speedup", Math.round(speedup * 100) / 100.0);
+        run.put("efficiency", Math.round(speedup / parallelism * 100) / 100.0);
+        lastRun = run;
+        
+        System.out.println("Created " + aggregates + " aggregates from " + rows + " rows for hour: " + hourStart +
+                          " in " + run.get("elapsedMs") + " ms (" + pending.size() + " shards on " + threads +
+                          " threads, " + cores + " cores, speedup " + run.get("speedup") + "x)");
+        if (failed > 0) {
+            throw new IllegalStateException(failed + " of " + pending.size() + " aggregation shards failed for hour " +
+                                            hourStart + "; running it again resumes from the completed shards");
+        }
+        return aggregates;
+    }
+    
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("shards", shardCount);
+        status.put("threads", threads);
+        status.put("cores", Runtime.getRuntime().availableProcessors());
+        status.put("lastRun", lastRun);
+        status.put("watermarks", watermarkService.getStatus());
+        status.put("recomputedTurbineHours", recomputedTurbineHours);
+        return status;
+    }
+    
+    /**
+     * Rebuilds turbine-hours that received samples after they were aggregated. Hours that
+     * are still ahead of the turbine's persisted watermark are left to the normal pass.
+     * Scan mode only.
+     */
+    @Scheduled(fixedDelay = 60000, initialDelay = 60000)
+    public void recomputeLate() {
+        if (incremental) {
+            return;
+        }
+        for (Map.Entry<LocalDateTime, Set<Long>> hour : watermarkService.takeLate().entrySet()) {
+            LocalDateTime hourStart = hour.getKey();
+            try {
+                Integer rebuilt = aggregationLock.shared(() -> shardTransaction.execute(status -> {
+                    List<Long> aggregated = watermarkService.aggregatedThrough(hour.getValue(), hourStart.plusHours(1));
+                    if (aggregated.isEmpty()) {
+                        return 0;
+                    }
+                    aggregationService.recomputeHour(hourStart, aggregated);
+                    Set<Integer> shards = new HashSet<>();
+                    aggregated.forEach(turbineId -> shards.add(Math.floorMod(turbineId, shardCount)));
+                    progressRepository.deleteShards(hourStart, shardCount, shards);
+                    return aggregated.size();
+                }));
+                recomputedTurbineHours += rebuilt;
+            } catch (RuntimeException e) {
+                System.err.println("Error recomputing late telemetry for hour " + hourStart + ": " + e.getMessage());
+                watermarkService.markLate(hourStart, hour.getValue());
+            }
+        }
+    }
+    
+    @Scheduled(cron = "0 15 0 * * *")
+    public void pruneProgress() {
+        LocalDateTime before = LocalDateTime.now().minusDays(progressRetentionDays);
+        Integer deleted = shardTransaction.execute(status -> progressRepository.deleteCompletedBefore(before));
+        System.out.println("Removed " + deleted + " aggregation shard progress rows");
+    }
+    
+    private ShardResult runShard(LocalDateTime hourStart, int shard, List<Turbine> turbines) {
+        long startNanos = System.nanoTime();
+        ShardResult result = aggregationLock.shared(() -> shardTransaction.execute(status -> {
+            List<TelemetryAggregate> aggregates = aggregationService.aggregateTurbines(hourStart, turbines);
+            long rows = aggregates.stream().mapToLong(TelemetryAggregate::getDataPointCount).sum();
+            progressRepository.save(new AggregationShardProgress(hourStart, shardCount, shard, aggregates.size(), rows));
+            return new ShardResult(aggregates.size(), rows, 0);
+        }));
+        return new ShardResult(result.aggregates(), result.rows(), System.nanoTime() - startNanos);
+    }
+    
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+    }
+    
+    private record ShardResult(int aggregates, long rows, long nanos) {}
+}
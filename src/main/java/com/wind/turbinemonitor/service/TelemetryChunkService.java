@@ -0,0 +1,177 @@
+package com.wind.turbinemonitor.service;
+
+import com.wind.turbinemonitor.ingest.GorillaChunkCodec;
+import com.wind.turbinemonitor.ingest.TelemetryBatch;
+import com.wind.turbinemonitor.model.TelemetryChunk;
+import com.wind.turbinemonitor.model.Turbine;
+import com.wind.turbinemonitor.repository.TelemetryBatchWriter;
+import com.wind.turbinemonitor.repository.TelemetryChunkRepository;
+import com.wind.turbinemonitor.repository.TurbineRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Optional compressed storage for raw telemetry (telemetry.chunks.enabled).
+ *
+ * Once an hour is behind a turbine's aggregation watermark, compactHour() packs the
+ * turbine's rows for that hour into one GorillaChunkCodec block in telemetry_chunks and
+ * deletes them from telemetry.
+ * Samples that arrive for an hour after it was compacted stay in telemetry until the hour
+ * is compacted again, when they are merged into the existing block.
+ *
+ * Reads go through DatabaseRawTelemetryStore, which merges decoded chunk samples with the
+ * remaining raw rows, so callers see the same list of Telemetry either way.
+ */
+@Service
+@Transactional
+public class TelemetryChunkService {
+    @Autowired
+    private TelemetryChunkRepository chunkRepository;
+    
+    @Autowired
+    private TurbineRepository turbineRepository;
+    
+    @Autowired
+    private TelemetryBatchWriter batchWriter;
+    
+    @Autowired
+    private TurbineRegistry turbineRegistry;
+    
+    @Autowired
+    private AggregationWatermarkService watermarkService;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Value("${telemetry.chunks.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${telemetry.chunks.compact-after-hours:2}")
+    private int compactAfterHours;
+    
+    private TransactionTemplate turbineTransaction;
+    
+    @PostConstruct
+    public void init() {
+        turbineTransaction = new TransactionTemplate(transactionManager);
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    public int getCompactAfterHours() {
+        return compactAfterHours;
+    }
+    
+    /**
+     * Moves the raw rows of the hour starting at hourStart into chunks and returns how many
+     * rows were moved. Each turbine is compacted in its own transaction, so row locks and
+     * undo are bounded by one turbine-hour and a failure leaves the other turbines done.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public int compactHour(LocalDateTime hourStart) {
+        LocalDateTime hourEnd = hourStart.plusHours(1);
+        TelemetryBatch raw = new TelemetryBatch(512);
+        TelemetryBatch merged = new TelemetryBatch(512);
+        int moved = 0;
+        int chunks = 0;
+        
+        for (Turbine turbine : turbineRegistry.getAll()) {
+            // Rows of an hour that has not been aggregated yet stay in telemetry for the scan
+            if (!watermarkService.isAggregated(turbine.getId(), hourEnd)) {
+                continue;
+            }
+            try {
+                int rows = turbineTransaction.execute(status -> compactTurbine(turbine.getId(), hourStart, raw, merged));
+                if (rows > 0) {
+                    moved += rows;
+                    chunks++;
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Compacting hour " + hourStart + " of turbine " + turbine.getId() +
+                    " failed, its rows stay in telemetry: " + e.getMessage());
+            }
+        }
+        
+        if (moved > 0) {
+            System.out.println("Compacted " + moved + " telemetry rows into " + chunks + " chunks for hour: " + hourStart);
+        }
+        return moved;
+    }
+    
+    private int compactTurbine(long turbineId, LocalDateTime hourStart, TelemetryBatch raw, TelemetryBatch merged) {
+        raw.clear();
+        List<Long> ids = batchWriter.loadTelemetry(turbineId, hourStart, hourStart.plusHours(1), raw);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        
+        TelemetryChunk chunk = chunkRepository.findByTurbineIdAndHourStart(turbineId, hourStart)
+            .orElseGet(() -> new TelemetryChunk(turbineRepository.getReferenceById(turbineId), hourStart));
+        TelemetryBatch samples = raw;
+        if (chunk.getData() != null) {
+            TelemetryBatch existing = new TelemetryBatch(Math.max(1, chunk.getSampleCount()));
+            GorillaChunkCodec.decode(chunk.getData(), turbineId, Long.MIN_VALUE, Long.MAX_VALUE, existing);
+            merged.clear();
+            merge(existing, raw, merged);
+            samples = merged;
+        }
+        
+        byte[] data = GorillaChunkCodec.encode(samples, 0, samples.size());
+        chunk.setData(data);
+        chunk.setSampleCount(samples.size());
+        chunk.setCompressedBytes(data.length);
+        chunkRepository.save(chunk);
+        batchWriter.deleteTelemetry(ids);
+        return ids.size();
+    }
+    
+    @Transactional(readOnly = true)
+    public Map<String, Object> getStatus() {
+        Object[] totals = chunkRepository.summarize().get(0);
+        long samples = ((Number) totals[1]).longValue();
+        long bytes = ((Number) totals[2]).longValue();
+        Map<String, Object> status = new HashMap<>();
+        status.put("enabled", enabled);
+        status.put("compactAfterHours", compactAfterHours);
+        status.put("chunks", ((Number) totals[0]).longValue());
+        status.put("samples", samples);
+        status.put("compressedBytes", bytes);
+        status.put("bytesPerSample", samples > 0 ? (double) bytes / samples : 0.0);
+        return status;
+    }
+    
+    // Both inputs sorted by timestamp; on equal timestamps the sample from first wins
+    private static void merge(TelemetryBatch first, TelemetryBatch second, TelemetryBatch out) {
+        int i = 0;
+        int j = 0;
+        while (i < first.size() || j < second.size()) {
+            boolean takeFirst;
+            if (j == second.size()) {
+                takeFirst = true;
+            } else if (i == first.size()) {
+                takeFirst = false;
+            } else {
+                takeFirst = first.timestamp(i) <= second.timestamp(j);
+            }
+            TelemetryBatch from = takeFirst ? first : second;
+            int k = takeFirst ? i++ : j++;
+            if (out.size() > 0 && out.timestamp(out.size() - 1) == from.timestamp(k)) {
+                continue;
+            }
+            out.add(from.turbineId(k), from.timestamp(k), from.windSpeed(k), from.powerOutput(k),
+                from.rotorSpeed(k), from.temperature(k), from.vibration(k), from.efficiency(k));
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.wind.turbinemonitor.service;
+
+import com.wind.turbinemonitor.ingest.RotatingBloomFilter;
+import com.wind.turbinemonitor.ingest.TelemetryBatch;
+import com.wind.turbinemonitor.ingest.TimestampWindow;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory duplicate check for (turbine, timestamp) so gateway retries are dropped without
+ * a database round trip.
+ *
+ * Each turbine has a bitset over its most recent buckets (window-seconds at resolution-ms);
+ * a clear bit means the sample is new. Every stored sample is also added to a rotating
+ * Bloom filter keyed on the exact timestamp. A sample is reported as a duplicate only when
+ * the Bloom filter matches and, inside the window, its bucket is set too, so live in-order
+ * traffic is never dropped by a false positive; backfills older than the window carry the
+ * Bloom filter's false-positive rate.
+ *
+ * Nothing here is authoritative: the unique (turbine_id, timestamp) constraint on the
+ * telemetry table catches whatever gets past it (concurrent retries, restarts, entries
+ * that rotated out of the filter).
+ */
+@Service
+public class TelemetryDeduplicator {
+    @Value("${telemetry.dedup.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${telemetry.dedup.window-seconds:3600}")
+    private int windowSeconds;
+    
+    @Value("${telemetry.dedup.resolution-ms:1000}")
+    private int resolutionMs;
+    
+    @Value("${telemetry.dedup.bloom-capacity:2000000}")
+    private int bloomCapacity;
+    
+    @Value("${telemetry.dedup.bloom-fpp:0.001}")
+    private double bloomFalsePositiveRate;
+    
+    private final Map<Long, TimestampWindow> windows = new ConcurrentHashMap<>();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private RotatingBloomFilter bloom;
+    private long resolutionMicros;
+    private int windowBuckets;
+    
+    @PostConstruct
+    public void init() {
+        resolutionMicros = resolutionMs * 1000L;
+        windowBuckets = (int) Math.max(1, windowSeconds * 1000L / resolutionMs);
+        if (enabled) {
+            bloom = new RotatingBloomFilter(bloomCapacity, bloomFalsePositiveRate);
+        }
+    }
+    
+    /**
+     * Returns true when the sample was already stored. Does not record it; call record()
+     * once the sample is committed or durable, so a failed write can be retried.
+     */
+    public boolean isDuplicate(long turbineId, long timestampMicros) {
+        if (!enabled) {
+            return false;
+        }
+        TimestampWindow window = windows.get(turbineId);
+        if (window == null || window.check(Math.floorDiv(timestampMicros, resolutionMicros)) == TimestampWindow.NEW) {
+            return false;
+        }
+        if (bloom.mightContain(turbineId, timestampMicros)) {
+            duplicates.increment();
+            return true;
+        }
+        return false;
+    }
+    
+    public void record(TelemetryBatch batch) {
+        if (!enabled) {
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            long turbineId = batch.turbineId(i);
+            long timestamp = batch.timestamp(i);
+            windows.computeIfAbsent(turbineId, id -> new TimestampWindow(windowBuckets))
+                .mark(Math.floorDiv(timestamp, resolutionMicros));
+            bloom.add(turbineId, timestamp);
+        }
+    }
+    
+    /**
+     * Counts samples that got past this check but were skipped by the unique constraint.
+     */
+    public void skipped(int count) {
+        if (count > 0) {
+            skipped.add(count);
+        }
+    }
+    
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("enabled", enabled);
+        status.put("duplicatesDropped", duplicates.sum());
+        status.put("duplicatesSkippedOnInsert", skipped.sum());
+        status.put("turbinesTracked", windows.size());
+        status.put("windowSeconds", windowSeconds);
+        status.put("resolutionMs", resolutionMs);
+        status.put("bloomBytes", bloom != null ? bloom.bytes() : 0);
+        return status;
+    }
+}
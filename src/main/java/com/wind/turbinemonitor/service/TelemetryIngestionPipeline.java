@@ -0,0 +1,227 @@
+package com.wind.turbinemonitor.service;
+
+import com.wind.turbinemonitor.ingest.TelemetryBatch;
+import com.wind.turbinemonitor.ingest.TelemetryRingBuffer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-process ingestion pipeline. HTTP threads publish samples into pre-allocated ring
+ * buffers striped by turbine id, and a small fixed set of writer threads drains them
+ * into large batched transactions. Each stripe has exactly one consumer, so samples of
+ * one turbine are written in the order they were accepted.
+ *
+ * A full ring is reported back to the caller instead of blocking, which is what turns a
+ * burst into 429s rather than an exhausted connection pool.
+ *
+ * On shutdown offers are refused first, offers already past that check finish, and only
+ * then are the writers told to drain the rings and stop, so nothing answered ACCEPTED is
+ * left behind in a ring.
+ */
+@Service
+public class TelemetryIngestionPipeline {
+    public enum Offer { ACCEPTED, FULL, CLOSED }
+    
+    @Autowired
+    private TelemetryService telemetryService;
+    
+    @Value("${telemetry.pipeline.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${telemetry.pipeline.stripes:16}")
+    private int stripeCount;
+    
+    @Value("${telemetry.pipeline.ring-capacity:8192}")
+    private int ringCapacity;
+    
+    @Value("${telemetry.pipeline.writers:2}")
+    private int writerCount;
+    
+    @Value("${telemetry.pipeline.max-batch:5000}")
+    private int maxBatch;
+    
+    @Value("${telemetry.pipeline.linger-ms:50}")
+    private long lingerMs;
+    
+    @Value("${telemetry.pipeline.shutdown-timeout-ms:30000}")
+    private long shutdownTimeoutMs;
+    
+    private TelemetryRingBuffer[] rings;
+    private ExecutorService writers;
+    private final AtomicInteger offersInFlight = new AtomicInteger();
+    private final AtomicLong droppedSamples = new AtomicLong();
+    private volatile boolean accepting;
+    private volatile boolean running;
+    private volatile long shutdownDeadline;
+    
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        rings = new TelemetryRingBuffer[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            rings[i] = new TelemetryRingBuffer(ringCapacity);
+        }
+        
+        running = true;
+        int threads = Math.min(writerCount, stripeCount);
+        AtomicInteger threadId = new AtomicInteger();
+        writers = Executors.newFixedThreadPool(threads, r -> new Thread(r, "telemetry-writer-" + threadId.getAndIncrement()));
+        for (int w = 0; w < threads; w++) {
+            List<TelemetryRingBuffer> owned = new ArrayList<>();
+            for (int i = w; i < stripeCount; i += threads) {
+                owned.add(rings[i]);
+            }
+            writers.execute(() -> drainLoop(owned));
+        }
+        accepting = true;
+        
+        System.out.println("Telemetry pipeline started: " + stripeCount + " stripes x " +
+                          rings[0].capacity() + " slots, " + threads + " writer threads");
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    public Offer offer(long turbineId, long timestampMicros, double windSpeed, double powerOutput,
+                       double rotorSpeed, double temperature, double vibration, double efficiency) {
+        // Counted before the check, so shutdown can wait for offers that got past it
+        offersInFlight.incrementAndGet();
+        try {
+            if (!accepting) {
+                return Offer.CLOSED;
+            }
+            TelemetryRingBuffer ring = rings[stripe(turbineId)];
+            return ring.offer(turbineId, timestampMicros, windSpeed, powerOutput, rotorSpeed, temperature, vibration, efficiency)
+                ? Offer.ACCEPTED
+                : Offer.FULL;
+        } finally {
+            offersInFlight.decrementAndGet();
+        }
+    }
+    
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("enabled", enabled);
+        status.put("accepting", accepting);
+        status.put("droppedSamples", droppedSamples.get());
+        if (rings != null) {
+            long queued = 0;
+            for (TelemetryRingBuffer ring : rings) {
+                queued += ring.size();
+            }
+            status.put("stripes", rings.length);
+            status.put("capacity", (long) rings.length * rings[0].capacity());
+            status.put("queued", queued);
+        }
+        return status;
+    }
+    
+    private int stripe(long turbineId) {
+        return (int) Math.floorMod(Long.hashCode(turbineId * 0x9E3779B97F4A7C15L), (long) rings.length);
+    }
+    
+    private void drainLoop(List<TelemetryRingBuffer> owned) {
+        TelemetryBatch batch = new TelemetryBatch(maxBatch);
+        long lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMs);
+        long firstSampleAt = 0;
+        
+        while (true) {
+            int drained = 0;
+            for (TelemetryRingBuffer ring : owned) {
+                drained += ring.drainTo(batch, maxBatch - batch.size());
+            }
+            if (!batch.isEmpty() && firstSampleAt == 0) {
+                firstSampleAt = System.nanoTime();
+            }
+            
+            boolean full = batch.size() >= maxBatch;
+            boolean lingered = !batch.isEmpty() && System.nanoTime() - firstSampleAt >= lingerNanos;
+            if (full || lingered || (!running && !batch.isEmpty())) {
+                write(batch);
+                batch.clear();
+                firstSampleAt = 0;
+                continue;
+            }
+            
+            if (drained == 0) {
+                if (!running && isEmpty(owned)) {
+                    return;
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+    }
+    
+    // Counts claimed-but-unpublished slots too, so a producer racing shutdown is not lost
+    private static boolean isEmpty(List<TelemetryRingBuffer> owned) {
+        for (TelemetryRingBuffer ring : owned) {
+            if (ring.size() > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    // Retries transient failures until the batch lands, so a database outage fills the rings
+    // and turns into backpressure at the HTTP edge instead of silently dropping accepted
+    // samples. Samples the database rejects for their data are dropped and counted: retrying
+    // them would stall the stripe for good
+    private void write(TelemetryBatch batch) {
+        long backoffMs = 100;
+        while (true) {
+            try {
+                TelemetryBatch rejected = TelemetryWriteErrors.writeIsolating(batch,
+                    telemetryService::saveTelemetryBatchOptimized);
+                if (!rejected.isEmpty()) {
+                    long dropped = droppedSamples.addAndGet(rejected.size());
+                    System.err.println("Telemetry pipeline dropped " + rejected.size() + " samples the database rejects (" +
+                                      dropped + " since startup)");
+                }
+                return;
+            } catch (RuntimeException e) {
+                if (!running && System.currentTimeMillis() > shutdownDeadline) {
+                    System.err.println("Telemetry pipeline dropping " + batch.size() + " samples at shutdown: " + e.getMessage());
+                    return;
+                }
+                System.err.println("Telemetry pipeline write of " + batch.size() + " samples failed, retrying in " +
+                                  backoffMs + " ms: " + e.getMessage());
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(backoffMs));
+                backoffMs = Math.min(backoffMs * 2, 5000);
+            }
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        accepting = false;
+        shutdownDeadline = System.currentTimeMillis() + shutdownTimeoutMs;
+        while (offersInFlight.get() > 0) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+        running = false;
+        writers.shutdown();
+        if (!writers.awaitTermination(Math.max(1, shutdownDeadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+            System.err.println("Telemetry pipeline writers still running after " + shutdownTimeoutMs + " ms");
+        }
+        System.out.println("Telemetry pipeline drained: " + getStatus().get("queued") + " samples left in rings");
+    }
+}
@@ -0,0 +1,238 @@
+package com.wind.turbinemonitor.service;
+
+import com.wind.turbinemonitor.dto.IngestionResultDTO;
+import com.wind.turbinemonitor.dto.TelemetryRecordDTO;
+import com.wind.turbinemonitor.ingest.TelemetryBatch;
+import com.wind.turbinemonitor.ingest.TelemetryFrameDecoder;
+import com.wind.turbinemonitor.model.Turbine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streaming NDJSON and binary frame ingestion. Samples are decoded incrementally and
+ * written in bounded batches, each in its own transaction, so heap use beyond the request
+ * body is independent of upload size.
+ */
+@Service
+public class TelemetryIngestionService {
+    @Autowired
+    private TelemetryService telemetryService;
+    
+    @Autowired
+    private TurbineRegistry turbineRegistry;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private TelemetryIngestionPipeline pipeline;
+    
+    @Autowired
+    private TelemetryWalService walService;
+    
+    @Autowired
+    private TelemetryDeduplicator deduplicator;
+    
+    @Value("${telemetry.ingest.batch-size:1000}")
+    private int batchSize;
+    
+    public IngestionResultDTO ingestNdjson(InputStream body, boolean gzip) throws IOException {
+        InputStream buffered = new BufferedInputStream(body, 64 * 1024);
+        InputStream in = gzip || isGzip(buffered) ? new GZIPInputStream(buffered, 64 * 1024) : buffered;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+        
+        IngestionResultDTO result = new IngestionResultDTO();
+        TelemetryBatch batch = new TelemetryBatch(batchSize);
+        long lineNumber = 0;
+        String line;
+        
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            
+            TelemetryRecordDTO record;
+            try {
+                record = objectMapper.readValue(line, TelemetryRecordDTO.class);
+            } catch (JacksonException e) {
+                result.reject(lineNumber, "Malformed JSON: " + e.getOriginalMessage());
+                continue;
+            }
+            
+            String error = validate(record);
+            if (error != null) {
+                result.reject(lineNumber, error);
+                continue;
+            }
+            
+            Turbine turbine = turbineRegistry.getByCode(record.getTurbineId()).orElse(null);
+            if (turbine == null) {
+                result.reject(lineNumber, "Unknown turbine: " + record.getTurbineId());
+                continue;
+            }
+            
+            LocalDateTime timestamp = record.getTimestamp() != null ? record.getTimestamp() : LocalDateTime.now();
+            if (deduplicator.isDuplicate(turbine.getId(), TelemetryBatch.toMicros(timestamp))) {
+                result.setDuplicates(result.getDuplicates() + 1);
+                continue;
+            }
+            
+            add(batch, turbine, timestamp, record);
+            if (batch.size() >= batchSize && !flush(batch, result)) {
+                result.setLines(lineNumber);
+                return result;
+            }
+        }
+        
+        flush(batch, result);
+        result.setLines(lineNumber);
+        return result;
+    }
+    
+    /**
+     * Ingests a body of TelemetryFrame frames. For these uploads the result's line
+     * numbers and line count refer to records. A malformed frame ends the upload: the
+     * records before it are stored, and it is reported as one reject with its byte offset.
+     * Records with NaN or infinite values are rejected one by one, like invalid NDJSON lines.
+     */
+    public IngestionResultDTO ingestFrames(ByteBuffer body) {
+        IngestionResultDTO result = new IngestionResultDTO();
+        TelemetryFrameDecoder decoder = new TelemetryFrameDecoder(body);
+        TelemetryBatch decoded = new TelemetryBatch(batchSize);
+        TelemetryBatch batch = new TelemetryBatch(batchSize);
+        TelemetryFrameDecoder.TurbineResolver resolver = (code, record) -> {
+            Turbine turbine = turbineRegistry.getByCode(code).orElse(null);
+            if (turbine == null) {
+                result.reject(record, "Unknown turbine: " + code);
+                return -1;
+            }
+            return turbine.getId();
+        };
+        
+        while (decoder.hasRemaining()) {
+            decoded.clear();
+            try {
+                decoder.decode(decoded, batchSize, resolver, result::reject);
+            } catch (IllegalArgumentException e) {
+                result.reject(decoder.records() + 1, "Malformed frame, nothing from byte " + decoder.position() +
+                    " on was read: " + e.getMessage());
+                break;
+            }
+            
+            for (int i = 0; i < decoded.size(); i++) {
+                long turbineId = decoded.turbineId(i);
+                if (deduplicator.isDuplicate(turbineId, decoded.timestamp(i))) {
+                    result.setDuplicates(result.getDuplicates() + 1);
+                    continue;
+                }
+                double efficiency = Double.isNaN(decoded.efficiency(i))
+                    ? (decoded.powerOutput(i) / turbineRegistry.ratedPower(turbineId)) * 100.0
+                    : decoded.efficiency(i);
+                batch.add(turbineId, decoded.timestamp(i), decoded.windSpeed(i), decoded.powerOutput(i),
+                    decoded.rotorSpeed(i), decoded.temperature(i), decoded.vibration(i), efficiency);
+            }
+            if (batch.size() >= batchSize && !flush(batch, result)) {
+                result.setLines(decoder.records());
+                return result;
+            }
+        }
+        
+        flush(batch, result);
+        result.setLines(decoder.records());
+        return result;
+    }
+    
+    public TelemetryIngestionPipeline.Offer submit(Long turbineId, Double windSpeed, Double powerOutput,
+                                                   Double rotorSpeed, Double temperature, Double vibration) {
+        double ratedPower = turbineRegistry.ratedPower(turbineId);
+        if (Double.isNaN(ratedPower)) {
+            throw new RuntimeException("Turbine not found with id: " + turbineId);
+        }
+        double efficiency = (powerOutput / ratedPower) * 100.0;
+        long timestamp = TelemetryBatch.toMicros(LocalDateTime.now());
+        
+        if (walService.isEnabled()) {
+            TelemetryBatch single = new TelemetryBatch(1);
+            single.add(turbineId, timestamp, windSpeed, powerOutput, rotorSpeed, temperature, vibration, efficiency);
+            return walService.append(single) ? TelemetryIngestionPipeline.Offer.ACCEPTED : TelemetryIngestionPipeline.Offer.FULL;
+        }
+        return pipeline.offer(turbineId, timestamp, windSpeed, powerOutput, rotorSpeed, temperature, vibration, efficiency);
+    }
+    
+    public boolean isAsync() {
+        return walService.isEnabled() || pipeline.isEnabled();
+    }
+    
+    // With the WAL enabled a batch counts as accepted once it is durable on local disk; otherwise
+    // only the rows the database inserted count, the rest are duplicates
+    private boolean flush(TelemetryBatch batch, IngestionResultDTO result) {
+        if (batch.isEmpty()) {
+            return true;
+        }
+        int repeated = batch.removeRepeatedKeys();
+        int accepted;
+        if (walService.isEnabled()) {
+            if (!walService.append(batch)) {
+                result.setAborted(true);
+                result.setAbortReason("Telemetry WAL is full; the upload stopped after the last accepted batch");
+                return false;
+            }
+            accepted = batch.size();
+        } else {
+            accepted = telemetryService.saveTelemetryBatchOptimized(batch);
+        }
+        deduplicator.record(batch);
+        result.setAccepted(result.getAccepted() + accepted);
+        result.setDuplicates(result.getDuplicates() + repeated + batch.size() - accepted);
+        result.setBatches(result.getBatches() + 1);
+        batch.clear();
+        return true;
+    }
+    
+    private String validate(TelemetryRecordDTO record) {
+        if (record.getTurbineId() == null || record.getTurbineId().isBlank()) return "Missing turbineId";
+        if (record.getWindSpeed() == null) return "Missing windSpeed";
+        if (record.getPowerOutput() == null) return "Missing powerOutput";
+        if (record.getRotorSpeed() == null) return "Missing rotorSpeed";
+        if (record.getTemperature() == null) return "Missing temperature";
+        if (record.getVibration() == null) return "Missing vibration";
+        // Out-of-range numbers such as 1e400 parse as infinity, which the database cannot store
+        if (!Double.isFinite(record.getWindSpeed())) return "Non-finite windSpeed";
+        if (!Double.isFinite(record.getPowerOutput())) return "Non-finite powerOutput";
+        if (!Double.isFinite(record.getRotorSpeed())) return "Non-finite rotorSpeed";
+        if (!Double.isFinite(record.getTemperature())) return "Non-finite temperature";
+        if (!Double.isFinite(record.getVibration())) return "Non-finite vibration";
+        if (record.getEfficiency() != null && !Double.isFinite(record.getEfficiency())) return "Non-finite efficiency";
+        return null;
+    }
+    
+    private void add(TelemetryBatch batch, Turbine turbine, LocalDateTime timestamp, TelemetryRecordDTO record) {
+        double efficiency = record.getEfficiency() != null
+            ? record.getEfficiency()
+            : (record.getPowerOutput() / turbine.getRatedPower()) * 100.0;
+        batch.add(turbine.getId(), TelemetryBatch.toMicros(timestamp), record.getWindSpeed(), record.getPowerOutput(),
+            record.getRotorSpeed(), record.getTemperature(), record.getVibration(), efficiency);
+    }
+    
+    // Gateways do not always set Content-Encoding, so sniff the gzip magic bytes as well
+    private static boolean isGzip(InputStream in) throws IOException {
+        in.mark(2);
+        int b1 = in.read();
+        int b2 = in.read();
+        in.reset();
+        return b1 == 0x1f && b2 == 0x8b;
+    }
+}
@@ -1,16 +1,19 @@
 package com.wind.turbinemonitor.service;
 
+import com.wind.turbinemonitor.ingest.TelemetryBatch;
 import com.wind.turbinemonitor.model.Telemetry;
 import com.wind.turbinemonitor.model.Turbine;
+import com.wind.turbinemonitor.repository.RawTelemetryStore;
+import com.wind.turbinemonitor.repository.TelemetryBatchWriter;
 import com.wind.turbinemonitor.repository.TelemetryRepository;
 import com.wind.turbinemonitor.repository.TurbineRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Optional;
+import java.util.function.Consumer;
 
 @Service
 @Transactional
@@ -21,63 +24,107 @@ public class TelemetryService {
     @Autowired
     private TurbineRepository turbineRepository;
     
+    @Autowired
+    private TelemetryBatchWriter batchWriter;
+    
+    @Autowired
+    private TurbineRegistry turbineRegistry;
+    
+    @Autowired
+    private RawTelemetryStore rawTelemetryStore;
+    
+    @Autowired
+    private IncrementalAggregationService incrementalAggregation;
+    
+    @Autowired
+    private AggregationWatermarkService watermarkService;
+    
+    @Autowired
+    private TelemetryDeduplicator deduplicator;
+    
     public Telemetry saveTelemetry(Telemetry telemetry) {
-        return telemetryRepository.save(telemetry);
+        Telemetry saved = telemetryRepository.save(telemetry);
+        written(TelemetryBatch.from(List.of(saved)));
+        return saved;
     }
     
     public List<Telemetry> saveTelemetryBatch(List<Telemetry> telemetryList) {
-        return telemetryRepository.saveAll(telemetryList);
+        List<Telemetry> saved = telemetryRepository.saveAll(telemetryList);
+        written(TelemetryBatch.from(saved));
+        return saved;
     }
     
     @Transactional
     public void saveTelemetryBatchOptimized(List<Telemetry> telemetryList) {
-        int batchSize = 500;
-        List<Telemetry> batch = new ArrayList<>();
-        
-        for (Telemetry telemetry : telemetryList) {
-            batch.add(telemetry);
-            
-            if (batch.size() >= batchSize) {
-                telemetryRepository.saveAll(batch);
-                batch.clear();
-            }
-        }
-        
-        if (!batch.isEmpty()) {
-            telemetryRepository.saveAll(batch);
+        // JDBC batches: IDENTITY keys stop Hibernate from batching these inserts
+        if (!telemetryList.isEmpty()) {
+            saveTelemetryBatchOptimized(TelemetryBatch.from(telemetryList));
         }
     }
     
+    /**
+     * Returns how many samples were inserted. Samples already stored are skipped and left
+     * out of the raw store, the hourly accumulators and the late-data check.
+     */
+    @Transactional
+    public int saveTelemetryBatchOptimized(TelemetryBatch batch) {
+        BitSet inserted = batchWriter.insertTelemetry(batch);
+        int count = inserted.cardinality();
+        deduplicator.skipped(batch.size() - count);
+        written(count == batch.size() ? batch : batch.select(inserted));
+        return count;
+    }
+    
     public List<Telemetry> getTelemetryByTurbine(Long turbineId) {
-        return telemetryRepository.findByTurbineId(turbineId);
+        return rawTelemetryStore.findByTurbineId(turbineId);
     }
     
     public List<Telemetry> getTelemetryByTurbineAndDateRange(Long turbineId, LocalDateTime startTime, LocalDateTime endTime) {
-        return telemetryRepository.findByTurbineAndDateRange(turbineId, startTime, endTime);
+        return rawTelemetryStore.findByTurbineAndDateRange(turbineId, startTime, endTime);
     }
     
-    public List<Telemetry> getUnaggregatedTelemetryByTimeRange(LocalDateTime startTime, LocalDateTime endTime) {
-        return telemetryRepository.findUnaggregatedByTimeRange(startTime, endTime);
+    /**
+     * Passes at most limit samples with startTime <= timestamp <= endTime (null for no bound)
+     * to consumer, in timestamp order, as they are read.
+     */
+    @Transactional(readOnly = true)
+    public void forEachTelemetry(Long turbineId, LocalDateTime startTime, LocalDateTime endTime, int limit,
+                                 Consumer<Telemetry> consumer) {
+        rawTelemetryStore.forEach(turbineId, startTime, endTime, limit, consumer);
     }
     
-    public List<Telemetry> getUnaggregatedTelemetryByTurbineAndTimeRange(Long turbineId, LocalDateTime startTime, LocalDateTime endTime) {
-        return telemetryRepository.findUnaggregatedByTurbineAndTimeRange(turbineId, startTime, endTime);
+    /**
+     * Whether the range holds more than rows samples, i.e. forEachTelemetry with that limit
+     * leaves some out.
+     */
+    @Transactional(readOnly = true)
+    public boolean hasMoreTelemetryThan(Long turbineId, LocalDateTime startTime, LocalDateTime endTime, int rows) {
+        return rawTelemetryStore.hasMoreThan(turbineId, startTime, endTime, rows);
     }
     
     
     public Telemetry createTelemetry(Long turbineId, Double windSpeed, Double powerOutput, 
                                     Double rotorSpeed, Double temperature, Double vibration) {
-        Optional<Turbine> turbineOpt = turbineRepository.findById(turbineId);
-        if (turbineOpt.isEmpty()) {
+        double ratedPower = turbineRegistry.ratedPower(turbineId);
+        if (Double.isNaN(ratedPower)) {
             throw new RuntimeException("Turbine not found with id: " + turbineId);
         }
         
-        Turbine turbine = turbineOpt.get();
-        Double efficiency = (powerOutput / turbine.getRatedPower()) * 100.0;
+        Turbine turbine = turbineRepository.getReferenceById(turbineId);
+        Double efficiency = (powerOutput / ratedPower) * 100.0;
         
         Telemetry telemetry = new Telemetry(turbine, LocalDateTime.now(), windSpeed, 
                                            powerOutput, rotorSpeed, temperature, vibration, efficiency);
-        return telemetryRepository.save(telemetry);
+        return saveTelemetry(telemetry);
+    }
+    
+    // Every telemetry write ends here, so the raw store, hourly accumulators and late-data check see each sample
+    private void written(TelemetryBatch batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        rawTelemetryStore.append(batch);
+        incrementalAggregation.record(batch);
+        watermarkService.checkLate(batch);
     }
 }
-
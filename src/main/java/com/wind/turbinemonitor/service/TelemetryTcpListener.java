@@ -0,0 +1,344 @@
+package com.wind.turbinemonitor.service;
+
+import com.wind.turbinemonitor.dto.IngestionResultDTO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Optional raw TCP ingestion for gateways that keep a socket open, avoiding HTTP overhead
+ * per upload. One selector thread accepts connections and reads; decoding and persistence
+ * run on a small worker pool through TelemetryIngestionService.ingestFrames, the same path
+ * as binary HTTP uploads (dedup, WAL or batched insert).
+ *
+ * <pre>
+ * Client to server, repeated:
+ *   int32   length of the rest of the message (8 + frame bytes)
+ *   int64   sequence number chosen by the client
+ *   bytes   one or more TelemetryFrame frames
+ *
+ * Server to client, one per message, in order:
+ *   int64   sequence number
+ *   uint8   status: 0 = stored, 1 = retry later (WAL full or database error), 2 = rejected
+ *   int32   accepted samples
+ *   int32   duplicate samples
+ *   int32   rejected samples
+ * </pre>
+ *
+ * Delivery is at-least-once: a client keeps each message until it is acked with status 0
+ * or 2 and resends the rest after reconnecting. Resent samples are dropped by the
+ * deduplicator and the unique constraint on telemetry.
+ *
+ * Each connection has one read buffer that is reused for every message and only grows
+ * up to max-message-bytes. While a message is being stored the connection stops reading,
+ * so a slow database pushes back through TCP flow control instead of buffering.
+ */
+@Service
+public class TelemetryTcpListener {
+    public static final int ACK_BYTES = 21;
+    public static final byte STATUS_STORED = 0;
+    public static final byte STATUS_RETRY = 1;
+    public static final byte STATUS_REJECTED = 2;
+    
+    @Autowired
+    private TelemetryIngestionService ingestionService;
+    
+    @Value("${telemetry.tcp.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${telemetry.tcp.port:9400}")
+    private int port;
+    
+    @Value("${telemetry.tcp.workers:4}")
+    private int workerCount;
+    
+    @Value("${telemetry.tcp.max-connections:1024}")
+    private int maxConnections;
+    
+    @Value("${telemetry.tcp.read-buffer-bytes:65536}")
+    private int readBufferBytes;
+    
+    @Value("${telemetry.tcp.max-message-bytes:4194304}")
+    private int maxMessageBytes;
+    
+    private Selector selector;
+    private ServerSocketChannel server;
+    private ExecutorService workers;
+    private Thread selectorThread;
+    private volatile boolean running;
+    private final Queue<Connection> completed = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicLong messages = new AtomicLong();
+    private final AtomicLong samples = new AtomicLong();
+    
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port), 128);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        
+        AtomicInteger workerId = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(workerCount,
+            r -> new Thread(r, "telemetry-tcp-worker-" + workerId.getAndIncrement()));
+        running = true;
+        selectorThread = new Thread(this::selectLoop, "telemetry-tcp-selector");
+        selectorThread.start();
+        System.out.println("Telemetry TCP listener on port " + port);
+    }
+    
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("enabled", enabled);
+        status.put("port", port);
+        status.put("connections", connections.get());
+        status.put("messages", messages.get());
+        status.put("samples", samples.get());
+        return status;
+    }
+    
+    private void selectLoop() {
+        while (running) {
+            try {
+                selector.select();
+                Connection done;
+                while ((done = completed.poll()) != null) {
+                    finish(done);
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isWritable()) {
+                                flushAcks(connection);
+                            }
+                            if (key.isValid() && key.isReadable()) {
+                                read(connection);
+                            }
+                        } catch (IOException e) {
+                            close(connection);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Telemetry TCP selector error: " + e.getMessage());
+            }
+        }
+    }
+    
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            if (connections.get() >= maxConnections) {
+                channel.close();
+                continue;
+            }
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            channel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+            Connection connection = new Connection(channel, readBufferBytes);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            connections.incrementAndGet();
+        }
+    }
+    
+    private void read(Connection connection) throws IOException {
+        if (connection.busy) {
+            return;
+        }
+        int n = connection.channel.read(connection.in);
+        if (n < 0) {
+            close(connection);
+            return;
+        }
+        dispatch(connection);
+    }
+    
+    // Hands the next complete message in the read buffer to a worker, or goes back to reading
+    private void dispatch(Connection connection) throws IOException {
+        if (connection.busy) {
+            return;
+        }
+        ByteBuffer in = connection.in;
+        if (in.position() < 4) {
+            interest(connection, SelectionKey.OP_READ);
+            return;
+        }
+        int length = in.getInt(0);
+        if (length < 8 || length > maxMessageBytes - 4) {
+            System.err.println("Closing telemetry connection " + connection.channel.getRemoteAddress() +
+                               ": invalid message length " + length);
+            close(connection);
+            return;
+        }
+        if (in.position() < 4 + length) {
+            if (in.capacity() < 4 + length) {
+                ByteBuffer larger = ByteBuffer.allocate(4 + length);
+                in.flip();
+                larger.put(in);
+                connection.in = larger;
+            }
+            interest(connection, SelectionKey.OP_READ);
+            return;
+        }
+        
+        long sequence = in.getLong(4);
+        ByteBuffer frames = in.slice(12, length - 8);
+        connection.messageBytes = 4 + length;
+        connection.busy = true;
+        interest(connection, 0);
+        workers.execute(() -> store(connection, sequence, frames));
+    }
+    
+    private void store(Connection connection, long sequence, ByteBuffer frames) {
+        byte status;
+        int accepted = 0;
+        int duplicates = 0;
+        int rejected = 0;
+        try {
+            IngestionResultDTO result = ingestionService.ingestFrames(frames);
+            accepted = (int) result.getAccepted();
+            duplicates = (int) result.getDuplicates();
+            rejected = (int) result.getRejected();
+            if (result.isAborted()) {
+                status = STATUS_RETRY;
+            } else if (accepted == 0 && duplicates == 0 && rejected > 0) {
+                status = STATUS_REJECTED;
+            } else {
+                status = STATUS_STORED;
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Telemetry TCP message " + sequence + " not stored: " + e.getMessage());
+            status = STATUS_RETRY;
+        }
+        messages.incrementAndGet();
+        samples.addAndGet(accepted);
+        
+        connection.ack = ByteBuffer.allocate(ACK_BYTES)
+            .putLong(sequence).put(status).putInt(accepted).putInt(duplicates).putInt(rejected)
+            .flip();
+        completed.add(connection);
+        selector.wakeup();
+    }
+    
+    private void finish(Connection connection) {
+        if (!connection.key.isValid()) {
+            return;
+        }
+        try {
+            ByteBuffer in = connection.in;
+            in.flip();
+            in.position(connection.messageBytes);
+            in.compact();
+            connection.busy = false;
+            connection.out.put(connection.ack);
+            flushAcks(connection);
+        } catch (IOException e) {
+            close(connection);
+        }
+    }
+    
+    private void flushAcks(Connection connection) throws IOException {
+        ByteBuffer out = connection.out;
+        out.flip();
+        connection.channel.write(out);
+        out.compact();
+        if (connection.busy) {
+            interest(connection, out.position() > 0 ? SelectionKey.OP_WRITE : 0);
+        } else if (out.position() > 0) {
+            // Do not take more messages from a client that is not reading its acks
+            interest(connection, SelectionKey.OP_WRITE);
+        } else {
+            dispatch(connection);
+        }
+    }
+    
+    private static void interest(Connection connection, int ops) {
+        if (connection.key.isValid()) {
+            connection.key.interestOps(ops);
+        }
+    }
+    
+    private void close(Connection connection) {
+        if (connection.key.isValid()) {
+            connection.key.cancel();
+            connections.decrementAndGet();
+        }
+        try {
+            connection.channel.close();
+        } catch (IOException ignored) {
+            // Already gone
+        }
+    }
+    
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        selectorThread.join(5000);
+        workers.shutdown();
+        workers.awaitTermination(30, TimeUnit.SECONDS);
+        for (SelectionKey key : selector.keys()) {
+            try {
+                key.channel().close();
+            } catch (IOException ignored) {
+                // Closing anyway
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException ignored) {
+            // Closing anyway
+        }
+    }
+    
+    private static final class Connection {
+        final SocketChannel channel;
+        final ByteBuffer out = ByteBuffer.allocate(ACK_BYTES * 4);
+        ByteBuffer in;
+        SelectionKey key;
+        int messageBytes;
+        boolean busy;
+        volatile ByteBuffer ack;
+        
+        Connection(SocketChannel channel, int readBufferBytes) {
+            this.channel = channel;
+            this.in = ByteBuffer.allocate(readBufferBytes);
+        }
+    }
+}
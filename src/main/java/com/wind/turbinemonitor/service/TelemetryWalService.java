@@ -0,0 +1,200 @@
+package com.wind.turbinemonitor.service;
+
+import com.wind.turbinemonitor.ingest.TelemetryBatch;
+import com.wind.turbinemonitor.ingest.TelemetryWal;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Durable buffer between accepting telemetry and committing it. Ingestion acknowledges
+ * once a sample is fsynced into the local WAL; a background replayer moves frames into
+ * the database, checkpoints its position and deletes fully replayed segments. Anything
+ * left un-replayed at shutdown or crash is picked up from the checkpoint on startup.
+ *
+ * The checkpoint is written when replay moves into a new segment (so replayed segments can
+ * be deleted) and otherwise at most every checkpoint-interval-ms, not after every batch:
+ * each one is an fsync and a directory listing. Delivery into the database is
+ * at-least-once: a crash replays what was committed since the last checkpoint, and the
+ * unique (turbine_id, timestamp) constraint turns those rows into no-ops.
+ *
+ * A batch that fails because the database is unavailable is retried from the same position
+ * with backoff. One that fails for its data (see TelemetryWriteErrors) is split until the
+ * failing samples are found; the rest are written, the failing ones are appended to a
+ * dead-letter log in the dead-letter subdirectory (same frame format, never replayed) and
+ * replay moves on, so one bad sample cannot hold back everything acknowledged after it.
+ */
+@Service
+public class TelemetryWalService {
+    @Autowired
+    private TelemetryService telemetryService;
+    
+    @Value("${telemetry.wal.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${telemetry.wal.dir:./data/wal}")
+    private String directory;
+    
+    @Value("${telemetry.wal.segment-size-mb:64}")
+    private int segmentSizeMb;
+    
+    @Value("${telemetry.wal.max-segments:64}")
+    private int maxSegments;
+    
+    @Value("${telemetry.wal.replay-batch:5000}")
+    private int replayBatch;
+    
+    @Value("${telemetry.wal.checkpoint-interval-ms:1000}")
+    private long checkpointIntervalMs;
+    
+    // Segments of the dead-letter log; it only grows when samples are rejected
+    private static final int DEAD_LETTER_SEGMENT_BYTES = 1024 * 1024;
+    
+    private TelemetryWal wal;
+    private TelemetryWal deadLetters;
+    private Thread replayer;
+    private volatile boolean running;
+    private volatile long replayPosition;
+    private long checkpointedPosition;
+    private long checkpointedAt;
+    private volatile long replayedSamples;
+    private volatile String lastReplayError;
+    private volatile long deadLetterSamples;
+    
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        wal = TelemetryWal.open(Path.of(directory), segmentSizeMb * 1024 * 1024, maxSegments);
+        deadLetters = TelemetryWal.open(Path.of(directory, "dead-letter"), DEAD_LETTER_SEGMENT_BYTES, Integer.MAX_VALUE);
+        replayPosition = wal.readCheckpoint();
+        checkpointedPosition = replayPosition;
+        checkpointedAt = System.currentTimeMillis();
+        long pending = wal.pendingBytes(replayPosition);
+        if (pending > 0) {
+            System.out.println("Recovering " + pending + " bytes of un-replayed telemetry from WAL in " + directory);
+        }
+        
+        running = true;
+        replayer = new Thread(this::replayLoop, "telemetry-wal-replayer");
+        replayer.start();
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Appends the batch and blocks until it is on disk. Returns false, writing nothing, when
+     * the WAL is at max-segments because replay has fallen behind.
+     */
+    public boolean append(TelemetryBatch batch) {
+        if (batch.isEmpty()) {
+            return true;
+        }
+        long position = wal.append(batch);
+        if (position < 0) {
+            return false;
+        }
+        wal.awaitDurable(position);
+        return true;
+    }
+    
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("enabled", enabled);
+        if (wal != null) {
+            status.put("segments", wal.segmentCount());
+            status.put("pendingBytes", wal.pendingBytes(replayPosition));
+            status.put("replayedSamples", replayedSamples);
+            status.put("lastReplayError", lastReplayError);
+            status.put("deadLetterSamples", deadLetterSamples);
+        }
+        return status;
+    }
+    
+    private void replayLoop() {
+        TelemetryBatch batch = new TelemetryBatch(replayBatch);
+        long backoffMs = 100;
+        
+        while (running) {
+            try {
+                batch.clear();
+                long next = wal.read(replayPosition, batch, replayBatch);
+                if (batch.isEmpty()) {
+                    replayPosition = next;
+                    checkpointIfDue(false);
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(20));
+                    continue;
+                }
+                
+                TelemetryBatch rejected = TelemetryWriteErrors.writeIsolating(batch,
+                    telemetryService::saveTelemetryBatchOptimized);
+                if (!rejected.isEmpty()) {
+                    deadLetter(rejected);
+                }
+                replayPosition = next;
+                checkpointIfDue(false);
+                replayedSamples += batch.size();
+                lastReplayError = null;
+                backoffMs = 100;
+            } catch (IOException | RuntimeException e) {
+                // The database is down or in maintenance (writeIsolating only throws transient
+                // errors): keep accepting into the WAL and retry
+                lastReplayError = e.getMessage();
+                System.err.println("WAL replay failed, retrying in " + backoffMs + " ms: " + e.getMessage());
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(backoffMs));
+                backoffMs = Math.min(backoffMs * 2, 10000);
+            }
+        }
+        try {
+            checkpointIfDue(true);
+        } catch (IOException e) {
+            System.err.println("WAL checkpoint at shutdown failed: " + e.getMessage());
+        }
+    }
+    
+    // Durable before replay moves past the samples, so a crash replays them again instead of losing them
+    private void deadLetter(TelemetryBatch rejected) {
+        long position = deadLetters.append(rejected);
+        deadLetters.awaitDurable(position);
+        deadLetterSamples += rejected.size();
+        System.err.println("WAL replay moved " + rejected.size() + " samples the database rejects to " +
+                           Path.of(directory, "dead-letter") + " (" + deadLetterSamples + " in all)");
+    }
+    
+    // Replayer thread only
+    private void checkpointIfDue(boolean force) throws IOException {
+        if (replayPosition == checkpointedPosition) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        boolean newSegment = replayPosition / wal.segmentSize() != checkpointedPosition / wal.segmentSize();
+        if (force || newSegment || now - checkpointedAt >= checkpointIntervalMs) {
+            wal.checkpoint(replayPosition);
+            checkpointedPosition = replayPosition;
+            checkpointedAt = now;
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() throws InterruptedException, IOException {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        replayer.join(TimeUnit.SECONDS.toMillis(30));
+        wal.close();
+        deadLetters.close();
+        System.out.println("Telemetry WAL closed with " + wal.pendingBytes(replayPosition) + " bytes left to replay");
+    }
+}
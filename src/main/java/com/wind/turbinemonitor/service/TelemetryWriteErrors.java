@@ -0,0 +1,78 @@
+package com.wind.turbinemonitor.service;
+
+import com.wind.turbinemonitor.ingest.TelemetryBatch;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.transaction.CannotCreateTransactionException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.BitSet;
+import java.util.function.Consumer;
+
+/**
+ * Tells failed writes of already accepted telemetry that are worth retrying from ones that
+ * never succeed, for the background writers (the WAL replayer and the pipeline writers).
+ *
+ * A write that failed because the database was unreachable, a lock or statement timed out
+ * or the transaction lost a deadlock goes through later unchanged. Anything else is taken
+ * to be about the rows, for example a turbine deleted after its samples were accepted:
+ * retrying the same batch would fail forever and hold up everything queued behind it.
+ */
+final class TelemetryWriteErrors {
+    private TelemetryWriteErrors() {}
+    
+    static boolean isTransient(Throwable error) {
+        for (Throwable e = error; e != null; e = e.getCause() == e ? null : e.getCause()) {
+            if (e instanceof TransientDataAccessException || e instanceof RecoverableDataAccessException ||
+                e instanceof DataAccessResourceFailureException || e instanceof CannotCreateTransactionException ||
+                e instanceof SQLTransientException || e instanceof SQLRecoverableException ||
+                e instanceof SQLNonTransientConnectionException) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Writes batch, halving each part that fails with a non-transient error until the rows
+     * that fail on their own are found, and returns those rows; everything else is written.
+     * A transient error is rethrown. Parts written before it stay written, which is harmless
+     * since writing a stored sample again is a no-op.
+     */
+    static TelemetryBatch writeIsolating(TelemetryBatch batch, Consumer<TelemetryBatch> write) {
+        TelemetryBatch rejected = new TelemetryBatch(1);
+        BitSet all = new BitSet(batch.size());
+        all.set(0, batch.size());
+        write(batch, all, write, rejected);
+        return rejected;
+    }
+    
+    private static void write(TelemetryBatch source, BitSet rows, Consumer<TelemetryBatch> write,
+                              TelemetryBatch rejected) {
+        TelemetryBatch part = rows.cardinality() == source.size() ? source : source.select(rows);
+        try {
+            write.accept(part);
+            return;
+        } catch (RuntimeException e) {
+            if (isTransient(e)) {
+                throw e;
+            }
+            if (part.size() == 1) {
+                rejected.add(part.turbineId(0), part.timestamp(0), part.windSpeed(0), part.powerOutput(0),
+                    part.rotorSpeed(0), part.temperature(0), part.vibration(0), part.efficiency(0));
+                System.err.println("Telemetry sample of turbine " + part.turbineId(0) + " at " +
+                                   part.timestampAsDateTime(0) + " cannot be written: " + e.getMessage());
+                return;
+            }
+        }
+        int half = part.size() / 2;
+        BitSet first = new BitSet(part.size());
+        first.set(0, half);
+        BitSet second = new BitSet(part.size());
+        second.set(half, part.size());
+        write(part, first, write, rejected);
+        write(part, second, write, rejected);
+    }
+}
@@ -0,0 +1,258 @@
+package com.wind.turbinemonitor.service;
+
+import com.wind.turbinemonitor.model.Farm;
+import com.wind.turbinemonitor.model.Turbine;
+import com.wind.turbinemonitor.repository.FarmRepository;
+import com.wind.turbinemonitor.repository.TurbineRepository;
+import com.wind.turbinemonitor.util.LongIntHashMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory, write-through copy of every turbine and farm, so hot paths (ingestion,
+ * aggregation, turbine listing) resolve turbines without a query.
+ *
+ * Readers see an immutable snapshot published through a volatile field; turbines are
+ * indexed by id in a primitive long map and by code in a hash map, with rated power kept
+ * in a parallel double array. Mutations in TurbineService and FarmService copy the
+ * snapshot and publish the new one after their transaction commits. Code that writes
+ * turbines through the repositories directly must call reload().
+ *
+ * The returned Turbine and Farm objects are detached copies shared by all callers and
+ * must be treated as read-only.
+ */
+@Service
+public class TurbineRegistry {
+    @Autowired
+    private TurbineRepository turbineRepository;
+    
+    @Autowired
+    private FarmRepository farmRepository;
+    
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile Snapshot snapshot;
+    
+    public Optional<Turbine> get(long turbineId) {
+        Snapshot s = snapshot();
+        int i = s.indexById.get(turbineId);
+        return i < 0 ? Optional.empty() : Optional.of(s.turbines[i]);
+    }
+    
+    public Optional<Turbine> getByCode(String turbineCode) {
+        Snapshot s = snapshot();
+        Integer i = s.indexByCode.get(turbineCode);
+        return i == null ? Optional.empty() : Optional.of(s.turbines[i]);
+    }
+    
+    public boolean contains(long turbineId) {
+        return snapshot().indexById.get(turbineId) >= 0;
+    }
+    
+    /**
+     * Returns the turbine's rated power, or NaN when the turbine is unknown.
+     */
+    public double ratedPower(long turbineId) {
+        Snapshot s = snapshot();
+        int i = s.indexById.get(turbineId);
+        return i < 0 ? Double.NaN : s.ratedPower[i];
+    }
+    
+    public List<Turbine> getAll() {
+        return List.of(snapshot().turbines);
+    }
+    
+    public List<Turbine> getByStatus(String status) {
+        List<Turbine> result = new ArrayList<>();
+        for (Turbine turbine : snapshot().turbines) {
+            if (status.equals(turbine.getStatus())) {
+                result.add(turbine);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Same semantics as TurbineRepository.findByFiltersList: null or empty filters match
+     * everything. Results are ordered by id.
+     */
+    public List<Turbine> filter(String farmName, String region, String status) {
+        boolean hasFarm = farmName != null && !farmName.isEmpty();
+        boolean hasRegion = region != null && !region.isEmpty();
+        boolean hasStatus = status != null && !status.isEmpty();
+        
+        List<Turbine> result = new ArrayList<>();
+        for (Turbine turbine : snapshot().turbines) {
+            Farm farm = turbine.getFarm();
+            if (hasFarm && (farm == null || !farmName.equals(farm.getName()))) continue;
+            if (hasRegion && (farm == null || !region.equals(farm.getRegion()))) continue;
+            if (hasStatus && !status.equals(turbine.getStatus())) continue;
+            result.add(turbine);
+        }
+        return result;
+    }
+    
+    public List<Farm> getAllFarms() {
+        return List.of(snapshot().farms);
+    }
+    
+    public Optional<Farm> getFarm(long farmId) {
+        Snapshot s = snapshot();
+        int i = s.farmIndexById.get(farmId);
+        return i < 0 ? Optional.empty() : Optional.of(s.farms[i]);
+    }
+    
+    public void reload() {
+        List<Turbine> turbines = turbineRepository.findAllWithFarm();
+        List<Farm> farms = farmRepository.findAll();
+        writeLock.lock();
+        try {
+            Map<Long, Farm> farmCopies = new HashMap<>();
+            for (Farm farm : farms) {
+                farmCopies.put(farm.getId(), copyOf(farm));
+            }
+            List<Turbine> turbineCopies = new ArrayList<>(turbines.size());
+            for (Turbine turbine : turbines) {
+                turbineCopies.add(copyOf(turbine, farmCopies.get(turbine.getFarm().getId())));
+            }
+            snapshot = new Snapshot(turbineCopies, new ArrayList<>(farmCopies.values()));
+        } finally {
+            writeLock.unlock();
+        }
+        System.out.println("Turbine registry loaded: " + turbines.size() + " turbines, " + farms.size() + " farms");
+    }
+    
+    public void turbineSaved(Turbine turbine) {
+        Long farmId = turbine.getFarm() != null ? turbine.getFarm().getId() : null;
+        Farm farmCopy = farmId != null ? getFarm(farmId).orElseGet(() -> copyOf(turbine.getFarm())) : null;
+        Turbine copy = copyOf(turbine, farmCopy);
+        afterCommit(() -> mutate((turbines, farms) -> {
+            turbines.removeIf(t -> t.getId().equals(copy.getId()));
+            turbines.add(copy);
+        }));
+    }
+    
+    public void turbineDeleted(long turbineId) {
+        afterCommit(() -> mutate((turbines, farms) -> turbines.removeIf(t -> t.getId() == turbineId)));
+    }
+    
+    public void farmSaved(Farm farm) {
+        Farm copy = copyOf(farm);
+        afterCommit(() -> mutate((turbines, farms) -> {
+            farms.removeIf(f -> f.getId().equals(copy.getId()));
+            farms.add(copy);
+            turbines.replaceAll(t -> t.getFarm() != null && copy.getId().equals(t.getFarm().getId()) ? copyOf(t, copy) : t);
+        }));
+    }
+    
+    public void farmDeleted(long farmId) {
+        // Farm.turbines cascades, so the farm's turbines go with it
+        afterCommit(() -> mutate((turbines, farms) -> {
+            farms.removeIf(f -> f.getId() == farmId);
+            turbines.removeIf(t -> t.getFarm() != null && t.getFarm().getId() == farmId);
+        }));
+    }
+    
+    private Snapshot snapshot() {
+        Snapshot s = snapshot;
+        if (s == null) {
+            writeLock.lock();
+            try {
+                if (snapshot == null) {
+                    reload();
+                }
+                s = snapshot;
+            } finally {
+                writeLock.unlock();
+            }
+        }
+        return s;
+    }
+    
+    private interface Mutation {
+        void apply(List<Turbine> turbines, List<Farm> farms);
+    }
+    
+    private void mutate(Mutation mutation) {
+        writeLock.lock();
+        try {
+            Snapshot current = snapshot();
+            List<Turbine> turbines = new ArrayList<>(Arrays.asList(current.turbines));
+            List<Farm> farms = new ArrayList<>(Arrays.asList(current.farms));
+            mutation.apply(turbines, farms);
+            snapshot = new Snapshot(turbines, farms);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+    
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+    
+    private static Farm copyOf(Farm farm) {
+        Farm copy = new Farm(farm.getName(), farm.getRegion(), farm.getLocation());
+        copy.setId(farm.getId());
+        return copy;
+    }
+    
+    private static Turbine copyOf(Turbine turbine, Farm farm) {
+        Turbine copy = new Turbine();
+        copy.setId(turbine.getId());
+        copy.setTurbineId(turbine.getTurbineId());
+        copy.setName(turbine.getName());
+        copy.setFarm(farm);
+        copy.setRatedPower(turbine.getRatedPower());
+        copy.setStatus(turbine.getStatus());
+        copy.setInstalledDate(turbine.getInstalledDate());
+        copy.setLastUpdated(turbine.getLastUpdated());
+        return copy;
+    }
+    
+    private static final class Snapshot {
+        final Turbine[] turbines;
+        final double[] ratedPower;
+        final LongIntHashMap indexById;
+        final Map<String, Integer> indexByCode;
+        final Farm[] farms;
+        final LongIntHashMap farmIndexById;
+        
+        Snapshot(List<Turbine> turbineList, List<Farm> farmList) {
+            turbines = turbineList.toArray(new Turbine[0]);
+            Arrays.sort(turbines, Comparator.comparing(Turbine::getId));
+            ratedPower = new double[turbines.length];
+            indexById = new LongIntHashMap(turbines.length);
+            indexByCode = new HashMap<>(turbines.length * 2);
+            for (int i = 0; i < turbines.length; i++) {
+                ratedPower[i] = turbines[i].getRatedPower();
+                indexById.put(turbines[i].getId(), i);
+                indexByCode.put(turbines[i].getTurbineId(), i);
+            }
+            
+            farms = farmList.toArray(new Farm[0]);
+            Arrays.sort(farms, Comparator.comparing(Farm::getId));
+            farmIndexById = new LongIntHashMap(farms.length);
+            for (int i = 0; i < farms.length; i++) {
+                farmIndexById.put(farms[i].getId(), i);
+            }
+        }
+    }
+}
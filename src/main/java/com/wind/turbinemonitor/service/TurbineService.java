@@ -6,12 +6,10 @@ import com.wind.turbinemonitor.model.Turbine;
 import com.wind.turbinemonitor.repository.FarmRepository;
 import com.wind.turbinemonitor.repository.TurbineRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
@@ -24,16 +22,22 @@ public class TurbineService {
     @Autowired
     private FarmRepository farmRepository;
     
+    @Autowired
+    private TurbineRegistry turbineRegistry;
+    
+    @Autowired
+    private RollupService rollupService;
+    
     public List<Turbine> getAllTurbines() {
-        return turbineRepository.findAll();
+        return turbineRegistry.getAll();
     }
     
     public Optional<Turbine> getTurbineById(Long id) {
-        return turbineRepository.findById(id);
+        return turbineRegistry.get(id);
     }
     
     public Optional<Turbine> getTurbineByTurbineId(String turbineId) {
-        return turbineRepository.findByTurbineId(turbineId);
+        return turbineRegistry.getByCode(turbineId);
     }
     
     public List<Turbine> getTurbinesByFarm(Long farmId) {
@@ -55,7 +59,9 @@ public class TurbineService {
     public Turbine createTurbine(Turbine turbine) {
         turbine.setInstalledDate(LocalDateTime.now());
         turbine.setLastUpdated(LocalDateTime.now());
-        return turbineRepository.save(turbine);
+        Turbine saved = turbineRepository.save(turbine);
+        turbineRegistry.turbineSaved(saved);
+        return saved;
     }
     
     public Turbine updateTurbine(Long id, Turbine turbineDetails) {
@@ -63,53 +69,45 @@ public class TurbineService {
             .orElseThrow(() -> new RuntimeException("Turbine not found with id: " + id));
         turbine.setName(turbineDetails.getName());
         turbine.setTurbineId(turbineDetails.getTurbineId());
+        String oldFarm = turbine.getFarm() != null ? turbine.getFarm().getName() : null;
+        boolean farmChanged = false;
         if (turbineDetails.getFarm() != null) {
             Farm farm = farmRepository.findById(turbineDetails.getFarm().getId())
                 .orElseThrow(() -> new RuntimeException("Farm not found"));
+            farmChanged = turbine.getFarm() == null || !farm.getId().equals(turbine.getFarm().getId());
             turbine.setFarm(farm);
         }
         turbine.setRatedPower(turbineDetails.getRatedPower());
         turbine.setStatus(turbineDetails.getStatus());
         turbine.setLastUpdated(LocalDateTime.now());
-        return turbineRepository.save(turbine);
+        Turbine saved = turbineRepository.save(turbine);
+        turbineRegistry.turbineSaved(saved);
+        if (farmChanged) {
+            // The turbine's past days move to its new farm's summaries
+            rollupService.regroupFarms(Arrays.asList(oldFarm, saved.getFarm().getName()));
+        }
+        return saved;
     }
     
     public void deleteTurbine(Long id) {
         turbineRepository.deleteById(id);
+        turbineRegistry.turbineDeleted(id);
     }
     
     public PageResponse<Turbine> getAllTurbinesPaginated(int page, int size, String farm, String region, String status) {
-        Pageable pageable = PageRequest.of(page, size);
-        Page<Turbine> turbinePage;
-        
-        boolean hasFarm = farm != null && !farm.isEmpty();
-        boolean hasRegion = region != null && !region.isEmpty();
-        boolean hasStatus = status != null && !status.isEmpty();
-        
-        if (hasFarm || hasRegion || hasStatus) {
-            turbinePage = turbineRepository.findByFilters(farm, region, status, pageable);
-        } else {
-            turbinePage = turbineRepository.findAll(pageable);
-        }
+        List<Turbine> matches = turbineRegistry.filter(farm, region, status);
+        int from = (int) Math.min((long) page * size, matches.size());
+        int to = Math.min(from + size, matches.size());
         
         return new PageResponse<>(
-            turbinePage.getContent(),
-            turbinePage.getNumber(),
-            turbinePage.getSize(),
-            turbinePage.getTotalElements()
+            matches.subList(from, to),
+            page,
+            size,
+            matches.size()
         );
     }
     
     public List<Turbine> getAllTurbinesWithFilters(String farm, String region, String status) {
-        boolean hasFarm = farm != null && !farm.isEmpty();
-        boolean hasRegion = region != null && !region.isEmpty();
-        boolean hasStatus = status != null && !status.isEmpty();
-        
-        if (hasFarm || hasRegion || hasStatus) {
-            return turbineRepository.findByFiltersList(farm, region, status);
-        } else {
-            return turbineRepository.findAll();
-        }
+        return turbineRegistry.filter(farm, region, status);
     }
 }
-
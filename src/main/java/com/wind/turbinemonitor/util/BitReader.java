@@ -0,0 +1,34 @@
+package com.wind.turbinemonitor.util;
+
+/**
+ * Reads values written by BitWriter.
+ */
+public class BitReader {
+    private final byte[] bytes;
+    private long position;
+    
+    public BitReader(byte[] bytes) {
+        this.bytes = bytes;
+    }
+    
+    public boolean readBit() {
+        return readBits(1) != 0;
+    }
+    
+    public long readBits(int n) {
+        if (position + n > (long) bytes.length * 8) {
+            throw new IllegalArgumentException("Read past end of bit stream");
+        }
+        long value = 0;
+        for (int remaining = n; remaining > 0; ) {
+            int index = (int) (position >>> 3);
+            int available = 8 - (int) (position & 7);
+            int take = Math.min(available, remaining);
+            int chunk = ((bytes[index] & 0xFF) >>> (available - take)) & ((1 << take) - 1);
+            value = (value << take) | chunk;
+            position += take;
+            remaining -= take;
+        }
+        return value;
+    }
+}
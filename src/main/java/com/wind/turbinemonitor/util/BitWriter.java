@@ -0,0 +1,50 @@
+package com.wind.turbinemonitor.util;
+
+import java.util.Arrays;
+
+/**
+ * Appends values of 1 to 64 bits, most significant bit first, to a growable byte array.
+ */
+public class BitWriter {
+    private byte[] bytes;
+    private long bitCount;
+    
+    public BitWriter(int expectedBytes) {
+        bytes = new byte[Math.max(16, expectedBytes)];
+    }
+    
+    public void writeBit(boolean bit) {
+        writeBits(bit ? 1 : 0, 1);
+    }
+    
+    /**
+     * Writes the low n bits of value.
+     */
+    public void writeBits(long value, int n) {
+        ensureCapacity(n);
+        for (int remaining = n; remaining > 0; ) {
+            int index = (int) (bitCount >>> 3);
+            int free = 8 - (int) (bitCount & 7);
+            int take = Math.min(free, remaining);
+            int chunk = (int) (value >>> (remaining - take)) & ((1 << take) - 1);
+            bytes[index] |= (byte) (chunk << (free - take));
+            bitCount += take;
+            remaining -= take;
+        }
+    }
+    
+    public long bitCount() {
+        return bitCount;
+    }
+    
+    public byte[] toByteArray() {
+        return Arrays.copyOf(bytes, (int) ((bitCount + 7) >>> 3));
+    }
+    
+    private void ensureCapacity(int n) {
+        long needed = (bitCount + n + 7) >>> 3;
+        if (needed > bytes.length) {
+            bytes = Arrays.copyOf(bytes, (int) Math.max(needed, bytes.length * 2L));
+        }
+    }
+}
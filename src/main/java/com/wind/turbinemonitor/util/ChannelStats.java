@@ -0,0 +1,207 @@
+package com.wind.turbinemonitor.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Distribution of each telemetry channel over a set of samples: count, mean, min, max,
+ * variance and a QuantileSketch. Stored with hourly aggregates (channel_stats) and DAY
+ * rollups, and merges exactly across hours and turbines, so fleet percentiles never need
+ * raw rows. Channels are in TelemetryFrame order: windSpeed, powerOutput, rotorSpeed,
+ * temperature, vibration, efficiency.
+ *
+ * Mean and variance are kept as Welford's running mean and sum of squared deviations (M2),
+ * and merged with Chan et al.'s pairwise formula, which stays accurate where sum-of-squares
+ * would cancel. NaN and infinite values are skipped, so counts can differ by channel.
+ *
+ * Encoding: version (8 bits), then per channel count as a varint, and when it is not zero
+ * mean, M2, min and max as 64-bit doubles followed by the sketch. The doubles are a fixed
+ * 192 bytes; the sketches add roughly a byte per occupied bucket range, so an hour of
+ * 10-second samples is about 500 bytes and a day about 700-800.
+ *
+ * Not thread-safe.
+ */
+public final class ChannelStats {
+    public static final String[] CHANNELS = {
+        "windSpeed", "powerOutput", "rotorSpeed", "temperature", "vibration", "efficiency"
+    };
+    
+    /**
+     * Column size for encoded stats: every sketch at MAX_BUCKETS in both stores, with counts
+     * of a day of samples, still fits.
+     */
+    public static final int MAX_ENCODED_BYTES = 32768;
+    
+    private static final int VERSION = 1;
+    
+    private final long[] counts = new long[CHANNELS.length];
+    private final double[] means = new double[CHANNELS.length];
+    private final double[] m2s = new double[CHANNELS.length];
+    private final double[] mins = new double[CHANNELS.length];
+    private final double[] maxs = new double[CHANNELS.length];
+    private final QuantileSketch[] sketches = new QuantileSketch[CHANNELS.length];
+    
+    public ChannelStats() {
+        for (int channel = 0; channel < CHANNELS.length; channel++) {
+            mins[channel] = Double.POSITIVE_INFINITY;
+            maxs[channel] = Double.NEGATIVE_INFINITY;
+            sketches[channel] = new QuantileSketch();
+        }
+    }
+    
+    /**
+     * Returns the index of a channel name, or -1 if there is no such channel.
+     */
+    public static int channel(String name) {
+        for (int channel = 0; channel < CHANNELS.length; channel++) {
+            if (CHANNELS[channel].equalsIgnoreCase(name)) {
+                return channel;
+            }
+        }
+        return -1;
+    }
+    
+    public void add(double windSpeed, double powerOutput, double rotorSpeed, double temperature,
+                    double vibration, double efficiency) {
+        add(0, windSpeed);
+        add(1, powerOutput);
+        add(2, rotorSpeed);
+        add(3, temperature);
+        add(4, vibration);
+        add(5, efficiency);
+    }
+    
+    public void add(int channel, double value) {
+        if (!Double.isFinite(value)) {
+            return;
+        }
+        long count = ++counts[channel];
+        double delta = value - means[channel];
+        means[channel] += delta / count;
+        m2s[channel] += delta * (value - means[channel]);
+        mins[channel] = Math.min(mins[channel], value);
+        maxs[channel] = Math.max(maxs[channel], value);
+        sketches[channel].add(value);
+    }
+    
+    public void merge(ChannelStats other) {
+        for (int channel = 0; channel < CHANNELS.length; channel++) {
+            long otherCount = other.counts[channel];
+            if (otherCount == 0) {
+                continue;
+            }
+            long count = counts[channel] + otherCount;
+            double delta = other.means[channel] - means[channel];
+            m2s[channel] += other.m2s[channel] + delta * delta * counts[channel] * otherCount / count;
+            means[channel] += delta * otherCount / count;
+            counts[channel] = count;
+            mins[channel] = Math.min(mins[channel], other.mins[channel]);
+            maxs[channel] = Math.max(maxs[channel], other.maxs[channel]);
+            sketches[channel].merge(other.sketches[channel]);
+        }
+    }
+    
+    /**
+     * Merges two encoded values; either may be null, which counts as empty.
+     */
+    public static byte[] merge(byte[] a, byte[] b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        ChannelStats merged = decode(a);
+        merged.merge(decode(b));
+        return merged.encode();
+    }
+    
+    public long count(int channel) { return counts[channel]; }
+    public double mean(int channel) { return counts[channel] > 0 ? means[channel] : Double.NaN; }
+    public double min(int channel) { return counts[channel] > 0 ? mins[channel] : Double.NaN; }
+    public double max(int channel) { return counts[channel] > 0 ? maxs[channel] : Double.NaN; }
+    public double quantile(int channel, double q) { return sketches[channel].quantile(q); }
+    
+    /**
+     * Population variance, or NaN without samples.
+     */
+    public double variance(int channel) {
+        return counts[channel] > 0 ? m2s[channel] / counts[channel] : Double.NaN;
+    }
+    
+    public double stddev(int channel) {
+        return Math.sqrt(variance(channel));
+    }
+    
+    /**
+     * Count, mean, min, max, stddev and the given quantiles of one channel, for JSON
+     * responses; quantiles are keyed as p50, p95, p99.9 and so on.
+     */
+    public Map<String, Object> summary(int channel, double... quantiles) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", counts[channel]);
+        if (counts[channel] == 0) {
+            return summary;
+        }
+        summary.put("mean", means[channel]);
+        summary.put("min", mins[channel]);
+        summary.put("max", maxs[channel]);
+        summary.put("stddev", stddev(channel));
+        for (double q : quantiles) {
+            String percentile = String.valueOf(q * 100).replaceAll("\\.0$", "");
+            summary.put("p" + percentile, quantile(channel, q));
+        }
+        return summary;
+    }
+    
+    /**
+     * summary() of every channel that has samples, keyed by channel name.
+     */
+    public Map<String, Object> summary(double... quantiles) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        for (int channel = 0; channel < CHANNELS.length; channel++) {
+            if (counts[channel] > 0) {
+                summary.put(CHANNELS[channel], summary(channel, quantiles));
+            }
+        }
+        return summary;
+    }
+    
+    public byte[] encode() {
+        BitWriter out = new BitWriter(64 * CHANNELS.length);
+        out.writeBits(VERSION, 8);
+        for (int channel = 0; channel < CHANNELS.length; channel++) {
+            QuantileSketch.writeVarint(out, counts[channel]);
+            if (counts[channel] == 0) {
+                continue;
+            }
+            out.writeBits(Double.doubleToRawLongBits(means[channel]), 64);
+            out.writeBits(Double.doubleToRawLongBits(m2s[channel]), 64);
+            out.writeBits(Double.doubleToRawLongBits(mins[channel]), 64);
+            out.writeBits(Double.doubleToRawLongBits(maxs[channel]), 64);
+            sketches[channel].encode(out);
+        }
+        return out.toByteArray();
+    }
+    
+    public static ChannelStats decode(byte[] data) {
+        BitReader in = new BitReader(data);
+        int version = (int) in.readBits(8);
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported channel stats version " + version);
+        }
+        ChannelStats stats = new ChannelStats();
+        for (int channel = 0; channel < CHANNELS.length; channel++) {
+            stats.counts[channel] = QuantileSketch.readVarint(in);
+            if (stats.counts[channel] == 0) {
+                continue;
+            }
+            stats.means[channel] = Double.longBitsToDouble(in.readBits(64));
+            stats.m2s[channel] = Double.longBitsToDouble(in.readBits(64));
+            stats.mins[channel] = Double.longBitsToDouble(in.readBits(64));
+            stats.maxs[channel] = Double.longBitsToDouble(in.readBits(64));
+            stats.sketches[channel] = QuantileSketch.decode(in);
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,61 @@
+package com.wind.turbinemonitor.util;
+
+/**
+ * Open-addressing hash map from long keys to non-negative int values, with no boxing.
+ * Built once and then only read, so it is safe to share between threads after
+ * publication.
+ */
+public class LongIntHashMap {
+    private final long[] keys;
+    private final int[] values;
+    private final int mask;
+    private int size;
+    
+    public LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+    
+    public void put(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative values are reserved: " + value);
+        }
+        if (size * 2 >= keys.length) {
+            throw new IllegalStateException("LongIntHashMap is full");
+        }
+        int slot = slot(key);
+        while (values[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (values[slot] == 0) {
+            size++;
+        }
+        keys[slot] = key;
+        values[slot] = value + 1;
+    }
+    
+    /**
+     * Returns the value for key, or -1 when absent.
+     */
+    public int get(long key) {
+        int slot = slot(key);
+        while (values[slot] != 0) {
+            if (keys[slot] == key) {
+                return values[slot] - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
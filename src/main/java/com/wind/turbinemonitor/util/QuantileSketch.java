@@ -0,0 +1,252 @@
+package com.wind.turbinemonitor.util;
+
+/**
+ * Mergeable quantile sketch in the style of DDSketch (Masson et al., VLDB 2019). Values are
+ * counted in logarithmic buckets, so any quantile comes back within RELATIVE_ACCURACY of the
+ * true value, and two sketches merge exactly by adding their bucket counts, in any order.
+ *
+ * Bucket i of the positive store holds values in (gamma^(i-1), gamma^i]; negative values use
+ * a second store on their magnitude, and values closer to zero than MIN_INDEXABLE are only
+ * counted. A store keeps at most MAX_BUCKETS buckets; beyond that its lowest buckets are
+ * collapsed into one, which only costs accuracy far below the upper quantiles. With 1%
+ * accuracy 1,400 buckets cover 1e-6 to 1e6, so telemetry channels never get there.
+ *
+ * Encoding: zero count, then per store (negative, positive) the number of buckets from the
+ * lowest to the highest non-empty one, the lowest index and the counts, all as varints.
+ *
+ * Not thread-safe.
+ */
+public final class QuantileSketch {
+    public static final double RELATIVE_ACCURACY = 0.01;
+    public static final double MIN_INDEXABLE = 1e-6;
+    public static final int MAX_BUCKETS = 2048;
+    
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double MULTIPLIER = 1 / Math.log(GAMMA);
+    
+    private final Store positive = new Store();
+    private final Store negative = new Store();
+    private long zeroCount;
+    
+    public void add(double value) {
+        add(value, 1);
+    }
+    
+    /**
+     * Counts value count times; NaN and infinite values are ignored.
+     */
+    public void add(double value, long count) {
+        if (!Double.isFinite(value) || count <= 0) {
+            return;
+        }
+        if (value > MIN_INDEXABLE) {
+            positive.add(index(value), count);
+        } else if (value < -MIN_INDEXABLE) {
+            negative.add(index(-value), count);
+        } else {
+            zeroCount += count;
+        }
+    }
+    
+    public void merge(QuantileSketch other) {
+        positive.merge(other.positive);
+        negative.merge(other.negative);
+        zeroCount += other.zeroCount;
+    }
+    
+    public long count() {
+        return positive.total + negative.total + zeroCount;
+    }
+    
+    public boolean isEmpty() {
+        return count() == 0;
+    }
+    
+    /**
+     * Value at quantile q (0..1), or NaN when the sketch is empty.
+     */
+    public double quantile(double q) {
+        long count = count();
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (Math.max(0, Math.min(1, q)) * (count - 1));
+        if (rank < negative.total) {
+            // Negative store is ordered by magnitude, so rank from its top
+            return -value(negative.indexAtRank(negative.total - 1 - rank));
+        }
+        rank -= negative.total;
+        if (rank < zeroCount) {
+            return 0;
+        }
+        return value(positive.indexAtRank(rank - zeroCount));
+    }
+    
+    public byte[] encode() {
+        BitWriter out = new BitWriter(16 + positive.span() + negative.span());
+        encode(out);
+        return out.toByteArray();
+    }
+    
+    public void encode(BitWriter out) {
+        writeVarint(out, zeroCount);
+        negative.encode(out);
+        positive.encode(out);
+    }
+    
+    public static QuantileSketch decode(byte[] data) {
+        return decode(new BitReader(data));
+    }
+    
+    public static QuantileSketch decode(BitReader in) {
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.zeroCount = readVarint(in);
+        sketch.negative.decode(in);
+        sketch.positive.decode(in);
+        return sketch;
+    }
+    
+    public static void writeVarint(BitWriter out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.writeBits((value & 0x7F) | 0x80, 8);
+            value >>>= 7;
+        }
+        out.writeBits(value, 8);
+    }
+    
+    public static long readVarint(BitReader in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            long b = in.readBits(8);
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+    
+    private static int index(double magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) * MULTIPLIER);
+    }
+    
+    // Midpoint of bucket index in relative terms, within RELATIVE_ACCURACY of every value in it
+    private static double value(int index) {
+        return 2 * Math.pow(GAMMA, index) / (GAMMA + 1);
+    }
+    
+    /**
+     * Dense bucket counts for indexes offset .. offset + counts.length - 1.
+     */
+    private static final class Store {
+        private long[] counts = new long[0];
+        private int offset;
+        private int minIndex = Integer.MAX_VALUE;
+        private int maxIndex = Integer.MIN_VALUE;
+        private long total;
+        
+        void add(int index, long count) {
+            if (total > 0 && index < minIndex && maxIndex - index >= MAX_BUCKETS) {
+                // Collapsed: the lowest bucket keeps what falls below it
+                index = minIndex;
+            } else if (total > 0 && index - minIndex >= MAX_BUCKETS) {
+                collapseBelow(index - MAX_BUCKETS + 1);
+            }
+            ensure(index);
+            counts[index - offset] += count;
+            total += count;
+        }
+        
+        void merge(Store other) {
+            for (int index = other.minIndex; index <= other.maxIndex; index++) {
+                long count = other.counts[index - other.offset];
+                if (count > 0) {
+                    add(index, count);
+                }
+            }
+        }
+        
+        int span() {
+            return total == 0 ? 0 : maxIndex - minIndex + 1;
+        }
+        
+        int indexAtRank(long rank) {
+            long seen = 0;
+            for (int index = minIndex; index <= maxIndex; index++) {
+                seen += counts[index - offset];
+                if (seen > rank) {
+                    return index;
+                }
+            }
+            return maxIndex;
+        }
+        
+        void encode(BitWriter out) {
+            writeVarint(out, span());
+            if (total == 0) {
+                return;
+            }
+            writeVarint(out, ((long) minIndex << 1) ^ ((long) minIndex >> 63));
+            for (int index = minIndex; index <= maxIndex; index++) {
+                writeVarint(out, counts[index - offset]);
+            }
+        }
+        
+        void decode(BitReader in) {
+            int span = (int) readVarint(in);
+            if (span == 0) {
+                return;
+            }
+            long zigzag = readVarint(in);
+            int first = (int) ((zigzag >>> 1) ^ -(zigzag & 1));
+            for (int i = 0; i < span; i++) {
+                long count = readVarint(in);
+                if (count > 0) {
+                    add(first + i, count);
+                }
+            }
+        }
+        
+        // Moves the counts of buckets below index into bucket index
+        private void collapseBelow(int index) {
+            long moved = 0;
+            for (int i = minIndex; i < index && i <= maxIndex; i++) {
+                moved += counts[i - offset];
+                counts[i - offset] = 0;
+            }
+            total -= moved;
+            minIndex = Integer.MAX_VALUE;
+            for (int i = index; i <= maxIndex; i++) {
+                if (counts[i - offset] > 0) {
+                    minIndex = i;
+                    break;
+                }
+            }
+            if (minIndex == Integer.MAX_VALUE) {
+                maxIndex = Integer.MIN_VALUE;
+            }
+            if (moved > 0) {
+                add(index, moved);
+            }
+        }
+        
+        private void ensure(int index) {
+            if (total == 0 && counts.length == 0) {
+                counts = new long[8];
+                offset = index - 4;
+            }
+            if (index < offset || index >= offset + counts.length) {
+                int low = Math.min(offset, index);
+                int high = Math.max(offset + counts.length - 1, index);
+                int length = Math.max(high - low + 1, counts.length * 2);
+                long[] grown = new long[length];
+                // Room on the side that grew
+                int newOffset = index < offset ? high - length + 1 : low;
+                System.arraycopy(counts, 0, grown, offset - newOffset, counts.length);
+                counts = grown;
+                offset = newOffset;
+            }
+            minIndex = Math.min(minIndex, index);
+            maxIndex = Math.max(maxIndex, index);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.wind.turbinemonitor;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Database for tests that need a real one. A scratch MySQL or PostgreSQL database can be
+ * named with TEST_DB_URL (with TEST_DB_USERNAME and TEST_DB_PASSWORD); otherwise an
+ * embedded PostgreSQL is started once per test JVM from binaries that come with the test
+ * dependencies, so these tests run in a plain mvn test without a database server.
+ *
+ * Use from a static @DynamicPropertySource method.
+ */
+public final class TestDatabase {
+    private static EmbeddedPostgres embedded;
+    
+    private TestDatabase() {}
+    
+    public static void register(DynamicPropertyRegistry registry) {
+        String url = System.getenv("TEST_DB_URL");
+        if (url != null && !url.isBlank()) {
+            registry.add("spring.datasource.url", () -> url);
+            registry.add("spring.datasource.username", () -> System.getenv().getOrDefault("TEST_DB_USERNAME", ""));
+            registry.add("spring.datasource.password", () -> System.getenv().getOrDefault("TEST_DB_PASSWORD", ""));
+            if (url.startsWith("jdbc:postgresql:")) {
+                usePostgres(registry);
+            }
+            return;
+        }
+        EmbeddedPostgres postgres = embedded();
+        registry.add("spring.datasource.url", () -> postgres.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "");
+        usePostgres(registry);
+    }
+    
+    // application.yaml names the MySQL driver and dialect explicitly
+    private static void usePostgres(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.driver-class-name", () -> "org.postgresql.Driver");
+        registry.add("spring.jpa.properties.hibernate.dialect", () -> "org.hibernate.dialect.PostgreSQLDialect");
+    }
+    
+    private static synchronized EmbeddedPostgres embedded() {
+        if (embedded == null) {
+            try {
+                embedded = EmbeddedPostgres.start();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Embedded PostgreSQL did not start", e);
+            }
+            EmbeddedPostgres started = embedded;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    started.close();
+                } catch (IOException ignored) {
+                    // The server goes down with the JVM anyway
+                }
+            }));
+        }
+        return embedded;
+    }
+}
@@ -0,0 +1,136 @@
+package com.wind.turbinemonitor.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonRowStreamTest {
+    private static final ObjectMapper MAPPER = JsonMapper.builder().build();
+    private static final Function<Row, String> KEY = Row::key;
+    
+    record Row(String key, int value) {}
+    
+    @Test
+    void cursorRoundTripsKeys() {
+        for (String key : List.of("2026-03-01T12:34:56.000001", "42/2026-03-01T12:00", "", "Größe/風力", "a+b=c?d")) {
+            String cursor = JsonRowStream.encodeCursor(key);
+            
+            assertTrue(cursor.matches("[A-Za-z0-9_-]*"), cursor);
+            assertEquals(key, JsonRowStream.decodeCursor(cursor));
+        }
+    }
+    
+    @Test
+    void malformedCursorIsRejected() {
+        for (String cursor : List.of("not a cursor", "ab*c", "a", "abc=d")) {
+            assertThrows(IllegalArgumentException.class, () -> JsonRowStream.decodeCursor(cursor), cursor);
+        }
+    }
+    
+    @Test
+    void fullLastPageHasNoNextCursor() throws IOException {
+        JsonNode page = read(JsonRowStream.write(MAPPER, 3, null, 100, source(rows(3)), KEY));
+        
+        assertEquals(List.of("k0", "k1", "k2"), keys(page.get("items")));
+        assertTrue(page.get("nextCursor").isNull());
+    }
+    
+    @Test
+    void pageWithMoreRowsPointsAtItsLastRow() throws IOException {
+        List<Row> rows = rows(4);
+        JsonNode page = read(JsonRowStream.write(MAPPER, 3, null, 100, source(rows), KEY));
+        
+        assertEquals(List.of("k0", "k1", "k2"), keys(page.get("items")));
+        assertEquals(2, page.get("items").get(2).get("value").asInt());
+        assertEquals("k2", JsonRowStream.decodeCursor(page.get("nextCursor").asString()));
+    }
+    
+    @Test
+    void pageSizeIsCappedAtMaxRows() throws IOException {
+        JsonNode page = read(JsonRowStream.write(MAPPER, 10, null, 2, source(rows(5)), KEY));
+        
+        assertEquals(List.of("k0", "k1"), keys(page.get("items")));
+        assertEquals("k1", JsonRowStream.decodeCursor(page.get("nextCursor").asString()));
+    }
+    
+    @Test
+    void unpagedReadIsPlainArrayCappedAtMaxRows() throws IOException {
+        int[] asked = new int[1];
+        JsonRowStream.Source<Row> source = (limit, consumer) -> {
+            asked[0] = limit;
+            source(rows(5)).read(limit, consumer);
+        };
+        
+        JsonNode body = read(JsonRowStream.write(MAPPER, null, null, 3, source, KEY));
+        
+        assertTrue(body.isArray());
+        assertEquals(List.of("k0", "k1", "k2"), keys(body));
+        assertEquals(3, asked[0]);
+    }
+    
+    @Test
+    void emptyRangeGivesEmptyArrayOrPage() throws IOException {
+        assertEquals(0, read(JsonRowStream.write(MAPPER, null, null, 3, source(List.of()), KEY)).size());
+        
+        JsonNode page = read(JsonRowStream.write(MAPPER, 5, null, 3, source(List.of()), KEY));
+        assertEquals(0, page.get("items").size());
+        assertTrue(page.get("nextCursor").isNull());
+    }
+    
+    @Test
+    void truncatedHeaderOnlyOnUnpagedReadsThatHitTheCap() throws IOException {
+        List<Integer> probed = new ArrayList<>();
+        
+        ResponseEntity<StreamingResponseBody> truncated = JsonRowStream.respond(MAPPER, null, null, 3,
+            rows -> probed.add(rows), source(rows(5)), KEY);
+        ResponseEntity<StreamingResponseBody> complete = JsonRowStream.respond(MAPPER, null, null, 3,
+            rows -> false, source(rows(3)), KEY);
+        ResponseEntity<StreamingResponseBody> paged = JsonRowStream.respond(MAPPER, 2, null, 3,
+            rows -> fail("paged reads are not probed"), source(rows(5)), KEY);
+        ResponseEntity<StreamingResponseBody> continued = JsonRowStream.respond(MAPPER, null,
+            JsonRowStream.encodeCursor("k1"), 3, rows -> fail("paged reads are not probed"), source(rows(5)), KEY);
+        
+        assertEquals(List.of(3), probed);
+        assertEquals("3", truncated.getHeaders().getFirst(JsonRowStream.TRUNCATED_HEADER));
+        assertEquals(List.of("k0", "k1", "k2"), keys(read(truncated.getBody())));
+        assertNull(complete.getHeaders().getFirst(JsonRowStream.TRUNCATED_HEADER));
+        assertNull(paged.getHeaders().getFirst(JsonRowStream.TRUNCATED_HEADER));
+        assertNull(continued.getHeaders().getFirst(JsonRowStream.TRUNCATED_HEADER));
+    }
+    
+    private static JsonRowStream.Source<Row> source(List<Row> rows) {
+        return (limit, consumer) -> rows.stream().limit(limit).forEach(consumer);
+    }
+    
+    private static List<Row> rows(int count) {
+        List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            rows.add(new Row("k" + i, i));
+        }
+        return rows;
+    }
+    
+    private static JsonNode read(StreamingResponseBody body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        body.writeTo(out);
+        return MAPPER.readTree(out.toByteArray());
+    }
+    
+    private static List<String> keys(JsonNode rows) {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            keys.add(rows.get(i).get("key").asString());
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,168 @@
+package com.wind.turbinemonitor.controller;
+
+import com.wind.turbinemonitor.TestDatabase;
+import com.wind.turbinemonitor.ingest.TelemetryBatch;
+import com.wind.turbinemonitor.model.Farm;
+import com.wind.turbinemonitor.model.Turbine;
+import com.wind.turbinemonitor.repository.FarmRepository;
+import com.wind.turbinemonitor.repository.TelemetryBatchWriter;
+import com.wind.turbinemonitor.repository.TurbineRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+/**
+ * Telemetry reads end to end, from the database through the streamed response: cursor
+ * pages and the truncation header of unpaged reads.
+ */
+@SpringBootTest(properties = "telemetry.streaming.max-rows=" + TelemetryControllerTest.MAX_ROWS)
+@AutoConfigureMockMvc
+class TelemetryControllerTest {
+    static final int MAX_ROWS = 5;
+    private static final ObjectMapper MAPPER = JsonMapper.builder().build();
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 3, 1, 12, 0);
+    
+    // Neighbours a microsecond apart, so a cursor that skipped more, or less, than that shows up
+    private static final List<LocalDateTime> STORED = List.of(
+        T0, T0.plusNanos(1_000), T0.plusNanos(2_000), T0.plusSeconds(1), T0.plusSeconds(1).plusNanos(1_000),
+        T0.plusSeconds(2), T0.plusSeconds(3).minusNanos(1_000));
+    
+    @Autowired
+    private MockMvc mockMvc;
+    
+    @Autowired
+    private TelemetryBatchWriter batchWriter;
+    
+    @Autowired
+    private FarmRepository farmRepository;
+    
+    @Autowired
+    private TurbineRepository turbineRepository;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    private long turbineId;
+    
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        TestDatabase.register(registry);
+    }
+    
+    @BeforeEach
+    void storeSamples() {
+        String code = "TCT-" + UUID.randomUUID().toString().substring(0, 8);
+        Farm farm = farmRepository.save(new Farm("Controller " + code, "Controller Test", "Test site"));
+        turbineId = turbineRepository.save(new Turbine(code, code, farm, 3.0, "OPERATIONAL")).getId();
+        
+        // Every sample sent twice, as a retrying gateway would; (turbine, timestamp) is unique, so one copy is stored
+        TelemetryBatch batch = new TelemetryBatch(STORED.size() * 2);
+        for (LocalDateTime timestamp : STORED) {
+            batch.add(turbineId, TelemetryBatch.toMicros(timestamp), 9.0, 2.0, 14.0, 30.0, 3.0, 66.0);
+        }
+        for (LocalDateTime timestamp : STORED.reversed()) {
+            batch.add(turbineId, TelemetryBatch.toMicros(timestamp), 9.5, 2.5, 14.5, 30.5, 3.5, 66.5);
+        }
+        int stored = new TransactionTemplate(transactionManager).execute(
+            status -> batchWriter.insertTelemetry(batch).cardinality());
+        assertEquals(STORED.size(), stored);
+    }
+    
+    @Test
+    void cursorPagesReturnEverySampleOnce() throws Exception {
+        // 7 is capped at MAX_ROWS
+        for (int limit : new int[] {1, 2, 3, 7}) {
+            List<LocalDateTime> read = new ArrayList<>();
+            String cursor = null;
+            int pages = 0;
+            do {
+                MockHttpServletRequestBuilder page = get("/api/telemetry/turbine/{id}", turbineId)
+                    .param("limit", String.valueOf(limit));
+                if (cursor != null) {
+                    page.param("cursor", cursor);
+                }
+                MockHttpServletResponse response = perform(page);
+                JsonNode body = MAPPER.readTree(response.getContentAsString());
+                
+                assertNull(response.getHeader(JsonRowStream.TRUNCATED_HEADER));
+                read.addAll(timestamps(body.get("items")));
+                cursor = body.get("nextCursor").isNull() ? null : body.get("nextCursor").asString();
+                pages++;
+            } while (cursor != null && pages <= STORED.size());
+            
+            assertEquals(STORED, read, "limit " + limit);
+            int pageSize = Math.min(limit, MAX_ROWS);
+            assertEquals((STORED.size() + pageSize - 1) / pageSize, pages, "limit " + limit);
+        }
+    }
+    
+    @Test
+    void cursorBeforeTheRangeStartsAtTheRange() throws Exception {
+        String cursor = JsonRowStream.encodeCursor(T0.toString());
+        MockHttpServletResponse response = perform(get("/api/telemetry/turbine/{id}/range", turbineId)
+            .param("startTime", T0.plusSeconds(1).toString())
+            .param("endTime", T0.plusSeconds(2).toString())
+            .param("cursor", cursor));
+        
+        assertEquals(List.of(T0.plusSeconds(1), T0.plusSeconds(1).plusNanos(1_000), T0.plusSeconds(2)),
+            timestamps(MAPPER.readTree(response.getContentAsString()).get("items")));
+    }
+    
+    @Test
+    void unpagedReadOverTheCapIsMarkedTruncated() throws Exception {
+        MockHttpServletResponse truncated = perform(get("/api/telemetry/turbine/{id}", turbineId));
+        MockHttpServletResponse complete = perform(get("/api/telemetry/turbine/{id}/range", turbineId)
+            .param("startTime", T0.plusSeconds(1).toString())
+            .param("endTime", T0.plusSeconds(3).toString()));
+        
+        assertEquals(String.valueOf(MAX_ROWS), truncated.getHeader(JsonRowStream.TRUNCATED_HEADER));
+        assertEquals(STORED.subList(0, MAX_ROWS), timestamps(MAPPER.readTree(truncated.getContentAsString())));
+        assertNull(complete.getHeader(JsonRowStream.TRUNCATED_HEADER));
+        assertEquals(STORED.subList(3, 7), timestamps(MAPPER.readTree(complete.getContentAsString())));
+    }
+    
+    @Test
+    void malformedCursorIsABadRequest() throws Exception {
+        MockHttpServletResponse response = mockMvc.perform(get("/api/telemetry/turbine/{id}", turbineId)
+            .param("cursor", "not a cursor")).andReturn().getResponse();
+        
+        assertEquals(400, response.getStatus());
+    }
+    
+    private MockHttpServletResponse perform(MockHttpServletRequestBuilder builder) throws Exception {
+        MvcResult started = mockMvc.perform(builder).andExpect(request().asyncStarted()).andReturn();
+        MockHttpServletResponse response = mockMvc.perform(asyncDispatch(started)).andReturn().getResponse();
+        assertEquals(200, response.getStatus());
+        return response;
+    }
+    
+    private static List<LocalDateTime> timestamps(JsonNode rows) {
+        List<LocalDateTime> timestamps = new ArrayList<>();
+        for (JsonNode row : rows) {
+            timestamps.add(LocalDateTime.parse(row.get("timestamp").asString()));
+        }
+        return timestamps;
+    }
+}
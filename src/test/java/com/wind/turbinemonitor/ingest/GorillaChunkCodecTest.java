@@ -0,0 +1,126 @@
+package com.wind.turbinemonitor.ingest;
+
+import org.junit.jupiter.api.Test;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GorillaChunkCodecTest {
+    private static final long HOUR = 1_767_225_600_000_000L;
+    
+    @Test
+    void roundTripsRandomDoublesBitForBit() {
+        Random random = new Random(7);
+        TelemetryBatch batch = new TelemetryBatch(360);
+        long t = HOUR;
+        for (int i = 0; i < 360; i++) {
+            t += 10_000_000L + random.nextInt(5_000);
+            batch.add(3, t, random.nextDouble() * 25, random.nextDouble() * 3, random.nextDouble() * 20,
+                random.nextGaussian() * 10, random.nextDouble(), random.nextDouble() * 100);
+        }
+        
+        assertSameSamples(batch, decode(GorillaChunkCodec.encode(batch, 0, batch.size()), 3));
+    }
+    
+    @Test
+    void roundTripsSpecialValues() {
+        double[] specials = {0.0, -0.0, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+            Double.MIN_VALUE, -Double.MAX_VALUE, 1.0, 1.0, 1e-300};
+        TelemetryBatch batch = new TelemetryBatch(specials.length);
+        for (int i = 0; i < specials.length; i++) {
+            double v = specials[i];
+            batch.add(1, HOUR + i * 1_000_000L, v, -v, v, v, v, specials[specials.length - 1 - i]);
+        }
+        
+        assertSameSamples(batch, decode(GorillaChunkCodec.encode(batch, 0, batch.size()), 1));
+    }
+    
+    @Test
+    void roundTripsEveryDeltaOfDeltaWidth() {
+        long[] gaps = {10_000_000L, 10_000_000L, 10_000_001L, 10_002_000L, 10_500_000L, 3_600_000_000L, 0,
+            1L << 40, 10_000_000L, 1};
+        TelemetryBatch batch = new TelemetryBatch(gaps.length + 1);
+        long t = -5_000_000L;
+        batch.add(1, t, 1, 1, 1, 1, 1, 1);
+        for (long gap : gaps) {
+            t += gap;
+            batch.add(1, t, 1, 1, 1, 1, 1, 1);
+        }
+        
+        assertSameSamples(batch, decode(GorillaChunkCodec.encode(batch, 0, batch.size()), 1));
+    }
+    
+    @Test
+    void encodesASubrangeAndFiltersOnDecode() {
+        TelemetryBatch batch = new TelemetryBatch(10);
+        for (int i = 0; i < 10; i++) {
+            batch.add(1, HOUR + i * 10_000_000L, i, i, i, i, i, i);
+        }
+        byte[] data = GorillaChunkCodec.encode(batch, 2, 8);
+        
+        TelemetryBatch out = new TelemetryBatch(4);
+        int appended = GorillaChunkCodec.decode(data, 9, HOUR + 30_000_000L, HOUR + 50_000_000L, out);
+        
+        assertEquals(3, appended);
+        assertEquals(HOUR + 30_000_000L, out.timestamp(0));
+        assertEquals(5.0, out.windSpeed(2));
+        assertEquals(9, out.turbineId(0));
+    }
+    
+    @Test
+    void handlesEmptyAndSingleSampleBlocks() {
+        TelemetryBatch batch = new TelemetryBatch(1);
+        assertEquals(0, GorillaChunkCodec.decode(GorillaChunkCodec.encode(batch, 0, 0), 1,
+            Long.MIN_VALUE, Long.MAX_VALUE, new TelemetryBatch(1)));
+        
+        batch.add(1, HOUR, 8.5, 1.5, 14, 40, 0.2, 60);
+        assertSameSamples(batch, decode(GorillaChunkCodec.encode(batch, 0, 1), 1));
+    }
+    
+    @Test
+    void steadyChannelsCostAFewBytesPerSample() {
+        TelemetryBatch batch = new TelemetryBatch(360);
+        for (int i = 0; i < 360; i++) {
+            batch.add(1, HOUR + i * 10_000_000L, 8.5, 1.5, 14, 40, 0.2, 60);
+        }
+        byte[] data = GorillaChunkCodec.encode(batch, 0, batch.size());
+        
+        // Header and first values, then one bit per timestamp and per channel
+        assertTrue(data.length < 13 + 48 + 360, data.length + " bytes");
+    }
+    
+    @Test
+    void rejectsAnUnknownVersion() {
+        TelemetryBatch batch = new TelemetryBatch(1);
+        batch.add(1, HOUR, 1, 1, 1, 1, 1, 1);
+        byte[] data = GorillaChunkCodec.encode(batch, 0, 1);
+        data[0] = 2;
+        
+        assertThrows(IllegalArgumentException.class,
+            () -> GorillaChunkCodec.decode(data, 1, Long.MIN_VALUE, Long.MAX_VALUE, new TelemetryBatch(1)));
+    }
+    
+    private static TelemetryBatch decode(byte[] data, long turbineId) {
+        TelemetryBatch out = new TelemetryBatch(16);
+        GorillaChunkCodec.decode(data, turbineId, Long.MIN_VALUE, Long.MAX_VALUE, out);
+        return out;
+    }
+    
+    private static void assertSameSamples(TelemetryBatch expected, TelemetryBatch actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.turbineId(i), actual.turbineId(i));
+            assertEquals(expected.timestamp(i), actual.timestamp(i), "timestamp " + i);
+            assertBits(expected.windSpeed(i), actual.windSpeed(i), i);
+            assertBits(expected.powerOutput(i), actual.powerOutput(i), i);
+            assertBits(expected.rotorSpeed(i), actual.rotorSpeed(i), i);
+            assertBits(expected.temperature(i), actual.temperature(i), i);
+            assertBits(expected.vibration(i), actual.vibration(i), i);
+            assertBits(expected.efficiency(i), actual.efficiency(i), i);
+        }
+    }
+    
+    private static void assertBits(double expected, double actual, int i) {
+        assertEquals(Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(actual), "sample " + i);
+    }
+}
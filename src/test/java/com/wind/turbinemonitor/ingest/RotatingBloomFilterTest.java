@@ -0,0 +1,74 @@
+package com.wind.turbinemonitor.ingest;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RotatingBloomFilterTest {
+    private static final long BASE = 1_767_225_600_000_000L;
+    
+    @Test
+    void neverMissesAnAddedKey() {
+        RotatingBloomFilter filter = new RotatingBloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add(i % 50, BASE + i * 1_000_000L);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain(i % 50, BASE + i * 1_000_000L), "key " + i);
+        }
+    }
+    
+    @Test
+    void falsePositiveRateStaysNearTarget() {
+        RotatingBloomFilter filter = new RotatingBloomFilter(10_000, 0.01);
+        for (int i = 0; i < 9_999; i++) {
+            filter.add(7, BASE + i * 1_000_000L);
+        }
+        int falsePositives = 0;
+        int probes = 100_000;
+        for (int i = 0; i < probes; i++) {
+            // Same turbine, timestamps between the stored ones, and other turbines
+            if (filter.mightContain(7, BASE + i * 1_000_000L + 500_000L)) falsePositives++;
+            if (filter.mightContain(8 + i % 100, BASE + (i % 9_999) * 1_000_000L)) falsePositives++;
+        }
+        double rate = falsePositives / (2.0 * probes);
+        assertTrue(rate < 0.02, "false positive rate " + rate);
+    }
+    
+    @Test
+    void keepsThePreviousGenerationAfterRotating() {
+        RotatingBloomFilter filter = new RotatingBloomFilter(1_000, 0.01);
+        for (int i = 0; i < 1_000; i++) {
+            filter.add(1, BASE + i);
+        }
+        filter.add(2, BASE);
+        for (int i = 0; i < 1_000; i++) {
+            assertTrue(filter.mightContain(1, BASE + i), "key " + i);
+        }
+        assertTrue(filter.mightContain(2, BASE));
+    }
+    
+    @Test
+    void forgetsKeysTwoGenerationsOld() {
+        RotatingBloomFilter filter = new RotatingBloomFilter(1_000, 0.01);
+        for (int i = 0; i < 2_000; i++) {
+            filter.add(1, BASE + i);
+        }
+        int remembered = 0;
+        for (int i = 0; i < 1_000; i++) {
+            if (filter.mightContain(1, BASE + i)) remembered++;
+        }
+        assertTrue(remembered < 50, remembered + " of the oldest generation still match");
+        for (int i = 1_000; i < 2_000; i++) {
+            assertTrue(filter.mightContain(1, BASE + i), "key " + i);
+        }
+    }
+    
+    @Test
+    void sizesBothGenerationsFromCapacityAndRate() {
+        RotatingBloomFilter filter = new RotatingBloomFilter(1_000_000, 0.001);
+        // 14.38 bits per key at 0.1%, two generations
+        long expected = 2L * (long) Math.ceil(1_000_000 * 14.3776 / 8);
+        assertTrue(Math.abs(filter.bytes() - expected) < 64, filter.bytes() + " bytes");
+    }
+}
@@ -0,0 +1,77 @@
+package com.wind.turbinemonitor.ingest;
+
+import org.junit.jupiter.api.Test;
+import java.time.LocalDateTime;
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TelemetryBatchTest {
+    @Test
+    void retainKeepsSelectedRowsInOrder() {
+        TelemetryBatch batch = samples(6);
+        BitSet keep = new BitSet();
+        keep.set(1);
+        keep.set(4);
+        keep.set(5);
+        
+        assertEquals(3, batch.retain(keep));
+        assertEquals(3, batch.size());
+        assertEquals(1000L + 1, batch.timestamp(0));
+        assertEquals(1000L + 4, batch.timestamp(1));
+        assertEquals(1000L + 5, batch.timestamp(2));
+        assertEquals(4.0, batch.windSpeed(1));
+        assertEquals(40.0, batch.powerOutput(1));
+        assertEquals(5.5, batch.efficiency(2));
+    }
+    
+    @Test
+    void selectCopiesRowsAndLeavesTheBatchAlone() {
+        TelemetryBatch batch = samples(5);
+        BitSet rows = new BitSet();
+        rows.set(0);
+        rows.set(3);
+        
+        TelemetryBatch selected = batch.select(rows);
+        
+        assertEquals(5, batch.size());
+        assertEquals(2, selected.size());
+        assertEquals(1000L, selected.timestamp(0));
+        assertEquals(1000L + 3, selected.timestamp(1));
+        assertEquals(30.0, selected.powerOutput(1));
+        assertEquals(0, batch.select(new BitSet()).size());
+    }
+    
+    @Test
+    void removeRepeatedKeysKeepsFirstOccurrence() {
+        TelemetryBatch batch = new TelemetryBatch(4);
+        batch.add(1, 100, 1, 1, 1, 1, 1, 1);
+        batch.add(2, 100, 2, 2, 2, 2, 2, 2);
+        batch.add(1, 100, 3, 3, 3, 3, 3, 3);
+        batch.add(1, 101, 4, 4, 4, 4, 4, 4);
+        batch.add(2, 100, 5, 5, 5, 5, 5, 5);
+        
+        assertEquals(2, batch.removeRepeatedKeys());
+        assertEquals(3, batch.size());
+        assertEquals(1.0, batch.windSpeed(0));
+        assertEquals(2.0, batch.windSpeed(1));
+        assertEquals(4.0, batch.windSpeed(2));
+        assertEquals(0, batch.removeRepeatedKeys());
+    }
+    
+    @Test
+    void microsRoundTripLocalDateTime() {
+        LocalDateTime time = LocalDateTime.of(2026, 3, 1, 12, 34, 56, 789_123_000);
+        assertEquals(time, TelemetryBatch.fromMicros(TelemetryBatch.toMicros(time)));
+        LocalDateTime beforeEpoch = LocalDateTime.of(1969, 12, 31, 23, 59, 59, 500_000_000);
+        assertEquals(beforeEpoch, TelemetryBatch.fromMicros(TelemetryBatch.toMicros(beforeEpoch)));
+    }
+    
+    private static TelemetryBatch samples(int count) {
+        TelemetryBatch batch = new TelemetryBatch(2);
+        for (int i = 0; i < count; i++) {
+            batch.add(1, 1000L + i, i, i * 10.0, 1, 1, 1, i + 0.5);
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,233 @@
+package com.wind.turbinemonitor.ingest;
+
+import org.junit.jupiter.api.Test;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TelemetryFrameDecoderTest {
+    private static final long T0 = 1_767_225_600_000L;
+    
+    private static final TelemetryFrameDecoder.TurbineResolver BY_NUMBER =
+        (code, record) -> Long.parseLong(code.substring(code.indexOf('-') + 1));
+    
+    @Test
+    void decodesFloat32Frame() {
+        TelemetryFrameEncoder encoder = new TelemetryFrameEncoder(16, false, 2);
+        encoder.add("TURB-0001", T0, 8.5, 1.75, 14.0, 41.5, 0.25, 70.0);
+        encoder.add("TURB-0002", T0 + 1, 9.5, 2.0, 15.0, 42.0, 0.5, Double.NaN);
+        
+        TelemetryBatch batch = new TelemetryBatch(4);
+        TelemetryFrameDecoder decoder = new TelemetryFrameDecoder(encoder.frame());
+        assertEquals(2, decoder.decode(batch, 100, BY_NUMBER));
+        
+        assertFalse(decoder.hasRemaining());
+        assertEquals(2, batch.size());
+        assertEquals(1, batch.turbineId(0));
+        assertEquals(micros(T0), batch.timestamp(0));
+        assertEquals(8.5, batch.windSpeed(0));
+        assertEquals(1.75, batch.powerOutput(0));
+        assertEquals(0.25, batch.vibration(0));
+        assertEquals(2, batch.turbineId(1));
+        assertEquals(micros(T0 + 1), batch.timestamp(1));
+        assertTrue(Double.isNaN(batch.efficiency(1)));
+    }
+    
+    @Test
+    void decodesFloat64ChannelsExactly() {
+        TelemetryFrameEncoder encoder = new TelemetryFrameEncoder(8, true, 1);
+        encoder.add("T-7", T0, 8.123456789, 1.1, 2.2, 3.3, 4.4, 5.5);
+        
+        TelemetryBatch batch = new TelemetryBatch(1);
+        new TelemetryFrameDecoder(encoder.frame()).decode(batch, 10, BY_NUMBER);
+        
+        assertEquals(7, batch.turbineId(0));
+        assertEquals(8.123456789, batch.windSpeed(0));
+        assertEquals(5.5, batch.efficiency(0));
+    }
+    
+    @Test
+    void continuesAcrossCallsAndFrames() {
+        ByteBuffer body = concat(frame("TURB-0001", 0, 5), frame("TURB-0002", 5, 4));
+        TelemetryFrameDecoder decoder = new TelemetryFrameDecoder(body);
+        TelemetryBatch batch = new TelemetryBatch(4);
+        List<Integer> counts = new ArrayList<>();
+        
+        while (decoder.hasRemaining()) {
+            counts.add(decoder.decode(batch, 3, BY_NUMBER));
+        }
+        
+        assertEquals(List.of(3, 3, 3), counts);
+        assertEquals(9, decoder.records());
+        assertEquals(9, batch.size());
+        for (int i = 0; i < 9; i++) {
+            assertEquals(micros(T0 + i), batch.timestamp(i));
+            assertEquals(i < 5 ? 1 : 2, batch.turbineId(i));
+        }
+    }
+    
+    @Test
+    void skipsRecordsTheResolverRejects() {
+        TelemetryFrameEncoder encoder = new TelemetryFrameEncoder(16, false, 3);
+        encoder.add("TURB-0001", T0, 1, 1, 1, 1, 1, 1);
+        encoder.add("UNKNOWN", T0 + 1, 1, 1, 1, 1, 1, 1);
+        encoder.add("TURB-0003", T0 + 2, 1, 1, 1, 1, 1, 1);
+        List<Long> skipped = new ArrayList<>();
+        
+        TelemetryBatch batch = new TelemetryBatch(4);
+        int consumed = new TelemetryFrameDecoder(encoder.frame()).decode(batch, 10, (code, record) -> {
+            if (code.startsWith("TURB-")) {
+                return BY_NUMBER.resolve(code, record);
+            }
+            skipped.add(record);
+            return -1;
+        });
+        
+        assertEquals(3, consumed);
+        assertEquals(2, batch.size());
+        assertEquals(List.of(2L), skipped);
+        assertEquals(3, batch.turbineId(1));
+    }
+    
+    @Test
+    void rejectsRecordsWithNonFiniteValues() {
+        for (boolean float64 : new boolean[] {false, true}) {
+            TelemetryFrameEncoder encoder = new TelemetryFrameEncoder(16, float64, 6);
+            encoder.add("TURB-0001", T0, 8, 1, 14, 40, 0.5, 70);
+            encoder.add("TURB-0001", T0 + 1, Double.NaN, 1, 14, 40, 0.5, 70);
+            encoder.add("TURB-0001", T0 + 2, 8, Double.POSITIVE_INFINITY, 14, 40, 0.5, 70);
+            encoder.add("TURB-0001", T0 + 3, 8, 1, 14, Double.NEGATIVE_INFINITY, 0.5, 70);
+            encoder.add("TURB-0001", T0 + 4, 8, 1, 14, 40, 0.5, Double.POSITIVE_INFINITY);
+            encoder.add("TURB-0001", T0 + 5, 8, 1, 14, 40, 0.5, Double.NaN);
+            List<String> rejects = new ArrayList<>();
+            
+            TelemetryBatch batch = new TelemetryBatch(6);
+            int consumed = new TelemetryFrameDecoder(encoder.frame()).decode(batch, 10, BY_NUMBER,
+                (record, reason) -> rejects.add(record + " " + reason));
+            
+            assertEquals(6, consumed);
+            assertEquals(List.of("2 Non-finite windSpeed (NaN)", "3 Non-finite powerOutput (Infinity)",
+                "4 Non-finite temperature (-Infinity)", "5 Non-finite efficiency (Infinity)"), rejects);
+            // A NaN efficiency means "not sent" and is computed by the caller
+            assertEquals(2, batch.size());
+            assertEquals(micros(T0), batch.timestamp(0));
+            assertEquals(micros(T0 + 5), batch.timestamp(1));
+            assertTrue(Double.isNaN(batch.efficiency(1)));
+        }
+    }
+    
+    @Test
+    void storesTimestampsAsWallClockTimeOfTheDefaultZone() {
+        TimeZone original = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("Europe/Berlin"));
+        try {
+            // Either side of the end of summer time: 03:00 CEST became 02:00 CET
+            long lastSummerSecond = LocalDateTime.of(2026, 10, 25, 2, 59, 59).atZone(ZoneId.of("Europe/Berlin"))
+                .withEarlierOffsetAtOverlap().toInstant().toEpochMilli();
+            long[] instants = {T0, lastSummerSecond, lastSummerSecond + 1000, T0 + 1000};
+            TelemetryFrameEncoder encoder = new TelemetryFrameEncoder(16, false, instants.length);
+            for (long instant : instants) {
+                encoder.add("TURB-0001", instant, 1, 1, 1, 1, 1, 1);
+            }
+            
+            TelemetryBatch batch = new TelemetryBatch(instants.length);
+            new TelemetryFrameDecoder(encoder.frame()).decode(batch, 10, BY_NUMBER);
+            
+            // T0 is 2026-01-01T00:00Z, an hour later on the clock in Berlin
+            assertEquals(LocalDateTime.of(2026, 1, 1, 1, 0), batch.timestampAsDateTime(0));
+            assertEquals(LocalDateTime.of(2026, 10, 25, 2, 59, 59), batch.timestampAsDateTime(1));
+            assertEquals(LocalDateTime.of(2026, 10, 25, 2, 0, 0), batch.timestampAsDateTime(2));
+            assertEquals(LocalDateTime.of(2026, 1, 1, 1, 0, 1), batch.timestampAsDateTime(3));
+            for (int i = 0; i < instants.length; i++) {
+                assertEquals(micros(instants[i]), batch.timestamp(i));
+            }
+        } finally {
+            TimeZone.setDefault(original);
+        }
+    }
+    
+    @Test
+    void returnsRecordsBeforeAMalformedFrameThenReportsItsOffset() {
+        ByteBuffer first = frame("TURB-0001", 0, 3);
+        int badOffset = first.remaining();
+        ByteBuffer bad = frame("TURB-0002", 3, 2);
+        bad.putInt(0, 0xDEADBEEF);
+        TelemetryFrameDecoder decoder = new TelemetryFrameDecoder(concat(first, bad));
+        TelemetryBatch batch = new TelemetryBatch(4);
+        
+        assertEquals(3, decoder.decode(batch, 100, BY_NUMBER));
+        assertEquals(3, batch.size());
+        assertTrue(decoder.hasRemaining());
+        
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+            () -> decoder.decode(batch, 100, BY_NUMBER));
+        assertTrue(e.getMessage().contains("Bad frame magic at byte " + badOffset), e.getMessage());
+        assertEquals(badOffset, decoder.position());
+        assertFalse(decoder.hasRemaining());
+        assertEquals(3, batch.size());
+    }
+    
+    @Test
+    void rejectsACountBeyondTheBody() {
+        ByteBuffer frame = frame("TURB-0001", 0, 2);
+        frame.putInt(8, 3);
+        TelemetryFrameDecoder decoder = new TelemetryFrameDecoder(frame);
+        
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+            () -> decoder.decode(new TelemetryBatch(4), 100, BY_NUMBER));
+        assertTrue(e.getMessage().contains("declares 3 records"), e.getMessage());
+        assertEquals(0, decoder.position());
+    }
+    
+    @Test
+    void rejectsATruncatedHeaderAfterAValidFrame() {
+        ByteBuffer first = frame("TURB-0001", 0, 1);
+        ByteBuffer body = concat(first, ByteBuffer.wrap(new byte[5]));
+        TelemetryFrameDecoder decoder = new TelemetryFrameDecoder(body);
+        TelemetryBatch batch = new TelemetryBatch(2);
+        
+        assertEquals(1, decoder.decode(batch, 100, BY_NUMBER));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+            () -> decoder.decode(batch, 100, BY_NUMBER));
+        assertTrue(e.getMessage().startsWith("Truncated frame header"), e.getMessage());
+        assertEquals(first.remaining(), decoder.position());
+    }
+    
+    @Test
+    void rejectsAnUnsupportedVersionAndCodeWidth() {
+        ByteBuffer version = frame("TURB-0001", 0, 1);
+        version.put(4, (byte) 2);
+        assertThrows(IllegalArgumentException.class,
+            () -> new TelemetryFrameDecoder(version).decode(new TelemetryBatch(1), 10, BY_NUMBER));
+        
+        ByteBuffer width = frame("TURB-0001", 0, 1);
+        width.put(6, (byte) 0);
+        assertThrows(IllegalArgumentException.class,
+            () -> new TelemetryFrameDecoder(width).decode(new TelemetryBatch(1), 10, BY_NUMBER));
+    }
+    
+    // The stored value of a JSON sample stamped with the instant in the default zone
+    private static long micros(long epochMillis) {
+        return TelemetryBatch.toMicros(LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault()));
+    }
+    
+    private static ByteBuffer frame(String code, int from, int count) {
+        TelemetryFrameEncoder encoder = new TelemetryFrameEncoder(16, false, count);
+        for (int i = from; i < from + count; i++) {
+            encoder.add(code, T0 + i, i, i, i, i, i, i);
+        }
+        return ByteBuffer.wrap(encoder.toByteArray());
+    }
+    
+    private static ByteBuffer concat(ByteBuffer a, ByteBuffer b) {
+        ByteBuffer body = ByteBuffer.allocate(a.remaining() + b.remaining());
+        body.put(a.duplicate()).put(b.duplicate()).flip();
+        return body;
+    }
+}
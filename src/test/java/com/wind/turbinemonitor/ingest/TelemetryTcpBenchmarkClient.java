@@ -0,0 +1,149 @@
+package com.wind.turbinemonitor.ingest;
+
+import com.wind.turbinemonitor.service.TelemetryTcpListener;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Load generator for TelemetryTcpListener. Opens a number of gateway connections, streams
+ * binary frames with up to window unacknowledged messages per connection, and prints
+ * throughput and ack latency. Timestamps are unique per turbine so the deduplicator does
+ * not drop anything.
+ *
+ * Run against a server started with telemetry.tcp.enabled=true and turbines initialised
+ * (POST /api/init/data), e.g. after mvn test-compile:
+ *
+ *   java -cp target/classes:target/test-classes com.wind.turbinemonitor.ingest.TelemetryTcpBenchmarkClient \
+ *       --connections 8 --messages 2000 --records 500 --turbines 100
+ *
+ * Options: --host (localhost), --port (9400), --connections (4), --messages per connection (1000),
+ * --records per message (500), --turbines (100), --code-format (TURB-%05d), --window (4), --float64.
+ */
+public class TelemetryTcpBenchmarkClient {
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        String host = options.getOrDefault("host", "localhost");
+        int port = Integer.parseInt(options.getOrDefault("port", "9400"));
+        int connections = Integer.parseInt(options.getOrDefault("connections", "4"));
+        int messages = Integer.parseInt(options.getOrDefault("messages", "1000"));
+        int records = Integer.parseInt(options.getOrDefault("records", "500"));
+        int turbines = Integer.parseInt(options.getOrDefault("turbines", "100"));
+        String codeFormat = options.getOrDefault("code-format", "TURB-%05d");
+        int window = Integer.parseInt(options.getOrDefault("window", "4"));
+        boolean float64 = options.containsKey("float64");
+        
+        long total = (long) connections * messages * records;
+        long baseMillis = System.currentTimeMillis() - (total / turbines + 1) * 1000L;
+        long[] latencies = new long[connections * messages];
+        AtomicLongArray statusCounts = new AtomicLongArray(3);
+        
+        List<Thread> threads = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int c = 0; c < connections; c++) {
+            int connection = c;
+            Thread thread = new Thread(() -> {
+                try {
+                    run(host, port, connection, messages, records, turbines, codeFormat, window, float64,
+                        baseMillis, latencies, statusCounts);
+                } catch (IOException | InterruptedException e) {
+                    System.err.println("Connection " + connection + " failed: " + e);
+                }
+            }, "bench-" + c);
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        
+        Arrays.sort(latencies);
+        System.out.printf("%d samples in %d messages over %d connections: %.1f s, %.0f samples/s%n",
+            total, connections * messages, connections, elapsedNanos / 1e9, total / (elapsedNanos / 1e9));
+        System.out.printf("ack latency ms: p50 %.2f, p99 %.2f, max %.2f%n",
+            latencies[latencies.length / 2] / 1e6, latencies[(int) (latencies.length * 0.99)] / 1e6,
+            latencies[latencies.length - 1] / 1e6);
+        System.out.printf("acks: stored %d, retry %d, rejected %d%n",
+            statusCounts.get(0), statusCounts.get(1), statusCounts.get(2));
+    }
+    
+    private static void run(String host, int port, int connection, int messages, int records, int turbines,
+                            String codeFormat, int window, boolean float64, long baseMillis,
+                            long[] latencies, AtomicLongArray statusCounts) throws IOException, InterruptedException {
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            Semaphore inFlight = new Semaphore(window);
+            AtomicLongArray sentAt = new AtomicLongArray(messages);
+            
+            Thread reader = new Thread(() -> {
+                byte[] ack = new byte[TelemetryTcpListener.ACK_BYTES];
+                try {
+                    for (int m = 0; m < messages; m++) {
+                        in.readFully(ack);
+                        ByteBuffer buffer = ByteBuffer.wrap(ack);
+                        int sequence = (int) buffer.getLong();
+                        byte status = buffer.get();
+                        latencies[connection * messages + sequence] = System.nanoTime() - sentAt.get(sequence);
+                        statusCounts.incrementAndGet(status);
+                        inFlight.release();
+                    }
+                } catch (IOException e) {
+                    System.err.println("Connection " + connection + " lost: " + e);
+                }
+            }, "bench-acks-" + connection);
+            reader.start();
+            
+            String[] codes = new String[turbines];
+            for (int t = 0; t < turbines; t++) {
+                codes[t] = String.format(codeFormat, t + 1);
+            }
+            TelemetryFrameEncoder encoder = new TelemetryFrameEncoder(16, float64, records);
+            for (int m = 0; m < messages; m++) {
+                encoder.reset();
+                for (int r = 0; r < records; r++) {
+                    long sample = ((long) connection * messages + m) * records + r;
+                    long timestamp = baseMillis + (sample / turbines) * 1000L;
+                    double wind = 8.0 + (sample % 120) / 10.0;
+                    encoder.add(codes[(int) (sample % turbines)], timestamp, wind, 1.5 + wind / 10.0,
+                        12.0, 20.0, 3.0, Double.NaN);
+                }
+                byte[] frame = encoder.toByteArray();
+                
+                inFlight.acquire();
+                sentAt.set(m, System.nanoTime());
+                out.writeInt(8 + frame.length);
+                out.writeLong(m);
+                out.write(frame);
+                out.flush();
+            }
+            reader.join();
+        }
+    }
+    
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            String key = args[i].replaceFirst("^--", "");
+            if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                options.put(key, args[++i]);
+            } else {
+                options.put(key, "true");
+            }
+        }
+        return options;
+    }
+}
@@ -0,0 +1,160 @@
+package com.wind.turbinemonitor.ingest;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TelemetryWalTest {
+    // Room for one full 4096-record frame plus a few hundred records
+    private static final int SEGMENT_SIZE = 300_000;
+    
+    @TempDir
+    Path dir;
+    
+    private TelemetryWal wal;
+    
+    @AfterEach
+    void close() throws IOException {
+        if (wal != null) {
+            wal.close();
+        }
+    }
+    
+    @Test
+    void readsBackWhatWasAppended() throws IOException {
+        wal = TelemetryWal.open(dir, SEGMENT_SIZE, 4);
+        TelemetryBatch written = samples(0, 10);
+        long position = wal.append(written);
+        wal.awaitDurable(position);
+        
+        TelemetryBatch read = new TelemetryBatch(16);
+        assertEquals(position, wal.read(0, read, 100));
+        assertSameSamples(written, read);
+    }
+    
+    @Test
+    void readStopsAtDurablePosition() throws IOException {
+        wal = TelemetryWal.open(dir, SEGMENT_SIZE, 4);
+        wal.append(samples(0, 10));
+        
+        TelemetryBatch read = new TelemetryBatch(16);
+        assertEquals(0, wal.read(0, read, 100));
+        assertTrue(read.isEmpty());
+    }
+    
+    @Test
+    void largeBatchRollsIntoNextSegment() throws IOException {
+        wal = TelemetryWal.open(dir, SEGMENT_SIZE, 4);
+        TelemetryBatch written = samples(0, 5000);
+        wal.awaitDurable(wal.append(written));
+        
+        assertEquals(2, wal.segmentCount());
+        TelemetryBatch read = new TelemetryBatch(5000);
+        wal.read(0, read, 10_000);
+        assertSameSamples(written, read);
+    }
+    
+    @Test
+    void rejectsWholeBatchThatWouldPassMaxSegments() throws IOException {
+        wal = TelemetryWal.open(dir, SEGMENT_SIZE, 1);
+        // The first frame still fits the only allowed segment, the second would not
+        assertEquals(-1, wal.append(samples(0, 5000)));
+        assertEquals(1, wal.segmentCount());
+        
+        long position = wal.append(samples(0, 100));
+        assertTrue(position > 0);
+        wal.awaitDurable(position);
+        TelemetryBatch read = new TelemetryBatch(100);
+        wal.read(0, read, 10_000);
+        assertEquals(100, read.size());
+    }
+    
+    @Test
+    void checkpointDeletesReplayedSegmentsAndSurvivesReopen() throws IOException {
+        wal = TelemetryWal.open(dir, SEGMENT_SIZE, 4);
+        wal.awaitDurable(wal.append(samples(0, 5000)));
+        TelemetryBatch read = new TelemetryBatch(5000);
+        long replayed = wal.read(0, read, 10_000);
+        
+        wal.checkpoint(replayed);
+        assertEquals(1, wal.segmentCount());
+        assertEquals(1, segmentFiles());
+        wal.close();
+        
+        wal = TelemetryWal.open(dir, SEGMENT_SIZE, 4);
+        assertEquals(replayed, wal.readCheckpoint());
+        assertEquals(0, wal.pendingBytes(replayed));
+        
+        TelemetryBatch more = samples(5000, 3);
+        wal.awaitDurable(wal.append(more));
+        TelemetryBatch next = new TelemetryBatch(16);
+        wal.read(wal.readCheckpoint(), next, 100);
+        assertSameSamples(more, next);
+    }
+    
+    @Test
+    void dropsTornFrameOnOpen() throws IOException {
+        wal = TelemetryWal.open(dir, SEGMENT_SIZE, 4);
+        wal.awaitDurable(wal.append(samples(0, 10)));
+        wal.close();
+        wal = null;
+        
+        // Flip a payload byte of the only frame, as a write cut short by a crash would leave it
+        try (FileChannel channel = FileChannel.open(onlySegment(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, 20);
+            b.put(0, (byte) (b.get(0) ^ 0xFF)).rewind();
+            channel.write(b, 20);
+        }
+        
+        wal = TelemetryWal.open(dir, SEGMENT_SIZE, 4);
+        assertEquals(0, wal.durablePosition());
+        TelemetryBatch more = samples(100, 2);
+        wal.awaitDurable(wal.append(more));
+        TelemetryBatch read = new TelemetryBatch(16);
+        wal.read(0, read, 100);
+        assertSameSamples(more, read);
+    }
+    
+    private static TelemetryBatch samples(int from, int count) {
+        TelemetryBatch batch = new TelemetryBatch(count);
+        for (int i = from; i < from + count; i++) {
+            batch.add(i % 7 + 1, 1_700_000_000_000_000L + i * 1_000_000L, i * 0.5, i * 10.0, 12.5, 40 + i % 3,
+                0.01 * i, 0.9);
+        }
+        return batch;
+    }
+    
+    private static void assertSameSamples(TelemetryBatch expected, TelemetryBatch actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.turbineId(i), actual.turbineId(i));
+            assertEquals(expected.timestamp(i), actual.timestamp(i));
+            assertEquals(expected.windSpeed(i), actual.windSpeed(i), 0);
+            assertEquals(expected.powerOutput(i), actual.powerOutput(i), 0);
+            assertEquals(expected.temperature(i), actual.temperature(i), 0);
+            assertEquals(expected.vibration(i), actual.vibration(i), 0);
+        }
+    }
+    
+    private long segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(f -> f.toString().endsWith(".wal")).count();
+        }
+    }
+    
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(f -> f.toString().endsWith(".wal")).findFirst().orElseThrow();
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.wind.turbinemonitor.repository;
+
+import com.wind.turbinemonitor.model.TelemetryAggregate;
+import com.wind.turbinemonitor.model.Turbine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AggregateColumnStoreTest {
+    private static final int CAPACITY = 31 * 24;
+    private static final long TURBINE_ID = 7;
+    private static final Turbine TURBINE = turbine();
+    
+    // An hour in slot 100, so the end of the ring (slot CAPACITY - 1) is 101 hours back
+    private static final long NOW = atSlot(toHour(LocalDateTime.of(2026, 3, 1, 0, 0)), 100);
+    private static final long RING_END = NOW - 101;
+    
+    private TestClock clock;
+    private AggregateColumnStore store;
+    
+    @BeforeEach
+    void createStore() {
+        clock = new TestClock(time(NOW).plusMinutes(30));
+        store = new AggregateColumnStore(1, clock);
+    }
+    
+    @Test
+    void seriesReadsBackAppliedAggregates() {
+        List<TelemetryAggregate> written = List.of(aggregate(NOW - 3, 10, false), aggregate(NOW - 1, 20, true));
+        store.applyAfterCommit(written, List.of());
+        
+        AggregateColumnStore.Series series = store.series(TURBINE_ID, time(NOW - 5), time(NOW));
+        
+        assertSeries(AggregateColumnStore.Series.of(written), series);
+        assertArrayEquals(new int[] {350, 360}, series.dataPointCount());
+        assertArrayEquals(new boolean[] {false, true}, series.hasAnomaly());
+    }
+    
+    @Test
+    void sumSkipsPartialFirstHourAndIncludesLastHour() {
+        store.applyAfterCommit(List.of(aggregate(NOW - 4, 1, false), aggregate(NOW - 3, 2, false),
+            aggregate(NOW - 2, 3, false), aggregate(NOW - 1, 4, false)), List.of());
+        
+        AggregateColumnStore.Sums sums = store.sum(TURBINE_ID, time(NOW - 4).plusMinutes(30), time(NOW - 2));
+        
+        assertEquals(2, sums.hourCount());
+        assertEquals(2 + 3, sums.totalGeneration(), 1e-12);
+        assertEquals(80 + 2 + 80 + 3, sums.sumEfficiency(), 1e-12);
+        assertEquals(2 * 0.1 + 3 * 0.1, sums.sumPowerOutput(), 1e-12);
+    }
+    
+    @Test
+    void rangeAcrossEndOfRingWrapsToFirstSlot() {
+        for (long hour = RING_END - 2; hour <= RING_END + 2; hour++) {
+            store.applyAfterCommit(List.of(aggregate(hour, hour - RING_END, false)), List.of());
+        }
+        
+        AggregateColumnStore.Series series = store.series(TURBINE_ID, time(RING_END - 2), time(RING_END + 2));
+        AggregateColumnStore.Sums sums = store.sum(TURBINE_ID, time(RING_END - 2), time(RING_END + 2));
+        
+        assertEquals(List.of(time(RING_END - 2), time(RING_END - 1), time(RING_END), time(RING_END + 1),
+            time(RING_END + 2)), series.hourStart());
+        assertArrayEquals(new double[] {-2, -1, 0, 1, 2}, series.totalGeneration(), 1e-12);
+        assertEquals(5, sums.hourCount());
+        assertEquals(0, sums.totalGeneration(), 1e-12);
+    }
+    
+    @Test
+    void slotReusedAfterFullRingDoesNotReportOldHour() {
+        store.applyAfterCommit(List.of(aggregate(NOW - 1, 5, false)), List.of());
+        
+        clock.advanceHours(CAPACITY);
+        long reused = NOW - 1 + CAPACITY;
+        
+        assertEquals(0, store.sum(TURBINE_ID, time(reused), time(reused)).hourCount());
+        
+        store.applyAfterCommit(List.of(aggregate(reused, 9, false)), List.of());
+        AggregateColumnStore.Sums sums = store.sum(TURBINE_ID, time(reused), time(reused));
+        assertEquals(1, sums.hourCount());
+        assertEquals(9, sums.totalGeneration(), 1e-12);
+        assertEquals(0, store.sum(TURBINE_ID, time(NOW - 1), time(NOW - 1)).hourCount());
+    }
+    
+    @Test
+    void hoursOutsideRingAreNotKept() {
+        long firstRingHour = NOW - CAPACITY + 2;
+        store.applyAfterCommit(List.of(aggregate(firstRingHour - 1, 1, false), aggregate(firstRingHour, 2, false),
+            aggregate(NOW + 1, 3, false), aggregate(NOW + 2, 4, false)), List.of());
+        
+        AggregateColumnStore.Series series = store.series(TURBINE_ID, time(firstRingHour - 1), time(NOW + 2));
+        
+        assertEquals(List.of(time(firstRingHour), time(NOW + 1)), series.hourStart());
+    }
+    
+    @Test
+    void replacedHourIsDroppedUnlessRewritten() {
+        TelemetryAggregate first = aggregate(NOW - 2, 1, false);
+        TelemetryAggregate other = aggregate(NOW - 1, 2, false);
+        store.applyAfterCommit(List.of(first, other), List.of());
+        
+        TelemetryAggregate rewritten = aggregate(NOW - 2, 7, true);
+        store.applyAfterCommit(List.of(rewritten), List.of(first, other));
+        
+        AggregateColumnStore.Series series = store.series(TURBINE_ID, time(NOW - 3), time(NOW));
+        assertSeries(AggregateColumnStore.Series.of(List.of(rewritten)), series);
+    }
+    
+    @Test
+    void unknownTurbineAndEmptyRangeReadNothing() {
+        store.applyAfterCommit(List.of(aggregate(NOW - 1, 1, false)), List.of());
+        
+        assertEquals(0, store.sum(99, time(NOW - 5), time(NOW)).hourCount());
+        assertEquals(0, store.series(99, time(NOW - 5), time(NOW)).hourStart().size());
+        assertEquals(0, store.sum(TURBINE_ID, time(NOW), time(NOW - 1)).hourCount());
+        assertEquals(0, store.series(TURBINE_ID, time(NOW), time(NOW - 1)).hourStart().size());
+    }
+    
+    private static void assertSeries(AggregateColumnStore.Series expected, AggregateColumnStore.Series actual) {
+        assertEquals(expected.hourStart(), actual.hourStart());
+        assertArrayEquals(expected.avgWindSpeed(), actual.avgWindSpeed(), 0);
+        assertArrayEquals(expected.avgPowerOutput(), actual.avgPowerOutput(), 0);
+        assertArrayEquals(expected.avgRotorSpeed(), actual.avgRotorSpeed(), 0);
+        assertArrayEquals(expected.avgTemperature(), actual.avgTemperature(), 0);
+        assertArrayEquals(expected.avgVibration(), actual.avgVibration(), 0);
+        assertArrayEquals(expected.avgEfficiency(), actual.avgEfficiency(), 0);
+        assertArrayEquals(expected.totalGeneration(), actual.totalGeneration(), 0);
+        assertArrayEquals(expected.dataPointCount(), actual.dataPointCount());
+        assertArrayEquals(expected.hasAnomaly(), actual.hasAnomaly());
+    }
+    
+    private static TelemetryAggregate aggregate(long hour, double value, boolean anomaly) {
+        TelemetryAggregate aggregate = new TelemetryAggregate(TURBINE, time(hour));
+        aggregate.setAvgWindSpeed(6 + value);
+        aggregate.setAvgPowerOutput(0.1 * value);
+        aggregate.setAvgRotorSpeed(10 + value);
+        aggregate.setAvgTemperature(40 + value);
+        aggregate.setAvgVibration(2 + value);
+        aggregate.setAvgEfficiency(80 + value);
+        aggregate.setTotalGeneration(value);
+        aggregate.setDataPointCount(anomaly ? 360 : 350);
+        aggregate.setHasAnomaly(anomaly);
+        return aggregate;
+    }
+    
+    private static Turbine turbine() {
+        Turbine turbine = new Turbine();
+        turbine.setId(TURBINE_ID);
+        return turbine;
+    }
+    
+    private static long atSlot(long hour, int slot) {
+        return hour - Math.floorMod(hour, (long) CAPACITY) + slot;
+    }
+    
+    private static long toHour(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 3600L);
+    }
+    
+    private static LocalDateTime time(long hour) {
+        return LocalDateTime.ofEpochSecond(hour * 3600, 0, ZoneOffset.UTC);
+    }
+    
+    private static final class TestClock extends Clock {
+        private Instant now;
+        
+        TestClock(LocalDateTime time) {
+            now = time.toInstant(ZoneOffset.UTC);
+        }
+        
+        void advanceHours(long hours) {
+            now = now.plusSeconds(hours * 3600);
+        }
+        
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+        
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+        
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.wind.turbinemonitor.repository;
+
+import com.wind.turbinemonitor.TestDatabase;
+import com.wind.turbinemonitor.ingest.TelemetryBatch;
+import com.wind.turbinemonitor.model.Farm;
+import com.wind.turbinemonitor.model.Turbine;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.util.BitSet;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+@SpringBootTest
+class TelemetryBatchWriterTest {
+    private static final long T0 = 1_700_000_000_000_000L;
+    
+    @Autowired
+    private TelemetryBatchWriter batchWriter;
+    
+    @Autowired
+    private FarmRepository farmRepository;
+    
+    @Autowired
+    private TurbineRepository turbineRepository;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        TestDatabase.register(registry);
+    }
+    
+    @Test
+    void multiRowInsertReportsOnlyTheRowsItStored() {
+        assertReportsOnlyStoredRows(false);
+    }
+    
+    @Test
+    void copyReportsOnlyTheRowsItStored() {
+        assumeTrue(batchWriter.isPostgresCopyMode(), "COPY needs PostgreSQL");
+        assertReportsOnlyStoredRows(true);
+    }
+    
+    @Test
+    void chunksAreReportedAtTheirBatchIndexes() {
+        long turbine = turbine();
+        Object batchSize = ReflectionTestUtils.getField(batchWriter, "batchSize");
+        ReflectionTestUtils.setField(batchWriter, "batchSize", 3);
+        try {
+            insert(batch(turbine, 1, 4), false);
+            
+            BitSet inserted = insert(batch(turbine, 0, 1, 2, 3, 4, 5, 6, 0), false);
+            
+            assertEquals(bits(0, 2, 3, 5, 6), inserted);
+        } finally {
+            ReflectionTestUtils.setField(batchWriter, "batchSize", batchSize);
+        }
+    }
+    
+    private void assertReportsOnlyStoredRows(boolean copy) {
+        long turbine = turbine();
+        
+        assertEquals(bits(0, 1, 3), insert(batch(turbine, 0, 1, 1, 2), copy));
+        assertEquals(bits(1, 3), insert(batch(turbine, 1, 3, 0, 4), copy));
+        assertEquals(bits(), insert(batch(turbine, 4, 3), copy));
+    }
+    
+    private BitSet insert(TelemetryBatch batch, boolean copy) {
+        Object copyConfigured = ReflectionTestUtils.getField(batchWriter, "postgresCopyEnabled");
+        ReflectionTestUtils.setField(batchWriter, "postgresCopyEnabled", copy);
+        try {
+            return new TransactionTemplate(transactionManager).execute(status -> batchWriter.insertTelemetry(batch));
+        } finally {
+            ReflectionTestUtils.setField(batchWriter, "postgresCopyEnabled", copyConfigured);
+        }
+    }
+    
+    private long turbine() {
+        String code = "TBW-" + UUID.randomUUID().toString().substring(0, 8);
+        Farm farm = farmRepository.save(new Farm("Batch Writer " + code, "Batch Writer Test", "Test site"));
+        return turbineRepository.save(new Turbine(code, code, farm, 3.0, "OPERATIONAL")).getId();
+    }
+    
+    // One sample per entry, at T0 plus that many seconds
+    private static TelemetryBatch batch(long turbine, int... seconds) {
+        TelemetryBatch batch = new TelemetryBatch(seconds.length);
+        for (int second : seconds) {
+            batch.add(turbine, T0 + second * 1_000_000L, 9.0, 2.0, 14.0, 30.0, 3.0, 66.0);
+        }
+        return batch;
+    }
+    
+    private static BitSet bits(int... indexes) {
+        BitSet bits = new BitSet();
+        for (int index : indexes) {
+            bits.set(index);
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,140 @@
+package com.wind.turbinemonitor.repository;
+
+import com.wind.turbinemonitor.TestDatabase;
+import com.wind.turbinemonitor.ingest.TelemetryBatch;
+import com.wind.turbinemonitor.model.Farm;
+import com.wind.turbinemonitor.model.Telemetry;
+import com.wind.turbinemonitor.model.Turbine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Telemetry insert throughput of the entity path that TelemetryBatchWriter replaced
+ * (saveAll, one INSERT per row because of the IDENTITY key) against the batch writer's
+ * multi-row INSERTs and, on PostgreSQL, COPY. Prints rows per second for each; runs
+ * against the TestDatabase, so the numbers are for embedded PostgreSQL unless TEST_DB_URL
+ * names another database.
+ *
+ * Each path writes ROWS samples of its own in one transaction, after a warm-up round.
+ */
+@SpringBootTest
+class TelemetryWriteThroughputTest {
+    private static final int ROWS = 20_000;
+    private static final int WARM_UP_ROWS = 2_000;
+    private static final int TURBINES = 100;
+    
+    @Autowired
+    private TelemetryBatchWriter batchWriter;
+    
+    @Autowired
+    private TelemetryRepository telemetryRepository;
+    
+    @Autowired
+    private FarmRepository farmRepository;
+    
+    @Autowired
+    private TurbineRepository turbineRepository;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    private final List<Turbine> turbines = new ArrayList<>();
+    
+    private LocalDateTime nextStart = LocalDateTime.of(2024, 1, 1, 0, 0);
+    
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        TestDatabase.register(registry);
+    }
+    
+    @BeforeEach
+    void createTurbines() {
+        String run = UUID.randomUUID().toString().substring(0, 8);
+        Farm farm = farmRepository.save(new Farm("Throughput " + run, "Throughput Test", "Test site"));
+        for (int t = 0; t < TURBINES; t++) {
+            String code = "TWT-" + run + "-" + t;
+            // Not ACTIVE, so the telemetry generator leaves them alone
+            turbines.add(turbineRepository.save(new Turbine(code, code, farm, 3.0, "OPERATIONAL")));
+        }
+    }
+    
+    @Test
+    void batchWriterOutrunsEntityInserts() {
+        boolean copyConfigured = batchWriter.isPostgresCopyMode();
+        
+        entityInserts(WARM_UP_ROWS);
+        batchInserts(WARM_UP_ROWS, false);
+        
+        double entity = entityInserts(ROWS);
+        double multiRow = batchInserts(ROWS, false);
+        double copy = copyConfigured ? batchInserts(ROWS, true) : Double.NaN;
+        
+        System.out.printf("Telemetry insert throughput, %d rows: entity saveAll %.0f rows/s, " +
+                          "multi-row INSERT %.0f rows/s, COPY %s%n", ROWS, entity, multiRow,
+                          copyConfigured ? "%.0f rows/s".formatted(copy) : "n/a");
+        assertTrue(multiRow > entity, "multi-row " + multiRow + " rows/s, entity " + entity + " rows/s");
+    }
+    
+    private double entityInserts(int rows) {
+        List<Telemetry> telemetry = new ArrayList<>(rows);
+        LocalDateTime start = claim(rows);
+        for (int i = 0; i < rows; i++) {
+            Telemetry sample = new Telemetry(turbines.get(i % TURBINES), timestamp(start, i), 9.0, 2.0, 14.0, 30.0, 3.0, 66.0);
+            sample.setIsAggregated(false);
+            telemetry.add(sample);
+        }
+        long begin = System.nanoTime();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> telemetryRepository.saveAll(telemetry));
+        return perSecond(rows, System.nanoTime() - begin);
+    }
+    
+    private double batchInserts(int rows, boolean copy) {
+        TelemetryBatch batch = new TelemetryBatch(rows);
+        LocalDateTime start = claim(rows);
+        for (int i = 0; i < rows; i++) {
+            batch.add(turbines.get(i % TURBINES).getId(), TelemetryBatch.toMicros(timestamp(start, i)),
+                9.0, 2.0, 14.0, 30.0, 3.0, 66.0);
+        }
+        boolean copyConfigured = ReflectionTestUtils.getField(batchWriter, "postgresCopyEnabled") == Boolean.TRUE;
+        ReflectionTestUtils.setField(batchWriter, "postgresCopyEnabled", copy);
+        try {
+            long begin = System.nanoTime();
+            int inserted = new TransactionTemplate(transactionManager).execute(
+                status -> batchWriter.insertTelemetry(batch).cardinality());
+            long elapsed = System.nanoTime() - begin;
+            
+            assertEquals(rows, inserted);
+            return perSecond(rows, elapsed);
+        } finally {
+            ReflectionTestUtils.setField(batchWriter, "postgresCopyEnabled", copyConfigured);
+        }
+    }
+    
+    // Every round gets its own time range, so no sample collides with an earlier one
+    private LocalDateTime claim(int rows) {
+        LocalDateTime start = nextStart;
+        nextStart = timestamp(start, rows);
+        return start;
+    }
+    
+    private static LocalDateTime timestamp(LocalDateTime start, int row) {
+        return start.plusSeconds((long) (row / TURBINES) * 10);
+    }
+    
+    private static double perSecond(int rows, long nanos) {
+        return rows * 1e9 / nanos;
+    }
+}
@@ -0,0 +1,99 @@
+package com.wind.turbinemonitor.service;
+
+import org.junit.jupiter.api.Test;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AggregationLockTest {
+    @Test
+    void passesRunAlongsideEachOther() throws InterruptedException {
+        AggregationLock lock = new AggregationLock();
+        CountDownLatch bothInside = new CountDownLatch(2);
+        Thread other = new Thread(() -> lock.runShared(() -> {
+            bothInside.countDown();
+            awaitQuietly(bothInside);
+        }));
+        other.start();
+        
+        boolean met = lock.shared(() -> {
+            bothInside.countDown();
+            return awaitQuietly(bothInside);
+        });
+        other.join(5000);
+        
+        assertTrue(met);
+    }
+    
+    @Test
+    void rebuildWaitsForRunningPassAndPassWaitsForRebuild() throws InterruptedException {
+        AggregationLock lock = new AggregationLock();
+        CountDownLatch passStarted = new CountDownLatch(1);
+        CountDownLatch releasePass = new CountDownLatch(1);
+        AtomicBoolean passDone = new AtomicBoolean();
+        AtomicBoolean rebuildSawPassDone = new AtomicBoolean();
+        AtomicBoolean laterPassSawRebuild = new AtomicBoolean();
+        AtomicBoolean rebuilt = new AtomicBoolean();
+        
+        Thread pass = new Thread(() -> lock.runShared(() -> {
+            passStarted.countDown();
+            awaitQuietly(releasePass);
+            passDone.set(true);
+        }));
+        pass.start();
+        assertTrue(passStarted.await(5, TimeUnit.SECONDS));
+        
+        Thread rebuild = new Thread(() -> lock.exclusive(() -> {
+            rebuildSawPassDone.set(passDone.get());
+            rebuilt.set(true);
+            return null;
+        }));
+        rebuild.start();
+        waitUntilQueued(rebuild);
+        
+        // Fair: a pass starting while the rebuild waits queues behind it
+        Thread laterPass = new Thread(() -> lock.runShared(() -> laterPassSawRebuild.set(rebuilt.get())));
+        laterPass.start();
+        waitUntilQueued(laterPass);
+        
+        releasePass.countDown();
+        pass.join(5000);
+        rebuild.join(5000);
+        laterPass.join(5000);
+        
+        assertTrue(rebuildSawPassDone.get());
+        assertTrue(laterPassSawRebuild.get());
+    }
+    
+    @Test
+    void lockIsReleasedWhenWorkThrows() {
+        AggregationLock lock = new AggregationLock();
+        assertThrows(IllegalStateException.class, () -> lock.exclusive(() -> {
+            throw new IllegalStateException("rebuild failed");
+        }));
+        
+        int exclusive = lock.exclusive(() -> 1);
+        int shared = lock.shared(() -> 2);
+        assertEquals(1, exclusive);
+        assertEquals(2, shared);
+    }
+    
+    private static boolean awaitQuietly(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+    
+    private static void waitUntilQueued(Thread thread) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (thread.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(Thread.State.WAITING, thread.getState());
+    }
+}
@@ -0,0 +1,214 @@
+package com.wind.turbinemonitor.service;
+
+import com.wind.turbinemonitor.TestDatabase;
+import com.wind.turbinemonitor.dto.DailyMetricsDTO;
+import com.wind.turbinemonitor.dto.GraphDataDTO;
+import com.wind.turbinemonitor.model.Farm;
+import com.wind.turbinemonitor.model.TelemetryAggregate;
+import com.wind.turbinemonitor.model.Turbine;
+import com.wind.turbinemonitor.repository.FarmRepository;
+import com.wind.turbinemonitor.repository.TelemetryAggregateRepository;
+import com.wind.turbinemonitor.repository.TelemetryBatchWriter;
+import com.wind.turbinemonitor.repository.TurbineRepository;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Statements issued by the fleet daily and graph endpoints over several days and farms,
+ * and their latency against the approach they replaced: loading every aggregate in the
+ * range and grouping by agg.getTurbine().getFarm().getName() in Java.
+ *
+ * Writes farms, turbines and a week of hourly aggregates into the TestDatabase (embedded
+ * PostgreSQL unless TEST_DB_URL names one). The data is written once and reused by the
+ * other tests, and by later runs against a TEST_DB_URL database.
+ *
+ * Statements are counted per thread, which leaves out the aggregation catch-up that runs
+ * in the background after startup.
+ */
+@SpringBootTest(properties =
+    "spring.jpa.properties.hibernate.session_factory.statement_inspector=" +
+    "com.wind.turbinemonitor.service.AnalyticsQueryCountTest$StatementCounter")
+class AnalyticsQueryCountTest {
+    private static final String REGION = "Query Count Test";
+    private static final int FARMS = 3;
+    private static final int TURBINES_PER_FARM = 20;
+    private static final LocalDateTime FIRST_HOUR = LocalDateTime.of(2025, 1, 1, 0, 0);
+    private static final int DAYS = 8;
+    
+    // Partial days at both ends, so both the summaries and the hourly edges are read
+    private static final LocalDateTime START = FIRST_HOUR.plusHours(6);
+    private static final LocalDateTime END = FIRST_HOUR.plusDays(DAYS - 1).plusHours(18);
+    
+    @Autowired
+    private AnalyticsService analyticsService;
+    
+    @Autowired
+    private RollupService rollupService;
+    
+    @Autowired
+    private TurbineRegistry turbineRegistry;
+    
+    @Autowired
+    private FarmRepository farmRepository;
+    
+    @Autowired
+    private TurbineRepository turbineRepository;
+    
+    @Autowired
+    private TelemetryAggregateRepository aggregateRepository;
+    
+    @Autowired
+    private TelemetryBatchWriter batchWriter;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        TestDatabase.register(registry);
+    }
+    
+    @BeforeEach
+    void seed() {
+        if (farmRepository.findByName(farmName(0)).isPresent()) {
+            return;
+        }
+        List<TelemetryAggregate> aggregates = new ArrayList<>();
+        Random random = new Random(42);
+        for (int f = 0; f < FARMS; f++) {
+            Farm farm = farmRepository.save(new Farm(farmName(f), REGION, "Test site " + f));
+            for (int t = 0; t < TURBINES_PER_FARM; t++) {
+                String code = "QCT-" + f + "-" + t;
+                Turbine turbine = turbineRepository.save(new Turbine(code, code, farm, 3.0, "OPERATIONAL"));
+                for (int h = 0; h < DAYS * 24; h++) {
+                    aggregates.add(aggregate(turbine, FIRST_HOUR.plusHours(h), random));
+                }
+            }
+        }
+        batchWriter.insertAggregates(aggregates);
+        turbineRegistry.reload();
+        rollupService.rebuild();
+    }
+    
+    @Test
+    void dailyMetricsTakeAtMostThreeStatements() {
+        StatementCounter.reset();
+        List<DailyMetricsDTO> days = analyticsService.getDailyMetrics(START, END, null, REGION);
+        long statements = StatementCounter.count();
+        
+        assertEquals(DAYS * (FARMS + 1), days.size());
+        assertTrue(statements <= 3, "daily metrics prepared " + statements + " statements");
+    }
+    
+    @Test
+    void graphDataTakesAtMostThreeStatements() {
+        StatementCounter.reset();
+        List<GraphDataDTO> days = analyticsService.getGraphData(START, END.minusHours(1), null, REGION);
+        long statements = StatementCounter.count();
+        
+        assertEquals(DAYS, days.size());
+        assertTrue(statements <= 3, "graph data prepared " + statements + " statements");
+    }
+    
+    @Test
+    void dailyMetricsMatchAndBeatEntityGrouping() {
+        // Warm up both paths on a range the cache does not share with the timed one
+        analyticsService.getDailyMetrics(START.plusHours(1), END, null, REGION);
+        groupEntities(START.plusHours(1), END);
+        
+        StatementCounter.reset();
+        long entityStart = System.nanoTime();
+        Map<String, double[]> expected = groupEntities(START, END.minusHours(2));
+        long entityNanos = System.nanoTime() - entityStart;
+        long entityStatements = StatementCounter.count();
+        
+        StatementCounter.reset();
+        long groupedStart = System.nanoTime();
+        List<DailyMetricsDTO> days = analyticsService.getDailyMetrics(START, END.minusHours(2), null, REGION);
+        long groupedNanos = System.nanoTime() - groupedStart;
+        long groupedStatements = StatementCounter.count();
+        
+        System.out.println("Daily metrics over " + DAYS + " days and " + FARMS * TURBINES_PER_FARM + " turbines: " +
+                           "grouped " + groupedNanos / 1_000_000 + " ms in " + groupedStatements + " statements, " +
+                           "entities " + entityNanos / 1_000_000 + " ms in " + entityStatements + " statements");
+        
+        int farmRows = 0;
+        for (DailyMetricsDTO day : days) {
+            if (day.getFarm().equals("All Farms")) {
+                continue;
+            }
+            double[] sums = expected.get(day.getDate() + ":" + day.getFarm());
+            assertNotNull(sums, day.getDate() + " " + day.getFarm());
+            assertEquals(sums[0], day.getTotalGeneration(), 1e-6 * Math.max(1, sums[0]));
+            assertEquals(sums[1], day.getOperatingHours(), 1e-9);
+            farmRows++;
+        }
+        assertEquals(expected.size(), farmRows);
+        assertTrue(groupedStatements <= entityStatements);
+        assertTrue(groupedNanos < entityNanos, "grouped " + groupedNanos + " ns, entities " + entityNanos + " ns");
+    }
+    
+    // The replaced approach: (total generation, hours) per "date:farm" from loaded entities
+    private Map<String, double[]> groupEntities(LocalDateTime start, LocalDateTime end) {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        return readOnly.execute(status -> {
+            Map<String, double[]> sums = new HashMap<>();
+            for (TelemetryAggregate agg : aggregateRepository.findByDateRangeAndFilters(start, end, null, REGION)) {
+                String key = agg.getHourStart().toLocalDate() + ":" + agg.getTurbine().getFarm().getName();
+                double[] farmDay = sums.computeIfAbsent(key, k -> new double[2]);
+                farmDay[0] += agg.getTotalGeneration();
+                farmDay[1] += 1;
+            }
+            return sums;
+        });
+    }
+    
+    public static class StatementCounter implements StatementInspector {
+        private static final ThreadLocal<long[]> COUNT = ThreadLocal.withInitial(() -> new long[1]);
+        
+        static void reset() {
+            COUNT.get()[0] = 0;
+        }
+        
+        static long count() {
+            return COUNT.get()[0];
+        }
+        
+        @Override
+        public String inspect(String sql) {
+            COUNT.get()[0]++;
+            return sql;
+        }
+    }
+    
+    private static TelemetryAggregate aggregate(Turbine turbine, LocalDateTime hourStart, Random random) {
+        TelemetryAggregate aggregate = new TelemetryAggregate(turbine, hourStart);
+        double power = 0.3 + 2.5 * random.nextDouble();
+        aggregate.setAvgWindSpeed(4 + 10 * random.nextDouble());
+        aggregate.setAvgPowerOutput(power);
+        aggregate.setAvgRotorSpeed(8 + 6 * random.nextDouble());
+        aggregate.setAvgTemperature(30 + 20 * random.nextDouble());
+        aggregate.setAvgVibration(1 + 2 * random.nextDouble());
+        aggregate.setAvgEfficiency(70 + 25 * random.nextDouble());
+        aggregate.setTotalGeneration(power);
+        aggregate.setDataPointCount(360);
+        aggregate.setHasAnomaly(false);
+        return aggregate;
+    }
+    
+    private static String farmName(int farm) {
+        return "Query Count Farm " + (char) ('A' + farm);
+    }
+}
@@ -0,0 +1,141 @@
+package com.wind.turbinemonitor.service;
+
+import com.wind.turbinemonitor.ingest.HourAccumulator;
+import com.wind.turbinemonitor.ingest.TelemetryBatch;
+import com.wind.turbinemonitor.model.TelemetryAggregate;
+import com.wind.turbinemonitor.model.Turbine;
+import org.junit.jupiter.api.Test;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LateAggregatesTest {
+    private static final LocalDateTime HOUR = LocalDateTime.of(2026, 3, 1, 12, 0);
+    private static final long HOUR_MICROS = TelemetryBatch.toMicros(HOUR);
+    private static final Turbine TURBINE = turbine();
+    
+    @Test
+    void partialAveragesTheSlotAndCountsGenerationAtTenSeconds() {
+        TelemetryBatch batch = new TelemetryBatch(2);
+        batch.add(7, HOUR_MICROS, 10, 1800, 12, 40, 2, 80);
+        batch.add(7, HOUR_MICROS + 10_000_000L, 14, 3600, 16, 44, 4, 90);
+        
+        TelemetryAggregate partial = LateAggregates.partial(TURBINE, HOUR, accumulate(batch), 0);
+        
+        assertEquals(2, (int) partial.getDataPointCount());
+        assertEquals(12.0, partial.getAvgWindSpeed(), 1e-12);
+        assertEquals(2700.0, partial.getAvgPowerOutput(), 1e-12);
+        assertEquals(14.0, partial.getAvgRotorSpeed(), 1e-12);
+        assertEquals(42.0, partial.getAvgTemperature(), 1e-12);
+        assertEquals(3.0, partial.getAvgVibration(), 1e-12);
+        assertEquals(85.0, partial.getAvgEfficiency(), 1e-12);
+        assertEquals((1800 + 3600) * 10.0 / 3600.0, partial.getTotalGeneration(), 1e-12);
+        assertFalse(partial.getHasAnomaly());
+        assertNotNull(partial.getChannelStats());
+    }
+    
+    @Test
+    void upsertOfLateSamplesEqualsAggregateOfAllSamples() {
+        TelemetryBatch early = samples(0, 300);
+        TelemetryBatch late = samples(300, 60);
+        
+        TelemetryAggregate merged = upsert(partial(early), partial(late));
+        
+        assertAggregate(partial(samples(0, 360)), merged);
+    }
+    
+    @Test
+    void unmergeRecoversTheAggregateBeforeTheLateSamples() {
+        TelemetryAggregate stored = partial(samples(0, 300));
+        TelemetryAggregate late = partial(samples(300, 60));
+        TelemetryAggregate merged = upsert(stored, late);
+        merged.setHasAnomaly(true);
+        merged.setChannelStats(new byte[] {1, 2, 3});
+        
+        TelemetryAggregate before = LateAggregates.unmerge(merged, late);
+        
+        assertAggregate(stored, before);
+        // Not recomputed: the rollups take back what the stored row had
+        assertTrue(before.getHasAnomaly());
+        assertArrayEquals(new byte[] {1, 2, 3}, before.getChannelStats());
+        assertSame(merged.getTurbine(), before.getTurbine());
+        assertEquals(HOUR, before.getHourStart());
+    }
+    
+    @Test
+    void unmergeOfSingleLateSampleIntoLargeHourStaysPrecise() {
+        TelemetryAggregate stored = partial(samples(0, 359));
+        TelemetryAggregate late = partial(samples(359, 1));
+        
+        assertAggregate(stored, LateAggregates.unmerge(upsert(stored, late), late));
+    }
+    
+    @Test
+    void unmergeReturnsNullWhenTheMergeCreatedTheRow() {
+        TelemetryAggregate late = partial(samples(0, 20));
+        
+        assertNull(LateAggregates.unmerge(upsert(null, late), late));
+    }
+    
+    // The same arithmetic as the MERGE_AGGREGATE upserts in TelemetryBatchWriter
+    private static TelemetryAggregate upsert(TelemetryAggregate stored, TelemetryAggregate late) {
+        if (stored == null) {
+            return late;
+        }
+        int a = stored.getDataPointCount();
+        int b = late.getDataPointCount();
+        TelemetryAggregate merged = new TelemetryAggregate(stored.getTurbine(), stored.getHourStart());
+        merged.setAvgWindSpeed((stored.getAvgWindSpeed() * a + late.getAvgWindSpeed() * b) / (a + b));
+        merged.setAvgPowerOutput((stored.getAvgPowerOutput() * a + late.getAvgPowerOutput() * b) / (a + b));
+        merged.setAvgRotorSpeed((stored.getAvgRotorSpeed() * a + late.getAvgRotorSpeed() * b) / (a + b));
+        merged.setAvgTemperature((stored.getAvgTemperature() * a + late.getAvgTemperature() * b) / (a + b));
+        merged.setAvgVibration((stored.getAvgVibration() * a + late.getAvgVibration() * b) / (a + b));
+        merged.setAvgEfficiency((stored.getAvgEfficiency() * a + late.getAvgEfficiency() * b) / (a + b));
+        merged.setTotalGeneration(stored.getTotalGeneration() + late.getTotalGeneration());
+        merged.setDataPointCount(a + b);
+        merged.setHasAnomaly(stored.getHasAnomaly());
+        merged.setChannelStats(stored.getChannelStats());
+        return merged;
+    }
+    
+    private static void assertAggregate(TelemetryAggregate expected, TelemetryAggregate actual) {
+        assertNotNull(actual);
+        assertEquals(expected.getDataPointCount(), actual.getDataPointCount());
+        assertEquals(expected.getAvgWindSpeed(), actual.getAvgWindSpeed(), 1e-9);
+        assertEquals(expected.getAvgPowerOutput(), actual.getAvgPowerOutput(), 1e-9);
+        assertEquals(expected.getAvgRotorSpeed(), actual.getAvgRotorSpeed(), 1e-9);
+        assertEquals(expected.getAvgTemperature(), actual.getAvgTemperature(), 1e-9);
+        assertEquals(expected.getAvgVibration(), actual.getAvgVibration(), 1e-9);
+        assertEquals(expected.getAvgEfficiency(), actual.getAvgEfficiency(), 1e-9);
+        assertEquals(expected.getTotalGeneration(), actual.getTotalGeneration(), 1e-9);
+    }
+    
+    private static TelemetryAggregate partial(TelemetryBatch batch) {
+        return LateAggregates.partial(TURBINE, HOUR, accumulate(batch), 0);
+    }
+    
+    private static Turbine turbine() {
+        Turbine turbine = new Turbine();
+        turbine.setId(7L);
+        return turbine;
+    }
+    
+    private static HourAccumulator accumulate(TelemetryBatch batch) {
+        HourAccumulator hour = new HourAccumulator(HOUR_MICROS, 1);
+        for (int i = 0; i < batch.size(); i++) {
+            hour.add(batch, i);
+        }
+        return hour;
+    }
+    
+    // Samples at a 10-second cadence with values that vary enough to show a wrong weighting
+    private static TelemetryBatch samples(int from, int count) {
+        TelemetryBatch batch = new TelemetryBatch(count);
+        for (int i = from; i < from + count; i++) {
+            double t = i / 360.0;
+            batch.add(7, HOUR_MICROS + i * 10_000_000L, 6 + 8 * t + Math.sin(i), 400 + 2600 * t * t, 9 + 5 * t,
+                35 + 20 * Math.cos(i / 7.0), 1 + 3 * t, 70 + 25 * Math.sin(i / 11.0));
+        }
+        return batch;
+    }
+}
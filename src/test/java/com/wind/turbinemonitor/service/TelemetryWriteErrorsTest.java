@@ -0,0 +1,99 @@
+package com.wind.turbinemonitor.service;
+
+import com.wind.turbinemonitor.ingest.TelemetryBatch;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.transaction.CannotCreateTransactionException;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TelemetryWriteErrorsTest {
+    @Test
+    void connectionLockAndTimeoutErrorsAreTransient() {
+        assertTrue(TelemetryWriteErrors.isTransient(new CannotGetJdbcConnectionException("pool exhausted")));
+        assertTrue(TelemetryWriteErrors.isTransient(new QueryTimeoutException("lock wait timeout")));
+        assertTrue(TelemetryWriteErrors.isTransient(new CannotCreateTransactionException("connection refused")));
+        assertTrue(TelemetryWriteErrors.isTransient(new RuntimeException("wrapped",
+            new SQLTransientConnectionException("connection is not available"))));
+        
+        assertFalse(TelemetryWriteErrors.isTransient(new DataIntegrityViolationException("foreign key")));
+        assertFalse(TelemetryWriteErrors.isTransient(new UncategorizedSQLException("insert", "INSERT ...",
+            new SQLException("'NaN' is not a valid numeric or approximate numeric value"))));
+    }
+    
+    @Test
+    void writesEverythingButTheRowsThatFailOnTheirOwn() {
+        TelemetryBatch batch = batch(37);
+        Set<Long> bad = Set.of(3L, 4L, 30L);
+        Set<Long> written = new HashSet<>();
+        
+        TelemetryBatch rejected = TelemetryWriteErrors.writeIsolating(batch, part -> {
+            for (int i = 0; i < part.size(); i++) {
+                if (bad.contains(part.turbineId(i))) {
+                    throw new DataIntegrityViolationException("turbine " + part.turbineId(i) + " does not exist");
+                }
+            }
+            for (int i = 0; i < part.size(); i++) {
+                assertTrue(written.add(part.turbineId(i)), "written twice: " + part.turbineId(i));
+            }
+        });
+        
+        assertEquals(34, written.size());
+        assertEquals(List.of(3L, 4L, 30L), ids(rejected));
+        assertEquals(3000, rejected.timestamp(0));
+        assertEquals(30.5, rejected.windSpeed(2));
+    }
+    
+    @Test
+    void batchThatWritesIsWrittenOnce() {
+        TelemetryBatch batch = batch(10);
+        List<Integer> writes = new ArrayList<>();
+        
+        TelemetryBatch rejected = TelemetryWriteErrors.writeIsolating(batch, part -> writes.add(part.size()));
+        
+        assertEquals(List.of(10), writes);
+        assertTrue(rejected.isEmpty());
+    }
+    
+    @Test
+    void transientErrorIsRethrownEvenWhileIsolating() {
+        TelemetryBatch batch = batch(8);
+        int[] calls = new int[1];
+        Consumer<TelemetryBatch> write = part -> {
+            calls[0]++;
+            if (calls[0] == 1) {
+                throw new DataIntegrityViolationException("bad row");
+            }
+            throw new CannotGetJdbcConnectionException("database went away");
+        };
+        
+        assertThrows(CannotGetJdbcConnectionException.class, () -> TelemetryWriteErrors.writeIsolating(batch, write));
+        assertEquals(2, calls[0]);
+    }
+    
+    private static TelemetryBatch batch(int size) {
+        TelemetryBatch batch = new TelemetryBatch(size);
+        for (int i = 0; i < size; i++) {
+            batch.add(i, i * 1000L, i + 0.5, 1, 2, 3, 4, 5);
+        }
+        return batch;
+    }
+    
+    private static List<Long> ids(TelemetryBatch batch) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            ids.add(batch.turbineId(i));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,166 @@
+package com.wind.turbinemonitor.util;
+
+import org.junit.jupiter.api.Test;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChannelStatsTest {
+    @Test
+    void meanVarianceMinAndMaxMatchTwoPassValues() {
+        double[] values = {3.5, 7.25, 1.0, 9.75, 4.0, 4.0, 6.5};
+        ChannelStats stats = new ChannelStats();
+        for (double value : values) {
+            stats.add(4, value);
+        }
+        
+        double mean = Arrays.stream(values).average().orElseThrow();
+        double variance = Arrays.stream(values).map(v -> (v - mean) * (v - mean)).sum() / values.length;
+        assertEquals(values.length, stats.count(4));
+        assertEquals(mean, stats.mean(4), 1e-12);
+        assertEquals(variance, stats.variance(4), 1e-12);
+        assertEquals(Math.sqrt(variance), stats.stddev(4), 1e-12);
+        assertEquals(1.0, stats.min(4));
+        assertEquals(9.75, stats.max(4));
+        assertEquals(0, stats.count(0));
+        assertTrue(Double.isNaN(stats.mean(0)));
+    }
+    
+    @Test
+    void mergingHoursGivesTheStatsOfTheWholeDay() {
+        Random random = new Random(5);
+        ChannelStats day = new ChannelStats();
+        ChannelStats merged = new ChannelStats();
+        for (int hour = 0; hour < 24; hour++) {
+            ChannelStats hourStats = new ChannelStats();
+            for (int i = 0; i < 360; i++) {
+                // A level that moves through the day, so the hours have different means
+                double wind = 8 + hour * 0.3 + random.nextDouble() * 12;
+                double power = 1.5 + random.nextDouble() * 2;
+                hourStats.add(wind, power, 10 + random.nextDouble() * 10, 15 + hour + random.nextDouble() * 20,
+                    2 + random.nextDouble() * 5, power / 3 * 100);
+                day.add(wind, power, 10, 15, 2, power / 3 * 100);
+            }
+            merged.merge(hourStats);
+        }
+        
+        for (int channel : new int[] {0, 1, 5}) {
+            assertEquals(day.count(channel), merged.count(channel));
+            assertEquals(day.mean(channel), merged.mean(channel), Math.abs(day.mean(channel)) * 1e-12);
+            assertEquals(day.variance(channel), merged.variance(channel), day.variance(channel) * 1e-9);
+            assertEquals(day.min(channel), merged.min(channel));
+            assertEquals(day.max(channel), merged.max(channel));
+            for (double q : new double[] {0.5, 0.95, 0.99}) {
+                assertEquals(day.quantile(channel, q), merged.quantile(channel, q));
+            }
+        }
+    }
+    
+    @Test
+    void varianceStaysAccurateFarFromZero() {
+        // Sum-of-squares would lose every digit of this variance to cancellation
+        double[] values = new double[1000];
+        ChannelStats first = new ChannelStats();
+        ChannelStats second = new ChannelStats();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 1e6 + (i % 4) * 0.001;
+            (i % 2 == 0 ? first : second).add(1, values[i]);
+        }
+        first.merge(second);
+        
+        // Two-pass on the offsets, which are exact
+        double mean = Arrays.stream(values).map(v -> v - 1e6).average().orElseThrow();
+        double variance = Arrays.stream(values).map(v -> (v - 1e6 - mean) * (v - 1e6 - mean)).sum() / values.length;
+        assertEquals(variance, first.variance(1), variance * 1e-6);
+    }
+    
+    @Test
+    void encodeRoundTripAndStaticMergeOfEncodedValues() {
+        ChannelStats a = samples(1, 360);
+        ChannelStats b = samples(2, 180);
+        
+        ChannelStats decoded = ChannelStats.decode(a.encode());
+        assertArrayEquals(a.encode(), decoded.encode());
+        assertEquals(a.summary(0.5, 0.99), decoded.summary(0.5, 0.99));
+        
+        ChannelStats expected = samples(1, 360);
+        expected.merge(b);
+        assertArrayEquals(expected.encode(), ChannelStats.merge(a.encode(), b.encode()));
+        byte[] encoded = a.encode();
+        assertSame(encoded, ChannelStats.merge(null, encoded));
+        assertSame(encoded, ChannelStats.merge(encoded, null));
+    }
+    
+    @Test
+    void decodeRejectsUnknownVersion() {
+        byte[] encoded = new ChannelStats().encode();
+        encoded[0] = 9;
+        
+        assertThrows(IllegalArgumentException.class, () -> ChannelStats.decode(encoded));
+    }
+    
+    @Test
+    void nonFiniteValuesAreSkippedPerChannel() {
+        ChannelStats stats = new ChannelStats();
+        stats.add(5, 1, Double.NaN, 20, Double.POSITIVE_INFINITY, 50);
+        stats.add(7, 2, 12, 22, 3, 60);
+        
+        assertEquals(2, stats.count(0));
+        assertEquals(1, stats.count(2));
+        assertEquals(1, stats.count(4));
+        assertEquals(12.0, stats.mean(2));
+    }
+    
+    @Test
+    void hourOfGeneratorSamplesEncodesToAboutFiveHundredBytes() {
+        int size = samples(1, 360).encode().length;
+        
+        // 192 bytes of doubles, the rest sketches
+        assertTrue(size > 192 && size < 600, "encoded " + size + " bytes");
+    }
+    
+    @Test
+    void sketchesAtTheirBucketLimitFitTheColumn() {
+        ChannelStats stats = new ChannelStats();
+        for (int channel = 0; channel < ChannelStats.CHANNELS.length; channel++) {
+            // Both signs over far more buckets than a store keeps
+            for (int exponent = -6; exponent <= 40; exponent++) {
+                for (int i = 1; i <= 90; i++) {
+                    double value = Math.pow(10, exponent) * (1 + i / 90.0);
+                    stats.add(channel, value);
+                    stats.add(channel, -value);
+                }
+            }
+        }
+        
+        assertTrue(stats.encode().length <= ChannelStats.MAX_ENCODED_BYTES, "encoded " + stats.encode().length + " bytes");
+    }
+    
+    @Test
+    void summaryNamesPercentilesAndChannels() {
+        Map<String, Object> summary = samples(3, 100).summary(0.5, 0.999);
+        
+        assertEquals(ChannelStats.CHANNELS.length, summary.size());
+        @SuppressWarnings("unchecked")
+        Map<String, Object> vibration = (Map<String, Object>) summary.get("vibration");
+        assertTrue(vibration.containsKey("p50"));
+        assertTrue(vibration.containsKey("p99.9"));
+        assertEquals(100L, vibration.get("count"));
+        assertEquals(4, ChannelStats.channel("Vibration"));
+        assertEquals(-1, ChannelStats.channel("pitch"));
+    }
+    
+    // Value ranges of the built-in generator
+    private static ChannelStats samples(long seed, int count) {
+        Random random = new Random(seed);
+        ChannelStats stats = new ChannelStats();
+        for (int i = 0; i < count; i++) {
+            double power = 1.5 + random.nextDouble() * 2;
+            stats.add(8 + random.nextDouble() * 12, power, 10 + random.nextDouble() * 10, 15 + random.nextDouble() * 20,
+                2 + random.nextDouble() * 5, power / 3 * 100);
+        }
+        return stats;
+    }
+}
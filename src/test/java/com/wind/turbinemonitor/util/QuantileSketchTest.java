@@ -0,0 +1,130 @@
+package com.wind.turbinemonitor.util;
+
+import org.junit.jupiter.api.Test;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuantileSketchTest {
+    private static final double[] QUANTILES = {0, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.95, 0.99, 0.999, 1};
+    
+    @Test
+    void quantilesAreWithinRelativeAccuracy() {
+        Random random = new Random(42);
+        double[] values = new double[20000];
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 0; i < values.length; i++) {
+            // Heavy-tailed, over several orders of magnitude
+            values[i] = Math.exp(random.nextGaussian() * 2);
+            sketch.add(values[i]);
+        }
+        
+        assertEquals(values.length, sketch.count());
+        assertQuantiles(values, sketch);
+    }
+    
+    @Test
+    void negativeAndZeroValuesKeepTheirOrder() {
+        Random random = new Random(7);
+        double[] values = new double[5000];
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i % 10 == 0 ? 0 : (random.nextDouble() - 0.3) * 100;
+            sketch.add(values[i]);
+        }
+        
+        assertQuantiles(values, sketch);
+        assertTrue(sketch.quantile(0) < 0);
+        assertTrue(sketch.quantile(1) > 0);
+    }
+    
+    @Test
+    void mergeGivesTheSketchOfAllValuesInAnyOrder() {
+        Random random = new Random(3);
+        QuantileSketch all = new QuantileSketch();
+        QuantileSketch[] hours = new QuantileSketch[24];
+        double[] values = new double[24 * 360];
+        for (int h = 0; h < hours.length; h++) {
+            hours[h] = new QuantileSketch();
+            for (int i = 0; i < 360; i++) {
+                // Each hour has its own level, so the parts cover different buckets
+                double value = 2 + h * 0.5 + random.nextDouble() * 5;
+                values[h * 360 + i] = value;
+                hours[h].add(value);
+                all.add(value);
+            }
+        }
+        
+        QuantileSketch forward = new QuantileSketch();
+        for (QuantileSketch hour : hours) {
+            forward.merge(hour);
+        }
+        QuantileSketch backward = new QuantileSketch();
+        for (int h = hours.length - 1; h >= 0; h--) {
+            backward.merge(hours[h]);
+        }
+        
+        assertArrayEquals(all.encode(), forward.encode());
+        assertArrayEquals(all.encode(), backward.encode());
+        assertQuantiles(values, forward);
+    }
+    
+    @Test
+    void encodeRoundTripKeepsEveryBucket() {
+        QuantileSketch sketch = new QuantileSketch();
+        Random random = new Random(11);
+        for (int i = 0; i < 1000; i++) {
+            sketch.add(random.nextGaussian() * 50);
+        }
+        sketch.add(0);
+        
+        QuantileSketch decoded = QuantileSketch.decode(sketch.encode());
+        
+        assertEquals(sketch.count(), decoded.count());
+        assertArrayEquals(sketch.encode(), decoded.encode());
+        for (double q : QUANTILES) {
+            assertEquals(sketch.quantile(q), decoded.quantile(q));
+        }
+    }
+    
+    @Test
+    void emptySketchHasNoQuantilesAndIgnoresNonFiniteValues() {
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.add(Double.NaN);
+        sketch.add(Double.POSITIVE_INFINITY);
+        sketch.add(1.0, 0);
+        
+        assertTrue(sketch.isEmpty());
+        assertTrue(Double.isNaN(sketch.quantile(0.5)));
+        assertTrue(QuantileSketch.decode(sketch.encode()).isEmpty());
+    }
+    
+    @Test
+    void collapsingBeyondMaxBucketsKeepsCountsAndUpperQuantiles() {
+        QuantileSketch sketch = new QuantileSketch();
+        // 1e-5 .. 1e35: far more than MAX_BUCKETS logarithmic buckets
+        for (int exponent = -5; exponent <= 35; exponent++) {
+            for (int i = 1; i <= 100; i++) {
+                sketch.add(Math.pow(10, exponent) * (1 + i / 100.0));
+            }
+        }
+        double top = Math.pow(10, 35) * 2;
+        
+        assertEquals(41 * 100, sketch.count());
+        assertEquals(top, sketch.quantile(1), top * QuantileSketch.RELATIVE_ACCURACY);
+        double p99 = Math.pow(10, 35) * 1.6;
+        assertEquals(p99, sketch.quantile(0.99), p99 * 0.05);
+        assertEquals(sketch.count(), QuantileSketch.decode(sketch.encode()).count());
+    }
+    
+    private static void assertQuantiles(double[] values, QuantileSketch sketch) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        for (double q : QUANTILES) {
+            double exact = sorted[(int) (q * (sorted.length - 1))];
+            double tolerance = Math.abs(exact) * QuantileSketch.RELATIVE_ACCURACY + 1e-9;
+            assertEquals(exact, sketch.quantile(q), tolerance, "p" + q * 100);
+        }
+    }
+}